@@ -0,0 +1,126 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request object to calculate a many-to-many matrix of weights, distances and/or times with GraphHopper.
+ */
+public class GHMatrixRequest {
+    private List<GHPoint> fromPoints = new ArrayList<>();
+    private List<GHPoint> toPoints = new ArrayList<>();
+    private String profile = "";
+    private final PMap hints = new PMap();
+    private List<String> snapPreventions = new ArrayList<>();
+    private List<String> outArrays = new ArrayList<>();
+    private boolean failFast = true;
+
+    /**
+     * Uses the given points as source and target points.
+     */
+    public GHMatrixRequest setPoints(List<GHPoint> points) {
+        this.fromPoints = points;
+        this.toPoints = points;
+        return this;
+    }
+
+    public GHMatrixRequest setFromPoints(List<GHPoint> fromPoints) {
+        this.fromPoints = fromPoints;
+        return this;
+    }
+
+    public List<GHPoint> getFromPoints() {
+        return fromPoints;
+    }
+
+    public GHMatrixRequest setToPoints(List<GHPoint> toPoints) {
+        this.toPoints = toPoints;
+        return this;
+    }
+
+    public List<GHPoint> getToPoints() {
+        return toPoints;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public GHMatrixRequest setProfile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public PMap getHints() {
+        return hints;
+    }
+
+    /**
+     * This method sets a key value pair in the hints. It is mainly used for deserialization with Jackson.
+     */
+    public GHMatrixRequest putHint(String fieldName, Object value) {
+        this.hints.putObject(fieldName, value);
+        return this;
+    }
+
+    public GHMatrixRequest setSnapPreventions(List<String> snapPreventions) {
+        this.snapPreventions = snapPreventions;
+        return this;
+    }
+
+    public List<String> getSnapPreventions() {
+        return snapPreventions;
+    }
+
+    /**
+     * Specifies which of 'weights', 'distances' and 'times' should be calculated. If empty only the weights are
+     * calculated.
+     */
+    public GHMatrixRequest setOutArrays(List<String> outArrays) {
+        this.outArrays = outArrays;
+        return this;
+    }
+
+    public List<String> getOutArrays() {
+        return outArrays;
+    }
+
+    /**
+     * @param failFast if false the matrix calculation will be continued even when some points cannot be found or are
+     *                 not connected
+     */
+    public GHMatrixRequest setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    public boolean getFailFast() {
+        return failFast;
+    }
+
+    @Override
+    public String toString() {
+        return "from: " + fromPoints + ", to: " + toPoints + ", profile: " + profile
+                + (hints.isEmpty() ? "" : " (Hints:" + hints + ")");
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper containing the matrix and error output of a {@link GHMatrixRequest}. Entries for disconnected point pairs
+ * or points that could not be found are Double.POSITIVE_INFINITY (weights and distances) or Long.MAX_VALUE (times).
+ */
+public class GHMatrixResponse {
+    private final List<Throwable> errors = new ArrayList<>(4);
+    private final PMap hintsMap = new PMap();
+    private final List<Integer> invalidFromPoints = new ArrayList<>(0);
+    private final List<Integer> invalidToPoints = new ArrayList<>(0);
+    private final List<int[]> disconnectedPoints = new ArrayList<>(0);
+    private double[][] weights;
+    private double[][] distances;
+    private long[][] times;
+    private String debugInfo = "";
+
+    public GHMatrixResponse() {
+    }
+
+    public GHMatrixResponse setWeights(double[][] weights) {
+        this.weights = weights;
+        return this;
+    }
+
+    /**
+     * @return the weights with one row per from point or null if they were not calculated
+     */
+    public double[][] getWeights() {
+        return weights;
+    }
+
+    public GHMatrixResponse setDistances(double[][] distances) {
+        this.distances = distances;
+        return this;
+    }
+
+    /**
+     * @return the distances in meters with one row per from point or null if they were not calculated
+     */
+    public double[][] getDistances() {
+        return distances;
+    }
+
+    public GHMatrixResponse setTimes(long[][] times) {
+        this.times = times;
+        return this;
+    }
+
+    /**
+     * @return the times in milliseconds with one row per from point or null if they were not calculated
+     */
+    public long[][] getTimes() {
+        return times;
+    }
+
+    public List<Integer> getInvalidFromPoints() {
+        return invalidFromPoints;
+    }
+
+    public List<Integer> getInvalidToPoints() {
+        return invalidToPoints;
+    }
+
+    /**
+     * @return pairs of from/to point indices that are not connected
+     */
+    public List<int[]> getDisconnectedPoints() {
+        return disconnectedPoints;
+    }
+
+    public void addDebugInfo(String debugInfo) {
+        if (debugInfo == null)
+            throw new IllegalStateException("Debug information has to be none null");
+
+        if (!this.debugInfo.isEmpty())
+            this.debugInfo += "; ";
+
+        this.debugInfo += debugInfo;
+    }
+
+    public String getDebugInfo() {
+        return debugInfo;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+
+    public GHMatrixResponse addError(Throwable error) {
+        this.errors.add(error);
+        return this;
+    }
+
+    public PMap getHints() {
+        return hintsMap;
+    }
+
+    @Override
+    public String toString() {
+        String str = weights == null ? "no matrix" : weights.length + "x" + (weights.length == 0 ? 0 : weights[0].length);
+        if (!errors.isEmpty())
+            str += ", main errors: " + errors.toString();
+        return str;
+    }
+}
@@ -56,6 +56,14 @@ public class Parameters {
          * round trip algorithm (not yet for CH)
          */
         public static final String ROUND_TRIP = "round_trip";
+        /**
+         * Time-dependent Dijkstra, requires a departure time and speed profiles (not for CH)
+         */
+        public static final String TD_DIJKSTRA = "td_dijkstra";
+        /**
+         * Time-dependent A*, requires a departure time and speed profiles (not for CH)
+         */
+        public static final String TD_ASTAR = "td_astar";
 
         /**
          * All public properties for alternative routing.
@@ -97,6 +105,14 @@ public class Parameters {
         public static final String U_TURN_COSTS = "u_turn_costs";
         public static final String MAX_VISITED_NODES = "max_visited_nodes";
         public static final String INIT_MAX_VISITED_NODES = ROUTING_INIT_PREFIX + "max_visited_nodes";
+        /**
+         * If true the unidirectional algorithms reuse a thread-local shortest path tree store per profile.
+         */
+        public static final String INIT_REUSE_SPT_STORES = ROUTING_INIT_PREFIX + "reuse_spt_stores";
+        /**
+         * Reused shortest path tree stores that grew beyond this number of entries are dropped after the request.
+         */
+        public static final String INIT_SPT_STORE_MAX_ENTRIES = ROUTING_INIT_PREFIX + "spt_store_max_entries";
         /**
          * if true the response will contain turn instructions
          */
@@ -131,6 +147,11 @@ public class Parameters {
          * a rectangle lat1,lon1,lat2,lon2
          */
         public static final String BLOCK_AREA = "block_area";
+        /**
+         * the local departure time in ISO format, e.g. 2020-11-02T08:00, enables time-dependent routing if the graph
+         * contains speed profiles
+         */
+        public static final String DEPARTURE_TIME = "departure_time";
     }
 
     /**
@@ -184,6 +205,49 @@ public class Parameters {
         public static final String INIT_DISABLING_ALLOWED = ROUTING_INIT_PREFIX + "lm.disabling_allowed";
     }
 
+    /**
+     * Properties for routing with customizable contraction hierarchies, which are prepared once for all node-based
+     * weightings and can be customized for a new weighting within seconds
+     */
+    public static final class CCH {
+        public static final String PREPARE = "prepare.cch.";
+        /**
+         * This property name configures at start if the metric-independent preparation should be done.
+         */
+        public static final String ENABLED = PREPARE + "enabled";
+        /**
+         * This property name in HintsMap configures at runtime if CCH routing should be ignored.
+         */
+        public static final String DISABLE = "cch.disable";
+        /**
+         * Specifies how many customized graphs are kept to be reused by later requests with the same weighting
+         */
+        public static final String INIT_CACHE_SIZE = ROUTING_INIT_PREFIX + "cch.cache_size";
+        /**
+         * Specifies the maximum memory in MB of the cached customized graphs
+         */
+        public static final String INIT_CACHE_MAX_MB = ROUTING_INIT_PREFIX + "cch.cache_max_mb";
+        /**
+         * Specifies how many customizations can run at the same time
+         */
+        public static final String INIT_CUSTOMIZATION_THREADS = ROUTING_INIT_PREFIX + "cch.customization_threads";
+    }
+
+    /**
+     * Properties for live traffic, i.e. speeds that are updated at runtime and slow down edges for flexible, hybrid
+     * and CCH requests
+     */
+    public static final class Traffic {
+        /**
+         * This property name configures at start if live speeds can be set.
+         */
+        public static final String ENABLED = ROUTING_INIT_PREFIX + "live_traffic.enabled";
+        /**
+         * This property name in HintsMap configures at runtime if the live speeds should be ignored.
+         */
+        public static final String DISABLE = "live_traffic.disable";
+    }
+
     /**
      * Properties for non-CH routing
      */
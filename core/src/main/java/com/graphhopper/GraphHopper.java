@@ -17,6 +17,9 @@
  */
 package com.graphhopper;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIndexedContainer;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
@@ -26,6 +29,9 @@ import com.graphhopper.reader.osm.conditional.DateRangeParser;
 import com.graphhopper.routing.DefaultWeightingFactory;
 import com.graphhopper.routing.Router;
 import com.graphhopper.routing.RouterConfig;
+import com.graphhopper.routing.SPTStorePool;
+import com.graphhopper.routing.cch.CustomizableCH;
+import com.graphhopper.routing.cch.CustomizationCache;
 import com.graphhopper.routing.WeightingFactory;
 import com.graphhopper.routing.ch.CHPreparationHandler;
 import com.graphhopper.routing.ev.DefaultEncodedValueFactory;
@@ -37,6 +43,7 @@ import com.graphhopper.routing.lm.LMPreparationHandler;
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks.PrepareJob;
+import com.graphhopper.routing.traffic.LiveTraffic;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.parsers.DefaultTagParserFactory;
 import com.graphhopper.routing.util.parsers.TagParserFactory;
@@ -45,6 +52,7 @@ import com.graphhopper.routing.weighting.TurnCostProvider;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
+import com.graphhopper.search.StringIndex;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.LocationIndexTree;
@@ -84,6 +92,14 @@ public class GraphHopper implements GraphHopperAPI {
     private String ghLocation = "";
     private DAType dataAccessType = DAType.RAM_STORE;
     private boolean sortGraph = false;
+    private String sortOrder = "dfs";
+    private boolean speedProfiles = false;
+    private boolean compressedGeometry = false;
+    private boolean csrAdjacency = false;
+    private boolean turnCostHashIndex = false;
+    private int stringIndexCacheSize = 10_000;
+    private int ioThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private boolean checksums = false;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
@@ -92,21 +108,35 @@ public class GraphHopper implements GraphHopperAPI {
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
+    private final SPTStorePool sptStorePool = new SPTStorePool();
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
     // for prepare
     private int minNetworkSize = 200;
+    private int subnetworkThreads = 1;
 
     // preparation handlers
     private final LMPreparationHandler lmPreparationHandler = new LMPreparationHandler();
     private final CHPreparationHandler chPreparationHandler = new CHPreparationHandler();
+    // customizable CH, the metric-independent preparation is only kept in memory
+    private boolean cchEnabled = false;
+    private int cchCacheSize = 10;
+    private int cchCacheMaxMB = 2048;
+    private int cchCustomizationThreads = 2;
+    private CustomizationCache cchCustomizations;
+    // live traffic, the speeds are only kept in memory
+    private boolean liveTrafficEnabled = false;
+    private LiveTraffic liveTraffic;
 
     // for data reader
     private String dataReaderFile;
     private double dataReaderWayPointMaxDistance = 1;
     private int dataReaderWorkerThreads = 2;
+    private int dataReaderWayThreads = 1;
+    private boolean dataReaderSortedNodeMap = false;
+    private boolean dataReaderStoreOSMWayIds = false;
     private ElevationProvider eleProvider = ElevationProvider.NOOP;
     private FlagEncoderFactory flagEncoderFactory = new DefaultFlagEncoderFactory();
     private EncodedValueFactory encodedValueFactory = new DefaultEncodedValueFactory();
@@ -229,6 +259,15 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to find and remove the subnetworks of all profiles. Default is 1.
+     */
+    public GraphHopper setSubnetworkThreads(int subnetworkThreads) {
+        ensureNotLoaded();
+        this.subnetworkThreads = subnetworkThreads;
+        return this;
+    }
+
     /**
      * This method call results in an in-memory graph.
      */
@@ -263,6 +302,16 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Stores the graph compressed on disc, which makes the graph folder a lot smaller. After loading the graph is
+     * decompressed into memory piece by piece when it is accessed for the first time.
+     */
+    public GraphHopper setCompressedStore() {
+        ensureNotLoaded();
+        dataAccessType = DAType.COMPRESSED_STORE;
+        return this;
+    }
+
     /**
      * Sets the routing profiles that shall be supported by this GraphHopper instance. The (and only the) given profiles
      * can be used for routing without preparation and for CH/LM preparation.
@@ -392,6 +441,16 @@ public class GraphHopper implements GraphHopperAPI {
         return ghStorage;
     }
 
+    /**
+     * @return the memory that is used per file of the graph, including the location index, CH and LM, or an empty
+     * inventory if the graph was not loaded yet
+     */
+    public MemoryInventory getMemoryInventory() {
+        if (ghStorage == null)
+            return new MemoryInventory(Collections.emptyList());
+        return ghStorage.getMemoryInventory();
+    }
+
     public void setGraphHopperStorage(GraphHopperStorage ghStorage) {
         this.ghStorage = ghStorage;
         setFullyLoaded();
@@ -422,6 +481,133 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Specifies how the graph is sorted if {@link #setSortGraph(boolean)} is enabled: 'dfs' numbers the nodes and
+     * edges in depth-first order and 'hilbert' numbers the nodes along a Hilbert curve through their coordinates and
+     * the edges by their base node, which keeps nearby nodes and edges close to each other in memory.
+     */
+    public GraphHopper setSortOrder(String sortOrder) {
+        ensureNotLoaded();
+        if (!"dfs".equals(sortOrder) && !"hilbert".equals(sortOrder))
+            throw new IllegalArgumentException("Unknown sort order " + sortOrder + ", use 'dfs' or 'hilbert'");
+        this.sortOrder = sortOrder;
+        return this;
+    }
+
+    /**
+     * Enables the metric-independent preparation of customizable contraction hierarchies. It is used to speed up
+     * node-based requests for which speed mode cannot be used, e.g. requests with a custom model.
+     */
+    public GraphHopper setCCHEnabled(boolean cchEnabled) {
+        ensureNotLoaded();
+        this.cchEnabled = cchEnabled;
+        return this;
+    }
+
+    public boolean isCCHEnabled() {
+        return cchEnabled;
+    }
+
+    /**
+     * @return the customizable CH or null if it is not enabled or not yet prepared
+     */
+    public CustomizableCH getCustomizableCH() {
+        return cchCustomizations == null ? null : cchCustomizations.getCustomizableCH();
+    }
+
+    /**
+     * Allows setting live speeds via {@link #getLiveTraffic()} after the graph was loaded. They slow down the edges
+     * for all requests that do not use speed mode.
+     */
+    public GraphHopper setLiveTrafficEnabled(boolean liveTrafficEnabled) {
+        ensureNotLoaded();
+        this.liveTrafficEnabled = liveTrafficEnabled;
+        return this;
+    }
+
+    public boolean isLiveTrafficEnabled() {
+        return liveTrafficEnabled;
+    }
+
+    /**
+     * @return the live traffic of the loaded graph or null if it is not enabled
+     */
+    public LiveTraffic getLiveTraffic() {
+        return liveTraffic;
+    }
+
+    /**
+     * Creates a {@link SpeedProfileStorage} for time-dependent routing, see
+     * {@link com.graphhopper.util.Parameters.Routing#DEPARTURE_TIME}. The profiles can be assigned to the edges after
+     * the import, e.g. via {@link #getGraphHopperStorage()}.
+     */
+    public GraphHopper setSpeedProfiles(boolean speedProfiles) {
+        ensureNotLoaded();
+        this.speedProfiles = speedProfiles;
+        return this;
+    }
+
+    /**
+     * Stores the pillar nodes of a new graph as compressed differences, which needs roughly half of the memory for the
+     * way geometry. An existing graph is loaded in the format it was created with.
+     */
+    public GraphHopper setCompressedGeometry(boolean compressedGeometry) {
+        ensureNotLoaded();
+        this.compressedGeometry = compressedGeometry;
+        return this;
+    }
+
+    /**
+     * Freezes the graph after the import or when it is loaded and iterates its edges via a read-only adjacency in
+     * compressed sparse row format instead of the linked edge lists. This speeds up all routing algorithms at the
+     * cost of 4 bytes per node and 16 bytes per edge on the heap. No edges can be added after the graph was frozen.
+     */
+    public GraphHopper setCSRAdjacency(boolean csrAdjacency) {
+        ensureNotLoaded();
+        this.csrAdjacency = csrAdjacency;
+        return this;
+    }
+
+    /**
+     * Looks up turn costs via a hash table outside of the Java heap instead of scanning the turn relations of the via
+     * node, see {@link TurnCostStorage#setHashIndex(boolean)}. This speeds up edge-based routing and the preparation
+     * of edge-based CH on graphs with many turn relations.
+     */
+    public GraphHopper setTurnCostHashIndex(boolean turnCostHashIndex) {
+        ensureNotLoaded();
+        this.turnCostHashIndex = turnCostHashIndex;
+        return this;
+    }
+
+    /**
+     * Sets the number of decoded street names etc. that are cached, see {@link StringIndex#setCacheSize(int)}.
+     */
+    public GraphHopper setStringIndexCacheSize(int stringIndexCacheSize) {
+        ensureNotLoaded();
+        this.stringIndexCacheSize = stringIndexCacheSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads that load and flush the files of the graph storage in parallel.
+     */
+    public GraphHopper setIOThreads(int ioThreads) {
+        ensureNotLoaded();
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    /**
+     * Writes a CRC32 checksum into the header of every graph file that is flushed. A checksum that is found in the
+     * header of a loaded file is always verified, so a corrupt copy of the graph fails to load instead of producing
+     * wrong routes. Not supported by COMPRESSED_STORE.
+     */
+    public GraphHopper setChecksums(boolean checksums) {
+        ensureNotLoaded();
+        this.checksums = checksums;
+        return this;
+    }
+
     public boolean isAllowWrites() {
         return allowWrites;
     }
@@ -490,6 +676,14 @@ public class GraphHopper implements GraphHopperAPI {
         dataAccessType = DAType.fromString(graphDATypeStr);
 
         sortGraph = ghConfig.getBool("graph.do_sort", sortGraph);
+        setSortOrder(ghConfig.getString("graph.sort_order", sortOrder));
+        speedProfiles = ghConfig.getBool("graph.speed_profiles", speedProfiles);
+        compressedGeometry = ghConfig.getBool("graph.compressed_geometry", compressedGeometry);
+        csrAdjacency = ghConfig.getBool("graph.csr_adjacency", csrAdjacency);
+        turnCostHashIndex = ghConfig.getBool("graph.turn_cost_hash_index", turnCostHashIndex);
+        stringIndexCacheSize = ghConfig.getInt("graph.string_index.cache_size", stringIndexCacheSize);
+        ioThreads = ghConfig.getInt("graph.dataaccess.io_threads", ioThreads);
+        checksums = ghConfig.getBool("graph.dataaccess.checksums", checksums);
         removeZipped = ghConfig.getBool("graph.remove_zipped", removeZipped);
         EncodingManager encodingManager = createEncodingManager(ghConfig);
         if (encodingManager != null) {
@@ -514,6 +708,7 @@ public class GraphHopper implements GraphHopperAPI {
 
         // optimizable prepare
         minNetworkSize = ghConfig.getInt("prepare.min_network_size", minNetworkSize);
+        subnetworkThreads = ghConfig.getInt("prepare.subnetworks.threads", subnetworkThreads);
 
         // profiles
         setProfiles(ghConfig.getProfiles());
@@ -526,6 +721,9 @@ public class GraphHopper implements GraphHopperAPI {
         dataReaderWayPointMaxDistance = ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, dataReaderWayPointMaxDistance);
 
         dataReaderWorkerThreads = ghConfig.getInt("datareader.worker_threads", dataReaderWorkerThreads);
+        dataReaderWayThreads = ghConfig.getInt("datareader.way_threads", dataReaderWayThreads);
+        dataReaderSortedNodeMap = ghConfig.getBool("datareader.sorted_node_map", dataReaderSortedNodeMap);
+        dataReaderStoreOSMWayIds = ghConfig.getBool("datareader.store_osm_way_ids", dataReaderStoreOSMWayIds);
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
@@ -537,6 +735,13 @@ public class GraphHopper implements GraphHopperAPI {
         routerConfig.setNonChMaxWaypointDistance(ghConfig.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, routerConfig.getNonChMaxWaypointDistance()));
         routerConfig.setCHDisablingAllowed(ghConfig.getBool(CH.INIT_DISABLING_ALLOWED, routerConfig.isCHDisablingAllowed()));
         routerConfig.setLMDisablingAllowed(ghConfig.getBool(Landmark.INIT_DISABLING_ALLOWED, routerConfig.isLMDisablingAllowed()));
+        routerConfig.setReuseSPTStores(ghConfig.getBool(Routing.INIT_REUSE_SPT_STORES, routerConfig.isReuseSPTStores()));
+        routerConfig.setSPTStoreMaxEntries(ghConfig.getInt(Routing.INIT_SPT_STORE_MAX_ENTRIES, routerConfig.getSPTStoreMaxEntries()));
+        cchEnabled = ghConfig.getBool(Parameters.CCH.ENABLED, cchEnabled);
+        cchCacheSize = ghConfig.getInt(Parameters.CCH.INIT_CACHE_SIZE, cchCacheSize);
+        cchCacheMaxMB = ghConfig.getInt(Parameters.CCH.INIT_CACHE_MAX_MB, cchCacheMaxMB);
+        cchCustomizationThreads = ghConfig.getInt(Parameters.CCH.INIT_CUSTOMIZATION_THREADS, cchCustomizationThreads);
+        liveTrafficEnabled = ghConfig.getBool(Parameters.Traffic.ENABLED, liveTrafficEnabled);
         int activeLandmarkCount = ghConfig.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, lmPreparationHandler.getLandmarks()));
         if (activeLandmarkCount > lmPreparationHandler.getLandmarks())
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarkCount
@@ -607,6 +812,8 @@ public class GraphHopper implements GraphHopperAPI {
         if (!baseURL.isEmpty())
             elevationProvider.setBaseURL(baseURL);
         elevationProvider.setDAType(elevationDAType);
+        elevationProvider.setMaxCachedTiles(ghConfig.getInt("graph.elevation.max_cached_tiles", Integer.MAX_VALUE));
+        elevationProvider.setPrefetchThreads(ghConfig.getInt("graph.elevation.prefetch_threads", 0));
         return elevationProvider;
     }
 
@@ -706,10 +913,16 @@ public class GraphHopper implements GraphHopperAPI {
         if (dataReaderFile == null)
             throw new IllegalArgumentException("No file for DataReader specified");
 
+        if (dataReaderStoreOSMWayIds && sortGraph)
+            throw new IllegalArgumentException("datareader.store_osm_way_ids cannot be used together with graph.do_sort as sorting changes the edge ids");
+
         logger.info("start creating graph from " + dataReaderFile);
         return reader.setFile(new File(dataReaderFile)).
                 setElevationProvider(eleProvider).
                 setWorkerThreads(dataReaderWorkerThreads).
+                setWayThreads(dataReaderWayThreads).
+                setSortedNodeMap(dataReaderSortedNodeMap).
+                setStoreOSMWayIds(dataReaderStoreOSMWayIds).
                 setWayPointMaxDistance(dataReaderWayPointMaxDistance).
                 setWayPointElevationMaxDistance(routerConfig.getElevationWayPointMaxDistance()).
                 setSmoothElevation(smoothElevation).
@@ -754,8 +967,9 @@ public class GraphHopper implements GraphHopperAPI {
         if (!allowWrites && dataAccessType.isMMap())
             dataAccessType = DAType.MMAP_RO;
 
-        GHDirectory dir = new GHDirectory(ghLocation, dataAccessType);
+        GHDirectory dir = new GHDirectory(ghLocation, dataAccessType).setChecksums(checksums);
         ghStorage = new GraphHopperStorage(dir, encodingManager, hasElevation(), encodingManager.needsTurnCostsSupport(), defaultSegmentSize);
+        ghStorage.setIOThreads(ioThreads);
 
         checkProfilesConsistency();
 
@@ -771,6 +985,13 @@ public class GraphHopper implements GraphHopperAPI {
         }
 
         ghStorage.addCHGraphs(chConfigs);
+        if (speedProfiles)
+            ghStorage.enableSpeedProfiles();
+        ghStorage.setCompressedGeometry(compressedGeometry);
+        ghStorage.setCSRAdjacency(csrAdjacency);
+        if (ghStorage.getTurnCostStorage() != null)
+            ghStorage.getTurnCostStorage().setHashIndex(turnCostHashIndex);
+        ghStorage.getStringIndex().setCacheSize(stringIndexCacheSize);
 
         if (!new File(graphHopperFolder).exists())
             return false;
@@ -917,13 +1138,19 @@ public class GraphHopper implements GraphHopperAPI {
         // Later: move this into the GraphStorage.optimize method
         // Or: Doing it after preparation to optimize shortcuts too. But not possible yet #12
 
-        if (sortGraph) {
+        // The sorting has to happen before the location index, the subnetworks of the landmarks and the CH/LM
+        // preparations are created, because these refer to the node and edge ids of the sorted graph.
+        if (sortGraph && !isSorted()) {
             if (ghStorage.isCHPossible() && isCHPrepared())
                 throw new IllegalArgumentException("Sorting a prepared CHGraph is not possible yet. See #12");
 
             GraphHopperStorage newGraph = GHUtility.newStorage(ghStorage);
-            GHUtility.sortDFS(ghStorage, newGraph);
-            logger.info("graph sorted (" + getMemInfo() + ")");
+            if ("hilbert".equals(sortOrder))
+                GHUtility.sortHilbert(ghStorage, newGraph);
+            else
+                GHUtility.sortDFS(ghStorage, newGraph);
+            newGraph.getProperties().put(SORT_KEY, sortOrder);
+            logger.info("graph sorted with " + sortOrder + " order (" + getMemInfo() + ")");
             ghStorage = newGraph;
         }
 
@@ -935,6 +1162,10 @@ public class GraphHopper implements GraphHopperAPI {
 
         importPublicTransit();
 
+        // all edges exist now, so the read-only adjacency can be built before the LM and CH preparations use it
+        if (csrAdjacency)
+            ghStorage.freeze();
+
         if (lmPreparationHandler.isEnabled())
             lmPreparationHandler.createPreparations(ghStorage, locationIndex);
         loadOrPrepareLM(closeEarly);
@@ -950,6 +1181,18 @@ public class GraphHopper implements GraphHopperAPI {
         } else {
             prepareCH(closeEarly);
         }
+
+        Set<String> outdatedCH = getOutdatedPreparations(CH.PREPARE);
+        Set<String> outdatedLM = getOutdatedPreparations(Landmark.PREPARE);
+        if (!outdatedCH.isEmpty() || !outdatedLM.isEmpty())
+            logger.warn("The CH preparations " + outdatedCH + " and the LM preparations " + outdatedLM
+                    + " do not match the changed edges and are not used, import the graph again to prepare them");
+
+        if (cchEnabled)
+            loadOrPrepareCCH(closeEarly);
+
+        if (liveTrafficEnabled)
+            liveTraffic = new LiveTraffic(ghStorage);
     }
 
     protected void registerCustomEncodedValues(EncodingManager.Builder emBuilder) {
@@ -959,6 +1202,12 @@ public class GraphHopper implements GraphHopperAPI {
     }
 
     private static final String INTERPOLATION_KEY = "prepare.elevation_interpolation.done";
+    private static final String SORT_KEY = "graph.sort_order";
+
+    private boolean isSorted() {
+        // a graph that was sorted during the import must not be sorted again when it is loaded
+        return !ghStorage.getProperties().get(SORT_KEY).isEmpty();
+    }
 
     private boolean hasInterpolated() {
         return "true".equals(ghStorage.getProperties().get(INTERPOLATION_KEY));
@@ -999,6 +1248,14 @@ public class GraphHopper implements GraphHopperAPI {
         return createRouter().route(request);
     }
 
+    /**
+     * Calculates a many-to-many matrix of weights, distances and/or times. This requires a CH preparation for the
+     * requested profile.
+     */
+    public GHMatrixResponse matrix(GHMatrixRequest request) {
+        return createRouter().matrix(request);
+    }
+
     private Router createRouter() {
         if (ghStorage == null || !fullyLoaded)
             throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
@@ -1012,17 +1269,25 @@ public class GraphHopper implements GraphHopperAPI {
             String chGraphName = chPreparationHandler.getPreparation(chProfile.getProfile()).getCHConfig().getName();
             chGraphs.put(chProfile.getProfile(), ghStorage.getCHGraph(chGraphName));
         }
+        Set<String> outdatedLMPreparations = getOutdatedPreparations(Landmark.PREPARE);
+        Set<String> outdatedLM = new HashSet<>();
         Map<String, LandmarkStorage> landmarks = new LinkedHashMap<>();
         for (LMProfile lmp : lmPreparationHandler.getLMProfiles()) {
+            if (outdatedLMPreparations.contains(lmp.usesOtherPreparation() ? lmp.getPreparationProfile() : lmp.getProfile()))
+                outdatedLM.add(lmp.getProfile());
             landmarks.put(lmp.getProfile(),
                     lmp.usesOtherPreparation()
                             // cross-querying
                             ? lmPreparationHandler.getPreparation(lmp.getPreparationProfile()).getLandmarkStorage()
                             : lmPreparationHandler.getPreparation(lmp.getProfile()).getLandmarkStorage());
         }
+        sptStorePool.setMaxEntriesPerStore(routerConfig.getSPTStoreMaxEntries());
         return new Router(ghStorage, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks
-        );
+                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks).
+                setSPTStorePool(routerConfig.isReuseSPTStores() ? sptStorePool : null).
+                setOutdatedPreparations(getOutdatedPreparations(CH.PREPARE), outdatedLM).
+                setCCHCustomizations(cchCustomizations).
+                setLiveTraffic(liveTraffic);
     }
 
     protected LocationIndex createLocationIndex(Directory dir) {
@@ -1085,6 +1350,24 @@ public class GraphHopper implements GraphHopperAPI {
         }
     }
 
+    /**
+     * Loads the node ordering of customizable CH or calculates and stores it like the other preparations. The
+     * metric-independent contraction for this ordering is fast enough to be done in memory at every start.
+     */
+    protected void loadOrPrepareCCH(boolean closeEarly) {
+        int[] ranks = CustomizableCH.loadRanks(ghStorage.getDirectory(), ghStorage);
+        if (ranks == null) {
+            ensureWriteAccess();
+            ranks = CustomizableCH.calcRanks(ghStorage);
+            CustomizableCH.storeRanks(ghStorage.getDirectory(), ghStorage, ranks);
+            ghStorage.getProperties().put(Parameters.CCH.PREPARE + "done", true);
+        }
+        if (closeEarly)
+            return;
+        cchCustomizations = new CustomizationCache(CustomizableCH.fromRanks(ghStorage, ranks), cchCacheSize, cchCustomizationThreads).
+                setMaxBytes(cchCacheMaxMB * (long) Helper.MB);
+    }
+
     /**
      * For landmarks it is required to always call this method: either it creates the landmark data or it loads it.
      */
@@ -1108,12 +1391,114 @@ public class GraphHopper implements GraphHopperAPI {
         }
     }
 
+    /**
+     * Has to be called before the flags of the given existing edges are changed in place, e.g. by an OSM change file.
+     * Only the flags may be changed, edges must not be added or moved.
+     *
+     * @return the weights of the given edges for every CH and LM preparation, see {@link #afterEdgesChanged}
+     */
+    protected Map<String, double[]> beforeEdgesChanged(IntIndexedContainer edges) {
+        ensureWriteAccess();
+        return calcPreparedWeights(edges);
+    }
+
+    /**
+     * Has to be called after the flags of the given edges were changed in place, see {@link #beforeEdgesChanged}.
+     * <p>
+     * If the access of an edge changed the small subnetworks around the changed edges are removed. The CH
+     * preparations cannot be updated for new weights and cannot be prepared again for an existing graph. So the CH
+     * preparations whose weights changed and the LM preparations whose weights decreased are marked as outdated and
+     * are not used anymore, also after the graph is loaded again, until the graph is imported again. The landmark
+     * weights stay lower bounds if the weights only increased. The other preparations are still used and the
+     * customizable CH is customized again for the new weights. Finally the graph is flushed.
+     */
+    protected void afterEdgesChanged(IntIndexedContainer edges, Map<String, double[]> weightsBefore, boolean accessChanged) {
+        Map<String, Integer> removedSubnetworkEdges = Collections.emptyMap();
+        if (accessChanged) {
+            IntArrayList nodes = new IntArrayList(2 * edges.size());
+            for (IntCursor cursor : edges) {
+                EdgeIteratorState edge = ghStorage.getEdgeIteratorState(cursor.value, Integer.MIN_VALUE);
+                nodes.add(edge.getBaseNode(), edge.getAdjNode());
+            }
+            PrepareRoutingSubnetworks preparation = new PrepareRoutingSubnetworks(ghStorage, buildSubnetworkRemovalJobs());
+            preparation.setMinNetworkSize(minNetworkSize);
+            preparation.setThreads(subnetworkThreads);
+            removedSubnetworkEdges = preparation.removeSmallSubNetworks(nodes);
+        }
+
+        Map<String, double[]> weightsAfter = calcPreparedWeights(edges);
+        Set<String> outdatedCH = getOutdatedPreparations(CH.PREPARE);
+        for (CHConfig chConfig : chPreparationHandler.getCHConfigs()) {
+            double[] before = weightsBefore.get(CH.PREPARE + chConfig.getName());
+            double[] after = weightsAfter.get(CH.PREPARE + chConfig.getName());
+            // the edges of removed subnetworks were accessible before
+            if (!Arrays.equals(before, after) || removedSubnetworkEdges.getOrDefault(chConfig.getWeighting().getFlagEncoder().toString(), 0) > 0)
+                outdatedCH.add(chConfig.getName());
+        }
+        Set<String> outdatedLM = getOutdatedPreparations(Landmark.PREPARE);
+        for (LMConfig lmConfig : lmPreparationHandler.getLMConfigs()) {
+            double[] before = weightsBefore.get(Landmark.PREPARE + lmConfig.getName());
+            double[] after = weightsAfter.get(Landmark.PREPARE + lmConfig.getName());
+            for (int i = 0; i < before.length; i++) {
+                if (after[i] < before[i]) {
+                    outdatedLM.add(lmConfig.getName());
+                    break;
+                }
+            }
+        }
+        setOutdatedPreparations(CH.PREPARE, outdatedCH);
+        setOutdatedPreparations(Landmark.PREPARE, outdatedLM);
+        if (!outdatedCH.isEmpty() || !outdatedLM.isEmpty())
+            logger.warn("The changed edges invalidated the CH preparations " + outdatedCH + " and the LM preparations " + outdatedLM
+                    + ", these are not used until the graph is imported again");
+
+        if (cchCustomizations != null)
+            cchCustomizations.clear();
+        flush();
+    }
+
+    private Map<String, double[]> calcPreparedWeights(IntIndexedContainer edges) {
+        Map<String, double[]> weights = new HashMap<>();
+        for (CHConfig chConfig : chPreparationHandler.getCHConfigs()) {
+            weights.put(CH.PREPARE + chConfig.getName(), calcWeights(chConfig.getWeighting(), edges));
+        }
+        for (LMConfig lmConfig : lmPreparationHandler.getLMConfigs()) {
+            weights.put(Landmark.PREPARE + lmConfig.getName(), calcWeights(lmConfig.getWeighting(), edges));
+        }
+        return weights;
+    }
+
+    private double[] calcWeights(Weighting weighting, IntIndexedContainer edges) {
+        double[] weights = new double[2 * edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            EdgeIteratorState edge = ghStorage.getEdgeIteratorState(edges.get(i), Integer.MIN_VALUE);
+            weights[2 * i] = weighting.calcEdgeWeight(edge, false);
+            weights[2 * i + 1] = weighting.calcEdgeWeight(edge, true);
+        }
+        return weights;
+    }
+
+    /**
+     * @param prefix {@link CH#PREPARE} or {@link Landmark#PREPARE}
+     * @return the profiles whose preparations do not match the edges anymore, see {@link #afterEdgesChanged}
+     */
+    private Set<String> getOutdatedPreparations(String prefix) {
+        String value = ghStorage.getProperties().get(prefix + "outdated");
+        return value.isEmpty() ? new LinkedHashSet<>() : new LinkedHashSet<>(Arrays.asList(value.split(",")));
+    }
+
+    private void setOutdatedPreparations(String prefix, Set<String> profiles) {
+        if (!profiles.isEmpty())
+            ghStorage.getProperties().put(prefix + "outdated", String.join(",", profiles));
+    }
+
     /**
      * Internal method to clean up the graph.
      */
     protected void cleanUp() {
         PrepareRoutingSubnetworks preparation = new PrepareRoutingSubnetworks(ghStorage, buildSubnetworkRemovalJobs());
         preparation.setMinNetworkSize(minNetworkSize);
+        preparation.setThreads(subnetworkThreads);
         preparation.doWork();
         logger.info("nodes: " + Helper.nf(ghStorage.getNodes()) + ", edges: " + Helper.nf(ghStorage.getEdges()));
     }
@@ -1149,6 +1534,9 @@ public class GraphHopper implements GraphHopperAPI {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        sptStorePool.clear();
+        if (cchCustomizations != null)
+            cchCustomizations.close();
         if (ghStorage != null)
             ghStorage.close();
 
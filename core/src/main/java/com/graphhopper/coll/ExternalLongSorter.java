@@ -0,0 +1,165 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.LongConsumer;
+
+/**
+ * Sorts more long values than fit into the heap. The values are collected in runs of a fixed size, every run is
+ * sorted on the heap and then written to a {@link DataAccess}. At the end {@link #sort(LongConsumer)} merges all runs.
+ * If all values fit into a single run nothing is written to the directory.
+ */
+public class ExternalLongSorter {
+    // the number of values that are read at once from every run while merging
+    private static final int MERGE_BUFFER_SIZE = 1024;
+    private final Directory dir;
+    private final String name;
+    private final DAType type;
+    private final long[] run;
+    private int runSize;
+    private DataAccess runs;
+    private int runCount;
+    private long size;
+    private boolean sorted;
+
+    /**
+     * @param type       the type of the DataAccess the runs are written to, e.g. off-heap or memory mapped
+     * @param maxRunSize the number of values that are sorted on the heap at once
+     */
+    public ExternalLongSorter(Directory dir, String name, DAType type, int maxRunSize) {
+        if (maxRunSize < 1)
+            throw new IllegalArgumentException("maxRunSize must be positive but was " + maxRunSize);
+        this.dir = dir;
+        this.name = name;
+        this.type = type;
+        this.run = new long[maxRunSize];
+    }
+
+    public void add(long value) {
+        if (sorted)
+            throw new IllegalStateException("Values cannot be added after sorting");
+        if (runSize == run.length)
+            writeRun();
+        run[runSize++] = value;
+        size++;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    private void writeRun() {
+        if (runs == null)
+            runs = dir.find(name, type).create(1000);
+        Arrays.sort(run, 0, runSize);
+        long pointer = (long) runCount * run.length * 8;
+        runs.ensureCapacity(pointer + (long) runSize * 8);
+        for (int i = 0; i < runSize; i++, pointer += 8) {
+            runs.setInt(pointer, (int) run[i]);
+            runs.setInt(pointer + 4, (int) (run[i] >>> 32));
+        }
+        runCount++;
+        runSize = 0;
+    }
+
+    /**
+     * Passes all added values in ascending order (including duplicates) to the consumer and removes the runs from the
+     * directory afterwards. Can be called only once.
+     */
+    public void sort(LongConsumer consumer) {
+        if (sorted)
+            throw new IllegalStateException("Values were already sorted");
+        sorted = true;
+        if (runCount == 0) {
+            Arrays.sort(run, 0, runSize);
+            for (int i = 0; i < runSize; i++) {
+                consumer.accept(run[i]);
+            }
+            return;
+        }
+
+        if (runSize > 0)
+            writeRun();
+        try {
+            PriorityQueue<RunCursor> queue = new PriorityQueue<>(runCount, Comparator.comparingLong(c -> c.current));
+            long lastRunSize = size - (long) (runCount - 1) * run.length;
+            for (int i = 0; i < runCount; i++) {
+                RunCursor cursor = new RunCursor((long) i * run.length, i == runCount - 1 ? lastRunSize : run.length);
+                if (cursor.next())
+                    queue.add(cursor);
+            }
+            while (!queue.isEmpty()) {
+                RunCursor cursor = queue.poll();
+                consumer.accept(cursor.current);
+                if (cursor.next())
+                    queue.add(cursor);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Removes the runs from the directory, e.g. if the values are not needed anymore because the import failed. The
+     * sorter cannot be used afterwards.
+     */
+    public void release() {
+        sorted = true;
+        if (runs != null) {
+            dir.remove(runs);
+            runs = null;
+        }
+    }
+
+    private class RunCursor {
+        private final int[] buffer = new int[2 * MERGE_BUFFER_SIZE];
+        private long pointer;
+        private long remaining;
+        private int bufferSize;
+        private int bufferIndex;
+        long current;
+
+        RunCursor(long start, long length) {
+            this.pointer = start * 8;
+            this.remaining = length;
+        }
+
+        boolean next() {
+            if (bufferIndex == bufferSize) {
+                if (remaining == 0)
+                    return false;
+                int count = (int) Math.min(MERGE_BUFFER_SIZE, remaining);
+                runs.getInts(pointer, buffer, 0, 2 * count);
+                pointer += 8L * count;
+                remaining -= count;
+                bufferSize = 2 * count;
+                bufferIndex = 0;
+            }
+            current = (buffer[bufferIndex] & 0xFFFFFFFFL) | ((long) buffer[bufferIndex + 1] << 32);
+            bufferIndex += 2;
+            return true;
+        }
+    }
+}
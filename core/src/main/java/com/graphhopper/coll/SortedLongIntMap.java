@@ -0,0 +1,188 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * A {@link LongIntMap} for many keys that are put in increasing order, like the OSM node ids after sorting them. The
+ * keys are stored in blocks of {@link #BLOCK_SIZE} keys in a {@link DataAccess}. Within a block every key is stored as
+ * variable length delta to the previous key, so a typical OSM node id needs only one or two bytes. Only the first key
+ * and the byte offset of every block are kept on the heap. A lookup is a binary search over these block keys followed
+ * by decoding a single block. The values are stored as ints in a second DataAccess. Use a {@link DAType} that keeps
+ * both off the heap, i.e. off-heap or memory mapped.
+ * <p>
+ * The value of an existing key can be updated in any order. Keys that are put out of order are stored in a separate
+ * on-heap map, which is fine as long as they are rare, e.g. the artificial ids of the barrier nodes.
+ */
+public class SortedLongIntMap implements LongIntMap {
+    static final int BLOCK_SIZE = 64;
+    // the maximum length of a variable length encoded long
+    private static final int MAX_VAR_LONG_BYTES = 10;
+    private final int noEntryValue = -1;
+    private final Directory dir;
+    private final DataAccess keys;
+    private final DataAccess values;
+    private final LongArrayList blockFirstKeys = new LongArrayList();
+    private final LongArrayList blockOffsets = new LongArrayList();
+    private final byte[] blockBuffer = new byte[BLOCK_SIZE * MAX_VAR_LONG_BYTES];
+    private long size;
+    private long keyBytes;
+    private long lastKey;
+    private GHLongIntBTree unsortedKeys;
+    private boolean removed;
+
+    public SortedLongIntMap(Directory dir, String name, DAType type) {
+        this.dir = dir;
+        keys = dir.find(name + "_keys", type).create(1000);
+        values = dir.find(name + "_values", type).create(1000);
+    }
+
+    @Override
+    public int put(long key, int value) {
+        if (size == 0 || key > lastKey) {
+            append(key, value);
+            return noEntryValue;
+        }
+
+        long index = indexOf(key);
+        if (index >= 0) {
+            int oldValue = values.getInt(index * 4);
+            values.setInt(index * 4, value);
+            return oldValue;
+        }
+
+        if (unsortedKeys == null)
+            unsortedKeys = new GHLongIntBTree(200);
+        return unsortedKeys.put(key, value);
+    }
+
+    private void append(long key, int value) {
+        if (size % BLOCK_SIZE == 0) {
+            blockFirstKeys.add(key);
+            blockOffsets.add(keyBytes);
+        } else {
+            keys.ensureCapacity(keyBytes + MAX_VAR_LONG_BYTES);
+            // the difference can exceed Long.MAX_VALUE, but it is positive and fits into an unsigned long
+            long delta = key - lastKey;
+            while ((delta & ~0x7FL) != 0) {
+                keys.setByte(keyBytes++, (byte) ((delta & 0x7F) | 0x80));
+                delta >>>= 7;
+            }
+            keys.setByte(keyBytes++, (byte) delta);
+        }
+        values.ensureCapacity(size * 4 + 4);
+        values.setInt(size * 4, value);
+        lastKey = key;
+        size++;
+    }
+
+    @Override
+    public int get(long key) {
+        long index = indexOf(key);
+        if (index >= 0)
+            return values.getInt(index * 4);
+        return unsortedKeys == null ? noEntryValue : unsortedKeys.get(key);
+    }
+
+    /**
+     * @return the position of the key in the sorted keys or -1 if it was not appended
+     */
+    private long indexOf(long key) {
+        if (size == 0 || key > lastKey || key < blockFirstKeys.get(0))
+            return -1;
+        if (key == lastKey)
+            return size - 1;
+
+        // find the last block that starts with a key <= the requested key
+        int low = 0, high = blockFirstKeys.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockFirstKeys.get(mid) <= key)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        int block = low;
+        long index = (long) block * BLOCK_SIZE;
+        long current = blockFirstKeys.get(block);
+        if (current == key)
+            return index;
+
+        long offset = blockOffsets.get(block);
+        long end = block + 1 < blockOffsets.size() ? blockOffsets.get(block + 1) : keyBytes;
+        keys.getBytes(offset, blockBuffer, (int) (end - offset));
+        int keysInBlock = (int) Math.min(BLOCK_SIZE, size - index);
+        int pos = 0;
+        for (int i = 1; i < keysInBlock; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = blockBuffer[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current += delta;
+            if (current == key)
+                return index + i;
+            if (current > key)
+                return -1;
+        }
+        return -1;
+    }
+
+    @Override
+    public long getSize() {
+        return size + (unsortedKeys == null ? 0 : unsortedKeys.getSize());
+    }
+
+    @Override
+    public void optimize() {
+        if (unsortedKeys != null)
+            unsortedKeys.optimize();
+    }
+
+    @Override
+    public int getMemoryUsage() {
+        long blockIndexBytes = 8L * (blockFirstKeys.buffer.length + blockOffsets.buffer.length);
+        return Math.round((keys.getCapacity() + values.getCapacity() + blockIndexBytes) / Helper.MB)
+                + (unsortedKeys == null ? 0 : unsortedKeys.getMemoryUsage());
+    }
+
+    /**
+     * Removes the underlying storage, the map cannot be used afterwards. Calling this method again has no effect.
+     */
+    public void clear() {
+        if (removed)
+            return;
+        removed = true;
+        dir.remove(keys);
+        dir.remove(values);
+        unsortedKeys = null;
+    }
+
+    @Override
+    public String toString() {
+        return "size: " + getSize() + ", key bytes: " + keyBytes + ", blocks: " + blockFirstKeys.size();
+    }
+}
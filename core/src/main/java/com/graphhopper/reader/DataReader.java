@@ -34,6 +34,21 @@ public interface DataReader {
 
     DataReader setWorkerThreads(int workerThreads);
 
+    /**
+     * Sets the number of threads that parse the tags of the ways while the graph is created.
+     */
+    DataReader setWayThreads(int wayThreads);
+
+    /**
+     * Sorts the node ids before they are stored to reduce the heap usage of the import.
+     */
+    DataReader setSortedNodeMap(boolean sortedNodeMap);
+
+    /**
+     * Stores the OSM way of every edge in the graph directory to allow changing the edges later.
+     */
+    DataReader setStoreOSMWayIds(boolean storeOSMWayIds);
+
     DataReader setWayPointMaxDistance(double wayPointMaxDistance);
 
     DataReader setWayPointElevationMaxDistance(double elevationWayPointMaxDistance);
@@ -18,14 +18,21 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.util.Downloader;
+import com.graphhopper.util.PointList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider.
@@ -42,6 +49,11 @@ public abstract class AbstractElevationProvider implements ElevationProvider {
     boolean interpolate = false;
     boolean autoRemoveTemporary = true;
     long sleep = 2000;
+    int maxCachedTiles = Integer.MAX_VALUE;
+    private int prefetchThreads = 0;
+    private ThreadPoolExecutor prefetchExecutor;
+    // the names of the tiles that were closed to limit the number of cached tiles
+    private final Set<String> evictedTileNames = new HashSet<>();
 
     protected AbstractElevationProvider(String cacheDirString) {
         File cacheDir = new File(cacheDirString);
@@ -73,6 +85,114 @@ public abstract class AbstractElevationProvider implements ElevationProvider {
         this.autoRemoveTemporary = autoRemoveTemporary;
     }
 
+    @Override
+    public void setMaxCachedTiles(int maxTiles) {
+        if (maxTiles < 1)
+            throw new IllegalArgumentException("At least one tile has to be cached but was " + maxTiles);
+        this.maxCachedTiles = maxTiles;
+    }
+
+    @Override
+    public void setPrefetchThreads(int threads) {
+        if (threads < 0)
+            throw new IllegalArgumentException("The number of prefetch threads cannot be negative but was " + threads);
+        this.prefetchThreads = threads;
+    }
+
+    @Override
+    public void prefetch(PointList points) {
+        if (prefetchThreads == 0)
+            return;
+
+        Set<String> tileNames = new HashSet<>();
+        for (int i = 0; i < points.size(); i++) {
+            double lat = points.getLat(i), lon = points.getLon(i);
+            String tileName = getFileName(lat, lon);
+            if (tileName == null || !tileNames.add(tileName))
+                continue;
+            if (tileNames.size() > maxCachedTiles) {
+                logger.warn("Prefetching only " + maxCachedTiles + " tiles, increase the maximum number of cached tiles to prefetch all tiles");
+                break;
+            }
+
+            getPrefetchExecutor().execute(() -> {
+                try {
+                    getEle(lat, lon);
+                } catch (Exception ex) {
+                    // the tile is loaded again when it is required, so this is not yet a problem
+                    logger.warn("cannot prefetch " + tileName + ", error: " + ex.getMessage());
+                }
+            });
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = new ThreadPoolExecutor(prefetchThreads, prefetchThreads, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "elevation-prefetch");
+                // do not prevent the JVM from exiting if release was not called
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetchExecutor;
+    }
+
+    /**
+     * Finds the DataAccess of the specified tile. Tiles can be loaded concurrently, so the directory must only be
+     * accessed via this method and {@link #closeTileData}.
+     */
+    synchronized DataAccess findTileData(String name) {
+        return getDirectory().find(name);
+    }
+
+    /**
+     * Closes the DataAccess of a tile that was evicted from the cache. Its file is kept, so the tile can be loaded
+     * again, and it is removed in {@link #releaseTiles} if temporary files should be removed.
+     */
+    synchronized void closeTileData(DataAccess heights) {
+        evictedTileNames.add(heights.getName());
+        dir.close(heights);
+    }
+
+    /**
+     * Stops prefetching, removes all tiles from the specified cache and closes the directory.
+     */
+    void releaseTiles(HeightTileCache<?> tileCache) {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = prefetchExecutor;
+            prefetchExecutor = null;
+        }
+        if (executor != null) {
+            // do not interrupt running tasks as this could leave partially downloaded files in the cache directory
+            executor.getQueue().clear();
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        tileCache.clear();
+        synchronized (this) {
+            if (dir != null) {
+                // for memory mapped type we remove temporary files
+                if (autoRemoveTemporary) {
+                    for (String name : evictedTileNames) {
+                        dir.find(name);
+                    }
+                    dir.clear();
+                } else {
+                    dir.close();
+                }
+            }
+            evictedTileNames.clear();
+        }
+    }
+
     public void setDownloader(Downloader downloader) {
         this.downloader = downloader;
     }
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.util.PointList;
 
 /**
  * @author Peter Karich
@@ -55,6 +56,18 @@ public interface ElevationProvider {
         public boolean getInterpolate() {
             return false;
         }
+
+        @Override
+        public void setMaxCachedTiles(int maxTiles) {
+        }
+
+        @Override
+        public void setPrefetchThreads(int threads) {
+        }
+
+        @Override
+        public void prefetch(PointList points) {
+        }
     };
 
     /**
@@ -96,4 +109,22 @@ public interface ElevationProvider {
      * specifying 'false'.
      */
     void setAutoRemoveTemporaryFiles(boolean autoRemoveTemporary);
+
+    /**
+     * Limits the number of tiles that are kept open. If more tiles are required the least recently used tile is
+     * closed. Its data stays in the cache directory and is loaded again if it is required later. Default is no limit.
+     */
+    void setMaxCachedTiles(int maxTiles);
+
+    /**
+     * Specifies the number of threads that load the tiles requested via {@link #prefetch}. Default is 0, i.e.
+     * prefetching is disabled.
+     */
+    void setPrefetchThreads(int threads);
+
+    /**
+     * Starts loading the tiles that cover the specified points in the background, so that getEle does not need to
+     * wait for the download and decoding of these tiles later. Does nothing if no prefetch threads are configured.
+     */
+    void prefetch(PointList points);
 }
@@ -0,0 +1,127 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps the loaded HeightTiles of an elevation provider. At most {@link AbstractElevationProvider#maxCachedTiles}
+ * tiles are kept and the least recently used tile is released if this limit is exceeded. Tiles can be loaded from
+ * several threads at the same time, e.g. while prefetching, and a tile that is currently loaded by another thread is
+ * waited for instead of being loaded twice.
+ */
+class HeightTileCache<K> {
+    private final AbstractElevationProvider provider;
+    private final Map<K, HeightTile> tiles;
+    private final Map<K, FutureTask<HeightTile>> loadingTiles = new HashMap<>();
+
+    HeightTileCache(AbstractElevationProvider provider) {
+        this.provider = provider;
+        // access order, so the first entry is always the least recently used tile
+        this.tiles = new LinkedHashMap<K, HeightTile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, HeightTile> eldest) {
+                if (size() <= HeightTileCache.this.provider.maxCachedTiles)
+                    return false;
+
+                HeightTileCache.this.provider.closeTileData(eldest.getValue().getHeights());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return the elevation at the specified point, the tile is loaded via the specified loader if it is not cached
+     */
+    double getEle(K key, double lat, double lon, Callable<HeightTile> loader) {
+        while (true) {
+            HeightTile tile = getTile(key, loader);
+            synchronized (this) {
+                // the tile could have been evicted by a concurrently loaded tile in the meantime
+                if (!tile.getHeights().isClosed())
+                    return tile.isSeaLevel() ? 0 : tile.getHeight(lat, lon);
+            }
+        }
+    }
+
+    HeightTile getTile(K key, Callable<HeightTile> loader) {
+        FutureTask<HeightTile> task;
+        boolean runLoader = false;
+        synchronized (this) {
+            HeightTile tile = tiles.get(key);
+            if (tile != null)
+                return tile;
+
+            task = loadingTiles.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> load(key, loader));
+                loadingTiles.put(key, task);
+                runLoader = true;
+            }
+        }
+
+        if (runLoader)
+            task.run();
+        return getResult(task);
+    }
+
+    private HeightTile load(K key, Callable<HeightTile> loader) throws Exception {
+        HeightTile tile = null;
+        try {
+            tile = loader.call();
+            return tile;
+        } finally {
+            // add the tile before the task is done, so it is already cached for all threads that waited for it
+            synchronized (this) {
+                loadingTiles.remove(key);
+                if (tile != null)
+                    tiles.put(key, tile);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    /**
+     * Removes all tiles without releasing their data, which is done when the directory is closed or cleared.
+     */
+    synchronized void clear() {
+        tiles.clear();
+        loadingTiles.clear();
+    }
+
+    private static HeightTile getResult(FutureTask<HeightTile> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+}
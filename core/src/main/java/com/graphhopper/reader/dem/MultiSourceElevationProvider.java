@@ -18,6 +18,7 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.util.PointList;
 
 /**
  * The MultiSourceElevationProvider mixes different elevation providers to provide the best available elevation data
@@ -99,6 +100,33 @@ public class MultiSourceElevationProvider implements ElevationProvider {
         globalProvider.setAutoRemoveTemporaryFiles(autoRemoveTemporary);
     }
 
+    @Override
+    public void setMaxCachedTiles(int maxTiles) {
+        srtmProvider.setMaxCachedTiles(maxTiles);
+        globalProvider.setMaxCachedTiles(maxTiles);
+    }
+
+    @Override
+    public void setPrefetchThreads(int threads) {
+        srtmProvider.setPrefetchThreads(threads);
+        globalProvider.setPrefetchThreads(threads);
+    }
+
+    @Override
+    public void prefetch(PointList points) {
+        PointList srtmPoints = new PointList(points.size(), false);
+        PointList globalPoints = new PointList(points.size(), false);
+        for (int i = 0; i < points.size(); i++) {
+            double lat = points.getLat(i);
+            if (lat < 59.999 && lat > -56)
+                srtmPoints.add(lat, points.getLon(i));
+            else
+                globalPoints.add(lat, points.getLon(i));
+        }
+        srtmProvider.prefetch(srtmPoints);
+        globalProvider.prefetch(globalPoints);
+    }
+
     @Override
     public String toString() {
         return "multi";
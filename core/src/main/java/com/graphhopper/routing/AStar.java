@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
 import com.graphhopper.routing.weighting.WeightApproximator;
@@ -25,21 +24,20 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.*;
 
-import java.util.PriorityQueue;
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
 
 /**
  * This class implements the A* algorithm according to
  * http://en.wikipedia.org/wiki/A*_search_algorithm
  * <p>
- * Different distance calculations can be used via setApproximation.
- * <p>
+ * Different distance calculations can be used via setApproximation. Like {@link Dijkstra} the shortest path tree is
+ * kept in a {@link SPTStore}, where the heap key is the weight plus the estimated weight to the goal.
  *
  * @author Peter Karich
  */
 public class AStar extends AbstractRoutingAlgorithm {
-    private GHIntObjectHashMap<AStarEntry> fromMap;
-    private PriorityQueue<AStarEntry> fromHeap;
-    private AStarEntry currEdge;
+    protected SPTStore spt;
+    protected int currEntry = NO_ENTRY;
     private int visitedNodes;
     private int to = -1;
     private WeightApproximator weightApprox;
@@ -62,19 +60,29 @@ public class AStar extends AbstractRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        fromMap = new GHIntObjectHashMap<>();
-        fromHeap = new PriorityQueue<>(size);
+        spt = new SPTStore(size);
+    }
+
+    /**
+     * Makes this algorithm use the given shortest path tree store, e.g. a thread-local one that is reused for many
+     * queries, see {@link SPTStorePool}. The store is cleared when the search starts.
+     */
+    public AStar setSPTStore(SPTStore spt) {
+        this.spt = spt;
+        return this;
     }
 
     @Override
     public Path calcPath(int from, int to) {
         checkAlreadyRun();
         this.to = to;
+        if (spt.size() > 0)
+            spt.clear();
         weightApprox.setTo(to);
         double weightToGoal = weightApprox.approximate(from);
-        currEdge = new AStarEntry(EdgeIterator.NO_EDGE, from, 0 + weightToGoal, 0);
+        currEntry = spt.addRoot(from, 0, 0 + weightToGoal);
         if (!traversalMode.isEdgeBased()) {
-            fromMap.put(from, currEdge);
+            spt.put(from, currEntry);
         }
         runAlgo();
         return extractPath();
@@ -87,67 +95,58 @@ public class AStar extends AbstractRoutingAlgorithm {
             if (isMaxVisitedNodesExceeded() || finished())
                 break;
 
-            int currNode = currEdge.adjNode;
+            int currNode = spt.getAdjNode(currEntry);
+            int currEdge = spt.getEdge(currEntry);
+            double currWeight = spt.getWeight(currEntry);
             EdgeIterator iter = edgeExplorer.setBaseNode(currNode);
             while (iter.next()) {
-                if (!accept(iter, currEdge.edge))
+                if (!accept(iter, currEdge))
                     continue;
 
                 // todo: for #1835 move the access check into weighting
                 double tmpWeight = !outEdgeFilter.accept(iter)
                         ? Double.POSITIVE_INFINITY
-                        : (GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge.edge) + currEdge.weightOfVisitedPath);
+                        : (GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge) + currWeight);
                 if (Double.isInfinite(tmpWeight)) {
                     continue;
                 }
                 int traversalId = traversalMode.createTraversalId(iter, false);
 
-                AStarEntry ase = fromMap.get(traversalId);
-                if (ase == null || ase.weightOfVisitedPath > tmpWeight) {
+                int entry = spt.get(traversalId);
+                if (entry == NO_ENTRY || spt.getWeight(entry) > tmpWeight) {
                     int neighborNode = iter.getAdjNode();
                     currWeightToGoal = weightApprox.approximate(neighborNode);
                     estimationFullWeight = tmpWeight + currWeightToGoal;
-                    if (ase == null) {
-                        ase = new AStarEntry(iter.getEdge(), neighborNode, estimationFullWeight, tmpWeight);
-                        fromMap.put(traversalId, ase);
+                    if (entry == NO_ENTRY) {
+                        entry = spt.add(iter.getEdge(), neighborNode, tmpWeight, estimationFullWeight, currEntry);
+                        spt.put(traversalId, entry);
+                        spt.push(entry);
                     } else {
-//                        assert (ase.weight > 0.9999999 * estimationFullWeight) : "Inconsistent distance estimate. It is expected weight >= estimationFullWeight but was "
-//                                + ase.weight + " < " + estimationFullWeight + " (" + ase.weight / estimationFullWeight + "), and weightOfVisitedPath:"
-//                                + ase.weightOfVisitedPath + " vs. alreadyVisitedWeight:" + alreadyVisitedWeight + " (" + ase.weightOfVisitedPath / alreadyVisitedWeight + ")";
-
-                        fromHeap.remove(ase);
-                        ase.edge = iter.getEdge();
-                        ase.weight = estimationFullWeight;
-                        ase.weightOfVisitedPath = tmpWeight;
+                        spt.update(entry, iter.getEdge(), tmpWeight, estimationFullWeight, currEntry);
                     }
 
-                    ase.parent = currEdge;
-                    fromHeap.add(ase);
-
-                    updateBestPath(iter, ase, traversalId);
+                    updateBestPath(iter, entry, traversalId);
                 }
             }
 
-            if (fromHeap.isEmpty())
+            if (spt.isHeapEmpty())
                 break;
 
-            currEdge = fromHeap.poll();
-            if (currEdge == null)
-                throw new AssertionError("Empty edge cannot happen");
+            currEntry = spt.poll();
         }
     }
 
     @Override
     protected boolean finished() {
-        return currEdge.adjNode == to;
+        return spt.getAdjNode(currEntry) == to;
     }
 
     @Override
     protected Path extractPath() {
-        if (currEdge == null || !finished())
+        if (currEntry == NO_ENTRY || !finished())
             return createEmptyPath();
 
-        return PathExtractor.extractPath(graph, weighting, currEdge);
+        return PathExtractor.extractPath(graph, weighting, spt, currEntry);
     }
 
     @Override
@@ -155,26 +154,12 @@ public class AStar extends AbstractRoutingAlgorithm {
         return visitedNodes;
     }
 
-    protected void updateBestPath(EdgeIteratorState edgeState, SPTEntry bestSPTEntry, int traversalId) {
-    }
-
-    public static class AStarEntry extends SPTEntry {
-        double weightOfVisitedPath;
-
-        public AStarEntry(int edgeId, int adjNode, double weightForHeap, double weightOfVisitedPath) {
-            super(edgeId, adjNode, weightForHeap);
-            this.weightOfVisitedPath = weightOfVisitedPath;
-        }
-
-        @Override
-        public final double getWeightOfVisitedPath() {
-            return weightOfVisitedPath;
-        }
-
-        @Override
-        public AStarEntry getParent() {
-            return (AStarEntry) parent;
-        }
+    /**
+     * Called whenever a shortest path tree entry was created or improved.
+     *
+     * @param entry the id of the entry in {@link #spt}
+     */
+    protected void updateBestPath(EdgeIteratorState edgeState, int entry, int traversalId) {
     }
 
     @Override
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.routing.AStar.AStarEntry;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.BalancedWeightApproximator;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
@@ -75,37 +74,14 @@ public class AStarBidirection extends AbstractNonCHBidirAlgo {
         if (finishedFrom || finishedTo)
             return true;
 
-        return currFrom.weight + currTo.weight >= bestWeight + stoppingCriterionOffset;
+        return sptFrom.getKey(currFrom) + sptTo.getKey(currTo) >= bestWeight + stoppingCriterionOffset;
     }
 
     @Override
-    protected SPTEntry createStartEntry(int node, double weight, boolean reverse) {
-        double heapWeight = weight + weightApprox.approximate(node, reverse);
-        return new AStarEntry(EdgeIterator.NO_EDGE, node, heapWeight, weight);
-    }
-
-    @Override
-    protected SPTEntry createEntry(EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse) {
-        int neighborNode = edge.getAdjNode();
-        double heapWeight = weight + weightApprox.approximate(neighborNode, reverse);
-        AStarEntry entry = new AStarEntry(edge.getEdge(), neighborNode, heapWeight, weight);
-        entry.parent = parent;
-        return entry;
-    }
-
-    @Override
-    protected void updateEntry(SPTEntry entry, EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse) {
-        entry.edge = edge.getEdge();
-        entry.weight = weight + weightApprox.approximate(edge.getAdjNode(), reverse);
-        ((AStarEntry) entry).weightOfVisitedPath = weight;
-        entry.parent = parent;
-    }
-
-    @Override
-    protected double calcWeight(EdgeIteratorState iter, SPTEntry currEdge, boolean reverse) {
+    protected double calcKey(int node, double weight, boolean reverse) {
         // TODO performance: check if the node is already existent in the opposite direction
         // then we could avoid the approximation as we already know the exact complete path!
-        return super.calcWeight(iter, currEdge, reverse);
+        return weight + weightApprox.approximate(node, reverse);
     }
 
     public WeightApproximator getApproximation() {
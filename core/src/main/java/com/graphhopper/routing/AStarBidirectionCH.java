@@ -21,10 +21,8 @@ import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.BalancedWeightApproximator;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
 import com.graphhopper.routing.weighting.WeightApproximator;
-import com.graphhopper.storage.RoutingCHEdgeIteratorState;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.util.DistancePlaneProjection;
-import com.graphhopper.util.EdgeIterator;
 
 /**
  * @see AStarBidirection
@@ -46,32 +44,10 @@ public class AStarBidirectionCH extends AbstractBidirCHAlgo {
     }
 
     @Override
-    protected SPTEntry createStartEntry(int node, double weight, boolean reverse) {
-        double heapWeight = weight + weightApprox.approximate(node, reverse);
-        return new AStar.AStarEntry(EdgeIterator.NO_EDGE, node, heapWeight, weight);
-    }
-
-    @Override
-    protected SPTEntry createEntry(int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse) {
-        double heapWeight = weight + weightApprox.approximate(adjNode, reverse);
-        AStar.AStarEntry entry = new AStar.AStarEntry(edge, adjNode, heapWeight, weight);
-        entry.parent = parent;
-        return entry;
-    }
-
-    @Override
-    protected void updateEntry(SPTEntry entry, int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse) {
-        entry.edge = edge;
-        entry.weight = weight + weightApprox.approximate(adjNode, reverse);
-        ((AStar.AStarEntry) entry).weightOfVisitedPath = weight;
-        entry.parent = parent;
-    }
-
-    @Override
-    protected double calcWeight(RoutingCHEdgeIteratorState iter, SPTEntry currEdge, boolean reverse) {
+    protected double calcKey(int node, double weight, boolean reverse) {
         // TODO performance: check if the node is already existent in the opposite direction
         // then we could avoid the approximation as we already know the exact complete path!
-        return super.calcWeight(iter, currEdge, reverse);
+        return weight + weightApprox.approximate(node, reverse);
     }
 
     public WeightApproximator getApproximation() {
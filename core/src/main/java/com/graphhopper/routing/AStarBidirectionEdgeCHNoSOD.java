@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.routing.ch.AStarCHEntry;
 import com.graphhopper.routing.weighting.BalancedWeightApproximator;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
 import com.graphhopper.routing.weighting.WeightApproximator;
@@ -53,26 +52,8 @@ public class AStarBidirectionEdgeCHNoSOD extends AbstractBidirectionEdgeCHNoSOD
     }
 
     @Override
-    protected AStarCHEntry createStartEntry(int node, double weight, boolean reverse) {
-        final double heapWeight = getHeapWeight(node, reverse, weight);
-        return new AStarCHEntry(node, heapWeight, weight);
-    }
-
-    @Override
-    protected SPTEntry createEntry(int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse) {
-        double heapWeight = getHeapWeight(adjNode, reverse, weight);
-        AStarCHEntry entry = new AStarCHEntry(edge, incEdge, adjNode, heapWeight, weight);
-        entry.parent = parent;
-        return entry;
-    }
-
-    @Override
-    protected void updateEntry(SPTEntry entry, int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse) {
-        entry.edge = edge;
-        ((AStarCHEntry) entry).incEdge = incEdge;
-        entry.weight = getHeapWeight(adjNode, reverse, weight);
-        ((AStarCHEntry) entry).weightOfVisitedPath = weight;
-        entry.parent = parent;
+    protected double calcKey(int node, double weight, boolean reverse) {
+        return getHeapWeight(node, reverse, weight);
     }
 
     public WeightApproximator getApproximation() {
@@ -93,16 +74,16 @@ public class AStarBidirectionEdgeCHNoSOD extends AbstractBidirectionEdgeCHNoSOD
 
     private double getMinCurrFromPathWeight() {
         if (useHeuristicForNodeOrder) {
-            return currFrom.weight;
+            return sptFrom.getKey(currFrom);
         }
-        return currFrom.weight + weightApprox.approximate(currFrom.adjNode, false);
+        return sptFrom.getKey(currFrom) + weightApprox.approximate(sptFrom.getAdjNode(currFrom), false);
     }
 
     private double getMinCurrToPathWeight() {
         if (useHeuristicForNodeOrder) {
-            return currTo.weight;
+            return sptTo.getKey(currTo);
         }
-        return currTo.weight + weightApprox.approximate(currTo.adjNode, true);
+        return sptTo.getKey(currTo) + weightApprox.approximate(sptTo.getAdjNode(currTo), true);
     }
 
     @Override
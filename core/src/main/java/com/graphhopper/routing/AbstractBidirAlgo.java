@@ -17,34 +17,33 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.util.EdgeIterator;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
 
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
+/**
+ * Common subclass for bidirectional algorithms. The forward and backward shortest path trees are kept in two
+ * {@link SPTStore}s and all entries are referred to by their ids in these stores.
+ */
 public abstract class AbstractBidirAlgo implements BidirRoutingAlgorithm {
     protected final TraversalMode traversalMode;
     protected int from;
     protected int to;
     protected int fromOutEdge;
     protected int toInEdge;
-    protected IntObjectMap<SPTEntry> bestWeightMapFrom;
-    protected IntObjectMap<SPTEntry> bestWeightMapTo;
-    protected IntObjectMap<SPTEntry> bestWeightMapOther;
-    protected SPTEntry currFrom;
-    protected SPTEntry currTo;
-    protected SPTEntry bestFwdEntry;
-    protected SPTEntry bestBwdEntry;
+    protected SPTStore sptFrom;
+    protected SPTStore sptTo;
+    protected int currFrom = NO_ENTRY;
+    protected int currTo = NO_ENTRY;
+    protected int bestFwdEntry = NO_ENTRY;
+    protected int bestBwdEntry = NO_ENTRY;
     protected double bestWeight = Double.MAX_VALUE;
     protected int maxVisitedNodes = Integer.MAX_VALUE;
-    PriorityQueue<SPTEntry> pqOpenSetFrom;
-    PriorityQueue<SPTEntry> pqOpenSetTo;
     protected boolean updateBestPath = true;
     protected boolean finishedFrom;
     protected boolean finishedTo;
@@ -59,17 +58,34 @@ public abstract class AbstractBidirAlgo implements BidirRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        pqOpenSetFrom = new PriorityQueue<>(size);
-        bestWeightMapFrom = new GHIntObjectHashMap<>(size);
+        sptFrom = new SPTStore(size);
+        sptTo = new SPTStore(size);
+    }
 
-        pqOpenSetTo = new PriorityQueue<>(size);
-        bestWeightMapTo = new GHIntObjectHashMap<>(size);
+    /**
+     * Makes this algorithm use the given shortest path tree stores for the forward and backward search, e.g.
+     * thread-local ones that are reused for many queries, see {@link SPTStorePool}. The stores are cleared when the
+     * search starts.
+     */
+    public AbstractBidirAlgo setSPTStores(SPTStore sptFrom, SPTStore sptTo) {
+        if (sptFrom == sptTo)
+            throw new IllegalArgumentException("The forward and backward search cannot share the same store");
+        this.sptFrom = sptFrom;
+        this.sptTo = sptTo;
+        return this;
     }
 
     /**
-     * Creates the root shortest path tree entry for the forward or backward search.
+     * Calculates the key that orders the entries of the forward or backward search in their heap. This is the weight
+     * of the visited path for the Dijkstra-like algorithms and this weight plus an estimate of the remaining weight
+     * for A*.
+     *
+     * @param node   the adjacent node of the entry
+     * @param weight the weight of the visited path from the root of the search to the node
      */
-    protected abstract SPTEntry createStartEntry(int node, double weight, boolean reverse);
+    protected double calcKey(int node, double weight, boolean reverse) {
+        return weight;
+    }
 
     @Override
     public List<Path> calcPaths(int from, int to) {
@@ -95,6 +111,10 @@ public abstract class AbstractBidirAlgo implements BidirRoutingAlgorithm {
     }
 
     void init(int from, double fromWeight, int to, double toWeight) {
+        if (sptFrom.size() > 0)
+            sptFrom.clear();
+        if (sptTo.size() > 0)
+            sptTo.clear();
         initFrom(from, fromWeight);
         initTo(to, toWeight);
         postInit(from, to);
@@ -102,32 +122,31 @@ public abstract class AbstractBidirAlgo implements BidirRoutingAlgorithm {
 
     protected void initFrom(int from, double weight) {
         this.from = from;
-        currFrom = createStartEntry(from, weight, false);
-        pqOpenSetFrom.add(currFrom);
+        currFrom = sptFrom.addRoot(from, weight, calcKey(from, weight, false));
+        sptFrom.push(currFrom);
         if (!traversalMode.isEdgeBased()) {
-            bestWeightMapFrom.put(from, currFrom);
+            sptFrom.put(from, currFrom);
         }
     }
 
     protected void initTo(int to, double weight) {
         this.to = to;
-        currTo = createStartEntry(to, weight, true);
-        pqOpenSetTo.add(currTo);
+        currTo = sptTo.addRoot(to, weight, calcKey(to, weight, true));
+        sptTo.push(currTo);
         if (!traversalMode.isEdgeBased()) {
-            bestWeightMapTo.put(to, currTo);
+            sptTo.put(to, currTo);
         }
     }
 
     protected void postInit(int from, int to) {
         if (!traversalMode.isEdgeBased()) {
             if (updateBestPath) {
-                bestWeightMapOther = bestWeightMapFrom;
-                updateBestPath(Double.POSITIVE_INFINITY, currFrom, EdgeIterator.NO_EDGE, to, true);
+                updateBestPath(Double.POSITIVE_INFINITY, currTo, EdgeIterator.NO_EDGE, to, true);
             }
         } else if (from == to && fromOutEdge == ANY_EDGE && toInEdge == ANY_EDGE) {
             // special handling if start and end are the same and no directions are restricted
             // the resulting weight should be zero
-            if (currFrom.weight != 0 || currTo.weight != 0) {
+            if (sptFrom.getWeight(currFrom) != 0 || sptTo.getWeight(currTo) != 0) {
                 throw new IllegalStateException("If from=to, the starting weight must be zero for from and to");
             }
             bestFwdEntry = currFrom;
@@ -163,27 +182,35 @@ public abstract class AbstractBidirAlgo implements BidirRoutingAlgorithm {
         if (finishedFrom || finishedTo)
             return true;
 
-        return currFrom.weight + currTo.weight >= bestWeight;
+        return sptFrom.getKey(currFrom) + sptTo.getKey(currTo) >= bestWeight;
     }
 
     abstract boolean fillEdgesFrom();
 
     abstract boolean fillEdgesTo();
 
-    protected void updateBestPath(double edgeWeight, SPTEntry entry, int origEdgeIdForCH, int traversalId, boolean reverse) {
+    /**
+     * Called whenever an entry of the forward or backward search was created or improved.
+     *
+     * @param entry   the id of the entry in {@link #sptTo} if reverse is true and in {@link #sptFrom} otherwise
+     * @param reverse true if the entry belongs to the backward search
+     */
+    protected void updateBestPath(double edgeWeight, int entry, int origEdgeIdForCH, int traversalId, boolean reverse) {
         assert traversalMode.isEdgeBased() != Double.isInfinite(edgeWeight);
-        SPTEntry entryOther = bestWeightMapOther.get(traversalId);
-        if (entryOther == null)
+        SPTStore spt = reverse ? sptTo : sptFrom;
+        SPTStore sptOther = reverse ? sptFrom : sptTo;
+        int entryOther = sptOther.get(traversalId);
+        if (entryOther == NO_ENTRY)
             return;
 
         // update μ
-        double weight = entry.getWeightOfVisitedPath() + entryOther.getWeightOfVisitedPath();
+        double weight = spt.getWeight(entry) + sptOther.getWeight(entryOther);
         if (traversalMode.isEdgeBased()) {
-            if (getIncomingEdge(entryOther) != getIncomingEdge(entry))
+            if (getIncomingEdge(sptOther, entryOther) != getIncomingEdge(spt, entry))
                 throw new IllegalStateException("cannot happen for edge based execution of " + getName());
 
             // prevents the path to contain the edge at the meeting point twice and subtracts the weight (excluding turn weight => no previous edge)
-            entry = entry.getParent();
+            entry = spt.getParent(entry);
             weight -= edgeWeight;
         }
 
@@ -194,12 +221,12 @@ public abstract class AbstractBidirAlgo implements BidirRoutingAlgorithm {
         }
     }
 
-    protected abstract double getInEdgeWeight(SPTEntry entry);
+    protected abstract double getInEdgeWeight(SPTStore spt, int entry);
 
     protected abstract int getOtherNode(int edge, int node);
 
-    protected int getIncomingEdge(SPTEntry entry) {
-        return entry.edge;
+    protected int getIncomingEdge(SPTStore spt, int entry) {
+        return spt.getEdge(entry);
     }
 
     abstract protected Path extractPath();
@@ -221,23 +248,11 @@ public abstract class AbstractBidirAlgo implements BidirRoutingAlgorithm {
     }
 
     protected double getCurrentFromWeight() {
-        return currFrom.weight;
+        return sptFrom.getKey(currFrom);
     }
 
     protected double getCurrentToWeight() {
-        return currTo.weight;
-    }
-
-    IntObjectMap<SPTEntry> getBestFromMap() {
-        return bestWeightMapFrom;
-    }
-
-    IntObjectMap<SPTEntry> getBestToMap() {
-        return bestWeightMapTo;
-    }
-
-    void setBestOtherMap(IntObjectMap<SPTEntry> other) {
-        bestWeightMapOther = other;
+        return sptTo.getKey(currTo);
     }
 
     protected void setUpdateBestPath(boolean b) {
@@ -252,8 +267,7 @@ public abstract class AbstractBidirAlgo implements BidirRoutingAlgorithm {
     void setToDataStructures(AbstractBidirAlgo other) {
         to = other.to;
         toInEdge = other.toInEdge;
-        pqOpenSetTo = other.pqOpenSetTo;
-        bestWeightMapTo = other.bestWeightMapTo;
+        sptTo = other.sptTo;
         finishedTo = other.finishedTo;
         currTo = other.currTo;
         visitedCountTo = other.visitedCountTo;
@@ -17,14 +17,13 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.routing.ch.NodeBasedCHBidirPathExtractor;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.storage.*;
 
-import java.util.PriorityQueue;
 import java.util.function.Supplier;
 
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
 /**
@@ -62,21 +61,6 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements B
         super.initCollections(Math.min(size, 2000));
     }
 
-    /**
-     * Creates a new entry of the shortest path tree (a {@link SPTEntry} or one of its subclasses) during a dijkstra
-     * expansion.
-     *
-     * @param edge    the id of the edge that is currently processed for the expansion
-     * @param adjNode the adjacent node of the edge
-     * @param incEdge the id of the edge that is incoming to the node the edge is pointed at. usually this is the same as
-     *                edge, but for edge-based CH and in case edge corresponds to a shortcut incEdge is the original edge
-     *                that is incoming to the node
-     * @param weight  the weight the shortest path three entry should carry
-     * @param parent  the parent entry of in the shortest path tree
-     * @param reverse true if we are currently looking at the backward search, false otherwise
-     */
-    protected abstract SPTEntry createEntry(int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse);
-
     @Override
     protected void postInitFrom() {
         if (fromOutEdge == ANY_EDGE) {
@@ -128,15 +112,15 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements B
             return true;
 
         // changed also the final finish condition for CH
-        return currFrom.weight >= bestWeight && currTo.weight >= bestWeight;
+        return sptFrom.getKey(currFrom) >= bestWeight && sptTo.getKey(currTo) >= bestWeight;
     }
 
     @Override
     boolean fillEdgesFrom() {
-        if (pqOpenSetFrom.isEmpty()) {
+        if (sptFrom.isHeapEmpty()) {
             return false;
         }
-        currFrom = pqOpenSetFrom.poll();
+        currFrom = sptFrom.poll();
         visitedCountFrom++;
         if (fromEntryCanBeSkipped()) {
             return true;
@@ -144,17 +128,16 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements B
         if (fwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapTo;
-        fillEdges(currFrom, pqOpenSetFrom, bestWeightMapFrom, outEdgeExplorer, false);
+        fillEdges(currFrom, sptFrom, outEdgeExplorer, false);
         return true;
     }
 
     @Override
     boolean fillEdgesTo() {
-        if (pqOpenSetTo.isEmpty()) {
+        if (sptTo.isHeapEmpty()) {
             return false;
         }
-        currTo = pqOpenSetTo.poll();
+        currTo = sptTo.poll();
         visitedCountTo++;
         if (toEntryCanBeSkipped()) {
             return true;
@@ -162,35 +145,35 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements B
         if (bwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapFrom;
-        fillEdges(currTo, pqOpenSetTo, bestWeightMapTo, inEdgeExplorer, true);
+        fillEdges(currTo, sptTo, inEdgeExplorer, true);
         return true;
     }
 
-    private void fillEdges(SPTEntry currEdge, PriorityQueue<SPTEntry> prioQueue,
-                           IntObjectMap<SPTEntry> bestWeightMap, RoutingCHEdgeExplorer explorer, boolean reverse) {
-        RoutingCHEdgeIterator iter = explorer.setBaseNode(currEdge.adjNode);
+    private void fillEdges(int currEntry, SPTStore spt, RoutingCHEdgeExplorer explorer, boolean reverse) {
+        // for edge-based CH this is the original edge, which is needed for the turn costs
+        final int currIncEdge = getIncomingEdge(spt, currEntry);
+        final double currWeight = spt.getWeight(currEntry);
+        RoutingCHEdgeIterator iter = explorer.setBaseNode(spt.getAdjNode(currEntry));
         while (iter.next()) {
-            if (!accept(iter, currEdge, reverse))
+            if (!accept(iter, currIncEdge, reverse))
                 continue;
 
-            final double weight = calcWeight(iter, currEdge, reverse);
+            final double weight = calcWeight(iter, reverse, currIncEdge) + currWeight;
             if (Double.isInfinite(weight)) {
                 continue;
             }
             final int origEdgeId = getOrigEdgeId(iter, reverse);
             final int traversalId = getTraversalId(iter, origEdgeId, reverse);
-            SPTEntry entry = bestWeightMap.get(traversalId);
-            if (entry == null) {
-                entry = createEntry(iter.getEdge(), iter.getAdjNode(), origEdgeId, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
-            } else if (entry.getWeightOfVisitedPath() > weight) {
-                prioQueue.remove(entry);
-                updateEntry(entry, iter.getEdge(), iter.getAdjNode(), origEdgeId, weight, currEdge, reverse);
-                prioQueue.add(entry);
+            int entry = spt.get(traversalId);
+            if (entry == NO_ENTRY) {
+                entry = spt.add(iter.getEdge(), iter.getAdjNode(), weight, calcKey(iter.getAdjNode(), weight, reverse), currEntry);
+                spt.put(traversalId, entry);
+                spt.push(entry);
+            } else if (spt.getWeight(entry) > weight) {
+                spt.update(entry, iter.getEdge(), weight, calcKey(iter.getAdjNode(), weight, reverse), currEntry);
             } else
                 continue;
+            spt.setIncEdge(entry, origEdgeId);
 
             if (updateBestPath) {
                 // use dummy value for edge weight as it is used for neither node- nor edge-based CH
@@ -208,16 +191,10 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements B
         return edgeWeight + turnCosts;
     }
 
-    protected void updateEntry(SPTEntry entry, int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse) {
-        entry.edge = edge;
-        entry.weight = weight;
-        entry.parent = parent;
-    }
-
-    protected boolean accept(RoutingCHEdgeIteratorState edge, SPTEntry currEdge, boolean reverse) {
+    protected boolean accept(RoutingCHEdgeIteratorState edge, int prevOrNextEdgeId, boolean reverse) {
         // for edge-based traversal we leave it for TurnWeighting to decide whether or not a u-turn is acceptable,
         // but for node-based traversal we exclude such a turn for performance reasons already here
-        if (!traversalMode.isEdgeBased() && edge.getEdge() == getIncomingEdge(currEdge))
+        if (!traversalMode.isEdgeBased() && edge.getEdge() == prevOrNextEdgeId)
             return false;
 
         return levelEdgeFilter == null || levelEdgeFilter.accept(edge);
@@ -236,19 +213,15 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements B
         return graph.getBaseGraph().getOtherNode(edge, node);
     }
 
-    protected double calcWeight(RoutingCHEdgeIteratorState iter, SPTEntry currEdge, boolean reverse) {
-        return calcWeight(iter, reverse, getIncomingEdge(currEdge)) + currEdge.getWeightOfVisitedPath();
-    }
-
     @Override
-    protected double getInEdgeWeight(SPTEntry entry) {
-        return graph.getEdgeIteratorState(getIncomingEdge(entry), entry.adjNode).getWeight(false);
+    protected double getInEdgeWeight(SPTStore spt, int entry) {
+        return graph.getEdgeIteratorState(getIncomingEdge(spt, entry), spt.getAdjNode(entry)).getWeight(false);
     }
 
     @Override
     protected Path extractPath() {
         if (finished())
-            return createPathExtractor().extract(bestFwdEntry, bestBwdEntry, bestWeight);
+            return createPathExtractor().extract(sptFrom, bestFwdEntry, sptTo, bestBwdEntry, bestWeight);
 
         return createEmptyPath();
     }
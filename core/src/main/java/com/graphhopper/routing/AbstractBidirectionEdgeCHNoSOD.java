@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.routing.ch.CHEntry;
 import com.graphhopper.routing.ch.EdgeBasedCHBidirPathExtractor;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
@@ -29,6 +28,7 @@ import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
 /**
@@ -37,6 +37,8 @@ import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo {
     private final EdgeExplorer innerInExplorer;
     private final EdgeExplorer innerOutExplorer;
+    private int fromRoot = NO_ENTRY;
+    private int toRoot = NO_ENTRY;
 
     public AbstractBidirectionEdgeCHNoSOD(RoutingCHGraph graph) {
         super(graph, TraversalMode.EDGE_BASED);
@@ -51,6 +53,18 @@ public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo
         setPathExtractorSupplier(() -> new EdgeBasedCHBidirPathExtractor(graph));
     }
 
+    @Override
+    protected void initFrom(int from, double weight) {
+        super.initFrom(from, weight);
+        fromRoot = currFrom;
+    }
+
+    @Override
+    protected void initTo(int to, double weight) {
+        super.initTo(to, weight);
+        toRoot = currTo;
+    }
+
     @Override
     protected void postInitFrom() {
         // We use the levelEdgeFilter to filter out edges leading or coming from lower rank nodes.
@@ -72,19 +86,24 @@ public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo
     }
 
     @Override
-    protected void updateBestPath(double edgeWeight, SPTEntry entry, int origEdgeId, int traversalId, boolean reverse) {
+    protected void updateBestPath(double edgeWeight, int entry, int origEdgeId, int traversalId, boolean reverse) {
         assert Double.isInfinite(edgeWeight) : "edge-based CH does not use pre-calculated edge weight";
+        SPTStore spt = reverse ? sptTo : sptFrom;
+        SPTStore sptOther = reverse ? sptFrom : sptTo;
+        final int adjNode = spt.getAdjNode(entry);
+        final double weight = spt.getWeight(entry);
         // special case where the fwd/bwd search runs directly into the opposite node, for example if the highest level
         // node of the shortest path matches the source or target. in this case one of the searches does not contribute
         // anything to the shortest path.
         int oppositeNode = reverse ? from : to;
         int oppositeEdge = reverse ? fromOutEdge : toInEdge;
         boolean oppositeEdgeRestricted = reverse ? (fromOutEdge != ANY_EDGE) : (toInEdge != ANY_EDGE);
-        if (entry.adjNode == oppositeNode && (!oppositeEdgeRestricted || origEdgeId == oppositeEdge)) {
-            if (entry.getWeightOfVisitedPath() < bestWeight) {
-                bestFwdEntry = reverse ? new CHEntry(oppositeNode, 0) : entry;
-                bestBwdEntry = reverse ? entry : new CHEntry(oppositeNode, 0);
-                bestWeight = entry.getWeightOfVisitedPath();
+        if (adjNode == oppositeNode && (!oppositeEdgeRestricted || origEdgeId == oppositeEdge)) {
+            if (weight < bestWeight) {
+                // the root of the opposite search is used as an empty path there
+                bestFwdEntry = reverse ? fromRoot : entry;
+                bestBwdEntry = reverse ? entry : toRoot;
+                bestWeight = weight;
                 return;
             }
         }
@@ -92,13 +111,13 @@ public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo
         // todo: for a-star it should be possible to skip bridge node check at the beginning of the search as long as
         // the minimum source-target distance lies above total sum of fwd+bwd path candidates.
         EdgeIterator iter = reverse
-                ? innerInExplorer.setBaseNode(entry.adjNode)
-                : innerOutExplorer.setBaseNode(entry.adjNode);
+                ? innerInExplorer.setBaseNode(adjNode)
+                : innerOutExplorer.setBaseNode(adjNode);
         while (iter.next()) {
             final int edgeId = iter.getEdge();
             int key = GHUtility.createEdgeKey(iter.getAdjNode(), iter.getBaseNode(), edgeId, !reverse);
-            SPTEntry entryOther = bestWeightMapOther.get(key);
-            if (entryOther == null) {
+            int entryOther = sptOther.get(key);
+            if (entryOther == NO_ENTRY) {
                 continue;
             }
 
@@ -106,7 +125,7 @@ public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo
                     graph.getTurnWeight(edgeId, iter.getBaseNode(), origEdgeId) :
                     graph.getTurnWeight(origEdgeId, iter.getBaseNode(), edgeId);
 
-            double newWeight = entry.getWeightOfVisitedPath() + entryOther.getWeightOfVisitedPath() + turnCostsAtBridgeNode;
+            double newWeight = weight + sptOther.getWeight(entryOther) + turnCostsAtBridgeNode;
             if (newWeight < bestWeight) {
                 bestFwdEntry = reverse ? entryOther : entry;
                 bestBwdEntry = reverse ? entry : entryOther;
@@ -121,8 +140,8 @@ public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo
     }
 
     @Override
-    protected int getIncomingEdge(SPTEntry entry) {
-        return ((CHEntry) entry).incEdge;
+    protected int getIncomingEdge(SPTStore spt, int entry) {
+        return spt.getIncEdge(entry);
     }
 
     @Override
@@ -132,7 +151,7 @@ public abstract class AbstractBidirectionEdgeCHNoSOD extends AbstractBidirCHAlgo
     }
 
     @Override
-    protected boolean accept(RoutingCHEdgeIteratorState edge, SPTEntry currEdge, boolean reverse) {
+    protected boolean accept(RoutingCHEdgeIteratorState edge, int prevOrNextEdgeId, boolean reverse) {
         return levelEdgeFilter == null || levelEdgeFilter.accept(edge);
     }
 
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
@@ -30,8 +29,7 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 
-import java.util.PriorityQueue;
-
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
 /**
@@ -66,17 +64,6 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         initCollections(size);
     }
 
-    /**
-     * Creates a new entry of the shortest path tree (a {@link SPTEntry} or one of its subclasses) during a dijkstra
-     * expansion.
-     *
-     * @param edge    the edge that is currently processed for the expansion
-     * @param weight  the weight the shortest path three entry should carry
-     * @param parent  the parent entry of in the shortest path tree
-     * @param reverse true if we are currently looking at the backward search, false otherwise
-     */
-    protected abstract SPTEntry createEntry(EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse);
-
     protected DefaultBidirPathExtractor createPathExtractor(Graph graph, Weighting weighting) {
         return new DefaultBidirPathExtractor(graph, weighting);
     }
@@ -117,10 +104,10 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
 
     @Override
     boolean fillEdgesFrom() {
-        if (pqOpenSetFrom.isEmpty()) {
+        if (sptFrom.isHeapEmpty()) {
             return false;
         }
-        currFrom = pqOpenSetFrom.poll();
+        currFrom = sptFrom.poll();
         visitedCountFrom++;
         if (fromEntryCanBeSkipped()) {
             return true;
@@ -128,17 +115,16 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         if (fwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapTo;
-        fillEdges(currFrom, pqOpenSetFrom, bestWeightMapFrom, false);
+        fillEdges(currFrom, sptFrom, false);
         return true;
     }
 
     @Override
     boolean fillEdgesTo() {
-        if (pqOpenSetTo.isEmpty()) {
+        if (sptTo.isHeapEmpty()) {
             return false;
         }
-        currTo = pqOpenSetTo.poll();
+        currTo = sptTo.poll();
         visitedCountTo++;
         if (toEntryCanBeSkipped()) {
             return true;
@@ -146,51 +132,44 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         if (bwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapFrom;
-        fillEdges(currTo, pqOpenSetTo, bestWeightMapTo, true);
+        fillEdges(currTo, sptTo, true);
         return true;
     }
 
-    private void fillEdges(SPTEntry currEdge, PriorityQueue<SPTEntry> prioQueue, IntObjectMap<SPTEntry> bestWeightMap, boolean reverse) {
-        EdgeIterator iter = edgeExplorer.setBaseNode(currEdge.adjNode);
+    private void fillEdges(int currEntry, SPTStore spt, boolean reverse) {
+        final int currEdge = spt.getEdge(currEntry);
+        final double currWeight = spt.getWeight(currEntry);
+        EdgeIterator iter = edgeExplorer.setBaseNode(spt.getAdjNode(currEntry));
         while (iter.next()) {
-            if (!accept(iter, currEdge.edge))
+            if (!accept(iter, currEdge))
                 continue;
 
-            final double weight = calcWeight(iter, currEdge, reverse);
+            final double weight = calcWeight(iter, currEdge, currWeight, reverse);
             if (Double.isInfinite(weight)) {
                 continue;
             }
             final int traversalId = traversalMode.createTraversalId(iter, reverse);
-            SPTEntry entry = bestWeightMap.get(traversalId);
-            if (entry == null) {
-                entry = createEntry(iter, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
-            } else if (entry.getWeightOfVisitedPath() > weight) {
-                prioQueue.remove(entry);
-                updateEntry(entry, iter, weight, currEdge, reverse);
-                prioQueue.add(entry);
+            int entry = spt.get(traversalId);
+            if (entry == NO_ENTRY) {
+                entry = spt.add(iter.getEdge(), iter.getAdjNode(), weight, calcKey(iter.getAdjNode(), weight, reverse), currEntry);
+                spt.put(traversalId, entry);
+                spt.push(entry);
+            } else if (spt.getWeight(entry) > weight) {
+                spt.update(entry, iter.getEdge(), weight, calcKey(iter.getAdjNode(), weight, reverse), currEntry);
             } else
                 continue;
 
             if (updateBestPath) {
                 // only needed for edge-based -> skip the calculation and use dummy value otherwise
                 double edgeWeight = traversalMode.isEdgeBased() ? weighting.calcEdgeWeight(iter, reverse) : Double.POSITIVE_INFINITY;
-                // todo: performance - if bestWeightMapOther.get(traversalId) == null, updateBestPath will exit early and we might
+                // todo: performance - if the other search has no entry for traversalId, updateBestPath will exit early and we might
                 // have calculated the edgeWeight unnecessarily
                 updateBestPath(edgeWeight, entry, EdgeIterator.NO_EDGE, traversalId, reverse);
             }
         }
     }
 
-    protected void updateEntry(SPTEntry entry, EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse) {
-        entry.edge = edge.getEdge();
-        entry.weight = weight;
-        entry.parent = parent;
-    }
-
-    protected double calcWeight(EdgeIteratorState iter, SPTEntry currEdge, boolean reverse) {
+    protected double calcWeight(EdgeIteratorState iter, int currEdge, double currWeight, boolean reverse) {
         // todo: for #1835 move access flag checks into weighting
         final boolean access = reverse ? inEdgeFilter.accept(iter) : outEdgeFilter.accept(iter);
         if (!access) {
@@ -198,12 +177,12 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         }
         // note that for node-based routing the weights will be wrong in case the weighting is returning non-zero
         // turn weights, see discussion in #1960
-        return GHUtility.calcWeightWithTurnWeight(weighting, iter, reverse, currEdge.edge) + currEdge.getWeightOfVisitedPath();
+        return GHUtility.calcWeightWithTurnWeight(weighting, iter, reverse, currEdge) + currWeight;
     }
 
     @Override
-    protected double getInEdgeWeight(SPTEntry entry) {
-        return weighting.calcEdgeWeight(graph.getEdgeIteratorState(entry.edge, entry.adjNode), false);
+    protected double getInEdgeWeight(SPTStore spt, int entry) {
+        return weighting.calcEdgeWeight(graph.getEdgeIteratorState(spt.getEdge(entry), spt.getAdjNode(entry)), false);
     }
 
     @Override
@@ -214,7 +193,7 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
     @Override
     protected Path extractPath() {
         if (finished())
-            return createPathExtractor(graph, weighting).extract(bestFwdEntry, bestBwdEntry, bestWeight);
+            return createPathExtractor(graph, weighting).extract(sptFrom, bestFwdEntry, sptTo, bestBwdEntry, bestWeight);
 
         return createEmptyPath();
     }
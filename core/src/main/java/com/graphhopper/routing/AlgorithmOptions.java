@@ -40,6 +40,8 @@ public class AlgorithmOptions {
     private Weighting weighting;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
     private int maxVisitedNodes = Integer.MAX_VALUE;
+    private SPTStore sptStore;
+    private SPTStore backwardSPTStore;
 
     private AlgorithmOptions() {
     }
@@ -81,6 +83,10 @@ public class AlgorithmOptions {
             b.maxVisitedNodes(opts.maxVisitedNodes);
         if (!opts.hints.isEmpty())
             b.hints(opts.hints);
+        if (opts.sptStore != null)
+            b.sptStore(opts.sptStore);
+        if (opts.backwardSPTStore != null)
+            b.backwardSPTStore(opts.backwardSPTStore);
 
         return b;
     }
@@ -114,6 +120,22 @@ public class AlgorithmOptions {
         return hints;
     }
 
+    /**
+     * @return the shortest path tree store algorithms should reuse (for the forward search of the bidirectional
+     * algorithms) or null if they should create their own
+     */
+    public SPTStore getSPTStore() {
+        return sptStore;
+    }
+
+    /**
+     * @return the shortest path tree store the bidirectional algorithms should reuse for their backward search or null
+     * if they should create their own
+     */
+    public SPTStore getBackwardSPTStore() {
+        return backwardSPTStore;
+    }
+
     private void assertNotNull(Object optionValue, String optionName) {
         if (optionValue == null)
             throw new NullPointerException("Option '" + optionName + "' must NOT be null");
@@ -159,6 +181,25 @@ public class AlgorithmOptions {
             return this;
         }
 
+        /**
+         * Sets a (usually thread-local) shortest path tree store that is reused by the algorithms supporting it
+         *
+         * @see SPTStorePool
+         */
+        public Builder sptStore(SPTStore sptStore) {
+            this.opts.sptStore = sptStore;
+            return this;
+        }
+
+        /**
+         * Sets the store that is reused for the backward search of the bidirectional algorithms, see
+         * {@link #sptStore}. These algorithms use the reusable stores only if both are set.
+         */
+        public Builder backwardSPTStore(SPTStore backwardSPTStore) {
+            this.opts.backwardSPTStore = backwardSPTStore;
+            return this;
+        }
+
         public AlgorithmOptions build() {
             if (buildCalled)
                 throw new IllegalStateException("Cannot call AlgorithmOptions.Builder.build() twice");
@@ -17,8 +17,9 @@
  */
 package com.graphhopper.routing;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntSet;
-import com.carrotsearch.hppc.predicates.IntObjectPredicate;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
 import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
@@ -34,9 +35,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
+
 /**
  * This class implements the alternative paths search using the "plateau" and partially the
  * "penalty" method described in the following papers.
@@ -93,11 +95,11 @@ public class AlternativeRoute implements RoutingAlgorithm {
         this.weightApproximator = weightApproximator;
     }
 
-    static List<String> getAltNames(Graph graph, SPTEntry ee) {
-        if (ee == null || !EdgeIterator.Edge.isValid(ee.edge))
+    static List<String> getAltNames(Graph graph, int edge) {
+        if (!EdgeIterator.Edge.isValid(edge))
             return Collections.emptyList();
 
-        EdgeIteratorState iter = graph.getEdgeIteratorState(ee.edge, Integer.MIN_VALUE);
+        EdgeIteratorState iter = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
         if (iter == null)
             return Collections.emptyList();
 
@@ -209,19 +211,14 @@ public class AlternativeRoute implements RoutingAlgorithm {
     public static class AlternativeInfo {
         private final double sortBy;
         private final Path path;
-        private final SPTEntry shareStart;
-        private final SPTEntry shareEnd;
         private final double shareWeight;
         private final List<String> names;
 
-        public AlternativeInfo(double sortBy, Path path, SPTEntry shareStart, SPTEntry shareEnd,
-                               double shareWeight, List<String> altNames) {
+        public AlternativeInfo(double sortBy, Path path, double shareWeight, List<String> altNames) {
             this.names = altNames;
             this.sortBy = sortBy;
             this.path = path;
             this.path.setDescription(names);
-            this.shareStart = shareStart;
-            this.shareEnd = shareEnd;
             this.shareWeight = shareWeight;
         }
 
@@ -229,14 +226,6 @@ public class AlternativeRoute implements RoutingAlgorithm {
             return path;
         }
 
-        public SPTEntry getShareStart() {
-            return shareStart;
-        }
-
-        public SPTEntry getShareEnd() {
-            return shareEnd;
-        }
-
         public double getShareWeight() {
             return shareWeight;
         }
@@ -278,8 +267,8 @@ public class AlternativeRoute implements RoutingAlgorithm {
                 return true;
 
             // increase overlap of both searches:
-            return currFrom.weight + currTo.weight > explorationFactor * (bestWeight + stoppingCriterionOffset);
-            // This is more precise but takes roughly 20% longer: return currFrom.weight > bestWeight && currTo.weight > bestWeight;
+            return sptFrom.getKey(currFrom) + sptTo.getKey(currTo) > explorationFactor * (bestWeight + stoppingCriterionOffset);
+            // This is more precise but takes roughly 20% longer: return sptFrom.getKey(currFrom) > bestWeight && sptTo.getKey(currTo) > bestWeight;
             // For bidir A* and AStarEdge.getWeightOfVisitedPath see comment in AStarBidirection.finished
         }
 
@@ -313,204 +302,192 @@ public class AlternativeRoute implements RoutingAlgorithm {
                     shareInfluence, bestShare,
                     plateauInfluence, bestPlateau);
 
-            final AlternativeInfo bestAlt = new AlternativeInfo(sortBy, bestPath,
-                    bestFwdEntry, bestBwdEntry, bestShare, getAltNames(graph, bestFwdEntry));
+            final AlternativeInfo bestAlt = new AlternativeInfo(sortBy, bestPath, bestShare,
+                    getAltNames(graph, bestFwdEntry == NO_ENTRY ? EdgeIterator.NO_EDGE : sptFrom.getEdge(bestFwdEntry)));
             alternatives.add(bestAlt);
-            final List<SPTEntry> bestPathEntries = new ArrayList<>(2);
-
-            bestWeightMapFrom.forEach(new IntObjectPredicate<SPTEntry>() {
-                @Override
-                public boolean apply(final int traversalId, final SPTEntry fromSPTEntry) {
-                    SPTEntry toSPTEntry = bestWeightMapTo.get(traversalId);
-                    if (toSPTEntry == null)
-                        return true;
-
-                    if (traversalMode.isEdgeBased()) {
-                        if (toSPTEntry.parent != null)
-                            // move to parent for two reasons:
-                            // 1. make only turn costs missing in 'weight' and not duplicating current edge.weight
-                            // 2. to avoid duplicate edge in Path
-                            toSPTEntry = toSPTEntry.parent;
-                        // TODO else if fromSPTEntry.parent != null fromSPTEntry = fromSPTEntry.parent;
-
-                    } else // The alternative path is suboptimal when both entries are parallel
-                        if (fromSPTEntry.edge == toSPTEntry.edge)
-                            return true;
-
-                    // (1) skip too long paths
-                    final double weight = fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath();
-                    if (weight > maxWeight)
-                        return true;
-
-                    // (2) Use the start traversal ID of a plateau as ID for the alternative path.
-                    // Accept from-EdgeEntries only if such a start of a plateau
-                    // i.e. discard if its parent has the same edgeId as the next to-SPTEntry.
-                    // Ignore already added best path
-                    if (isBestPath(fromSPTEntry))
-                        return true;
-
-                    // For edge based traversal we need the next entry to find out the plateau start
-                    SPTEntry tmpFromEntry = traversalMode.isEdgeBased() ? fromSPTEntry.parent : fromSPTEntry;
-                    if (tmpFromEntry == null || tmpFromEntry.parent == null) {
-                        // we can be here only if edge based and only if entry is not part of the best path
-                        // e.g. when starting point has two edges and one is part of the best path the other edge is path of an alternative
-                        assert traversalMode.isEdgeBased();
-                    } else {
-                        int nextToTraversalId = traversalMode.createTraversalId(tmpFromEntry.adjNode,
-                                tmpFromEntry.parent.adjNode, tmpFromEntry.edge, true);
-                        SPTEntry tmpNextToSPTEntry = bestWeightMapTo.get(nextToTraversalId);
-                        if (tmpNextToSPTEntry == null)
-                            return true;
-
-                        if (traversalMode.isEdgeBased())
-                            tmpNextToSPTEntry = tmpNextToSPTEntry.parent;
-                        // skip if on plateau
-                        if (fromSPTEntry.edge == tmpNextToSPTEntry.edge)
-                            return true;
-                    }
+            final IntArrayList bestPathEntries = new IntArrayList(2);
+
+            for (int fromEntry = 0; fromEntry < sptFrom.size(); fromEntry++) {
+                final int traversalId = sptFrom.getTraversalId(fromEntry);
+                if (traversalId < 0)
+                    continue;
+                int toEntry = sptTo.get(traversalId);
+                if (toEntry == NO_ENTRY)
+                    continue;
+
+                if (traversalMode.isEdgeBased()) {
+                    if (sptTo.getParent(toEntry) != NO_ENTRY)
+                        // move to parent for two reasons:
+                        // 1. make only turn costs missing in 'weight' and not duplicating current edge.weight
+                        // 2. to avoid duplicate edge in Path
+                        toEntry = sptTo.getParent(toEntry);
+                    // TODO else if the parent of fromEntry exists use it as fromEntry;
+
+                } else // The alternative path is suboptimal when both entries are parallel
+                    if (sptFrom.getEdge(fromEntry) == sptTo.getEdge(toEntry))
+                        continue;
+
+                // (1) skip too long paths
+                final double weight = sptFrom.getWeight(fromEntry) + sptTo.getWeight(toEntry);
+                if (weight > maxWeight)
+                    continue;
+
+                // (2) Use the start traversal ID of a plateau as ID for the alternative path.
+                // Accept from-entries only if such a start of a plateau
+                // i.e. discard if its parent has the same edgeId as the next to-entry.
+                // Ignore already added best path
+                if (isBestPath(fromEntry, startTID, bestPathEntries))
+                    continue;
+
+                // For edge based traversal we need the next entry to find out the plateau start
+                int tmpFromEntry = traversalMode.isEdgeBased() ? sptFrom.getParent(fromEntry) : fromEntry;
+                if (tmpFromEntry == NO_ENTRY || sptFrom.getParent(tmpFromEntry) == NO_ENTRY) {
+                    // we can be here only if edge based and only if entry is not part of the best path
+                    // e.g. when starting point has two edges and one is part of the best path the other edge is path of an alternative
+                    assert traversalMode.isEdgeBased();
+                } else {
+                    int nextToTraversalId = traversalMode.createTraversalId(sptFrom.getAdjNode(tmpFromEntry),
+                            sptFrom.getAdjNode(sptFrom.getParent(tmpFromEntry)), sptFrom.getEdge(tmpFromEntry), true);
+                    int tmpNextToEntry = sptTo.get(nextToTraversalId);
+                    if (tmpNextToEntry == NO_ENTRY)
+                        continue;
+
+                    if (traversalMode.isEdgeBased())
+                        tmpNextToEntry = sptTo.getParent(tmpNextToEntry);
+                    // skip if on plateau
+                    if (sptFrom.getEdge(fromEntry) == sptTo.getEdge(tmpNextToEntry))
+                        continue;
+                }
 
-                    // (3a) calculate plateau, we know we are at the beginning of the 'from'-side of
-                    // the plateau A-B-C and go further to B
-                    // where B is the next-'from' of A and B is also the previous-'to' of A.
-                    //
-                    //      *<-A-B-C->*
-                    //        /    \
-                    //    start    end
-                    //
-                    // extend plateau in only one direction necessary (A to B to ...) as we know
-                    // that the from-SPTEntry is the start of the plateau or there is no plateau at all
-                    //
-                    double plateauWeight = 0;
-                    SPTEntry prevToSPTEntry = toSPTEntry;
-                    // List<Integer> plateauEdges = new ArrayList<Integer>();
-                    while (prevToSPTEntry.parent != null) {
-                        int nextFromTraversalId = traversalMode.createTraversalId(prevToSPTEntry.adjNode, prevToSPTEntry.parent.adjNode,
-                                prevToSPTEntry.edge, false);
-
-                        SPTEntry nextFromSPTEntry = bestWeightMapFrom.get(nextFromTraversalId);
-                        // end of a plateau
-                        if (nextFromSPTEntry == null)
-                            break;
-
-                        // is the next from-SPTEntry on the plateau?
-                        if (prevToSPTEntry.edge != nextFromSPTEntry.edge)
-                            break;
-
-                        // plateauEdges.add(prevToSPTEntry.edge);
-                        plateauWeight += (prevToSPTEntry.getWeightOfVisitedPath() - prevToSPTEntry.parent.getWeightOfVisitedPath());
-                        prevToSPTEntry = prevToSPTEntry.parent;
-                    }
+                // (3a) calculate plateau, we know we are at the beginning of the 'from'-side of
+                // the plateau A-B-C and go further to B
+                // where B is the next-'from' of A and B is also the previous-'to' of A.
+                //
+                //      *<-A-B-C->*
+                //        /    \
+                //    start    end
+                //
+                // extend plateau in only one direction necessary (A to B to ...) as we know
+                // that the from-entry is the start of the plateau or there is no plateau at all
+                //
+                double plateauWeight = 0;
+                int prevToEntry = toEntry;
+                while (sptTo.getParent(prevToEntry) != NO_ENTRY) {
+                    int prevToParent = sptTo.getParent(prevToEntry);
+                    int nextFromTraversalId = traversalMode.createTraversalId(sptTo.getAdjNode(prevToEntry), sptTo.getAdjNode(prevToParent),
+                            sptTo.getEdge(prevToEntry), false);
+
+                    int nextFromEntry = sptFrom.get(nextFromTraversalId);
+                    // end of a plateau
+                    if (nextFromEntry == NO_ENTRY)
+                        break;
+
+                    // is the next from-entry on the plateau?
+                    if (sptTo.getEdge(prevToEntry) != sptFrom.getEdge(nextFromEntry))
+                        break;
+
+                    plateauWeight += (sptTo.getWeight(prevToEntry) - sptTo.getWeight(prevToParent));
+                    prevToEntry = prevToParent;
+                }
 
-                    if (plateauWeight <= 0 || plateauWeight / weight < minPlateauFactor)
-                        return true;
+                if (plateauWeight <= 0 || plateauWeight / weight < minPlateauFactor)
+                    continue;
 
-                    if (fromSPTEntry.parent == null)
-                        throw new IllegalStateException("not implemented yet. in case of an edge based traversal the parent of fromSPTEntry could be null");
+                if (sptFrom.getParent(fromEntry) == NO_ENTRY)
+                    throw new IllegalStateException("not implemented yet. in case of an edge based traversal the parent of fromEntry could be missing");
 
-                    // (3b) calculate share
-                    SPTEntry fromEE = getFirstShareEE(fromSPTEntry.parent, true);
-                    SPTEntry toEE = getFirstShareEE(toSPTEntry.parent, false);
-                    double shareWeight = fromEE.getWeightOfVisitedPath() + toEE.getWeightOfVisitedPath();
-                    boolean smallShare = shareWeight / bestWeight < maxShareFactor;
-                    if (smallShare) {
-                        List<String> altNames = getAltNames(graph, fromSPTEntry);
+                // (3b) calculate share
+                int fromShareEntry = getFirstShareEntry(sptFrom, sptFrom.getParent(fromEntry), true, traversalIdMap);
+                int toShareEntry = getFirstShareEntry(sptTo, sptTo.getParent(toEntry), false, traversalIdMap);
+                double shareWeight = sptFrom.getWeight(fromShareEntry) + sptTo.getWeight(toShareEntry);
+                boolean smallShare = shareWeight / bestWeight < maxShareFactor;
+                if (smallShare) {
+                    List<String> altNames = getAltNames(graph, sptFrom.getEdge(fromEntry));
 
-                        double sortBy = calcSortBy(weightInfluence, weight, shareInfluence, shareWeight, plateauInfluence, plateauWeight);
-                        double worstSortBy = getWorstSortBy();
+                    double altSortBy = calcSortBy(weightInfluence, weight, shareInfluence, shareWeight, plateauInfluence, plateauWeight);
+                    double worstSortBy = getWorstSortBy(alternatives);
 
-                        // plateaus.add(new PlateauInfo(altName, plateauEdges));
-                        if (sortBy < worstSortBy || alternatives.size() < maxPaths) {
-                            Path path = DefaultBidirPathExtractor.extractPath(graph, weighting, fromSPTEntry, toSPTEntry, weight);
+                    if (altSortBy < worstSortBy || alternatives.size() < maxPaths) {
+                        Path path = DefaultBidirPathExtractor.extractPath(graph, weighting, sptFrom, fromEntry, sptTo, toEntry, weight);
 
-                            // for now do not add alternatives to set, if we do we need to remove then on alternatives.clear too (see below)
-                            // AtomicInteger tid = addToMap(traversalIDMap, path);
-                            // int tid = traversalMode.createTraversalId(path.calcEdges().get(0), false);
-                            alternatives.add(new AlternativeInfo(sortBy, path, fromEE, toEE, shareWeight, altNames));
+                        // for now do not add alternatives to set, if we do we need to remove then on alternatives.clear too (see below)
+                        // AtomicInteger tid = addToMap(traversalIDMap, path);
+                        // int tid = traversalMode.createTraversalId(path.calcEdges().get(0), false);
+                        alternatives.add(new AlternativeInfo(altSortBy, path, shareWeight, altNames));
 
-                            Collections.sort(alternatives, ALT_COMPARATOR);
-                            if (alternatives.get(0) != bestAlt)
-                                throw new IllegalStateException("best path should be always first entry");
+                        Collections.sort(alternatives, ALT_COMPARATOR);
+                        if (alternatives.get(0) != bestAlt)
+                            throw new IllegalStateException("best path should be always first entry");
 
-                            if (alternatives.size() > maxPaths)
-                                alternatives.subList(maxPaths, alternatives.size()).clear();
-                        }
+                        if (alternatives.size() > maxPaths)
+                            alternatives.subList(maxPaths, alternatives.size()).clear();
                     }
-
-                    return true;
                 }
+            }
 
-                /**
-                 * Extract path until we stumble over an existing traversal id
-                 */
-                SPTEntry getFirstShareEE(SPTEntry startEE, boolean reverse) {
-                    while (startEE.parent != null) {
-                        // TODO we could make use of traversal ID directly if stored in SPTEntry
-                        int tid = traversalMode.createTraversalId(startEE.adjNode, startEE.parent.adjNode, startEE.edge, reverse);
-                        if (isAlreadyExisting(tid))
-                            return startEE;
-
-                        startEE = startEE.parent;
-                    }
+            return alternatives;
+        }
 
-                    return startEE;
-                }
+        /**
+         * Extract path until we stumble over an existing traversal id
+         */
+        private int getFirstShareEntry(SPTStore spt, int startEntry, boolean reverse, GHIntObjectHashMap<IntSet> traversalIdMap) {
+            while (spt.getParent(startEntry) != NO_ENTRY) {
+                int tid = traversalMode.createTraversalId(spt.getAdjNode(startEntry), spt.getAdjNode(spt.getParent(startEntry)),
+                        spt.getEdge(startEntry), reverse);
+                if (isAlreadyExisting(traversalIdMap, tid))
+                    return startEntry;
+
+                startEntry = spt.getParent(startEntry);
+            }
 
-                /**
-                 * This method returns true if the specified tid is already existent in the
-                 * traversalIDMap
-                 */
-                boolean isAlreadyExisting(final int tid) {
-                    final AtomicBoolean exists = new AtomicBoolean(false);
-                    traversalIdMap.forEach(new IntObjectPredicate<IntSet>() {
-                        @Override
-                        public boolean apply(int key, IntSet set) {
-                            if (set.contains(tid)) {
-                                exists.set(true);
-                                return false;
-                            }
-                            return true;
-                        }
-                    });
-
-                    return exists.get();
-                }
+            return startEntry;
+        }
 
-                /**
-                 * Return the current worst weight for all alternatives
-                 */
-                double getWorstSortBy() {
-                    if (alternatives.isEmpty())
-                        throw new IllegalStateException("Empty alternative list cannot happen");
-                    return alternatives.get(alternatives.size() - 1).sortBy;
-                }
+        /**
+         * This method returns true if the specified tid is already existent in the
+         * traversalIDMap
+         */
+        private static boolean isAlreadyExisting(GHIntObjectHashMap<IntSet> traversalIdMap, int tid) {
+            for (IntObjectCursor<IntSet> cursor : traversalIdMap) {
+                if (cursor.value.contains(tid))
+                    return true;
+            }
+            return false;
+        }
 
-                // returns true if fromSPTEntry is identical to the specified best path
-                boolean isBestPath(SPTEntry fromSPTEntry) {
-                    if (traversalMode.isEdgeBased()) {
-                        if (GHUtility.getEdgeFromEdgeKey(startTID.get()) == fromSPTEntry.edge) {
-                            if (fromSPTEntry.parent == null)
-                                throw new IllegalStateException("best path must have no parent but was non-null: " + fromSPTEntry);
+        /**
+         * Return the current worst weight for all alternatives
+         */
+        private static double getWorstSortBy(List<AlternativeInfo> alternatives) {
+            if (alternatives.isEmpty())
+                throw new IllegalStateException("Empty alternative list cannot happen");
+            return alternatives.get(alternatives.size() - 1).sortBy;
+        }
 
-                            return true;
-                        }
+        // returns true if fromEntry is identical to the specified best path
+        private boolean isBestPath(int fromEntry, AtomicInteger startTID, IntArrayList bestPathEntries) {
+            if (traversalMode.isEdgeBased()) {
+                if (GHUtility.getEdgeFromEdgeKey(startTID.get()) == sptFrom.getEdge(fromEntry)) {
+                    if (sptFrom.getParent(fromEntry) == NO_ENTRY)
+                        throw new IllegalStateException("best path must have no parent but was non-null: " + fromEntry);
 
-                    } else if (fromSPTEntry.parent == null) {
-                        bestPathEntries.add(fromSPTEntry);
-                        if (bestPathEntries.size() > 1)
-                            throw new IllegalStateException("There is only one best path but was: " + bestPathEntries);
+                    return true;
+                }
 
-                        if (startTID.get() != fromSPTEntry.adjNode)
-                            throw new IllegalStateException("Start traversal ID has to be identical to root edge entry "
-                                    + "which is the plateau start of the best path but was: " + startTID + " vs. adjNode: " + fromSPTEntry.adjNode);
+            } else if (sptFrom.getParent(fromEntry) == NO_ENTRY) {
+                bestPathEntries.add(fromEntry);
+                if (bestPathEntries.size() > 1)
+                    throw new IllegalStateException("There is only one best path but was: " + bestPathEntries);
 
-                        return true;
-                    }
+                if (startTID.get() != sptFrom.getAdjNode(fromEntry))
+                    throw new IllegalStateException("Start traversal ID has to be identical to root edge entry "
+                            + "which is the plateau start of the best path but was: " + startTID + " vs. adjNode: " + sptFrom.getAdjNode(fromEntry));
 
-                    return false;
-                }
-            });
+                return true;
+            }
 
-            return alternatives;
+            return false;
         }
 
         /**
@@ -19,7 +19,6 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntIndexedContainer;
-import com.carrotsearch.hppc.predicates.IntObjectPredicate;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.util.EdgeIteratorState;
@@ -30,6 +29,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
+
 /**
  * Minimum number-of-moving-parts implementation of alternative route search with
  * contraction hierarchies.
@@ -60,7 +61,7 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
             return true;
 
         // Continue search longer than for point to point search -- not sure if makes a difference at all
-        return currFrom.weight >= bestWeight * maxWeightFactor && currTo.weight >= bestWeight * maxWeightFactor;
+        return sptFrom.getKey(currFrom) >= bestWeight * maxWeightFactor && sptTo.getKey(currTo) >= bestWeight * maxWeightFactor;
     }
 
     @Override
@@ -82,29 +83,32 @@ public class AlternativeRouteCH extends DijkstraBidirectionCHNoSOD {
 
         final ArrayList<PotentialAlternativeInfo> potentialAlternativeInfos = new ArrayList<>();
 
-        bestWeightMapFrom.forEach((IntObjectPredicate<SPTEntry>) (v, fromSPTEntry) -> {
-            SPTEntry toSPTEntry = bestWeightMapTo.get(v);
-            if (toSPTEntry == null)
-                return true;
+        for (int fromEntry = 0; fromEntry < sptFrom.size(); fromEntry++) {
+            int v = sptFrom.getTraversalId(fromEntry);
+            if (v < 0)
+                continue;
+            int toEntry = sptTo.get(v);
+            if (toEntry == NO_ENTRY)
+                continue;
 
-            if (fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath() > bestPath.getWeight() * maxWeightFactor)
-                return true;
+            double viaWeight = sptFrom.getWeight(fromEntry) + sptTo.getWeight(toEntry);
+            if (viaWeight > bestPath.getWeight() * maxWeightFactor)
+                continue;
 
             // This gives us a path s -> v -> t, but since we are using contraction hierarchies,
             // s -> v and v -> t need not be shortest paths. In fact, they can sometimes be pretty strange.
             // We still use this preliminary path to filter for shared path length with other alternatives,
             // so we don't have to work so much.
-            Path preliminaryRoute = createPathExtractor().extract(fromSPTEntry, toSPTEntry, fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath());
+            Path preliminaryRoute = createPathExtractor().extract(sptFrom, fromEntry, sptTo, toEntry, viaWeight);
             double preliminaryShare = calculateShare(preliminaryRoute);
             if (preliminaryShare > maxShareFactor) {
-                return true;
+                continue;
             }
             PotentialAlternativeInfo potentialAlternativeInfo = new PotentialAlternativeInfo();
             potentialAlternativeInfo.v = v;
-            potentialAlternativeInfo.weight = 2 * (fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath()) + preliminaryShare;
+            potentialAlternativeInfo.weight = 2 * viaWeight + preliminaryShare;
             potentialAlternativeInfos.add(potentialAlternativeInfo);
-            return true;
-        });
+        }
 
         potentialAlternativeInfos.sort(Comparator.comparingDouble(o -> o.weight));
 
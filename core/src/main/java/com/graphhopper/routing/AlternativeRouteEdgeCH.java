@@ -20,7 +20,7 @@ package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntIndexedContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
-import com.carrotsearch.hppc.predicates.IntObjectPredicate;
+import com.carrotsearch.hppc.IntIntHashMap;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.util.EdgeIteratorState;
@@ -28,6 +28,7 @@ import com.graphhopper.util.PMap;
 
 import java.util.*;
 
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
 /**
@@ -61,7 +62,7 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
             return true;
 
         // Continue search longer than for point to point search -- not sure if makes a difference at all
-        return currFrom.weight >= bestWeight * maxWeightFactor && currTo.weight >= bestWeight * maxWeightFactor;
+        return sptFrom.getKey(currFrom) >= bestWeight * maxWeightFactor && sptTo.getKey(currTo) >= bestWeight * maxWeightFactor;
     }
 
     @Override
@@ -83,37 +84,39 @@ public class AlternativeRouteEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
 
         final ArrayList<PotentialAlternativeInfo> potentialAlternativeInfos = new ArrayList<>();
 
-        final Map<Integer, SPTEntry> bestWeightMapByNode = new HashMap<>();
-        bestWeightMapTo.forEach((IntObjectPredicate<SPTEntry>) (key, value) -> {
-            bestWeightMapByNode.put(value.adjNode, value);
-            return true;
-        });
+        final IntIntHashMap bestEntryByNode = new IntIntHashMap();
+        for (int toEntry = 0; toEntry < sptTo.size(); toEntry++) {
+            if (sptTo.getTraversalId(toEntry) >= 0)
+                bestEntryByNode.put(sptTo.getAdjNode(toEntry), toEntry);
+        }
 
-        bestWeightMapFrom.forEach((IntObjectPredicate<SPTEntry>) (wurst, fromSPTEntry) -> {
-            SPTEntry toSPTEntry = bestWeightMapByNode.get(fromSPTEntry.adjNode);
-            if (toSPTEntry == null)
-                return true;
+        for (int fromEntry = 0; fromEntry < sptFrom.size(); fromEntry++) {
+            if (sptFrom.getTraversalId(fromEntry) < 0)
+                continue;
+            int toEntry = bestEntryByNode.getOrDefault(sptFrom.getAdjNode(fromEntry), NO_ENTRY);
+            if (toEntry == NO_ENTRY)
+                continue;
 
-            if (fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath() > bestPath.getWeight() * maxWeightFactor)
-                return true;
+            double viaWeight = sptFrom.getWeight(fromEntry) + sptTo.getWeight(toEntry);
+            if (viaWeight > bestPath.getWeight() * maxWeightFactor)
+                continue;
 
             // This gives us a path s -> v -> t, but since we are using contraction hierarchies,
             // s -> v and v -> t need not be shortest paths. In fact, they can sometimes be pretty strange.
             // We still use this preliminary path to filter for shared path length with other alternatives,
             // so we don't have to work so much.
-            Path preliminaryRoute = createPathExtractor().extract(fromSPTEntry, toSPTEntry, fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath());
+            Path preliminaryRoute = createPathExtractor().extract(sptFrom, fromEntry, sptTo, toEntry, viaWeight);
             double preliminaryShare = calculateShare(preliminaryRoute);
             if (preliminaryShare > maxShareFactor) {
-                return true;
+                continue;
             }
-            assert fromSPTEntry.adjNode == toSPTEntry.adjNode;
+            assert sptFrom.getAdjNode(fromEntry) == sptTo.getAdjNode(toEntry);
             PotentialAlternativeInfo potentialAlternativeInfo = new PotentialAlternativeInfo();
-            potentialAlternativeInfo.v = fromSPTEntry.adjNode;
-            potentialAlternativeInfo.edgeIn = getIncomingEdge(fromSPTEntry);
-            potentialAlternativeInfo.weight = 2 * (fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath()) + preliminaryShare;
+            potentialAlternativeInfo.v = sptFrom.getAdjNode(fromEntry);
+            potentialAlternativeInfo.edgeIn = getIncomingEdge(sptFrom, fromEntry);
+            potentialAlternativeInfo.weight = 2 * viaWeight + preliminaryShare;
             potentialAlternativeInfos.add(potentialAlternativeInfo);
-            return true;
-        });
+        }
 
         potentialAlternativeInfos.sort(Comparator.comparingDouble(o -> o.weight));
 
@@ -19,5 +19,9 @@
 package com.graphhopper.routing;
 
 public interface BidirPathExtractor {
-    Path extract(SPTEntry fwdEntry, SPTEntry bwdEntry, double bestWeight);
+    /**
+     * @param fwdEntry the id of the meeting point entry in the forward shortest path tree fwdSpt
+     * @param bwdEntry the id of the meeting point entry in the backward shortest path tree bwdSpt
+     */
+    Path extract(SPTStore fwdSpt, int fwdEntry, SPTStore bwdSpt, int bwdEntry, double bestWeight);
 }
@@ -33,8 +33,8 @@ public class DefaultBidirPathExtractor implements BidirPathExtractor {
     private final Weighting weighting;
     protected final Path path;
 
-    public static Path extractPath(Graph graph, Weighting weighting, SPTEntry fwdEntry, SPTEntry bwdEntry, double weight) {
-        return new DefaultBidirPathExtractor(graph, weighting).extract(fwdEntry, bwdEntry, weight);
+    public static Path extractPath(Graph graph, Weighting weighting, SPTStore fwdSpt, int fwdEntry, SPTStore bwdSpt, int bwdEntry, double weight) {
+        return new DefaultBidirPathExtractor(graph, weighting).extract(fwdSpt, fwdEntry, bwdSpt, bwdEntry, weight);
     }
 
     protected DefaultBidirPathExtractor(Graph graph, Weighting weighting) {
@@ -44,49 +44,53 @@ public class DefaultBidirPathExtractor implements BidirPathExtractor {
     }
 
     @Override
-    public Path extract(SPTEntry fwdEntry, SPTEntry bwdEntry, double weight) {
-        if (fwdEntry == null || bwdEntry == null) {
+    public Path extract(SPTStore fwdSpt, int fwdEntry, SPTStore bwdSpt, int bwdEntry, double weight) {
+        if (fwdEntry == SPTStore.NO_ENTRY || bwdEntry == SPTStore.NO_ENTRY) {
             // path not found
             return path;
         }
-        if (fwdEntry.adjNode != bwdEntry.adjNode)
-            throw new IllegalStateException("forward and backward entries must have same adjacent nodes, fwdEntry:" + fwdEntry + ", bwdEntry:" + bwdEntry);
+        if (fwdSpt.getAdjNode(fwdEntry) != bwdSpt.getAdjNode(bwdEntry))
+            throw new IllegalStateException("forward and backward entries must have same adjacent nodes, fwdEntry:"
+                    + fwdSpt.getAdjNode(fwdEntry) + ", bwdEntry:" + bwdSpt.getAdjNode(bwdEntry));
 
         StopWatch sw = new StopWatch().start();
-        extractFwdPath(fwdEntry);
-        processMeetingPoint(fwdEntry, bwdEntry);
-        extractBwdPath(bwdEntry);
+        extractFwdPath(fwdSpt, fwdEntry);
+        processMeetingPoint(fwdSpt, fwdEntry, bwdSpt, bwdEntry);
+        extractBwdPath(bwdSpt, bwdEntry);
         setExtractionTime(sw.stop().getNanos());
         path.setFound(true);
         path.setWeight(weight);
         return path;
     }
 
-    protected void extractFwdPath(SPTEntry sptEntry) {
-        SPTEntry fwdRoot = followParentsUntilRoot(sptEntry, false);
-        onFwdTreeRoot(fwdRoot.adjNode);
+    protected void extractFwdPath(SPTStore spt, int entry) {
+        int fwdRoot = followParentsUntilRoot(spt, entry, false);
+        onFwdTreeRoot(spt.getAdjNode(fwdRoot));
         // since we followed the fwd path in backward direction we need to reverse the edge ids
         ArrayUtil.reverse(path.getEdges());
     }
 
-    protected void extractBwdPath(SPTEntry sptEntry) {
-        SPTEntry bwdRoot = followParentsUntilRoot(sptEntry, true);
-        onBwdTreeRoot(bwdRoot.adjNode);
+    protected void extractBwdPath(SPTStore spt, int entry) {
+        int bwdRoot = followParentsUntilRoot(spt, entry, true);
+        onBwdTreeRoot(spt.getAdjNode(bwdRoot));
     }
 
-    protected void processMeetingPoint(SPTEntry fwdEntry, SPTEntry bwdEntry) {
-        int inEdge = getIncEdge(fwdEntry);
-        int outEdge = getIncEdge(bwdEntry);
-        onMeetingPoint(inEdge, fwdEntry.adjNode, outEdge);
+    protected void processMeetingPoint(SPTStore fwdSpt, int fwdEntry, SPTStore bwdSpt, int bwdEntry) {
+        int inEdge = getIncEdge(fwdSpt, fwdEntry);
+        int outEdge = getIncEdge(bwdSpt, bwdEntry);
+        onMeetingPoint(inEdge, fwdSpt.getAdjNode(fwdEntry), outEdge);
     }
 
-    protected SPTEntry followParentsUntilRoot(SPTEntry sptEntry, boolean reverse) {
-        SPTEntry currEntry = sptEntry;
-        SPTEntry parentEntry = currEntry.parent;
-        while (EdgeIterator.Edge.isValid(currEntry.edge)) {
-            onEdge(currEntry.edge, currEntry.adjNode, reverse, getIncEdge(parentEntry));
+    /**
+     * @return the id of the root entry
+     */
+    protected int followParentsUntilRoot(SPTStore spt, int entry, boolean reverse) {
+        int currEntry = entry;
+        int parentEntry = spt.getParent(currEntry);
+        while (EdgeIterator.Edge.isValid(spt.getEdge(currEntry))) {
+            onEdge(spt.getEdge(currEntry), spt.getAdjNode(currEntry), reverse, getIncEdge(spt, parentEntry));
             currEntry = parentEntry;
-            parentEntry = currEntry.parent;
+            parentEntry = spt.getParent(currEntry);
         }
         return currEntry;
     }
@@ -95,8 +99,8 @@ public class DefaultBidirPathExtractor implements BidirPathExtractor {
         path.setDebugInfo("path extraction: " + nanos / 1000 + " μs");
     }
 
-    protected int getIncEdge(SPTEntry entry) {
-        return entry.edge;
+    protected int getIncEdge(SPTStore spt, int entry) {
+        return spt.getEdge(entry);
     }
 
     protected void onFwdTreeRoot(int node) {
@@ -17,8 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -27,19 +25,19 @@ import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Parameters;
 
-import java.util.PriorityQueue;
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
 
 /**
  * Implements a single source shortest path algorithm
  * http://en.wikipedia.org/wiki/Dijkstra's_algorithm
  * <p>
+ * The shortest path tree is kept in a {@link SPTStore}, i.e. no objects are created per relaxed edge.
  *
  * @author Peter Karich
  */
 public class Dijkstra extends AbstractRoutingAlgorithm {
-    protected IntObjectMap<SPTEntry> fromMap;
-    protected PriorityQueue<SPTEntry> fromHeap;
-    protected SPTEntry currEdge;
+    protected SPTStore spt;
+    protected int currEntry = NO_ENTRY;
     private int visitedNodes;
     private int to = -1;
 
@@ -50,17 +48,27 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        fromHeap = new PriorityQueue<>(size);
-        fromMap = new GHIntObjectHashMap<>(size);
+        spt = new SPTStore(size);
+    }
+
+    /**
+     * Makes this algorithm use the given shortest path tree store, e.g. a thread-local one that is reused for many
+     * queries, see {@link SPTStorePool}. The store is cleared when the search starts.
+     */
+    public Dijkstra setSPTStore(SPTStore spt) {
+        this.spt = spt;
+        return this;
     }
 
     @Override
     public Path calcPath(int from, int to) {
         checkAlreadyRun();
         this.to = to;
-        currEdge = new SPTEntry(from, 0);
+        if (spt.size() > 0)
+            spt.clear();
+        currEntry = spt.addRoot(from, 0, 0);
         if (!traversalMode.isEdgeBased()) {
-            fromMap.put(from, currEdge);
+            spt.put(from, currEntry);
         }
         runAlgo();
         return extractPath();
@@ -72,59 +80,54 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
             if (isMaxVisitedNodesExceeded() || finished())
                 break;
 
-            int currNode = currEdge.adjNode;
+            int currNode = spt.getAdjNode(currEntry);
+            int currEdge = spt.getEdge(currEntry);
+            double currWeight = spt.getWeight(currEntry);
             EdgeIterator iter = edgeExplorer.setBaseNode(currNode);
             while (iter.next()) {
-                if (!accept(iter, currEdge.edge))
+                if (!accept(iter, currEdge))
                     continue;
 
                 // todo: for #1835 move the access check into weighting
                 double tmpWeight = !outEdgeFilter.accept(iter)
                         ? Double.POSITIVE_INFINITY
-                        : (GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge.edge) + currEdge.weight);
+                        : (GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge) + currWeight);
                 if (Double.isInfinite(tmpWeight)) {
                     continue;
                 }
                 int traversalId = traversalMode.createTraversalId(iter, false);
 
-                SPTEntry nEdge = fromMap.get(traversalId);
-                if (nEdge == null) {
-                    nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
-                    nEdge.parent = currEdge;
-                    fromMap.put(traversalId, nEdge);
-                    fromHeap.add(nEdge);
-                } else if (nEdge.weight > tmpWeight) {
-                    fromHeap.remove(nEdge);
-                    nEdge.edge = iter.getEdge();
-                    nEdge.weight = tmpWeight;
-                    nEdge.parent = currEdge;
-                    fromHeap.add(nEdge);
+                int entry = spt.get(traversalId);
+                if (entry == NO_ENTRY) {
+                    entry = spt.add(iter.getEdge(), iter.getAdjNode(), tmpWeight, tmpWeight, currEntry);
+                    spt.put(traversalId, entry);
+                    spt.push(entry);
+                } else if (spt.getWeight(entry) > tmpWeight) {
+                    spt.update(entry, iter.getEdge(), tmpWeight, tmpWeight, currEntry);
                 } else
                     continue;
 
-                updateBestPath(iter, nEdge, traversalId);
+                updateBestPath(iter, entry, traversalId);
             }
 
-            if (fromHeap.isEmpty())
+            if (spt.isHeapEmpty())
                 break;
 
-            currEdge = fromHeap.poll();
-            if (currEdge == null)
-                throw new AssertionError("Empty edge cannot happen");
+            currEntry = spt.poll();
         }
     }
 
     @Override
     protected boolean finished() {
-        return currEdge.adjNode == to;
+        return spt.getAdjNode(currEntry) == to;
     }
 
     @Override
     protected Path extractPath() {
-        if (currEdge == null || !finished())
+        if (currEntry == NO_ENTRY || !finished())
             return createEmptyPath();
 
-        return PathExtractor.extractPath(graph, weighting, currEdge);
+        return PathExtractor.extractPath(graph, weighting, spt, currEntry);
     }
 
     @Override
@@ -132,7 +135,12 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
         return visitedNodes;
     }
 
-    protected void updateBestPath(EdgeIteratorState edgeState, SPTEntry bestSPTEntry, int traversalId) {
+    /**
+     * Called whenever a shortest path tree entry was created or improved.
+     *
+     * @param entry the id of the entry in {@link #spt}
+     */
+    protected void updateBestPath(EdgeIteratorState edgeState, int entry, int traversalId) {
     }
 
     @Override
@@ -17,11 +17,12 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.storage.RoutingCHEdgeExplorer;
 import com.graphhopper.storage.RoutingCHEdgeIterator;
 import com.graphhopper.storage.RoutingCHGraph;
 
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
+
 /**
  * Uses a very simple version of stall-on-demand (SOD) for CH queries to prevent exploring nodes that can not be part
  * of a shortest path. When a node that is about to be settled is stallable it is not expanded. However, no further search
@@ -38,29 +39,31 @@ public class DijkstraBidirectionCH extends DijkstraBidirectionCHNoSOD {
 
     @Override
     protected boolean fromEntryCanBeSkipped() {
-        return entryIsStallable(currFrom, bestWeightMapFrom, inEdgeExplorer, false);
+        return entryIsStallable(currFrom, sptFrom, inEdgeExplorer, false);
     }
 
     @Override
     protected boolean toEntryCanBeSkipped() {
-        return entryIsStallable(currTo, bestWeightMapTo, outEdgeExplorer, true);
+        return entryIsStallable(currTo, sptTo, outEdgeExplorer, true);
     }
 
-    private boolean entryIsStallable(SPTEntry entry, IntObjectMap<SPTEntry> bestWeightMap, RoutingCHEdgeExplorer edgeExplorer,
-                                     boolean reverse) {
+    private boolean entryIsStallable(int entry, SPTStore spt, RoutingCHEdgeExplorer edgeExplorer, boolean reverse) {
         // We check for all 'incoming' edges if we can prove that the current node (that is about to be settled) is 
         // reached via a suboptimal path. We do this regardless of the CH level of the adjacent nodes.
-        RoutingCHEdgeIterator iter = edgeExplorer.setBaseNode(entry.adjNode);
+        final int edge = spt.getEdge(entry);
+        final int incEdge = getIncomingEdge(spt, entry);
+        final double weight = spt.getWeight(entry);
+        RoutingCHEdgeIterator iter = edgeExplorer.setBaseNode(spt.getAdjNode(entry));
         while (iter.next()) {
             // no need to inspect the edge we are coming from
-            if (iter.getEdge() == entry.edge) {
+            if (iter.getEdge() == edge) {
                 continue;
             }
-            SPTEntry adjNode = bestWeightMap.get(iter.getAdjNode());
+            int adjEntry = spt.get(iter.getAdjNode());
             // we have to be careful because of rounded shortcut weights in combination with virtual via nodes, see #1574
             final double precision = 0.001;
-            if (adjNode != null &&
-                    adjNode.weight + calcWeight(iter, !reverse, getIncomingEdge(entry)) - entry.weight < -precision) {
+            if (adjEntry != NO_ENTRY &&
+                    spt.getWeight(adjEntry) + calcWeight(iter, !reverse, incEdge) - weight < -precision) {
                 return true;
             }
         }
@@ -25,22 +25,6 @@ public class DijkstraBidirectionCHNoSOD extends AbstractBidirCHAlgo {
         super(graph, TraversalMode.NODE_BASED);
     }
 
-    @Override
-    protected SPTEntry createStartEntry(int node, double weight, boolean reverse) {
-        return new SPTEntry(node, weight);
-    }
-
-    @Override
-    protected SPTEntry createEntry(int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse) {
-        SPTEntry entry = new SPTEntry(edge, adjNode, weight);
-        entry.parent = parent;
-        return entry;
-    }
-
-    protected SPTEntry getParent(SPTEntry entry) {
-        return entry.getParent();
-    }
-
     @Override
     public String getName() {
         return "dijkstrabi|ch|no_sod";
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.routing.ch.CHEntry;
 import com.graphhopper.storage.RoutingCHGraph;
 
 /**
@@ -28,26 +27,6 @@ public class DijkstraBidirectionEdgeCHNoSOD extends AbstractBidirectionEdgeCHNoS
         super(graph);
     }
 
-    @Override
-    protected CHEntry createStartEntry(int node, double weight, boolean reverse) {
-        return new CHEntry(node, weight);
-    }
-
-    @Override
-    protected CHEntry createEntry(int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse) {
-        CHEntry entry = new CHEntry(edge, incEdge, adjNode, weight);
-        entry.parent = parent;
-        return entry;
-    }
-
-    @Override
-    protected void updateEntry(SPTEntry entry, int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse) {
-        entry.edge = edge;
-        ((CHEntry) entry).incEdge = incEdge;
-        entry.weight = weight;
-        entry.parent = parent;
-    }
-
     @Override
     public String getName() {
         return "dijkstrabi|ch|edge_based|no_sod";
@@ -20,7 +20,6 @@ package com.graphhopper.routing;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Parameters;
 
 /**
@@ -36,22 +35,6 @@ public class DijkstraBidirectionRef extends AbstractNonCHBidirAlgo {
         super(graph, weighting, tMode);
     }
 
-    @Override
-    protected SPTEntry createStartEntry(int node, double weight, boolean reverse) {
-        return new SPTEntry(node, weight);
-    }
-
-    @Override
-    protected SPTEntry createEntry(EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse) {
-        SPTEntry entry = new SPTEntry(edge.getEdge(), edge.getAdjNode(), weight);
-        entry.parent = parent;
-        return entry;
-    }
-
-    protected SPTEntry getParent(SPTEntry entry) {
-        return entry.getParent();
-    }
-
     @Override
     public String getName() {
         return Parameters.Algorithms.DIJKSTRA_BI;
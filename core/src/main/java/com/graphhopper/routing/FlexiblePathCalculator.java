@@ -34,6 +34,8 @@ public class FlexiblePathCalculator implements PathCalculator {
     private AlgorithmOptions algoOpts;
     private String debug;
     private int visitedNodes;
+    // the arrival time of the previous leg of a time-dependent request, the next leg departs at this time
+    private long nextDepartureTime = -1;
 
     public FlexiblePathCalculator(QueryGraph queryGraph, RoutingAlgorithmFactory algoFactory, AlgorithmOptions algoOpts) {
         this.queryGraph = queryGraph;
@@ -50,6 +52,8 @@ public class FlexiblePathCalculator implements PathCalculator {
     private RoutingAlgorithm createAlgo() {
         StopWatch sw = new StopWatch().start();
         RoutingAlgorithm algo = algoFactory.createAlgo(queryGraph, algoOpts);
+        if (algo instanceof TimeDependentDijkstra && nextDepartureTime >= 0)
+            ((TimeDependentDijkstra) algo).setDepartureTime(nextDepartureTime);
         debug = ", algoInit:" + (sw.stop().getNanos() / 1000) + " μs";
         return algo;
     }
@@ -83,6 +87,8 @@ public class FlexiblePathCalculator implements PathCalculator {
         if (algo.getVisitedNodes() >= algoOpts.getMaxVisitedNodes())
             throw new IllegalArgumentException("No path found due to maximum nodes exceeded " + algoOpts.getMaxVisitedNodes());
         visitedNodes = algo.getVisitedNodes();
+        if (algo instanceof TimeDependentDijkstra && paths.get(0).isFound())
+            nextDepartureTime = ((TimeDependentDijkstra) algo).getArrivalTime();
         debug += ", " + algo.getName() + "-routing:" + sw.stop().getMillis() + " ms";
         return paths;
     }
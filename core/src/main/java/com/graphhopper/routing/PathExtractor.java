@@ -31,6 +31,10 @@ public class PathExtractor {
         return new PathExtractor(graph, weighting).extract(sptEntry);
     }
 
+    public static Path extractPath(Graph graph, Weighting weighting, SPTStore spt, int entry) {
+        return new PathExtractor(graph, weighting).extract(spt, entry);
+    }
+
     protected PathExtractor(Graph graph, Weighting weighting) {
         this.graph = graph;
         this.weighting = weighting;
@@ -68,6 +72,28 @@ public class PathExtractor {
         return currEntry;
     }
 
+    protected Path extract(SPTStore spt, int entry) {
+        if (entry == SPTStore.NO_ENTRY) {
+            // path not found
+            return path;
+        }
+        StopWatch sw = new StopWatch().start();
+        int currEntry = entry;
+        int parentEntry = spt.getParent(currEntry);
+        while (EdgeIterator.Edge.isValid(spt.getEdge(currEntry))) {
+            onEdge(spt.getEdge(currEntry), spt.getAdjNode(currEntry), spt.getEdge(parentEntry));
+            currEntry = parentEntry;
+            parentEntry = spt.getParent(currEntry);
+        }
+        ArrayUtil.reverse(path.getEdges());
+        path.setFromNode(spt.getAdjNode(currEntry));
+        path.setEndNode(spt.getAdjNode(entry));
+        path.setFound(true);
+        path.setWeight(spt.getWeight(entry));
+        setExtractionTime(sw.stop().getNanos());
+        return path;
+    }
+
     private void setExtractionTime(long nanos) {
         path.setDebugInfo("path extraction: " + nanos / 1000 + " μs");
     }
@@ -18,26 +18,42 @@
 
 package com.graphhopper.routing;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.config.Profile;
+import com.graphhopper.routing.cch.CustomizationCache;
+import com.graphhopper.routing.cch.CustomizedCHGraph;
 import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.ManyToManyCH;
+import com.graphhopper.routing.ev.RoadClass;
+import com.graphhopper.routing.ev.RoadEnvironment;
 import com.graphhopper.routing.lm.LMRoutingAlgorithmFactory;
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.traffic.LiveTraffic;
+import com.graphhopper.routing.traffic.SpeedOverlay;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.SnapPreventionEdgeFilter;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.BlockAreaWeighting;
+import com.graphhopper.routing.weighting.LiveTrafficWeighting;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
 import com.graphhopper.util.exceptions.PointNotFoundException;
 import com.graphhopper.util.exceptions.PointOutOfBoundsException;
@@ -49,6 +65,10 @@ import java.util.*;
 import static com.graphhopper.routing.weighting.Weighting.INFINITE_U_TURN_COSTS;
 import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
 import static com.graphhopper.util.Parameters.Algorithms.ALT_ROUTE;
+import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
+import static com.graphhopper.util.Parameters.Algorithms.TD_ASTAR;
+import static com.graphhopper.util.Parameters.Algorithms.TD_DIJKSTRA;
 import static com.graphhopper.util.Parameters.Algorithms.ROUND_TRIP;
 import static com.graphhopper.util.Parameters.Routing.*;
 
@@ -67,6 +87,11 @@ public class Router {
     private final Map<String, LandmarkStorage> landmarks;
     private final boolean chEnabled;
     private final boolean lmEnabled;
+    private Set<String> outdatedCHProfiles = Collections.emptySet();
+    private Set<String> outdatedLMProfiles = Collections.emptySet();
+    private SPTStorePool sptStorePool;
+    private CustomizationCache cchCustomizations;
+    private LiveTraffic liveTraffic;
 
     public Router(GraphHopperStorage ghStorage, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
@@ -91,6 +116,41 @@ public class Router {
         this.lmEnabled = !landmarks.isEmpty();
     }
 
+    /**
+     * @param chProfiles the profiles whose CH preparation does not match the edges anymore and must not be used
+     * @param lmProfiles the profiles whose LM preparation does not match the edges anymore and must not be used
+     */
+    public Router setOutdatedPreparations(Set<String> chProfiles, Set<String> lmProfiles) {
+        this.outdatedCHProfiles = chProfiles;
+        this.outdatedLMProfiles = lmProfiles;
+        return this;
+    }
+
+    /**
+     * @param sptStorePool the pool of thread-local shortest path tree stores that are reused by the algorithms or
+     *                     null if every algorithm should allocate its own data structures
+     */
+    public Router setSPTStorePool(SPTStorePool sptStorePool) {
+        this.sptStorePool = sptStorePool;
+        return this;
+    }
+
+    /**
+     * @param cchCustomizations the customizable CH that is used for node-based requests that cannot use CH, or null
+     */
+    public Router setCCHCustomizations(CustomizationCache cchCustomizations) {
+        this.cchCustomizations = cchCustomizations;
+        return this;
+    }
+
+    /**
+     * @param liveTraffic the live speeds that are used for all requests that do not use CH, or null
+     */
+    public Router setLiveTraffic(LiveTraffic liveTraffic) {
+        this.liveTraffic = liveTraffic;
+        return this;
+    }
+
     public GHResponse route(GHRequest request) {
         try {
             validateRequest(request);
@@ -116,12 +176,17 @@ public class Router {
                 throw new IllegalArgumentException("The max_visited_nodes parameter has to be below or equal to:" + routerConfig.getMaxVisitedNodes());
 
             Weighting weighting = createWeighting(profile, request.getHints(), request.getPoints(), disableCH);
+            String algorithm = request.getAlgorithm();
+            if (isTimeDependent(request.getHints()) && Helper.isEmpty(algorithm))
+                algorithm = TD_ASTAR;
             AlgorithmOptions algoOpts = AlgorithmOptions.start().
-                    algorithm(request.getAlgorithm()).
+                    algorithm(algorithm).
                     traversalMode(traversalMode).
                     weighting(weighting).
                     maxVisitedNodes(maxVisitedNodesForRequest).
                     hints(request.getHints()).
+                    sptStore(sptStorePool == null ? null : sptStorePool.get(profile.getName())).
+                    backwardSPTStore(sptStorePool == null ? null : sptStorePool.get(profile.getName(), true)).
                     build();
 
             if (ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm())) {
@@ -144,6 +209,125 @@ public class Router {
         }
     }
 
+    /**
+     * Calculates a many-to-many matrix using one {@link QueryGraph} for all points and a bucket-based search on the
+     * CH graph of the requested profile, see {@link ManyToManyCH}.
+     */
+    public GHMatrixResponse matrix(GHMatrixRequest request) {
+        GHMatrixResponse ghRsp = new GHMatrixResponse();
+        try {
+            validateMatrixRequest(request);
+            Profile profile = profilesByName.get(request.getProfile());
+            if (profile == null)
+                throw new IllegalArgumentException("The requested profile '" + request.getProfile() + "' does not exist.\nAvailable profiles: " + profilesByName.keySet());
+            RoutingCHGraph chGraph = getRoutingCHGraph(profile.getName());
+            if (chGraph.isEdgeBased())
+                throw new IllegalArgumentException("The matrix calculation does not support profiles with turn costs yet, but profile '" + profile.getName() + "' uses turn costs");
+            final boolean failFast = request.getFailFast();
+            final boolean withWeights = request.getOutArrays().isEmpty() || request.getOutArrays().contains("weights");
+            final boolean withDistances = request.getOutArrays().contains("distances");
+            final boolean withTimes = request.getOutArrays().contains("times");
+            final boolean calcDistancesAndTimes = withDistances || withTimes;
+
+            StopWatch sw = new StopWatch().start();
+            List<Snap> snaps = new ArrayList<>();
+            int[] fromNodes = lookupMatrixPoints(request.getFromPoints(), request.getSnapPreventions(), chGraph.getWeighting(), snaps, ghRsp.getInvalidFromPoints());
+            int[] toNodes = lookupMatrixPoints(request.getToPoints(), request.getSnapPreventions(), chGraph.getWeighting(), snaps, ghRsp.getInvalidToPoints());
+            if (failFast && (!ghRsp.getInvalidFromPoints().isEmpty() || !ghRsp.getInvalidToPoints().isEmpty())) {
+                for (int idx : ghRsp.getInvalidFromPoints())
+                    ghRsp.addError(new PointNotFoundException("Cannot find from_point " + idx + ": " + request.getFromPoints().get(idx), idx));
+                for (int idx : ghRsp.getInvalidToPoints())
+                    ghRsp.addError(new PointNotFoundException("Cannot find to_point " + idx + ": " + request.getToPoints().get(idx), idx));
+                return ghRsp;
+            }
+            ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+
+            sw = new StopWatch().start();
+            QueryGraph queryGraph = QueryGraph.create(ghStorage, snaps);
+            for (int i = 0; i < fromNodes.length; i++)
+                if (fromNodes[i] >= 0)
+                    fromNodes[i] = snaps.get(fromNodes[i]).getClosestNode();
+            for (int i = 0; i < toNodes.length; i++)
+                if (toNodes[i] >= 0)
+                    toNodes[i] = snaps.get(toNodes[i]).getClosestNode();
+            ManyToManyCH algo = new ManyToManyCH(new QueryRoutingCHGraph(chGraph, queryGraph)).
+                    setCalcDistancesAndTimes(calcDistancesAndTimes);
+            if (sptStorePool != null)
+                algo.setSPTStore(sptStorePool.get(profile.getName()));
+            ManyToManyCH.Result result = algo.calcMatrix(validNodes(fromNodes), validNodes(toNodes));
+            ghRsp.addDebugInfo("matrix:" + sw.stop().getSeconds() + "s");
+
+            double[][] weights = new double[fromNodes.length][toNodes.length];
+            double[][] distances = calcDistancesAndTimes ? new double[fromNodes.length][toNodes.length] : null;
+            long[][] times = calcDistancesAndTimes ? new long[fromNodes.length][toNodes.length] : null;
+            for (int from = 0, validFrom = 0; from < fromNodes.length; from++) {
+                for (int to = 0, validTo = 0; to < toNodes.length; to++) {
+                    boolean valid = fromNodes[from] >= 0 && toNodes[to] >= 0;
+                    if (valid && !result.isConnected(validFrom, validTo)) {
+                        if (failFast) {
+                            ghRsp.addError(new ConnectionNotFoundException("Connection between locations not found: from_point " + from + " and to_point " + to, Collections.<String, Object>emptyMap()));
+                            return ghRsp;
+                        }
+                        ghRsp.getDisconnectedPoints().add(new int[]{from, to});
+                    }
+                    weights[from][to] = valid ? result.getWeight(validFrom, validTo) : Double.POSITIVE_INFINITY;
+                    if (calcDistancesAndTimes) {
+                        distances[from][to] = valid ? result.getDistance(validFrom, validTo) : Double.POSITIVE_INFINITY;
+                        times[from][to] = valid ? result.getTime(validFrom, validTo) : Long.MAX_VALUE;
+                    }
+                    if (toNodes[to] >= 0)
+                        validTo++;
+                }
+                if (fromNodes[from] >= 0)
+                    validFrom++;
+            }
+            ghRsp.setWeights(withWeights ? weights : null).
+                    setDistances(withDistances ? distances : null).
+                    setTimes(withTimes ? times : null);
+            ghRsp.getHints().putObject("visited_nodes.sum", algo.getVisitedNodes());
+            return ghRsp;
+        } catch (IllegalArgumentException ex) {
+            ghRsp.addError(ex);
+            return ghRsp;
+        }
+    }
+
+    /**
+     * Snaps the given points and adds the valid snaps to the given list.
+     *
+     * @return for every point the index of its snap in snaps or -1 if the point could not be found
+     */
+    private int[] lookupMatrixPoints(List<GHPoint> points, List<String> snapPreventions, Weighting weighting, List<Snap> snaps, List<Integer> pointsNotFound) {
+        EdgeFilter edgeFilter = ViaRouting.createEdgeFilter(weighting);
+        EdgeFilter strictEdgeFilter = snapPreventions.isEmpty()
+                ? edgeFilter
+                : new SnapPreventionEdgeFilter(edgeFilter, encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class),
+                encodingManager.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class), snapPreventions);
+        int[] snapIndices = new int[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            GHPoint point = points.get(i);
+            Snap snap = locationIndex.findClosest(point.lat, point.lon, strictEdgeFilter);
+            if (!snap.isValid() && strictEdgeFilter != edgeFilter)
+                snap = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            if (snap.isValid()) {
+                snapIndices[i] = snaps.size();
+                snaps.add(snap);
+            } else {
+                snapIndices[i] = -1;
+                pointsNotFound.add(i);
+            }
+        }
+        return snapIndices;
+    }
+
+    private static int[] validNodes(int[] nodes) {
+        IntArrayList result = new IntArrayList(nodes.length);
+        for (int node : nodes)
+            if (node >= 0)
+                result.add(node);
+        return result.toArray();
+    }
+
     protected GHResponse routeRoundTrip(GHRequest request, AlgorithmOptions algoOpts, Weighting weighting, Profile profile, boolean disableLM) {
         GHResponse ghRsp = new GHResponse();
         StopWatch sw = new StopWatch().start();
@@ -178,7 +362,8 @@ public class Router {
         List<Snap> qResults = ViaRouting.lookup(encodingManager, request.getPoints(), weighting, locationIndex, request.getSnapPreventions(), request.getPointHints());
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
         QueryGraph queryGraph = QueryGraph.create(ghStorage, qResults);
-        PathCalculator pathCalculator = createPathCalculator(queryGraph, profile, algoOpts, disableCH, disableLM);
+        PathCalculator pathCalculator = createPathCalculator(queryGraph, profile, algoOpts, disableCH, disableLM,
+                isCCHApplicable(request, algoOpts, disableCH, passThrough));
 
         if (passThrough)
             throw new IllegalArgumentException("Alternative paths and " + PASS_THROUGH + " at the same time is currently not supported");
@@ -209,7 +394,8 @@ public class Router {
         // (base) query graph used to resolve headings, curbsides etc. this is not necessarily the same thing as
         // the (possibly implementation specific) query graph used by PathCalculator
         QueryGraph queryGraph = QueryGraph.create(ghStorage, qResults);
-        PathCalculator pathCalculator = createPathCalculator(queryGraph, profile, algoOpts, disableCH, disableLM);
+        PathCalculator pathCalculator = createPathCalculator(queryGraph, profile, algoOpts, disableCH, disableLM,
+                isCCHApplicable(request, algoOpts, disableCH, passThrough));
         ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, qResults, weighting.getFlagEncoder().getAccessEnc(), pathCalculator, request.getCurbsides(), forceCurbsides, request.getHeadings(), passThrough);
 
         if (request.getPoints().size() != result.paths.size() + 1)
@@ -241,29 +427,76 @@ public class Router {
                         points, requestHints, DefaultEdgeFilter.allEdges(encoder));
                 weighting = new BlockAreaWeighting(weighting, blockArea);
             }
+            if (liveTraffic != null && !requestHints.getBool(Parameters.Traffic.DISABLE, false)) {
+                // the overlay is fixed for the whole request even if the live speeds are updated in the meantime
+                SpeedOverlay overlay = liveTraffic.getOverlay();
+                if (!overlay.isEmpty())
+                    weighting = new LiveTrafficWeighting(weighting, overlay, ghStorage.getEdges());
+            }
+            if (isTimeDependent(requestHints))
+                weighting = new TimeDependentWeighting(weighting, ghStorage.getSpeedProfileStorage());
             return weighting;
         }
     }
 
-    private PathCalculator createPathCalculator(QueryGraph queryGraph, Profile profile, AlgorithmOptions algoOpts, boolean disableCH, boolean disableLM) {
+    private PathCalculator createPathCalculator(QueryGraph queryGraph, Profile profile, AlgorithmOptions algoOpts, boolean disableCH, boolean disableLM, boolean useCCH) {
         if (chEnabled && !disableCH) {
-            PMap opts = new PMap(algoOpts.getHints());
-            opts.putObject(ALGORITHM, algoOpts.getAlgorithm());
-            opts.putObject(MAX_VISITED_NODES, algoOpts.getMaxVisitedNodes());
-            return createCHPathCalculator(queryGraph, profile, opts);
+            return createCHPathCalculator(queryGraph, profile, algoOpts);
+        } else if (useCCH) {
+            // the customized graph is shared between all requests with the same weighting, so we have to make sure
+            // the weighting matches the one that is used for the rest of the request
+            String key = CustomizationCache.createKey(profile.getName(), algoOpts.getHints());
+            long version = 0;
+            if (algoOpts.getWeighting() instanceof LiveTrafficWeighting) {
+                // a traffic update replaces the customization for the old speeds instead of adding another one
+                key += "|live_traffic";
+                version = ((LiveTrafficWeighting) algoOpts.getWeighting()).getOverlay().getVersion();
+            }
+            CustomizedCHGraph customizedCHGraph = cchCustomizations.getOrCustomize(key, algoOpts.getWeighting(), version);
+            return new CHPathCalculator(createCHAlgoFactory(customizedCHGraph, queryGraph, algoOpts), createCHOpts(algoOpts));
         } else {
             return createFlexiblePathCalculator(queryGraph, profile, algoOpts, disableLM);
         }
     }
 
-    private PathCalculator createCHPathCalculator(QueryGraph queryGraph, Profile profile, PMap opts) {
-        return new CHPathCalculator(new CHRoutingAlgorithmFactory(getRoutingCHGraph(profile.getName()), queryGraph), opts);
+    private PMap createCHOpts(AlgorithmOptions algoOpts) {
+        PMap opts = new PMap(algoOpts.getHints());
+        opts.putObject(ALGORITHM, algoOpts.getAlgorithm());
+        opts.putObject(MAX_VISITED_NODES, algoOpts.getMaxVisitedNodes());
+        return opts;
+    }
+
+    /**
+     * Customizable CH can be used instead of the flexible mode for node-based requests if it was prepared and is not
+     * disabled. Just like for speed mode the heading and pass_through parameters are not supported and only the
+     * bidirectional algorithms can be used.
+     */
+    private boolean isCCHApplicable(GHRequest request, AlgorithmOptions algoOpts, boolean disableCH, boolean passThrough) {
+        String algo = algoOpts.getAlgorithm();
+        return cchCustomizations != null && (!chEnabled || disableCH)
+                && !request.getHints().getBool(Parameters.CCH.DISABLE, false)
+                && !isTimeDependent(request.getHints())
+                && !algoOpts.getTraversalMode().isEdgeBased()
+                && request.getHeadings().isEmpty() && !passThrough
+                && (Helper.isEmpty(algo) || DIJKSTRA_BI.equals(algo) || ASTAR_BI.equals(algo) || ALT_ROUTE.equalsIgnoreCase(algo));
+    }
+
+    private PathCalculator createCHPathCalculator(QueryGraph queryGraph, Profile profile, AlgorithmOptions algoOpts) {
+        return new CHPathCalculator(createCHAlgoFactory(getRoutingCHGraph(profile.getName()), queryGraph, algoOpts), createCHOpts(algoOpts));
+    }
+
+    private CHRoutingAlgorithmFactory createCHAlgoFactory(RoutingCHGraph chGraph, QueryGraph queryGraph, AlgorithmOptions algoOpts) {
+        return new CHRoutingAlgorithmFactory(chGraph, queryGraph).
+                setSPTStores(algoOpts.getSPTStore(), algoOpts.getBackwardSPTStore());
     }
 
     private FlexiblePathCalculator createFlexiblePathCalculator(QueryGraph queryGraph, Profile profile, AlgorithmOptions algoOpts, boolean disableLM) {
         RoutingAlgorithmFactory algorithmFactory;
         // for now do not allow mixing CH&LM #1082,#1889
-        if (lmEnabled && !disableLM) {
+        if (lmEnabled && !disableLM && !isTimeDependent(algoOpts.getHints())) {
+            if (outdatedLMProfiles.contains(profile.getName()))
+                throw new IllegalArgumentException("The LM preparation for the requested profile '" + profile.getName() + "' is outdated, because the edges were changed" +
+                        "\nYou can try disabling LM using " + Parameters.Landmark.DISABLE + "=true");
             LandmarkStorage landmarkStorage = landmarks.get(profile.getName());
             if (landmarkStorage == null)
                 throw new IllegalArgumentException("Cannot find LM preparation for the requested profile: '" + profile.getName() + "'" +
@@ -277,6 +510,9 @@ public class Router {
     }
 
     private RoutingCHGraph getRoutingCHGraph(String profileName) {
+        if (outdatedCHProfiles.contains(profileName))
+            throw new IllegalArgumentException("The CH preparation for the requested profile '" + profileName + "' is outdated, because the edges were changed" +
+                    "\nYou can try disabling CH using " + Parameters.CH.DISABLE + "=true");
         RoutingCHGraph chGraph = chGraphs.get(profileName);
         if (chGraph == null)
             throw new IllegalArgumentException("Cannot find CH preparation for the requested profile: '" + profileName + "'" +
@@ -365,9 +601,40 @@ public class Router {
 
             if (request.getHints().has(Parameters.Routing.BLOCK_AREA))
                 throw new IllegalArgumentException("When CH is enabled the " + Parameters.Routing.BLOCK_AREA + " cannot be specified");
+
+            if (isTimeDependent(request.getHints()))
+                throw new IllegalArgumentException("The '" + DEPARTURE_TIME + "' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`");
         } else {
             checkNonChMaxWaypointDistance(request.getPoints());
         }
+
+        if (isTimeDependent(request.getHints())) {
+            if (ghStorage.getSpeedProfileStorage() == null)
+                throw new IllegalArgumentException("The '" + DEPARTURE_TIME + "' parameter requires a graph with speed profiles, see graph.speed_profiles");
+            String algo = request.getAlgorithm();
+            if (!Helper.isEmpty(algo) && !TD_DIJKSTRA.equalsIgnoreCase(algo) && !TD_ASTAR.equalsIgnoreCase(algo))
+                throw new IllegalArgumentException("The '" + DEPARTURE_TIME + "' parameter can only be used with the algorithms " + TD_ASTAR + " and " + TD_DIJKSTRA);
+            // fail early for an invalid departure time
+            RoutingAlgorithmFactorySimple.getDepartureTime(request.getHints());
+        }
+    }
+
+    protected void validateMatrixRequest(GHMatrixRequest request) {
+        if (Helper.isEmpty(request.getProfile()))
+            throw new IllegalArgumentException("You need to specify a profile to perform a matrix request, see docs/core/profiles.md");
+        if (request.getHints().has("vehicle"))
+            throw new IllegalArgumentException("GHMatrixRequest may not contain a vehicle, use the profile parameter instead, see docs/core/profiles.md");
+        if (request.getHints().has("weighting"))
+            throw new IllegalArgumentException("GHMatrixRequest may not contain a weighting, use the profile parameter instead, see docs/core/profiles.md");
+        if (request.getFromPoints().isEmpty() || request.getToPoints().isEmpty())
+            throw new IllegalArgumentException("You have to pass at least one from_point and one to_point");
+        for (String outArray : request.getOutArrays())
+            if (!outArray.equals("weights") && !outArray.equals("distances") && !outArray.equals("times"))
+                throw new IllegalArgumentException("Unknown out_array '" + outArray + "', supported are: weights, distances and times");
+        if (!chEnabled || getDisableCH(request.getHints()))
+            throw new IllegalArgumentException("The matrix calculation requires a CH preparation for the requested profile");
+        checkIfPointsAreInBounds(request.getFromPoints());
+        checkIfPointsAreInBounds(request.getToPoints());
     }
 
     private List<String> getTurnCostProfiles() {
@@ -388,6 +655,10 @@ public class Router {
         return hints.getBool(Parameters.CH.DISABLE, false);
     }
 
+    private static boolean isTimeDependent(PMap hints) {
+        return hints.has(DEPARTURE_TIME);
+    }
+
     private static boolean getPassThrough(PMap hints) {
         return hints.getBool(PASS_THROUGH, false);
     }
@@ -31,6 +31,8 @@ public class RouterConfig {
     private boolean simplifyResponse = true;
     private double elevationWayPointMaxDistance = Double.MAX_VALUE;
     private int activeLandmarkCount = 8;
+    private boolean reuseSPTStores = false;
+    private int sptStoreMaxEntries = 1_000_000;
 
     public int getMaxVisitedNodes() {
         return maxVisitedNodes;
@@ -114,4 +116,29 @@ public class RouterConfig {
     public void setElevationWayPointMaxDistance(double elevationWayPointMaxDistance) {
         this.elevationWayPointMaxDistance = elevationWayPointMaxDistance;
     }
+
+    public boolean isReuseSPTStores() {
+        return reuseSPTStores;
+    }
+
+    /**
+     * If enabled the algorithms that support it reuse a thread-local shortest path tree store per profile instead of
+     * allocating new data structures for every query, see {@link SPTStorePool}. This trades memory (per thread and
+     * profile up to the size of the graph) for less allocation and warm-up per query.
+     */
+    public void setReuseSPTStores(boolean reuseSPTStores) {
+        this.reuseSPTStores = reuseSPTStores;
+    }
+
+    public int getSPTStoreMaxEntries() {
+        return sptStoreMaxEntries;
+    }
+
+    /**
+     * Reused shortest path tree stores that grew beyond the given number of entries during a request are dropped
+     * instead of being kept for the next request, see {@link SPTStorePool#setMaxEntriesPerStore}.
+     */
+    public void setSPTStoreMaxEntries(int sptStoreMaxEntries) {
+        this.sptStoreMaxEntries = sptStoreMaxEntries;
+    }
 }
@@ -18,6 +18,7 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
 import com.graphhopper.routing.weighting.WeightApproximator;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -27,8 +28,13 @@ import com.graphhopper.util.DistancePlaneProjection;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
 import static com.graphhopper.util.Parameters.Algorithms.*;
 import static com.graphhopper.util.Parameters.Algorithms.AltRoute.*;
+import static com.graphhopper.util.Parameters.Routing.DEPARTURE_TIME;
 
 /**
  * A simple factory creating normal algorithms (RoutingAlgorithm) without preparation.
@@ -43,14 +49,20 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
         String algoStr = opts.getAlgorithm();
         Weighting weighting = g.wrapWeighting(opts.getWeighting());
         if (DIJKSTRA_BI.equalsIgnoreCase(algoStr)) {
-            ra = new DijkstraBidirectionRef(g, weighting, opts.getTraversalMode());
+            DijkstraBidirectionRef dijkstraBi = new DijkstraBidirectionRef(g, weighting, opts.getTraversalMode());
+            setSPTStores(dijkstraBi, opts);
+            ra = dijkstraBi;
         } else if (DIJKSTRA.equalsIgnoreCase(algoStr)) {
-            ra = new Dijkstra(g, weighting, opts.getTraversalMode());
+            Dijkstra dijkstra = new Dijkstra(g, weighting, opts.getTraversalMode());
+            if (opts.getSPTStore() != null)
+                dijkstra.setSPTStore(opts.getSPTStore());
+            ra = dijkstra;
 
         } else if (ASTAR_BI.equalsIgnoreCase(algoStr) || Helper.isEmpty(algoStr)) {
             AStarBidirection aStarBi = new AStarBidirection(g, weighting,
                     opts.getTraversalMode());
             aStarBi.setApproximation(getApproximation(ASTAR_BI, opts.getHints(), weighting, g.getNodeAccess()));
+            setSPTStores(aStarBi, opts);
             ra = aStarBi;
 
         } else if (DIJKSTRA_ONE_TO_MANY.equalsIgnoreCase(algoStr)) {
@@ -59,6 +71,8 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
         } else if (ASTAR.equalsIgnoreCase(algoStr)) {
             AStar aStar = new AStar(g, weighting, opts.getTraversalMode());
             aStar.setApproximation(getApproximation(ASTAR, opts.getHints(), opts.getWeighting(), g.getNodeAccess()));
+            if (opts.getSPTStore() != null)
+                aStar.setSPTStore(opts.getSPTStore());
             ra = aStar;
 
         } else if (ALT_ROUTE.equalsIgnoreCase(algoStr)) {
@@ -70,6 +84,15 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
             altRouteAlgo.setMaxExplorationFactor(opts.getHints().getDouble("alternative_route.max_exploration_factor", 1));
             ra = altRouteAlgo;
 
+        } else if (TD_DIJKSTRA.equalsIgnoreCase(algoStr) || TD_ASTAR.equalsIgnoreCase(algoStr)) {
+            if (!(opts.getWeighting() instanceof TimeDependentWeighting))
+                throw new IllegalArgumentException("Algorithm " + algoStr + " requires speed profiles and the " + DEPARTURE_TIME + " parameter");
+            TimeDependentDijkstra tdAlgo = new TimeDependentDijkstra(g, (TimeDependentWeighting) opts.getWeighting(), opts.getTraversalMode());
+            tdAlgo.setDepartureTime(getDepartureTime(opts.getHints()));
+            if (TD_ASTAR.equalsIgnoreCase(algoStr))
+                tdAlgo.setApproximation(getApproximation(TD_ASTAR, opts.getHints(), opts.getWeighting(), g.getNodeAccess()));
+            ra = tdAlgo;
+
         } else {
             throw new IllegalArgumentException("Algorithm " + algoStr + " not found in " + getClass().getName());
         }
@@ -78,6 +101,28 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
         return ra;
     }
 
+    /**
+     * Makes the given bidirectional algorithm reuse the stores of the given options if both of them are set
+     */
+    public static void setSPTStores(AbstractBidirAlgo algo, AlgorithmOptions opts) {
+        if (opts.getSPTStore() != null && opts.getBackwardSPTStore() != null)
+            algo.setSPTStores(opts.getSPTStore(), opts.getBackwardSPTStore());
+    }
+
+    /**
+     * @return the local departure time in milliseconds since 1970-01-01T00:00 as used by the speed profiles
+     */
+    public static long getDepartureTime(PMap opts) {
+        String departureTime = opts.getString(DEPARTURE_TIME, "");
+        if (departureTime.isEmpty())
+            throw new IllegalArgumentException("Time-dependent routing requires the " + DEPARTURE_TIME + " parameter");
+        try {
+            return LocalDateTime.parse(departureTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Cannot parse " + DEPARTURE_TIME + " '" + departureTime + "', use the local time in ISO format, e.g. 2020-11-02T08:00");
+        }
+    }
+
     public static WeightApproximator getApproximation(String prop, PMap opts, Weighting weighting, NodeAccess na) {
         String approxAsStr = opts.getString(prop + ".approximation", "BeelineSimplification");
         double epsilon = opts.getDouble(prop + ".epsilon", 1);
@@ -0,0 +1,374 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * A shortest path tree that is stored in parallel primitive arrays instead of one {@link SPTEntry} object per
+ * relaxed edge. Every entry is identified by a dense int id that is handed out by {@link #add}. The parent pointers
+ * refer to these ids and the store keeps its own binary min-heap (keyed by {@link #getKey}) that supports
+ * decrease-key, so stale heap elements never need to be skipped or removed with a linear scan.
+ * <p>
+ * All arrays grow on demand and are kept by {@link #clear()}, so a store can be reused for many searches without
+ * allocating anything once it has reached its working size. For such long-living stores the traversal ids can be
+ * mapped to the entries using epoch-stamped arrays (see {@link #SPTStore(int, boolean)}), which makes clearing the
+ * store O(1), similar to the arrays that are reused by {@link DijkstraOneToMany}.
+ *
+ * @see SPTEntry
+ */
+public class SPTStore {
+    public static final int NO_ENTRY = -1;
+    private static final int NOT_IN_HEAP = -1;
+
+    private int[] edges;
+    private int[] incEdges;
+    private int[] adjNodes;
+    private int[] parents;
+    private double[] weights;
+    private double[] keys;
+    private int[] traversalIds;
+    private int[] heapPositions;
+    private int size;
+
+    // the heap is 1-based, heap[0] is unused
+    private int[] heap;
+    private int heapSize;
+
+    // used if the store is not reusable
+    private final IntIntHashMap entriesByTraversalId;
+    // used if the store is reusable, an entry is only valid if its epoch equals the current one
+    private int[] entriesByTraversalIdArray;
+    private int[] epochsByTraversalId;
+    private int epoch;
+
+    public SPTStore(int initialCapacity) {
+        this(initialCapacity, false);
+    }
+
+    /**
+     * @param reusable if true the traversal ids are mapped to the entries using arrays indexed by the traversal id
+     *                 instead of a hash map. Clearing the store then only increments an epoch counter, but these
+     *                 arrays grow up to the largest traversal id that was used, i.e. up to the number of nodes or
+     *                 edge keys of the graph. Use this only for stores that are kept and reused for many searches.
+     */
+    public SPTStore(int initialCapacity, boolean reusable) {
+        initialCapacity = Math.max(2, initialCapacity);
+        edges = new int[initialCapacity];
+        incEdges = new int[initialCapacity];
+        adjNodes = new int[initialCapacity];
+        parents = new int[initialCapacity];
+        weights = new double[initialCapacity];
+        keys = new double[initialCapacity];
+        traversalIds = new int[initialCapacity];
+        heapPositions = new int[initialCapacity];
+        heap = new int[initialCapacity + 1];
+        if (reusable) {
+            entriesByTraversalId = null;
+            entriesByTraversalIdArray = new int[initialCapacity];
+            epochsByTraversalId = new int[initialCapacity];
+            epoch = 1;
+        } else {
+            entriesByTraversalId = new IntIntHashMap(initialCapacity);
+        }
+    }
+
+    public boolean isReusable() {
+        return entriesByTraversalId == null;
+    }
+
+    /**
+     * Creates a new entry that is not yet part of the heap.
+     *
+     * @param weight the weight of the path from the root to the adjacent node of this entry
+     * @param key    the key that is used to order the entries in the heap, e.g. the weight itself for Dijkstra or the
+     *               weight plus an estimate of the remaining weight for A*
+     * @param parent the id of the parent entry or {@link #NO_ENTRY} for a root
+     * @return the id of the new entry
+     */
+    public int add(int edge, int adjNode, double weight, double key, int parent) {
+        if (size == edges.length)
+            grow();
+        int entry = size++;
+        edges[entry] = edge;
+        incEdges[entry] = edge;
+        adjNodes[entry] = adjNode;
+        weights[entry] = weight;
+        keys[entry] = key;
+        parents[entry] = parent;
+        traversalIds[entry] = -1;
+        heapPositions[entry] = NOT_IN_HEAP;
+        return entry;
+    }
+
+    /**
+     * Creates a root entry, i.e. an entry without edge and parent
+     */
+    public int addRoot(int node, double weight, double key) {
+        return add(EdgeIterator.NO_EDGE, node, weight, key, NO_ENTRY);
+    }
+
+    /**
+     * Changes the edge, weight, key and parent of an existing entry. If the entry is currently in the heap its
+     * position is updated, otherwise it is inserted again.
+     */
+    public void update(int entry, int edge, double weight, double key, int parent) {
+        edges[entry] = edge;
+        incEdges[entry] = edge;
+        weights[entry] = weight;
+        parents[entry] = parent;
+        double oldKey = keys[entry];
+        keys[entry] = key;
+        int pos = heapPositions[entry];
+        if (pos == NOT_IN_HEAP) {
+            push(entry);
+        } else if (key < oldKey) {
+            siftUp(pos);
+        } else {
+            siftDown(pos);
+        }
+    }
+
+    /**
+     * @return the entry that was registered for the given traversal id or {@link #NO_ENTRY}
+     */
+    public int get(int traversalId) {
+        if (entriesByTraversalId != null)
+            return entriesByTraversalId.getOrDefault(traversalId, NO_ENTRY);
+        if (traversalId >= epochsByTraversalId.length || epochsByTraversalId[traversalId] != epoch)
+            return NO_ENTRY;
+        return entriesByTraversalIdArray[traversalId];
+    }
+
+    /**
+     * Registers the given entry for the given traversal id. Every entry can be registered for at most one traversal
+     * id, see {@link #getTraversalId}.
+     */
+    public void put(int traversalId, int entry) {
+        traversalIds[entry] = traversalId;
+        if (entriesByTraversalId != null) {
+            entriesByTraversalId.put(traversalId, entry);
+            return;
+        }
+        if (traversalId < 0)
+            throw new IllegalArgumentException("traversal id must not be negative: " + traversalId);
+        if (traversalId >= epochsByTraversalId.length) {
+            int newLength = Math.max(traversalId + 1, epochsByTraversalId.length + (epochsByTraversalId.length >> 1));
+            entriesByTraversalIdArray = Arrays.copyOf(entriesByTraversalIdArray, newLength);
+            epochsByTraversalId = Arrays.copyOf(epochsByTraversalId, newLength);
+        }
+        entriesByTraversalIdArray[traversalId] = entry;
+        epochsByTraversalId[traversalId] = epoch;
+    }
+
+    public int getEdge(int entry) {
+        return edges[entry];
+    }
+
+    /**
+     * @return the original edge of the given entry that is incoming to its adjacent node. This is the same as
+     * {@link #getEdge} unless it was changed with {@link #setIncEdge}, e.g. for the shortcuts of edge-based CH.
+     */
+    public int getIncEdge(int entry) {
+        return incEdges[entry];
+    }
+
+    /**
+     * Sets the incoming edge of the given entry, needs to be called again after {@link #update}
+     */
+    public void setIncEdge(int entry, int incEdge) {
+        incEdges[entry] = incEdge;
+    }
+
+    public int getAdjNode(int entry) {
+        return adjNodes[entry];
+    }
+
+    public int getParent(int entry) {
+        return parents[entry];
+    }
+
+    public double getWeight(int entry) {
+        return weights[entry];
+    }
+
+    public double getKey(int entry) {
+        return keys[entry];
+    }
+
+    /**
+     * @return the traversal id the given entry was registered for using {@link #put} or -1 if it was not registered,
+     * e.g. the root entries of an edge-based search. Together with {@link #size()} this allows iterating over all
+     * registered entries.
+     */
+    public int getTraversalId(int entry) {
+        return traversalIds[entry];
+    }
+
+    /**
+     * @return the number of entries that were created since the last {@link #clear()}
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Inserts the given entry into the heap using its current key. Does nothing if the entry is already in the heap.
+     */
+    public void push(int entry) {
+        if (heapPositions[entry] != NOT_IN_HEAP)
+            return;
+        heapSize++;
+        heap[heapSize] = entry;
+        heapPositions[entry] = heapSize;
+        siftUp(heapSize);
+    }
+
+    /**
+     * @return true if the given entry is currently in the heap, i.e. it was pushed but not polled yet
+     */
+    public boolean isInHeap(int entry) {
+        return heapPositions[entry] != NOT_IN_HEAP;
+    }
+
+    public boolean isHeapEmpty() {
+        return heapSize == 0;
+    }
+
+    public int getHeapSize() {
+        return heapSize;
+    }
+
+    /**
+     * @return the entry with the smallest key without removing it from the heap
+     */
+    public int peek() {
+        if (heapSize == 0)
+            throw new IllegalStateException("Cannot peek an empty heap");
+        return heap[1];
+    }
+
+    /**
+     * Removes the entry with the smallest key from the heap and returns it. The entry itself stays in the store.
+     */
+    public int poll() {
+        if (heapSize == 0)
+            throw new IllegalStateException("Cannot poll an empty heap");
+        int entry = heap[1];
+        int last = heap[heapSize];
+        heapSize--;
+        heapPositions[entry] = NOT_IN_HEAP;
+        if (heapSize > 0) {
+            heap[1] = last;
+            heapPositions[last] = 1;
+            siftDown(1);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes all entries and empties the heap but keeps the allocated memory
+     */
+    public void clear() {
+        size = 0;
+        heapSize = 0;
+        if (entriesByTraversalId != null) {
+            entriesByTraversalId.clear();
+        } else if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(epochsByTraversalId, 0);
+            epoch = 1;
+        } else {
+            epoch++;
+        }
+    }
+
+    /**
+     * @return the number of entries the store can hold before its arrays need to grow again
+     */
+    public int getCapacity() {
+        return edges.length;
+    }
+
+    /**
+     * @return the approximate number of bytes that are currently allocated by this store
+     */
+    public long getCapacityInBytes() {
+        long indexBytes = entriesByTraversalId != null
+                ? (long) entriesByTraversalId.keys.length * 2 * Integer.BYTES
+                : (long) epochsByTraversalId.length * 2 * Integer.BYTES;
+        return (long) edges.length * (6 * Integer.BYTES + 2 * Double.BYTES) + (long) heap.length * Integer.BYTES
+                + indexBytes;
+    }
+
+    private void siftUp(int pos) {
+        int entry = heap[pos];
+        double key = keys[entry];
+        while (pos > 1) {
+            int parentPos = pos >> 1;
+            int parentEntry = heap[parentPos];
+            if (keys[parentEntry] <= key)
+                break;
+            heap[pos] = parentEntry;
+            heapPositions[parentEntry] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = entry;
+        heapPositions[entry] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int entry = heap[pos];
+        double key = keys[entry];
+        while (true) {
+            int child = pos << 1;
+            if (child > heapSize)
+                break;
+            if (child < heapSize && keys[heap[child + 1]] < keys[heap[child]])
+                child++;
+            int childEntry = heap[child];
+            if (keys[childEntry] >= key)
+                break;
+            heap[pos] = childEntry;
+            heapPositions[childEntry] = pos;
+            pos = child;
+        }
+        heap[pos] = entry;
+        heapPositions[entry] = pos;
+    }
+
+    private void grow() {
+        int newCapacity = edges.length + (edges.length >> 1);
+        edges = Arrays.copyOf(edges, newCapacity);
+        incEdges = Arrays.copyOf(incEdges, newCapacity);
+        adjNodes = Arrays.copyOf(adjNodes, newCapacity);
+        parents = Arrays.copyOf(parents, newCapacity);
+        weights = Arrays.copyOf(weights, newCapacity);
+        keys = Arrays.copyOf(keys, newCapacity);
+        traversalIds = Arrays.copyOf(traversalIds, newCapacity);
+        heapPositions = Arrays.copyOf(heapPositions, newCapacity);
+        heap = Arrays.copyOf(heap, newCapacity + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "entries: " + size + ", heap: " + heapSize;
+    }
+}
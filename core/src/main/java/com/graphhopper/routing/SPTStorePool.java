@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps two reusable {@link SPTStore}s per thread and profile: one for the forward search, which the unidirectional
+ * algorithms use as well, and one for the backward search of the bidirectional algorithms. The stores are cleared in
+ * O(1) when a new search starts (see {@link SPTStore#SPTStore(int, boolean)}), so after a short warm-up phase
+ * repeated queries on the same thread do not allocate and initialize new search data structures anymore. The price is
+ * that the index of every store grows up to the number of nodes (or edge keys for edge-based traversal) of the graph.
+ * The entries of a store are bounded: a store that grew beyond {@link #setMaxEntriesPerStore} entries, e.g. for a
+ * single long route, is dropped when it is requested the next time and replaced by a new one.
+ * <p>
+ * A store is only valid until the next call of {@link #get} for the same profile on the same thread, i.e. it must
+ * not be used by two searches at the same time.
+ */
+public class SPTStorePool {
+    private static final int INITIAL_CAPACITY = 2000;
+    // the stores of all threads, so they can be released by clear(). The threads are weak keys, so the stores of
+    // terminated threads do not need to be released explicitly.
+    private final Map<Thread, Map<String, SPTStore[]>> allStores = new WeakHashMap<>();
+    private final ThreadLocal<Map<String, SPTStore[]>> stores = ThreadLocal.withInitial(() -> {
+        Map<String, SPTStore[]> storesOfThread = new ConcurrentHashMap<>();
+        synchronized (allStores) {
+            allStores.put(Thread.currentThread(), storesOfThread);
+        }
+        return storesOfThread;
+    });
+    private volatile int maxEntriesPerStore = 1_000_000;
+
+    /**
+     * Stores that can hold more than the given number of entries are not reused, which limits the memory that is
+     * kept per thread and profile after an expensive request.
+     */
+    public SPTStorePool setMaxEntriesPerStore(int maxEntriesPerStore) {
+        if (maxEntriesPerStore < INITIAL_CAPACITY)
+            throw new IllegalArgumentException("max entries per store must be at least " + INITIAL_CAPACITY + ", but was: " + maxEntriesPerStore);
+        this.maxEntriesPerStore = maxEntriesPerStore;
+        return this;
+    }
+
+    public int getMaxEntriesPerStore() {
+        return maxEntriesPerStore;
+    }
+
+    public SPTStore get(String profile) {
+        return get(profile, false);
+    }
+
+    /**
+     * @param reverse true for the store of the backward search
+     */
+    public SPTStore get(String profile, boolean reverse) {
+        SPTStore[] fwdAndBwd = stores.get().computeIfAbsent(profile, p -> new SPTStore[2]);
+        int index = reverse ? 1 : 0;
+        if (fwdAndBwd[index] == null || fwdAndBwd[index].getCapacity() > maxEntriesPerStore)
+            fwdAndBwd[index] = new SPTStore(INITIAL_CAPACITY, true);
+        return fwdAndBwd[index];
+    }
+
+    /**
+     * Releases the stores of all threads, e.g. after the graph was closed. Searches that are still running keep
+     * their current store, but it is not reused afterwards.
+     */
+    public void clear() {
+        synchronized (allStores) {
+            for (Map<String, SPTStore[]> storesOfThread : allStores.values())
+                storesOfThread.clear();
+        }
+    }
+
+    /**
+     * @return the number of stores that are currently kept for all threads
+     */
+    public int getStoreCount() {
+        int count = 0;
+        synchronized (allStores) {
+            for (Map<String, SPTStore[]> storesOfThread : allStores.values())
+                for (SPTStore[] fwdAndBwd : storesOfThread.values())
+                    for (SPTStore store : fwdAndBwd)
+                        if (store != null)
+                            count++;
+        }
+        return count;
+    }
+}
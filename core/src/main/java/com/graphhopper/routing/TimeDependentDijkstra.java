@@ -0,0 +1,192 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
+import com.graphhopper.routing.weighting.WeightApproximator;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Parameters;
+
+import java.util.Arrays;
+
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
+
+/**
+ * A time-dependent version of {@link Dijkstra}: the weight and time of an edge depend on the time the edge is entered,
+ * which is the departure time plus the time of the path to the edge, see {@link TimeDependentWeighting}. The arrival
+ * time of every shortest path tree entry is kept in an additional array indexed by the entry id. The search is exact
+ * as long as the weights behave like times and the speed profiles fulfill the FIFO property, i.e. leaving later never
+ * means arriving earlier.
+ */
+public class TimeDependentDijkstra extends AbstractRoutingAlgorithm {
+    private final TimeDependentWeighting tdWeighting;
+    private final QueryGraph queryGraph;
+    protected SPTStore spt;
+    protected int currEntry = NO_ENTRY;
+    private long[] arrivalTimes;
+    private long departureTime;
+    private WeightApproximator weightApprox;
+    private int visitedNodes;
+    private int to = -1;
+
+    /**
+     * @param tdWeighting the weighting is wrapped by the graph (e.g. for the virtual edges of a query graph) for the
+     *                    turn costs, while the edge weights are calculated for the current time
+     */
+    public TimeDependentDijkstra(Graph graph, TimeDependentWeighting tdWeighting, TraversalMode tMode) {
+        super(graph, graph.wrapWeighting(tdWeighting), tMode);
+        this.tdWeighting = tdWeighting;
+        this.queryGraph = graph instanceof QueryGraph ? (QueryGraph) graph : null;
+        int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
+        spt = new SPTStore(size);
+        arrivalTimes = new long[size];
+    }
+
+    /**
+     * @param departureTime the local time at the start node in milliseconds since 1970-01-01T00:00, see
+     *                      {@link com.graphhopper.storage.SpeedProfileStorage#getBucket(long)}
+     */
+    public TimeDependentDijkstra setDepartureTime(long departureTime) {
+        this.departureTime = departureTime;
+        return this;
+    }
+
+    /**
+     * Turns this algorithm into a time-dependent A* search. The approximation must not overestimate the weight
+     * to the goal for any time.
+     */
+    public TimeDependentDijkstra setApproximation(WeightApproximator approx) {
+        weightApprox = approx;
+        return this;
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        checkAlreadyRun();
+        this.to = to;
+        if (weightApprox != null)
+            weightApprox.setTo(to);
+        currEntry = spt.addRoot(from, 0, estimate(from));
+        setArrivalTime(currEntry, departureTime);
+        if (!traversalMode.isEdgeBased()) {
+            spt.put(from, currEntry);
+        }
+        runAlgo();
+        return extractPath();
+    }
+
+    private void runAlgo() {
+        while (true) {
+            visitedNodes++;
+            if (isMaxVisitedNodesExceeded() || finished())
+                break;
+
+            int currNode = spt.getAdjNode(currEntry);
+            int currEdge = spt.getEdge(currEntry);
+            double currWeight = spt.getWeight(currEntry);
+            long currTime = arrivalTimes[currEntry];
+            EdgeIterator iter = edgeExplorer.setBaseNode(currNode);
+            while (iter.next()) {
+                if (!accept(iter, currEdge) || !outEdgeFilter.accept(iter))
+                    continue;
+
+                double turnWeight = 0;
+                long turnMillis = 0;
+                if (EdgeIterator.Edge.isValid(currEdge)) {
+                    turnWeight = weighting.calcTurnWeight(currEdge, currNode, iter.getOrigEdgeFirst());
+                    if (Double.isInfinite(turnWeight))
+                        continue;
+                    turnMillis = weighting.calcTurnMillis(currEdge, currNode, iter.getOrigEdgeFirst());
+                }
+                // the edge is entered after the turn
+                long enterTime = currTime + turnMillis;
+                // virtual edges need to be detached to find the speed profile of their original edge
+                EdgeIteratorState edge = queryGraph != null && queryGraph.isVirtualEdge(iter.getEdge()) ? iter.detach(false) : iter;
+                double tmpWeight = tdWeighting.calcEdgeWeight(edge, false, enterTime) + turnWeight + currWeight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+                int traversalId = traversalMode.createTraversalId(iter, false);
+
+                int entry = spt.get(traversalId);
+                if (entry == NO_ENTRY || spt.getWeight(entry) > tmpWeight) {
+                    double key = tmpWeight + estimate(iter.getAdjNode());
+                    if (entry == NO_ENTRY) {
+                        entry = spt.add(iter.getEdge(), iter.getAdjNode(), tmpWeight, key, currEntry);
+                        spt.put(traversalId, entry);
+                        spt.push(entry);
+                    } else {
+                        spt.update(entry, iter.getEdge(), tmpWeight, key, currEntry);
+                    }
+                    setArrivalTime(entry, enterTime + tdWeighting.calcEdgeMillis(edge, false, enterTime));
+                }
+            }
+
+            if (spt.isHeapEmpty())
+                break;
+
+            currEntry = spt.poll();
+        }
+    }
+
+    private double estimate(int node) {
+        return weightApprox == null ? 0 : weightApprox.approximate(node);
+    }
+
+    private void setArrivalTime(int entry, long time) {
+        if (entry >= arrivalTimes.length)
+            arrivalTimes = Arrays.copyOf(arrivalTimes, Math.max(entry + 1, arrivalTimes.length + (arrivalTimes.length >> 1)));
+        arrivalTimes[entry] = time;
+    }
+
+    /**
+     * @return the local arrival time at the target node or -1 if no path was found
+     */
+    public long getArrivalTime() {
+        return currEntry == NO_ENTRY || !finished() ? -1 : arrivalTimes[currEntry];
+    }
+
+    @Override
+    protected boolean finished() {
+        return spt.getAdjNode(currEntry) == to;
+    }
+
+    @Override
+    protected Path extractPath() {
+        if (currEntry == NO_ENTRY || !finished())
+            return createEmptyPath();
+
+        Path path = PathExtractor.extractPath(graph, weighting, spt, currEntry);
+        // the time of the path extractor does not consider the departure time
+        path.setTime(arrivalTimes[currEntry] - departureTime);
+        return path;
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    @Override
+    public String getName() {
+        return weightApprox == null ? Parameters.Algorithms.TD_DIJKSTRA : Parameters.Algorithms.TD_ASTAR;
+    }
+}
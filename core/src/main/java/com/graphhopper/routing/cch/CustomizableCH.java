@@ -0,0 +1,342 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.cch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+import static com.graphhopper.util.Helper.getMemInfo;
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Customizable contraction hierarchies (CCH), see 'Customizable Contraction Hierarchies' by J. Dibbelt, B. Strasser
+ * and D. Wagner. The preparation is split into two phases:
+ * <ol>
+ * <li>the metric-independent contraction that is done once: the nodes are ordered using {@link NestedDissection} and
+ * contracted without any witness searches, i.e. all upward neighbors of a contracted node are connected with each other.
+ * The resulting arcs between a lower and a higher node are stored in arrays indexed by the node rank. The ordering is
+ * the expensive part, so it can be stored with the graph, see {@link #storeRanks} and {@link #loadRanks}.</li>
+ * <li>the customization for a given {@link Weighting}: the weights of all arcs are calculated bottom-up by
+ * enumerating the lower triangles of every arc, see {@link #customize(Weighting)}. This only takes a few array
+ * lookups per triangle and can be done for every new weighting, e.g. for a per-request custom model.</li>
+ * </ol>
+ * Only node-based weightings (without turn costs) are supported.
+ */
+public class CustomizableCH {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomizableCH.class);
+    private static final String RANKS_NAME = "cch_ranks";
+    private final Graph graph;
+    private final int nodes;
+    private final int[] ranks;
+    private final int[] nodesByRank;
+    // the arcs are sorted by the rank of their lower node (tail) and then by the rank of their upper node (head)
+    private final int[] firstArcs;
+    private final int[] arcHeads;
+    // the original edges connecting the tail and head of every arc
+    private final int[] firstArcEdges;
+    private final int[] arcEdges;
+
+    private CustomizableCH(Graph graph, int[] ranks, int[] firstArcs, int[] arcHeads, int[] firstArcEdges, int[] arcEdges) {
+        this.graph = graph;
+        this.nodes = graph.getNodes();
+        this.ranks = ranks;
+        this.nodesByRank = new int[nodes];
+        for (int node = 0; node < nodes; node++)
+            nodesByRank[ranks[node]] = node;
+        this.firstArcs = firstArcs;
+        this.arcHeads = arcHeads;
+        this.firstArcEdges = firstArcEdges;
+        this.arcEdges = arcEdges;
+    }
+
+    /**
+     * Runs the metric-independent preparation using a {@link NestedDissection} ordering
+     */
+    public static CustomizableCH prepare(Graph graph) {
+        return fromRanks(graph, calcRanks(graph));
+    }
+
+    /**
+     * Calculates the {@link NestedDissection} ordering of the given graph, see {@link #fromRanks}
+     */
+    public static int[] calcRanks(Graph graph) {
+        StopWatch sw = new StopWatch().start();
+        int[] ranks = new NestedDissection(graph).calcRanks();
+        LOGGER.info("Calculated nested dissection order for {} nodes, took: {}s, {}", nf(graph.getNodes()), sw.stop().getSeconds(), getMemInfo());
+        return ranks;
+    }
+
+    /**
+     * Stores the given node ranks in the given directory, so they can be loaded with {@link #loadRanks} later.
+     */
+    public static void storeRanks(Directory dir, Graph graph, int[] ranks) {
+        if (ranks.length != graph.getNodes())
+            throw new IllegalArgumentException("There must be a rank for every node, nodes: " + graph.getNodes() + ", ranks: " + ranks.length);
+        DataAccess da = dir.find(RANKS_NAME).create(4L * ranks.length);
+        da.ensureCapacity(4L * ranks.length);
+        for (int node = 0; node < ranks.length; node++)
+            da.setInt(4L * node, ranks[node]);
+        da.setHeader(0, graph.getNodes());
+        da.setHeader(4, graph.getEdges());
+        da.flush();
+        // the ranks are only read at start, so we do not keep them in memory twice
+        dir.close(da);
+    }
+
+    /**
+     * @return the node ranks that were stored for the given graph or null if there are none or if they were stored
+     * for a graph with a different number of nodes or edges
+     */
+    public static int[] loadRanks(Directory dir, Graph graph) {
+        DataAccess da = dir.find(RANKS_NAME);
+        try {
+            if (!da.loadExisting())
+                return null;
+            if (da.getHeader(0) != graph.getNodes() || da.getHeader(4) != graph.getEdges()) {
+                LOGGER.warn("Ignoring the stored CCH node ordering, because it was created for a graph with {} nodes and {} edges, but the graph has {} nodes and {} edges",
+                        da.getHeader(0), da.getHeader(4), graph.getNodes(), graph.getEdges());
+                return null;
+            }
+            int[] ranks = new int[graph.getNodes()];
+            for (int node = 0; node < ranks.length; node++)
+                ranks[node] = da.getInt(4L * node);
+            return ranks;
+        } finally {
+            dir.close(da);
+        }
+    }
+
+    /**
+     * Runs the metric-independent contraction for the given node ranks
+     */
+    public static CustomizableCH fromRanks(Graph graph, int[] ranks) {
+        StopWatch sw = new StopWatch().start();
+        final int nodes = graph.getNodes();
+        if (ranks.length != nodes)
+            throw new IllegalArgumentException("There must be a rank for every node, nodes: " + nodes + ", ranks: " + ranks.length);
+        // we work with the ranks instead of the node ids from here on
+        IntArrayList[] upwardNeighbors = new IntArrayList[nodes];
+        AllEdgesIterator edges = graph.getAllEdges();
+        while (edges.next()) {
+            int a = ranks[edges.getBaseNode()];
+            int b = ranks[edges.getAdjNode()];
+            if (a == b)
+                continue;
+            addUpwardNeighbor(upwardNeighbors, Math.min(a, b), Math.max(a, b));
+        }
+
+        // contract the nodes in rank order: all upward neighbors of a node need to be connected with each other. it is
+        // enough to connect them with the lowest upward neighbor, because its upward neighbors will be connected when
+        // it is contracted itself.
+        int[] firstArcs = new int[nodes + 1];
+        IntArrayList heads = new IntArrayList(graph.getEdges());
+        for (int rank = 0; rank < nodes; rank++) {
+            firstArcs[rank] = heads.size();
+            if (upwardNeighbors[rank] == null)
+                continue;
+            int[] neighbors = upwardNeighbors[rank].toArray();
+            upwardNeighbors[rank] = null;
+            Arrays.sort(neighbors);
+            int count = 0;
+            for (int i = 0; i < neighbors.length; i++)
+                if (i == 0 || neighbors[i] != neighbors[i - 1])
+                    neighbors[count++] = neighbors[i];
+            for (int i = 0; i < count; i++)
+                heads.add(neighbors[i]);
+            for (int i = 1; i < count; i++)
+                addUpwardNeighbor(upwardNeighbors, neighbors[0], neighbors[i]);
+        }
+        firstArcs[nodes] = heads.size();
+        int[] arcHeads = heads.toArray();
+
+        // find the original edges for every arc
+        int[] firstArcEdges = new int[arcHeads.length + 1];
+        edges = graph.getAllEdges();
+        while (edges.next()) {
+            int a = ranks[edges.getBaseNode()];
+            int b = ranks[edges.getAdjNode()];
+            if (a != b)
+                firstArcEdges[findArc(firstArcs, arcHeads, Math.min(a, b), Math.max(a, b)) + 1]++;
+        }
+        for (int arc = 0; arc < arcHeads.length; arc++)
+            firstArcEdges[arc + 1] += firstArcEdges[arc];
+        int[] arcEdges = new int[firstArcEdges[arcHeads.length]];
+        int[] fill = Arrays.copyOf(firstArcEdges, arcHeads.length);
+        edges = graph.getAllEdges();
+        while (edges.next()) {
+            int a = ranks[edges.getBaseNode()];
+            int b = ranks[edges.getAdjNode()];
+            if (a != b)
+                arcEdges[fill[findArc(firstArcs, arcHeads, Math.min(a, b), Math.max(a, b))]++] = edges.getEdge();
+        }
+        LOGGER.info("Finished metric-independent contraction, nodes: {}, edges: {}, arcs: {}, took: {}s, {}",
+                nf(nodes), nf(graph.getEdges()), nf(arcHeads.length), sw.stop().getSeconds(), getMemInfo());
+        return new CustomizableCH(graph, ranks, firstArcs, arcHeads, firstArcEdges, arcEdges);
+    }
+
+    private static void addUpwardNeighbor(IntArrayList[] upwardNeighbors, int lower, int upper) {
+        if (upwardNeighbors[lower] == null)
+            upwardNeighbors[lower] = new IntArrayList(4);
+        upwardNeighbors[lower].add(upper);
+    }
+
+    private static int findArc(int[] firstArcs, int[] arcHeads, int tail, int head) {
+        int arc = Arrays.binarySearch(arcHeads, firstArcs[tail], firstArcs[tail + 1], head);
+        if (arc < 0)
+            throw new IllegalStateException("There is no arc between the nodes with ranks " + tail + " and " + head);
+        return arc;
+    }
+
+    /**
+     * Calculates the weights of all arcs for the given weighting. The weight of an arc is the minimum of the weights
+     * of its original edges and of its lower triangles, i.e. of the paths tail-x-head where x has a lower rank than
+     * tail and head. Processing the nodes in rank order ensures the weights of all arcs of a lower triangle are known
+     * already.
+     */
+    public CustomizedCHGraph customize(Weighting weighting) {
+        if (weighting.hasTurnCosts())
+            throw new IllegalArgumentException("Customizable CH does not support weightings with turn costs: " + weighting);
+        StopWatch sw = new StopWatch().start();
+        final int arcs = arcHeads.length;
+        // every arc can be traversed in two directions: upward (tail to head) is stored at 2 * arc and downward
+        // (head to tail) at 2 * arc + 1. these indices are also used as edge ids of the customized graph.
+        double[] weights = new double[2 * arcs];
+        int[] origEdges = new int[2 * arcs];
+        int[] skippedArcs = new int[4 * arcs];
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        Arrays.fill(origEdges, NO_EDGE);
+
+        BooleanEncodedValue accessEnc = weighting.getFlagEncoder().getAccessEnc();
+        for (int tail = 0; tail < nodes; tail++) {
+            for (int arc = firstArcs[tail]; arc < firstArcs[tail + 1]; arc++) {
+                int headNode = nodesByRank[arcHeads[arc]];
+                for (int i = firstArcEdges[arc]; i < firstArcEdges[arc + 1]; i++) {
+                    // base node is the tail, adj node is the head
+                    EdgeIteratorState edge = graph.getEdgeIteratorState(arcEdges[i], headNode);
+                    double upWeight = edge.get(accessEnc) ? weighting.calcEdgeWeight(edge, false) : Double.POSITIVE_INFINITY;
+                    double downWeight = edge.getReverse(accessEnc) ? weighting.calcEdgeWeight(edge, true) : Double.POSITIVE_INFINITY;
+                    if (upWeight < weights[2 * arc]) {
+                        weights[2 * arc] = upWeight;
+                        origEdges[2 * arc] = edge.getEdge();
+                    }
+                    if (downWeight < weights[2 * arc + 1]) {
+                        weights[2 * arc + 1] = downWeight;
+                        origEdges[2 * arc + 1] = edge.getEdge();
+                    }
+                }
+            }
+        }
+        float origEdgesTime = sw.stop().getSeconds();
+
+        sw = new StopWatch().start();
+        for (int x = 0; x < nodes; x++) {
+            int end = firstArcs[x + 1];
+            for (int i = firstArcs[x]; i < end; i++) {
+                for (int j = i + 1; j < end; j++) {
+                    // the lower triangle x-u-w of the arc u-w
+                    int arc = findArc(firstArcs, arcHeads, arcHeads[i], arcHeads[j]);
+                    // u->x->w
+                    double weight = weights[2 * i + 1] + weights[2 * j];
+                    if (weight < weights[2 * arc]) {
+                        weights[2 * arc] = weight;
+                        origEdges[2 * arc] = NO_EDGE;
+                        skippedArcs[4 * arc] = 2 * i + 1;
+                        skippedArcs[4 * arc + 1] = 2 * j;
+                    }
+                    // w->x->u
+                    weight = weights[2 * j + 1] + weights[2 * i];
+                    if (weight < weights[2 * arc + 1]) {
+                        weights[2 * arc + 1] = weight;
+                        origEdges[2 * arc + 1] = NO_EDGE;
+                        skippedArcs[4 * arc + 2] = 2 * j + 1;
+                        skippedArcs[4 * arc + 3] = 2 * i;
+                    }
+                }
+            }
+        }
+        LOGGER.debug("Customized {} arcs for {}, original edges: {}s, triangles: {}s", nf(arcs), weighting, origEdgesTime, sw.stop().getSeconds());
+        return new CustomizedCHGraph(this, weighting, weights, origEdges, skippedArcs);
+    }
+
+    Graph getGraph() {
+        return graph;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getArcs() {
+        return arcHeads.length;
+    }
+
+    public int getRank(int node) {
+        return ranks[node];
+    }
+
+    int getNodeForRank(int rank) {
+        return nodesByRank[rank];
+    }
+
+    int getFirstArc(int rank) {
+        return firstArcs[rank];
+    }
+
+    int getHeadRank(int arc) {
+        return arcHeads[arc];
+    }
+
+    /**
+     * @return the rank of the lower node of the given arc
+     */
+    int getTailRank(int arc) {
+        // the arcs are sorted by their tail so we can find it without storing it for every arc
+        int pos = Arrays.binarySearch(firstArcs, arc);
+        if (pos >= 0) {
+            // there might be several nodes without any arcs
+            while (firstArcs[pos + 1] == arc)
+                pos++;
+            return pos;
+        }
+        return -pos - 2;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the metric-independent data
+     */
+    public long getCapacityInBytes() {
+        return 4L * (ranks.length + nodesByRank.length + firstArcs.length + arcHeads.length + firstArcEdges.length + arcEdges.length);
+    }
+
+    @Override
+    public String toString() {
+        return "cch|nodes: " + nodes + ", arcs: " + arcHeads.length;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.cch;
+
+import com.graphhopper.json.geo.JsonFeature;
+import com.graphhopper.routing.util.CustomModel;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the most recently used customizations of a {@link CustomizableCH}, so requests that use the same weighting,
+ * e.g. the same custom model, do not need to repeat the customization. The least recently used customizations are
+ * removed when the maximum number of entries or the maximum memory is exceeded.
+ * <p>
+ * The customizations run on a fixed number of threads with a bounded queue, so many requests with different custom
+ * models cannot occupy all cores. Requests that need the same customization at the same time wait for the same task.
+ * Every entry has a version, e.g. the version of the live traffic it was customized for. A request with a newer
+ * version customizes the entry again and replaces it instead of adding another entry.
+ */
+public class CustomizationCache {
+    // the number of customizations that can wait for a free thread, per thread
+    private static final int MAX_QUEUED_PER_THREAD = 10;
+    // the request hints that are read by the weightings, see DefaultWeightingFactory and Router#createWeighting
+    private static final List<String> WEIGHTING_HINTS = Arrays.asList(Parameters.Routing.HEADING_PENALTY,
+            Parameters.Routing.U_TURN_COSTS, Parameters.Routing.BLOCK_AREA, Parameters.Routing.BLOCK_AREA + ".edge_id_max_area",
+            "road_access_destination_factor", "road_access_private_factor",
+            "short_fastest.time_factor", "short_fastest.distance_factor");
+    private final CustomizableCH cch;
+    private final int maxSize;
+    private final ThreadPoolExecutor executor;
+    private long maxBytes = Long.MAX_VALUE;
+    // access ordered, i.e. the first entry is the least recently used one
+    private final LinkedHashMap<String, Entry> customizations = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Future<CustomizedCHGraph>> pending = new HashMap<>();
+    private long bytes;
+
+    /**
+     * @param maxSize the maximum number of customizations that are kept
+     * @param threads the maximum number of customizations that run at the same time
+     */
+    public CustomizationCache(CustomizableCH cch, int maxSize, int threads) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("cache size must not be negative: " + maxSize);
+        if (threads < 1)
+            throw new IllegalArgumentException("there must be at least one customization thread: " + threads);
+        this.cch = cch;
+        this.maxSize = maxSize;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_PER_THREAD * threads), r -> {
+            Thread thread = new Thread(r, "cch-customization-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Limits the memory used by the cached customizations. The most recently used customization is always kept, even
+     * if it alone exceeds the limit.
+     */
+    public CustomizationCache setMaxBytes(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("max bytes must not be negative: " + maxBytes);
+        synchronized (customizations) {
+            this.maxBytes = maxBytes;
+            evict();
+        }
+        return this;
+    }
+
+    /**
+     * Creates a key for the weighting of the given profile and request hints. Only the hints that change the edge
+     * weights are used, hints like the locale or instructions would only fragment the cache. A custom model is
+     * included with the full geometry of its areas, because two areas with the same id can have different shapes.
+     */
+    public static String createKey(String profileName, PMap hints) {
+        StringBuilder sb = new StringBuilder(profileName);
+        for (String hint : WEIGHTING_HINTS) {
+            if (hints.has(hint))
+                sb.append('|').append(hint).append('=').append(hints.getObject(hint, ""));
+        }
+        CustomModel customModel = hints.getObject(CustomModel.KEY, null);
+        if (customModel != null) {
+            sb.append("|custom_model:distance_influence=").append(customModel.getDistanceInfluence()).
+                    append(",heading_penalty=").append(customModel.getHeadingPenalty()).
+                    append(",max_speed_fallback=").append(customModel.getMaxSpeedFallback()).
+                    append(",speed_factor=").append(customModel.getSpeedFactor()).
+                    append(",max_speed=").append(customModel.getMaxSpeed()).
+                    append(",priority=").append(customModel.getPriority()).
+                    append(",areas=");
+            for (Map.Entry<String, JsonFeature> area : new TreeMap<>(customModel.getAreas()).entrySet()) {
+                JsonFeature feature = area.getValue();
+                sb.append('{').append(area.getKey()).append(':').append(feature.getBBox()).append(',').
+                        append(feature.getGeometry() == null ? null : feature.getGeometry().toText()).append('}');
+            }
+        }
+        return sb.toString();
+    }
+
+    public CustomizableCH getCustomizableCH() {
+        return cch;
+    }
+
+    /**
+     * Same as {@link #getOrCustomize(String, Weighting, long)} for weightings without a version.
+     */
+    public CustomizedCHGraph getOrCustomize(String key, Weighting weighting) {
+        return getOrCustomize(key, weighting, 0);
+    }
+
+    /**
+     * @param key     identifies the given weighting, two weightings with the same key and version must yield the same
+     *                edge weights, see {@link #createKey(String, PMap)}
+     * @param version the version of the data the weighting depends on besides the key, e.g. the live traffic. An
+     *                entry with an older version is customized again and replaced, a newer one is used as it is.
+     * @return the cached customization for the given key or a new customization for the given weighting
+     * @throws IllegalStateException if too many customizations are waiting already
+     */
+    public CustomizedCHGraph getOrCustomize(String key, Weighting weighting, long version) {
+        String pendingKey = key + "|version:" + version;
+        Future<CustomizedCHGraph> future;
+        synchronized (customizations) {
+            Entry entry = customizations.get(key);
+            if (entry != null && entry.version >= version)
+                return entry.chGraph;
+            future = pending.get(pendingKey);
+            if (future == null) {
+                try {
+                    future = executor.submit(() -> cch.customize(weighting));
+                } catch (RejectedExecutionException ex) {
+                    throw new IllegalStateException("Too many customizations are running already, try again later", ex);
+                }
+                pending.put(pendingKey, future);
+            }
+        }
+
+        CustomizedCHGraph chGraph;
+        try {
+            chGraph = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the customization of " + key, ex);
+        } catch (ExecutionException ex) {
+            synchronized (customizations) {
+                pending.remove(pendingKey, future);
+            }
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException("Customization of " + key + " failed", ex.getCause());
+        }
+
+        synchronized (customizations) {
+            // only the first request that waited for this customization stores it, unless the cache was cleared
+            // in the meantime, e.g. because the edges were changed
+            if (pending.remove(pendingKey, future)) {
+                Entry entry = customizations.get(key);
+                if (entry == null || entry.version < version)
+                    put(key, new Entry(chGraph, version));
+            }
+        }
+        return chGraph;
+    }
+
+    private void put(String key, Entry entry) {
+        if (maxSize == 0)
+            return;
+        Entry old = customizations.put(key, entry);
+        if (old != null)
+            bytes -= old.chGraph.getCapacityInBytes();
+        bytes += entry.chGraph.getCapacityInBytes();
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Entry> iter = customizations.values().iterator();
+        while (customizations.size() > maxSize || customizations.size() > 1 && bytes > maxBytes) {
+            bytes -= iter.next().chGraph.getCapacityInBytes();
+            iter.remove();
+        }
+    }
+
+    public int size() {
+        synchronized (customizations) {
+            return customizations.size();
+        }
+    }
+
+    /**
+     * @return the approximate number of bytes used by the cached customizations
+     */
+    public long getCapacityInBytes() {
+        synchronized (customizations) {
+            return bytes;
+        }
+    }
+
+    /**
+     * Removes all customizations. Customizations that are still running are not added to the cache anymore.
+     */
+    public void clear() {
+        synchronized (customizations) {
+            customizations.clear();
+            pending.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Removes all customizations and stops the customization threads, the cache cannot be used afterwards.
+     */
+    public void close() {
+        clear();
+        executor.shutdownNow();
+    }
+
+    private static class Entry {
+        final CustomizedCHGraph chGraph;
+        final long version;
+
+        Entry(CustomizedCHGraph chGraph, long version) {
+            this.chGraph = chGraph;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.cch;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * The {@link RoutingCHGraph} of a {@link CustomizableCH} that was customized for one weighting. It can be used with
+ * the usual CH algorithms, e.g. via {@link com.graphhopper.routing.ch.CHRoutingAlgorithmFactory}. Every arc of the
+ * CCH is represented by two directed edges, one for each direction, with their own weight and skipped edges. Edges
+ * that are not shortcuts represent the cheapest original edge between the two nodes. Only the edges leading to nodes
+ * with a higher rank are returned by the edge explorers.
+ */
+public class CustomizedCHGraph implements RoutingCHGraph {
+    private final CustomizableCH cch;
+    private final Graph baseGraph;
+    private final Weighting weighting;
+    private final double[] weights;
+    private final int[] origEdges;
+    private final int[] skippedEdges;
+
+    CustomizedCHGraph(CustomizableCH cch, Weighting weighting, double[] weights, int[] origEdges, int[] skippedEdges) {
+        this.cch = cch;
+        this.baseGraph = cch.getGraph();
+        this.weighting = weighting;
+        this.weights = weights;
+        this.origEdges = origEdges;
+        this.skippedEdges = skippedEdges;
+    }
+
+    @Override
+    public int getNodes() {
+        return cch.getNodes();
+    }
+
+    @Override
+    public int getEdges() {
+        return weights.length;
+    }
+
+    @Override
+    public int getOtherNode(int chEdge, int node) {
+        int arc = chEdge >> 1;
+        int tail = cch.getNodeForRank(cch.getTailRank(arc));
+        int head = cch.getNodeForRank(cch.getHeadRank(arc));
+        if (node == tail)
+            return head;
+        if (node == head)
+            return tail;
+        throw new IllegalArgumentException("Edge " + chEdge + " is not adjacent to node " + node);
+    }
+
+    @Override
+    public boolean isAdjacentToNode(int chEdge, int node) {
+        int arc = chEdge >> 1;
+        return cch.getNodeForRank(cch.getTailRank(arc)) == node || cch.getNodeForRank(cch.getHeadRank(arc)) == node;
+    }
+
+    @Override
+    public RoutingCHEdgeExplorer createInEdgeExplorer() {
+        return new UpwardEdgeIterator(true);
+    }
+
+    @Override
+    public RoutingCHEdgeExplorer createOutEdgeExplorer() {
+        return new UpwardEdgeIterator(false);
+    }
+
+    @Override
+    public RoutingCHEdgeIteratorState getEdgeIteratorState(int chEdge, int adjNode) {
+        int arc = chEdge >> 1;
+        int tail = cch.getNodeForRank(cch.getTailRank(arc));
+        int head = cch.getNodeForRank(cch.getHeadRank(arc));
+        boolean upward = (chEdge & 1) == 0;
+        int from = upward ? tail : head;
+        int to = upward ? head : tail;
+        EdgeState state = new EdgeState();
+        if (adjNode == to) {
+            state.set(chEdge, from, to, false);
+        } else if (adjNode == from) {
+            state.set(chEdge, to, from, true);
+        } else {
+            return null;
+        }
+        return state;
+    }
+
+    @Override
+    public int getLevel(int node) {
+        return cch.getRank(node);
+    }
+
+    @Override
+    public double getTurnWeight(int inEdge, int viaNode, int outEdge) {
+        return weighting.calcTurnWeight(inEdge, viaNode, outEdge);
+    }
+
+    @Override
+    public Graph getBaseGraph() {
+        return baseGraph;
+    }
+
+    @Override
+    public boolean hasTurnCosts() {
+        return false;
+    }
+
+    @Override
+    public boolean isEdgeBased() {
+        return false;
+    }
+
+    @Override
+    public Weighting getWeighting() {
+        return weighting;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the weights of this customization
+     */
+    public long getCapacityInBytes() {
+        return 8L * weights.length + 4L * origEdges.length + 4L * skippedEdges.length;
+    }
+
+    private class EdgeState implements RoutingCHEdgeIteratorState {
+        int edge;
+        int baseNode;
+        int adjNode;
+        // true if the edge leads from the adj node to the base node
+        boolean reverse;
+
+        void set(int edge, int baseNode, int adjNode, boolean reverse) {
+            this.edge = edge;
+            this.baseNode = baseNode;
+            this.adjNode = adjNode;
+            this.reverse = reverse;
+        }
+
+        @Override
+        public int getEdge() {
+            return edge;
+        }
+
+        @Override
+        public int getOrigEdge() {
+            return origEdges[edge];
+        }
+
+        @Override
+        public int getOrigEdgeFirst() {
+            return origEdges[edge];
+        }
+
+        @Override
+        public int getOrigEdgeLast() {
+            return origEdges[edge];
+        }
+
+        @Override
+        public int getBaseNode() {
+            return baseNode;
+        }
+
+        @Override
+        public int getAdjNode() {
+            return adjNode;
+        }
+
+        @Override
+        public boolean isShortcut() {
+            return origEdges[edge] == NO_EDGE;
+        }
+
+        @Override
+        public int getSkippedEdge1() {
+            return skippedEdges[2 * edge];
+        }
+
+        @Override
+        public int getSkippedEdge2() {
+            return skippedEdges[2 * edge + 1];
+        }
+
+        @Override
+        public double getWeight(boolean reverse) {
+            // every edge can only be traversed in one direction
+            return reverse == this.reverse ? weights[edge] : Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public String toString() {
+            return edge + " " + baseNode + "-" + adjNode + (isShortcut() ? " (shortcut)" : "");
+        }
+    }
+
+    private class UpwardEdgeIterator extends EdgeState implements RoutingCHEdgeExplorer, RoutingCHEdgeIterator {
+        // if true the iterator returns the edges leading from the higher nodes to the base node
+        private final boolean incoming;
+        private int arc;
+        private int endArc;
+
+        UpwardEdgeIterator(boolean incoming) {
+            this.incoming = incoming;
+        }
+
+        @Override
+        public RoutingCHEdgeIterator setBaseNode(int baseNode) {
+            int rank = cch.getRank(baseNode);
+            this.baseNode = baseNode;
+            arc = cch.getFirstArc(rank) - 1;
+            endArc = cch.getFirstArc(rank + 1);
+            return this;
+        }
+
+        @Override
+        public boolean next() {
+            while (++arc < endArc) {
+                int edge = incoming ? 2 * arc + 1 : 2 * arc;
+                if (Double.isInfinite(weights[edge]))
+                    continue;
+                set(edge, baseNode, cch.getNodeForRank(cch.getHeadRank(arc)), incoming);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.cch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Calculates a metric-independent node ordering for customizable contraction hierarchies using nested dissection:
+ * The nodes of a cell are split into two halves at the median coordinate of the longer side of the cell's bounding
+ * box. The boundary nodes of the smaller side of the cut form a separator that gets the highest ranks of the cell,
+ * then both halves are ordered recursively. Since no edge connects the two halves once the separator is removed,
+ * contracting the nodes in this order does not add shortcuts between them.
+ * <p>
+ * This is a simple geometric variant of the partitioners usually used for CCH (like inertial flow). It ignores the
+ * edge directions and flags as the ordering has to be usable for every weighting.
+ */
+public class NestedDissection {
+    private final Graph graph;
+    private final NodeAccess nodeAccess;
+    private int maxCellSize = 16;
+
+    public NestedDissection(Graph graph) {
+        this.graph = graph;
+        this.nodeAccess = graph.getNodeAccess();
+    }
+
+    /**
+     * Cells with at most this number of nodes are not split any further
+     */
+    public NestedDissection setMaxCellSize(int maxCellSize) {
+        if (maxCellSize < 1)
+            throw new IllegalArgumentException("maxCellSize has to be at least 1, but was: " + maxCellSize);
+        this.maxCellSize = maxCellSize;
+        return this;
+    }
+
+    /**
+     * @return the rank of every node, i.e. an array that contains every number in [0, nodes) once. Nodes with a
+     * higher rank are contracted later.
+     */
+    public int[] calcRanks() {
+        final int nodes = graph.getNodes();
+        int[] ranks = new int[nodes];
+        // the cell each node currently belongs to, separator nodes are removed from all cells
+        int[] cellIds = new int[nodes];
+        int cellCount = 1;
+        int nextRank = nodes - 1;
+        EdgeExplorer explorer = graph.createEdgeExplorer(EdgeFilter.ALL_EDGES);
+        Deque<int[]> cells = new ArrayDeque<>();
+        int[] allNodes = new int[nodes];
+        for (int node = 0; node < nodes; node++)
+            allNodes[node] = node;
+        if (nodes > 0)
+            cells.push(allNodes);
+        while (!cells.isEmpty()) {
+            int[] cell = cells.pop();
+            if (cell.length <= maxCellSize) {
+                for (int node : cell)
+                    ranks[node] = nextRank--;
+                continue;
+            }
+            sortAlongLongerSide(cell);
+            int mid = cell.length / 2;
+            int idA = cellCount++;
+            int idB = cellCount++;
+            for (int i = 0; i < cell.length; i++)
+                cellIds[cell[i]] = i < mid ? idA : idB;
+
+            IntArrayList boundaryA = findBoundary(cell, 0, mid, idB, cellIds, explorer);
+            IntArrayList boundaryB = findBoundary(cell, mid, cell.length, idA, cellIds, explorer);
+            IntArrayList separator = boundaryA.size() <= boundaryB.size() ? boundaryA : boundaryB;
+            for (int i = 0; i < separator.size(); i++) {
+                int node = separator.get(i);
+                ranks[node] = nextRank--;
+                cellIds[node] = -1;
+            }
+            // the separator nodes get higher ranks than all nodes of the two halves, which are pushed last and thus
+            // get their ranks before any other cell that is still on the stack
+            pushCell(cells, cell, 0, mid, idA, cellIds);
+            pushCell(cells, cell, mid, cell.length, idB, cellIds);
+        }
+        if (nextRank != -1)
+            throw new IllegalStateException("Not all nodes were ranked, remaining: " + (nextRank + 1));
+        return ranks;
+    }
+
+    private void sortAlongLongerSide(int[] cell) {
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int node : cell) {
+            double lat = nodeAccess.getLat(node);
+            double lon = nodeAccess.getLon(node);
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLon = Math.max(maxLon, lon);
+        }
+        double lonFactor = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+        boolean useLat = maxLat - minLat >= (maxLon - minLon) * lonFactor;
+        // sort by the quantized coordinate, the node id in the lower bits makes the keys unique
+        long[] keys = new long[cell.length];
+        for (int i = 0; i < cell.length; i++) {
+            int node = cell[i];
+            long coord = useLat
+                    ? Math.round((nodeAccess.getLat(node) + 90) * 1e6)
+                    : Math.round((nodeAccess.getLon(node) + 180) * 1e6);
+            keys[i] = (coord << 32) | node;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < cell.length; i++)
+            cell[i] = (int) keys[i];
+    }
+
+    private static IntArrayList findBoundary(int[] cell, int from, int to, int otherCellId, int[] cellIds, EdgeExplorer explorer) {
+        IntArrayList boundary = new IntArrayList();
+        for (int i = from; i < to; i++) {
+            EdgeIterator iter = explorer.setBaseNode(cell[i]);
+            while (iter.next()) {
+                if (cellIds[iter.getAdjNode()] == otherCellId) {
+                    boundary.add(cell[i]);
+                    break;
+                }
+            }
+        }
+        return boundary;
+    }
+
+    private static void pushCell(Deque<int[]> cells, int[] cell, int from, int to, int cellId, int[] cellIds) {
+        IntArrayList nodes = new IntArrayList(to - from);
+        for (int i = from; i < to; i++)
+            if (cellIds[cell[i]] == cellId)
+                nodes.add(cell[i]);
+        if (!nodes.isEmpty())
+            cells.push(nodes.toArray());
+    }
+}
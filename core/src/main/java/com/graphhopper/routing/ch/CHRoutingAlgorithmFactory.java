@@ -36,6 +36,8 @@ import static com.graphhopper.util.Parameters.Routing.MAX_VISITED_NODES;
  */
 public class CHRoutingAlgorithmFactory {
     private final RoutingCHGraph routingCHGraph;
+    private SPTStore sptFrom;
+    private SPTStore sptTo;
 
     public CHRoutingAlgorithmFactory(RoutingCHGraph routingCHGraph, QueryGraph queryGraph) {
         this(new QueryRoutingCHGraph(routingCHGraph, queryGraph));
@@ -45,16 +47,28 @@ public class CHRoutingAlgorithmFactory {
         this.routingCHGraph = routingCHGraph;
     }
 
+    /**
+     * Makes the created algorithms reuse the given shortest path tree stores, see {@link SPTStorePool}. Only one of
+     * the created algorithms must run at a time.
+     */
+    public CHRoutingAlgorithmFactory setSPTStores(SPTStore sptFrom, SPTStore sptTo) {
+        this.sptFrom = sptFrom;
+        this.sptTo = sptTo;
+        return this;
+    }
+
     public BidirRoutingAlgorithm createAlgo(PMap opts) {
-        BidirRoutingAlgorithm algo = routingCHGraph.isEdgeBased()
+        AbstractBidirCHAlgo algo = routingCHGraph.isEdgeBased()
                 ? createAlgoEdgeBased(routingCHGraph, opts)
                 : createAlgoNodeBased(routingCHGraph, opts);
+        if (sptFrom != null && sptTo != null)
+            algo.setSPTStores(sptFrom, sptTo);
         if (opts.has(MAX_VISITED_NODES))
             algo.setMaxVisitedNodes(opts.getInt(MAX_VISITED_NODES, Integer.MAX_VALUE));
         return algo;
     }
 
-    private BidirRoutingAlgorithm createAlgoEdgeBased(RoutingCHGraph g, PMap opts) {
+    private AbstractBidirCHAlgo createAlgoEdgeBased(RoutingCHGraph g, PMap opts) {
         // todo: AStar is much faster for edge-based but currently we cannot make it the default because
         //       of #2061
         String defaultAlgo = DIJKSTRA_BI;
@@ -73,7 +87,7 @@ public class CHRoutingAlgorithmFactory {
         }
     }
 
-    private BidirRoutingAlgorithm createAlgoNodeBased(RoutingCHGraph g, PMap opts) {
+    private AbstractBidirCHAlgo createAlgoNodeBased(RoutingCHGraph g, PMap opts) {
         // use dijkstra by default for node-based (its faster)
         String defaultAlgo = DIJKSTRA_BI;
         String algo = opts.getString(ALGORITHM, defaultAlgo);
@@ -19,7 +19,7 @@
 package com.graphhopper.routing.ch;
 
 import com.graphhopper.routing.DefaultBidirPathExtractor;
-import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.SPTStore;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.util.EdgeIterator;
@@ -67,8 +67,8 @@ public class EdgeBasedCHBidirPathExtractor extends DefaultBidirPathExtractor {
     }
 
     @Override
-    public int getIncEdge(SPTEntry sptEntry) {
-        return ((CHEntry) sptEntry).incEdge;
+    public int getIncEdge(SPTStore spt, int entry) {
+        return spt.getIncEdge(entry);
     }
 
 }
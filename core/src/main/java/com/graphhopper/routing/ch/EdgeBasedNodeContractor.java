@@ -24,7 +24,10 @@ import com.graphhopper.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.function.IntPredicate;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.nf;
@@ -63,6 +66,8 @@ class EdgeBasedNodeContractor implements NodeContractor {
 
     private int[] hierarchyDepths;
     private EdgeBasedWitnessPathSearcher witnessPathSearcher;
+    // the contractor that owns the contraction state, this contractor itself unless it was created as worker
+    private final EdgeBasedNodeContractor owner;
 
     // counts the total number of added shortcuts
     private int addedShortcutsCount;
@@ -82,6 +87,17 @@ class EdgeBasedNodeContractor implements NodeContractor {
         this.shortcutHandler = shortcutHandler;
         this.pMap = pMap;
         extractParams(pMap);
+        this.owner = this;
+    }
+
+    private EdgeBasedNodeContractor(EdgeBasedNodeContractor owner) {
+        this.prepareGraph = owner.prepareGraph;
+        this.pMap = owner.pMap;
+        extractParams(pMap);
+        this.owner = owner;
+        initExplorers();
+        // the hierarchy depths are only changed while contracting nodes, which only the owner does
+        hierarchyDepths = owner.hierarchyDepths;
     }
 
     private void extractParams(PMap pMap) {
@@ -92,13 +108,22 @@ class EdgeBasedNodeContractor implements NodeContractor {
 
     @Override
     public void initFromGraph() {
+        initExplorers();
+        hierarchyDepths = new int[prepareGraph.getNodes()];
+    }
+
+    private void initExplorers() {
         inEdgeExplorer = prepareGraph.createInEdgeExplorer();
         outEdgeExplorer = prepareGraph.createOutEdgeExplorer();
         existingShortcutExplorer = prepareGraph.createOutEdgeExplorer();
         sourceNodeOrigInEdgeExplorer = prepareGraph.createInOrigEdgeExplorer();
         targetNodeOrigOutEdgeExplorer = prepareGraph.createOutOrigEdgeExplorer();
         witnessPathSearcher = new EdgeBasedWitnessPathSearcher(prepareGraph, pMap);
-        hierarchyDepths = new int[prepareGraph.getNodes()];
+    }
+
+    @Override
+    public NodeContractor createWorker() {
+        return new EdgeBasedNodeContractor(owner);
     }
 
     @Override
@@ -139,6 +164,33 @@ class EdgeBasedNodeContractor implements NodeContractor {
         activeStats = addingStats;
         stats().stopWatch.start();
         findAndHandlePrepareShortcuts(node, this::addShortcutsToPrepareGraph);
+        return insertShortcutsAndDisconnect(node);
+    }
+
+    @Override
+    public Shortcuts findShortcuts(int node, IntPredicate ignoredNodes) {
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        EdgeBasedShortcuts shortcuts = new EdgeBasedShortcuts();
+        // the entries returned by the witness path searcher are created for every search, so we can keep them
+        witnessPathSearcher.setIgnoredNodes(ignoredNodes);
+        findAndHandlePrepareShortcuts(node, shortcuts::add);
+        witnessPathSearcher.setIgnoredNodes(null);
+        stats().stopWatch.stop();
+        return shortcuts;
+    }
+
+    @Override
+    public IntContainer contractNode(int node, Shortcuts shortcuts) {
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        EdgeBasedShortcuts s = (EdgeBasedShortcuts) shortcuts;
+        for (int i = 0; i < s.edgesFrom.size(); i++)
+            addShortcutsToPrepareGraph(s.edgesFrom.get(i), s.edgesTo.get(i), s.origEdgeCounts.get(i));
+        return insertShortcutsAndDisconnect(node);
+    }
+
+    private IntContainer insertShortcutsAndDisconnect(int node) {
         insertShortcuts(node);
         IntContainer neighbors = prepareGraph.disconnect(node);
         updateHierarchyDepthsOfNeighbors(node, neighbors);
@@ -383,7 +435,9 @@ class EdgeBasedNodeContractor implements NodeContractor {
 
     @Override
     public void close() {
-        prepareGraph.close();
+        // workers share the graph with their owner
+        if (owner == this)
+            prepareGraph.close();
         inEdgeExplorer = null;
         outEdgeExplorer = null;
         existingShortcutExplorer = null;
@@ -427,6 +481,18 @@ class EdgeBasedNodeContractor implements NodeContractor {
         numOrigEdges += origEdgeCount;
     }
 
+    private static class EdgeBasedShortcuts implements Shortcuts {
+        private final List<PrepareCHEntry> edgesFrom = new ArrayList<>();
+        private final List<PrepareCHEntry> edgesTo = new ArrayList<>();
+        private final IntArrayList origEdgeCounts = new IntArrayList();
+
+        private void add(PrepareCHEntry edgeFrom, PrepareCHEntry edgeTo, int origEdgeCount) {
+            edgesFrom.add(edgeFrom);
+            edgesTo.add(edgeTo);
+            origEdgeCounts.add(origEdgeCount);
+        }
+    }
+
     public static class Params {
         // todo: optimize
         private float edgeQuotientWeight = 1;
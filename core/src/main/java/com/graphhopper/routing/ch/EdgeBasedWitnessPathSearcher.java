@@ -27,6 +27,7 @@ import com.graphhopper.util.PMap;
 
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.function.IntPredicate;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.EdgeIterator.NO_EDGE;
@@ -75,6 +76,7 @@ public class EdgeBasedWitnessPathSearcher {
     private int sourceEdge;
     private int sourceNode;
     private int centerNode;
+    private IntPredicate ignoredNodes;
     private double bestPathWeight;
     private int bestPathIncKey;
     private boolean bestPathIsBridgePath;
@@ -220,6 +222,8 @@ public class EdgeBasedWitnessPathSearcher {
                 if (isInfinite(weight)) {
                     continue;
                 }
+                if (ignoredNodes != null && iter.getAdjNode() != centerNode && ignoredNodes.test(iter.getAdjNode()))
+                    continue;
                 boolean isPathToCenter = isPathToCenter(currKey) && iter.getAdjNode() == centerNode;
                 boolean isZeroWeightLoop = fromNode == targetNode && edgeWeight <= MAX_ZERO_WEIGHT_LOOP;
 
@@ -306,6 +310,14 @@ public class EdgeBasedWitnessPathSearcher {
         currentBatchStats.reset();
     }
 
+    /**
+     * The search will not expand any nodes (other than the center node) for which the given predicate returns true.
+     * Use null to not ignore any nodes.
+     */
+    public void setIgnoredNodes(IntPredicate ignoredNodes) {
+        this.ignoredNodes = ignoredNodes;
+    }
+
     public void close() {
         prepareGraph.close();
         outEdgeExplorer = null;
@@ -0,0 +1,344 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.*;
+import com.graphhopper.routing.SPTStore;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+
+import java.util.Arrays;
+
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * Calculates a many-to-many matrix of shortest path weights (and optionally distances and times) on a node-based
+ * {@link RoutingCHGraph} using the bucket-based approach described in 'Computing Many-to-Many Shortest Paths Using
+ * Highway Hierarchies' (Knopp et al.):
+ * <p>
+ * First we run one upward (backward) search for every target and store the settled nodes together with the weight to
+ * the target in a bucket of the settled node. Then we run one upward (forward) search for every source and scan the
+ * buckets of all settled nodes to find the best meeting node for every target. This way a NxM matrix only requires N+M
+ * CH searches instead of NxM queries.
+ * <p>
+ * To calculate distances and times the (partial) paths need to be unpacked. We do this only once per edge/shortcut and
+ * direction and cache the results for the lifetime of this object.
+ * <p>
+ * All searches of one calculation share a single {@link SPTStore}, so the search data structures are allocated only
+ * once per matrix (or not at all when a pooled store is passed in, see {@link #setSPTStore}).
+ */
+public class ManyToManyCH {
+    // we have to be careful because of rounded shortcut weights in combination with virtual via nodes, see #1574
+    private static final double STALL_PRECISION = 0.001;
+    private final RoutingCHGraph graph;
+    private final RoutingCHEdgeExplorer inEdgeExplorer;
+    private final RoutingCHEdgeExplorer outEdgeExplorer;
+    private final CHLevelFilter levelFilter;
+    private final ShortcutUnpacker shortcutUnpacker;
+    private final LongDoubleHashMap distanceCache = new LongDoubleHashMap();
+    private final LongLongHashMap timeCache = new LongLongHashMap();
+    private boolean calcDistancesAndTimes = true;
+    // temporary values used by the shortcut unpacker
+    private double tmpDistance;
+    private long tmpTime;
+    private int visitedNodes;
+    private SPTStore sptStore;
+    // the distance and time of every entry of the store, indexed by the entry id
+    private double[] entryDistances = new double[64];
+    private long[] entryTimes = new long[64];
+
+    // the bucket entries: for every settled node of the backward searches we store the target index and the
+    // weight/distance/time to the target. the entries of one node are linked via bucketNext
+    private final IntIntHashMap bucketHeads = new IntIntHashMap();
+    private final IntArrayList bucketNext = new IntArrayList();
+    private final IntArrayList bucketTargets = new IntArrayList();
+    private final DoubleArrayList bucketWeights = new DoubleArrayList();
+    private final DoubleArrayList bucketDistances = new DoubleArrayList();
+    private final LongArrayList bucketTimes = new LongArrayList();
+
+    public ManyToManyCH(RoutingCHGraph graph) {
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("Many-to-many calculation is not supported for edge-based CH yet");
+        this.graph = graph;
+        inEdgeExplorer = graph.createInEdgeExplorer();
+        outEdgeExplorer = graph.createOutEdgeExplorer();
+        levelFilter = new CHLevelFilter(graph);
+        shortcutUnpacker = new ShortcutUnpacker(graph, (edge, reverse, prevOrNextEdgeId) -> {
+            tmpDistance += edge.getDistance();
+            tmpTime += graph.getWeighting().calcEdgeMillis(edge, reverse);
+        }, false);
+    }
+
+    /**
+     * @param calcDistancesAndTimes if false only the weights are calculated which is faster, because we do not need
+     *                              to unpack any shortcuts
+     */
+    public ManyToManyCH setCalcDistancesAndTimes(boolean calcDistancesAndTimes) {
+        this.calcDistancesAndTimes = calcDistancesAndTimes;
+        return this;
+    }
+
+    /**
+     * Makes the searches use the given (reusable) store instead of allocating their own, e.g. one of the thread-local
+     * stores of {@link com.graphhopper.routing.SPTStorePool}. The store must not be used by another search while the
+     * matrix is calculated.
+     */
+    public ManyToManyCH setSPTStore(SPTStore sptStore) {
+        this.sptStore = sptStore;
+        return this;
+    }
+
+    /**
+     * Calculates the matrix for the given source and target nodes. Disconnected source/target pairs have an infinite
+     * weight, distance and time (Long.MAX_VALUE).
+     */
+    public Result calcMatrix(int[] sources, int[] targets) {
+        Result result = new Result(sources.length, targets.length, calcDistancesAndTimes);
+        visitedNodes = 0;
+        if (sptStore == null)
+            sptStore = new SPTStore(Math.max(64, graph.getNodes() / 100), true);
+        clearBuckets();
+        for (int t = 0; t < targets.length; t++) {
+            final int targetIdx = t;
+            search(targets[t], true, (node, weight, distance, time) -> {
+                int entry = bucketTargets.size();
+                bucketTargets.add(targetIdx);
+                bucketWeights.add(weight);
+                bucketDistances.add(distance);
+                bucketTimes.add(time);
+                int idx = bucketHeads.indexOf(node);
+                if (bucketHeads.indexExists(idx)) {
+                    bucketNext.add(bucketHeads.indexGet(idx));
+                    bucketHeads.indexReplace(idx, entry);
+                } else {
+                    bucketNext.add(-1);
+                    bucketHeads.indexInsert(idx, node, entry);
+                }
+            });
+        }
+        for (int s = 0; s < sources.length; s++) {
+            final double[] weightRow = result.weights[s];
+            final double[] distanceRow = calcDistancesAndTimes ? result.distances[s] : null;
+            final long[] timeRow = calcDistancesAndTimes ? result.times[s] : null;
+            search(sources[s], false, (node, weight, distance, time) -> {
+                for (int entry = bucketHeads.getOrDefault(node, -1); entry >= 0; entry = bucketNext.get(entry)) {
+                    int targetIdx = bucketTargets.get(entry);
+                    double w = weight + bucketWeights.get(entry);
+                    if (w < weightRow[targetIdx]) {
+                        weightRow[targetIdx] = w;
+                        if (calcDistancesAndTimes) {
+                            distanceRow[targetIdx] = distance + bucketDistances.get(entry);
+                            timeRow[targetIdx] = time + bucketTimes.get(entry);
+                        }
+                    }
+                }
+            });
+        }
+        clearBuckets();
+        return result;
+    }
+
+    /**
+     * @return the number of nodes settled by all forward and backward searches of the last calculation
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private void clearBuckets() {
+        bucketHeads.clear();
+        bucketNext.clear();
+        bucketTargets.clear();
+        bucketWeights.clear();
+        bucketDistances.clear();
+        bucketTimes.clear();
+    }
+
+    /**
+     * Runs a full upward Dijkstra search starting at the given node and calls the given callback for every settled
+     * node that cannot be stalled.
+     */
+    private void search(int startNode, boolean reverse, SettledNodeCallback callback) {
+        RoutingCHEdgeExplorer explorer = reverse ? inEdgeExplorer : outEdgeExplorer;
+        RoutingCHEdgeExplorer stallExplorer = reverse ? outEdgeExplorer : inEdgeExplorer;
+        sptStore.clear();
+        int root = sptStore.addRoot(startNode, 0, 0);
+        sptStore.put(startNode, root);
+        setDistanceAndTime(root, 0, 0);
+        sptStore.push(root);
+        while (!sptStore.isHeapEmpty()) {
+            int curr = sptStore.poll();
+            visitedNodes++;
+            if (isStallable(curr, stallExplorer, reverse))
+                continue;
+            int currNode = sptStore.getAdjNode(curr);
+            double currWeight = sptStore.getWeight(curr);
+            callback.onSettled(currNode, currWeight, entryDistances[curr], entryTimes[curr]);
+
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(currNode);
+            while (iter.next()) {
+                if (iter.getEdge() == sptStore.getEdge(curr) || !levelFilter.accept(iter))
+                    continue;
+                double weight = currWeight + iter.getWeight(reverse);
+                if (Double.isInfinite(weight))
+                    continue;
+                int entry = sptStore.get(iter.getAdjNode());
+                if (entry == SPTStore.NO_ENTRY) {
+                    entry = sptStore.add(iter.getEdge(), iter.getAdjNode(), weight, weight, curr);
+                    sptStore.put(iter.getAdjNode(), entry);
+                    sptStore.push(entry);
+                } else if (sptStore.isInHeap(entry) && sptStore.getWeight(entry) > weight) {
+                    // entries that are not in the heap anymore are settled already
+                    sptStore.update(entry, iter.getEdge(), weight, weight, curr);
+                } else {
+                    continue;
+                }
+                if (calcDistancesAndTimes) {
+                    calcDistanceAndTime(iter, reverse);
+                    setDistanceAndTime(entry, entryDistances[curr] + tmpDistance, entryTimes[curr] + tmpTime);
+                } else {
+                    setDistanceAndTime(entry, 0, 0);
+                }
+            }
+        }
+    }
+
+    private void setDistanceAndTime(int entry, double distance, long time) {
+        if (entry >= entryDistances.length) {
+            int newLength = Math.max(entry + 1, entryDistances.length + (entryDistances.length >> 1));
+            entryDistances = Arrays.copyOf(entryDistances, newLength);
+            entryTimes = Arrays.copyOf(entryTimes, newLength);
+        }
+        entryDistances[entry] = distance;
+        entryTimes[entry] = time;
+    }
+
+    /**
+     * Checks whether or not the given (settled) entry can be reached with a smaller weight from one of its neighbors,
+     * which means it cannot be part of a shortest path (stall-on-demand), see also DijkstraBidirectionCH
+     */
+    private boolean isStallable(int entry, RoutingCHEdgeExplorer stallExplorer, boolean reverse) {
+        RoutingCHEdgeIterator iter = stallExplorer.setBaseNode(sptStore.getAdjNode(entry));
+        while (iter.next()) {
+            if (iter.getEdge() == sptStore.getEdge(entry))
+                continue;
+            int adjEntry = sptStore.get(iter.getAdjNode());
+            if (adjEntry != SPTStore.NO_ENTRY && sptStore.getWeight(adjEntry) + iter.getWeight(!reverse) - sptStore.getWeight(entry) < -STALL_PRECISION)
+                return true;
+        }
+        return false;
+    }
+
+    private void calcDistanceAndTime(RoutingCHEdgeIteratorState edge, boolean reverse) {
+        // the direction we are actually travelling along this edge
+        int from = reverse ? edge.getAdjNode() : edge.getBaseNode();
+        int to = reverse ? edge.getBaseNode() : edge.getAdjNode();
+        long key = ((long) edge.getEdge() << 1) | (from <= to ? 0 : 1);
+        int idx = distanceCache.indexOf(key);
+        if (distanceCache.indexExists(idx)) {
+            tmpDistance = distanceCache.indexGet(idx);
+            tmpTime = timeCache.get(key);
+            return;
+        }
+        tmpDistance = 0;
+        tmpTime = 0;
+        if (reverse)
+            shortcutUnpacker.visitOriginalEdgesBwd(edge.getEdge(), edge.getAdjNode(), false, NO_EDGE);
+        else
+            shortcutUnpacker.visitOriginalEdgesFwd(edge.getEdge(), edge.getAdjNode(), false, NO_EDGE);
+        distanceCache.indexInsert(idx, key, tmpDistance);
+        timeCache.put(key, tmpTime);
+    }
+
+    private interface SettledNodeCallback {
+        void onSettled(int node, double weight, double distance, long time);
+    }
+
+    private static class CHLevelFilter {
+        private final RoutingCHGraph graph;
+        private final int maxNodes;
+
+        CHLevelFilter(RoutingCHGraph graph) {
+            this.graph = graph;
+            maxNodes = graph.getBaseGraph().getBaseGraph().getNodes();
+        }
+
+        boolean accept(RoutingCHEdgeIteratorState edgeState) {
+            int base = edgeState.getBaseNode();
+            int adj = edgeState.getAdjNode();
+            // always accept virtual edges, see #288
+            if (base >= maxNodes || adj >= maxNodes)
+                return true;
+            if (edgeState.isShortcut())
+                return true;
+            return graph.getLevel(base) <= graph.getLevel(adj);
+        }
+    }
+
+    public static class Result {
+        private final double[][] weights;
+        private final double[][] distances;
+        private final long[][] times;
+
+        Result(int sources, int targets, boolean withDistancesAndTimes) {
+            weights = new double[sources][targets];
+            for (double[] row : weights)
+                Arrays.fill(row, Double.POSITIVE_INFINITY);
+            if (withDistancesAndTimes) {
+                distances = new double[sources][targets];
+                times = new long[sources][targets];
+                for (double[] row : distances)
+                    Arrays.fill(row, Double.POSITIVE_INFINITY);
+                for (long[] row : times)
+                    Arrays.fill(row, Long.MAX_VALUE);
+            } else {
+                distances = null;
+                times = null;
+            }
+        }
+
+        public double getWeight(int source, int target) {
+            return weights[source][target];
+        }
+
+        /**
+         * @throws IllegalStateException if the distances were not calculated
+         */
+        public double getDistance(int source, int target) {
+            if (distances == null)
+                throw new IllegalStateException("Distances were not calculated");
+            return distances[source][target];
+        }
+
+        /**
+         * @return the time in milliseconds
+         * @throws IllegalStateException if the times were not calculated
+         */
+        public long getTime(int source, int target) {
+            if (times == null)
+                throw new IllegalStateException("Times were not calculated");
+            return times[source][target];
+        }
+
+        public boolean isConnected(int source, int target) {
+            return !Double.isInfinite(weights[source][target]);
+        }
+    }
+}
@@ -17,11 +17,14 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.StopWatch;
 
 import java.util.Locale;
+import java.util.function.IntPredicate;
 
 import static com.graphhopper.routing.ch.CHParameters.EDGE_DIFFERENCE_WEIGHT;
 import static com.graphhopper.routing.ch.CHParameters.ORIGINAL_EDGE_COUNT_WEIGHT;
@@ -30,6 +33,8 @@ import static com.graphhopper.util.Helper.nf;
 class NodeBasedNodeContractor implements NodeContractor {
     private final CHPreparationGraph prepareGraph;
     private final Params params = new Params();
+    // the contractor that owns the contraction state, this contractor itself unless it was created as worker
+    private final NodeBasedNodeContractor owner;
     private ShortcutHandler shortcutHandler;
     private PrepareGraphEdgeExplorer inEdgeExplorer;
     private PrepareGraphEdgeExplorer outEdgeExplorer;
@@ -49,6 +54,15 @@ class NodeBasedNodeContractor implements NodeContractor {
         this.prepareGraph = prepareGraph;
         extractParams(pMap);
         this.shortcutHandler = shortcutHandler;
+        this.owner = this;
+    }
+
+    private NodeBasedNodeContractor(NodeBasedNodeContractor owner) {
+        this.prepareGraph = owner.prepareGraph;
+        this.params.edgeDifferenceWeight = owner.params.edgeDifferenceWeight;
+        this.params.originalEdgesCountWeight = owner.params.originalEdgesCountWeight;
+        this.owner = owner;
+        initFromGraph();
     }
 
     private void extractParams(PMap pMap) {
@@ -74,9 +88,16 @@ class NodeBasedNodeContractor implements NodeContractor {
         meanDegree = prepareGraph.getOriginalEdges() / prepareGraph.getNodes();
     }
 
+    @Override
+    public NodeContractor createWorker() {
+        return new NodeBasedNodeContractor(owner);
+    }
+
     @Override
     public void close() {
-        prepareGraph.close();
+        // workers share the graph with their owner
+        if (owner == this)
+            prepareGraph.close();
         shortcutHandler = null;
         inEdgeExplorer = null;
         outEdgeExplorer = null;
@@ -119,6 +140,30 @@ class NodeBasedNodeContractor implements NodeContractor {
     @Override
     public IntContainer contractNode(int node) {
         long degree = findAndHandleShortcuts(node, this::addOrUpdateShortcut);
+        return insertShortcutsAndDisconnect(node, degree);
+    }
+
+    @Override
+    public Shortcuts findShortcuts(int node, IntPredicate ignoredNodes) {
+        NodeBasedShortcuts shortcuts = new NodeBasedShortcuts();
+        witnessPathSearcher.setIgnoredNodes(ignoredNodes);
+        shortcuts.degree = findAndHandleShortcuts(node, shortcuts::add);
+        witnessPathSearcher.setIgnoredNodes(null);
+        return shortcuts;
+    }
+
+    @Override
+    public IntContainer contractNode(int node, Shortcuts shortcuts) {
+        NodeBasedShortcuts s = (NodeBasedShortcuts) shortcuts;
+        for (int i = 0; i < s.weights.size(); i++) {
+            int idx = i * 6;
+            addOrUpdateShortcut(s.ints.get(idx), s.ints.get(idx + 1), s.weights.get(i),
+                    s.ints.get(idx + 2), s.ints.get(idx + 3), s.ints.get(idx + 4), s.ints.get(idx + 5));
+        }
+        return insertShortcutsAndDisconnect(node, s.degree);
+    }
+
+    private IntContainer insertShortcutsAndDisconnect(int node, long degree) {
         insertShortcuts(node);
         // put weight factor on meanDegree instead of taking the average => meanDegree is more stable
         meanDegree = (meanDegree * 2 + degree) / 3;
@@ -270,7 +315,7 @@ class NodeBasedNodeContractor implements NodeContractor {
     private int getMaxVisitedNodesEstimate() {
         // todo: we return 0 here if meanDegree is < 1, which is not really what we want, but changing this changes
         // the node contraction order and requires re-optimizing the parameters of the graph contraction
-        return (int) meanDegree * 100;
+        return (int) owner.meanDegree * 100;
     }
 
     @FunctionalInterface
@@ -280,6 +325,21 @@ class NodeBasedNodeContractor implements NodeContractor {
                             int incomingEdge, int inOrigEdgeCount);
     }
 
+    private static class NodeBasedShortcuts implements Shortcuts {
+        // fromNode, toNode, outgoingEdge, outOrigEdgeCount, incomingEdge, inOrigEdgeCount for each shortcut
+        private final IntArrayList ints = new IntArrayList();
+        private final DoubleArrayList weights = new DoubleArrayList();
+        private long degree;
+
+        private void add(int fromNode, int toNode, double weight,
+                         int outgoingEdge, int outOrigEdgeCount,
+                         int incomingEdge, int inOrigEdgeCount) {
+            ints.add(fromNode, toNode, outgoingEdge, outOrigEdgeCount);
+            ints.add(incomingEdge, inOrigEdgeCount);
+            weights.add(weight);
+        }
+    }
+
     public static class Params {
         // default values were optimized for Unterfranken
         private float edgeDifferenceWeight = 10;
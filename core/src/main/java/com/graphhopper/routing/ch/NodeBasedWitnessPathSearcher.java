@@ -23,6 +23,7 @@ import com.graphhopper.routing.DijkstraOneToMany;
 import com.graphhopper.util.Helper;
 
 import java.util.Arrays;
+import java.util.function.IntPredicate;
 
 /**
  * Used to find witness paths during node-based CH preparation. Essentially this is like {@link DijkstraOneToMany},
@@ -40,6 +41,7 @@ public class NodeBasedWitnessPathSearcher {
     protected double[] weights;
     private IntFloatBinaryHeap heap;
     private int ignoreNode = -1;
+    private IntPredicate ignoredNodes;
     private int visitedNodes;
     private boolean doClear = true;
     private int currNode, to;
@@ -187,8 +189,17 @@ public class NodeBasedWitnessPathSearcher {
         ignoreNode = node;
     }
 
+    /**
+     * Additionally to the node set by {@link #ignoreNode(int)} the search will ignore all nodes for which the given
+     * predicate returns true. Use null to not ignore any further nodes.
+     */
+    public void setIgnoredNodes(IntPredicate ignoredNodes) {
+        this.ignoredNodes = ignoredNodes;
+    }
+
     private boolean accept(PrepareGraphEdgeIterator iter) {
-        return ignoreNode < 0 || iter.getAdjNode() != ignoreNode;
+        return (ignoreNode < 0 || iter.getAdjNode() != ignoreNode)
+                && (ignoredNodes == null || !ignoredNodes.test(iter.getAdjNode()));
     }
 
     private boolean isMaxVisitedNodesExceeded() {
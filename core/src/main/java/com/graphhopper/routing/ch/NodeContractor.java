@@ -20,6 +20,8 @@ package com.graphhopper.routing.ch;
 
 import com.carrotsearch.hppc.IntContainer;
 
+import java.util.function.IntPredicate;
+
 public interface NodeContractor {
     void initFromGraph();
 
@@ -48,4 +50,37 @@ public interface NodeContractor {
     float getDijkstraSeconds();
 
     void prepareContraction();
+
+    /**
+     * Creates a contractor for the same graph that can be used in a separate thread to calculate node priorities and
+     * to find shortcuts using {@link #findShortcuts(int, IntPredicate)}. The worker shares the contraction state (like the hierarchy
+     * depths) with this contractor, but uses its own explorers, witness path searcher and statistics. Workers must
+     * only be used while the graph is not changed, i.e. while no node is contracted.
+     */
+    NodeContractor createWorker();
+
+    /**
+     * Runs the witness searches that are required to contract the given node, but does not change the graph.
+     *
+     * @param ignoredNodes witness paths must not lead via these nodes, e.g. because they are contracted at the same
+     *                     time as the given node. Shortcuts that are found this way remain valid when the ignored
+     *                     nodes are contracted before the given node.
+     * @return the shortcuts that need to be added when the node is contracted, see {@link #contractNode(int, Shortcuts)}
+     */
+    Shortcuts findShortcuts(int node, IntPredicate ignoredNodes);
+
+    /**
+     * Contracts the given node like {@link #contractNode(int)}, but instead of running the witness searches again it
+     * adds the given shortcuts that were found by this contractor or one of its workers. The shortcuts are only valid
+     * as long as the neighborhood of the node was not changed since they were found.
+     *
+     * @return the set of nodes adjacent to this node (before contraction)
+     */
+    IntContainer contractNode(int node, Shortcuts shortcuts);
+
+    /**
+     * The shortcuts found by {@link #findShortcuts(int, IntPredicate)}. The content depends on the contractor implementation.
+     */
+    interface Shortcuts {
+    }
 }
@@ -17,7 +17,9 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
+import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.coll.MinHeapWithUpdate;
 import com.graphhopper.routing.util.AbstractAlgoPreparation;
@@ -30,8 +32,12 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.getMemInfo;
@@ -63,6 +69,11 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation {
     private final Params params;
     private final Graph graph;
     private NodeContractor nodeContractor;
+    private CHPreparationGraph prepareGraph;
+    private int contractionThreads = 1;
+    // only used for parallel contraction, see contractNodesInParallel
+    private NodeContractor[] workers = new NodeContractor[0];
+    private ExecutorService executorService;
     private final int nodes;
     private NodeOrderingProvider nodeOrderingProvider;
     private int maxLevel;
@@ -98,6 +109,9 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation {
         params.setNeighborUpdatePercentage(pMap.getInt(NEIGHBOR_UPDATES, params.getNeighborUpdatePercentage()));
         params.setNodesContractedPercentage(pMap.getInt(CONTRACTED_NODES, params.getNodesContractedPercentage()));
         params.setLogMessagesPercentage(pMap.getInt(LOG_MESSAGES, params.getLogMessagesPercentage()));
+        contractionThreads = pMap.getInt(CONTRACTION_THREADS, contractionThreads);
+        if (contractionThreads < 1)
+            throw new IllegalArgumentException(CONTRACTION_THREADS + " has to be at least 1, but was: " + contractionThreads);
         return this;
     }
 
@@ -143,6 +157,13 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation {
         setMaxLevelOnAllNodes();
         if (nodeOrderingProvider != null) {
             contractNodesUsingFixedNodeOrdering();
+        } else if (contractionThreads > 1) {
+            executorService = Executors.newFixedThreadPool(contractionThreads);
+            try {
+                contractNodesInParallel();
+            } finally {
+                executorService.shutdown();
+            }
         } else {
             contractNodesUsingHeuristicNodeOrdering();
         }
@@ -157,7 +178,6 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation {
         // not simply prepare contraction hierarchies, but instead it also serves as some kind of 'container' to give
         // access to the preparations in the GraphHopper class. If this was not so we could make this a lot cleaner here,
         // declare variables final and would not need all these close() methods...
-        CHPreparationGraph prepareGraph;
         if (chConfig.getTraversalMode().isEdgeBased()) {
             TurnCostStorage turnCostStorage = chGraph.getBaseGraph().getTurnCostStorage();
             if (turnCostStorage == null) {
@@ -310,6 +330,227 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation {
         _close();
     }
 
+    /**
+     * Works like {@link #contractNodesUsingHeuristicNodeOrdering()}, but contracts a batch of nodes in every round.
+     * The nodes of a batch are taken from the front of the queue such that no two of them are adjacent or share a
+     * neighbor, so they can be contracted without affecting each other. The witness searches for these nodes and the
+     * priority updates run concurrently, only the shortcuts are inserted by a single thread. The node priorities are
+     * not as up-to-date as for the sequential contraction, which usually means a few more shortcuts.
+     */
+    private void contractNodesInParallel() {
+        workers = new NodeContractor[contractionThreads];
+        for (int i = 0; i < workers.length; i++)
+            workers[i] = nodeContractor.createWorker();
+
+        StopWatch sw = new StopWatch().start();
+        logger.info("Building initial queue of nodes to be contracted: {} nodes, {} threads, {}", nodes, contractionThreads, getMemInfo());
+        final float[] priorities = new float[nodes];
+        // we calculate the initial priorities before preparing the node contractor, see contractNodesUsingHeuristicNodeOrdering
+        updatePrioritiesOfRemainingNodesInParallel(priorities);
+        logger.info("Finished building queue, took: {}s, {}", sw.stop().getSeconds(), getMemInfo());
+        nodeContractor.prepareContraction();
+        final int initSize = sortedNodes.size();
+        int level = 0;
+        checkCounter = 0;
+        final long logSize = params.getLogMessagesPercentage() == 0
+                ? Long.MAX_VALUE
+                : Math.round(Math.max(10, initSize * (params.getLogMessagesPercentage() / 100d)));
+        final long periodicUpdatesCount = params.getPeriodicUpdatesPercentage() == 0
+                ? Long.MAX_VALUE
+                : Math.round(Math.max(10, initSize * (params.getPeriodicUpdatesPercentage() / 100d)));
+        int updateCounter = 0;
+        final long lastNodesLazyUpdates = Math.round(initSize * (params.getLastNodesLazyUpdatePercentage() / 100d));
+        final long nodesToAvoidContract = Math.round(initSize * ((100 - params.getNodesContractedPercentage()) / 100d));
+        final boolean neighborUpdate = (params.getNeighborUpdatePercentage() != 0);
+
+        PrepareGraphEdgeExplorer inExplorer = prepareGraph.createInEdgeExplorer();
+        PrepareGraphEdgeExplorer outExplorer = prepareGraph.createOutEdgeExplorer();
+        // a node is blocked for the current round if it or one of its neighbors was added to the batch
+        final int[] blockedInRound = new int[nodes];
+        final int[] batchRounds = new int[nodes];
+        final IntArrayList batch = new IntArrayList();
+        final IntArrayList rejected = new IntArrayList();
+        final IntArrayList nodesToUpdate = new IntArrayList();
+        final IntHashSet neighborSet = new IntHashSet();
+        long nextPeriodicUpdate = periodicUpdatesCount;
+        long nextLog = 0;
+        int round = 0;
+        while (!sortedNodes.isEmpty()) {
+            stopIfInterrupted();
+            if (checkCounter >= nextPeriodicUpdate) {
+                updatePrioritiesOfRemainingNodesInParallel(priorities);
+                updateCounter++;
+                nextPeriodicUpdate += periodicUpdatesCount;
+                if (sortedNodes.isEmpty())
+                    throw new IllegalStateException("Cannot prepare as no unprepared nodes where found. Called preparation twice?");
+            }
+            if (checkCounter >= nextLog) {
+                logHeuristicStats(updateCounter);
+                nextLog += logSize;
+            }
+
+            // select the batch of nodes for this round
+            round++;
+            final int currentRound = round;
+            final int maxBatchSize = (int) Math.min(Math.max(contractionThreads, sortedNodes.size() / 100),
+                    nodesToAvoidContract == 0 ? Integer.MAX_VALUE : sortedNodes.size() - nodesToAvoidContract + 1);
+            batch.clear();
+            rejected.clear();
+            while (!sortedNodes.isEmpty() && batch.size() < maxBatchSize && rejected.size() < 2 * maxBatchSize) {
+                int node = sortedNodes.poll();
+                if (isBlocked(node, currentRound, blockedInRound, inExplorer, outExplorer)) {
+                    rejected.add(node);
+                    continue;
+                }
+                block(node, currentRound, blockedInRound, inExplorer, outExplorer);
+                batch.add(node);
+            }
+            checkCounter += batch.size();
+            for (int i = 0; i < rejected.size(); i++)
+                sortedNodes.push(rejected.get(i), priorities[rejected.get(i)]);
+
+            if (!sortedNodes.isEmpty() && sortedNodes.size() < lastNodesLazyUpdates) {
+                // lazy updates: the nodes whose priority increased too much are put back into the queue
+                lazyUpdateSW.start();
+                runInParallel(batch.size(), (worker, i) -> priorities[batch.get(i)] = worker.calculatePriority(batch.get(i)));
+                int kept = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    int node = batch.get(i);
+                    if (!sortedNodes.isEmpty() && priorities[node] > sortedNodes.peekValue())
+                        sortedNodes.push(node, priorities[node]);
+                    else
+                        batch.set(kept++, node);
+                }
+                batch.elementsCount = kept;
+                lazyUpdateSW.stop();
+                if (batch.isEmpty())
+                    continue;
+            }
+
+            // find the shortcuts for all nodes of the batch, witness paths must not use the other nodes of the batch
+            contractionSW.start();
+            for (int i = 0; i < batch.size(); i++)
+                batchRounds[batch.get(i)] = currentRound;
+            final NodeContractor.Shortcuts[] shortcuts = new NodeContractor.Shortcuts[batch.size()];
+            runInParallel(batch.size(), (worker, i) -> shortcuts[i] = worker.findShortcuts(batch.get(i),
+                    n -> batchRounds[n] == currentRound && n != batch.get(i)));
+
+            // the actual contraction changes the graph and is done sequentially
+            neighborSet.clear();
+            for (int i = 0; i < batch.size(); i++) {
+                int node = batch.get(i);
+                chGraph.setLevel(node, level++);
+                IntContainer neighbors = nodeContractor.contractNode(node, shortcuts[i]);
+                neighborSet.addAll(neighbors);
+            }
+            contractionSW.stop();
+
+            if (sortedNodes.size() < nodesToAvoidContract)
+                // skipped nodes are already set to maxLevel
+                break;
+
+            if (neighborUpdate) {
+                neighborUpdateSW.start();
+                nodesToUpdate.clear();
+                for (IntCursor neighbor : neighborSet) {
+                    if (!isContracted(neighbor.value) && rand.nextInt(100) < params.getNeighborUpdatePercentage())
+                        nodesToUpdate.add(neighbor.value);
+                }
+                runInParallel(nodesToUpdate.size(), (worker, i) -> priorities[nodesToUpdate.get(i)] = worker.calculatePriority(nodesToUpdate.get(i)));
+                for (int i = 0; i < nodesToUpdate.size(); i++)
+                    sortedNodes.update(nodesToUpdate.get(i), priorities[nodesToUpdate.get(i)]);
+                neighborUpdateSW.stop();
+            }
+        }
+
+        nodeContractor.finishContraction();
+
+        logHeuristicStats(updateCounter);
+
+        logger.info(
+                "new shortcuts: " + nf(nodeContractor.getAddedShortcutsCount())
+                        + ", initSize:" + nf(initSize)
+                        + ", " + chConfig.getWeighting()
+                        + ", threads:" + contractionThreads
+                        + ", rounds:" + round
+                        + ", periodic:" + params.getPeriodicUpdatesPercentage()
+                        + ", lazy:" + params.getLastNodesLazyUpdatePercentage()
+                        + ", neighbor:" + params.getNeighborUpdatePercentage()
+                        + ", " + getTimesAsString()
+                        + ", " + Helper.getMemInfo());
+
+        _close();
+    }
+
+    private boolean isBlocked(int node, int round, int[] blockedInRound, PrepareGraphEdgeExplorer inExplorer, PrepareGraphEdgeExplorer outExplorer) {
+        if (blockedInRound[node] == round)
+            return true;
+        PrepareGraphEdgeIterator iter = outExplorer.setBaseNode(node);
+        while (iter.next())
+            if (blockedInRound[iter.getAdjNode()] == round)
+                return true;
+        iter = inExplorer.setBaseNode(node);
+        while (iter.next())
+            if (blockedInRound[iter.getAdjNode()] == round)
+                return true;
+        return false;
+    }
+
+    private void block(int node, int round, int[] blockedInRound, PrepareGraphEdgeExplorer inExplorer, PrepareGraphEdgeExplorer outExplorer) {
+        blockedInRound[node] = round;
+        PrepareGraphEdgeIterator iter = outExplorer.setBaseNode(node);
+        while (iter.next())
+            blockedInRound[iter.getAdjNode()] = round;
+        iter = inExplorer.setBaseNode(node);
+        while (iter.next())
+            blockedInRound[iter.getAdjNode()] = round;
+    }
+
+    private void updatePrioritiesOfRemainingNodesInParallel(float[] priorities) {
+        periodicUpdateSW.start();
+        sortedNodes.clear();
+        IntArrayList remainingNodes = new IntArrayList(nodes);
+        for (int node = 0; node < nodes; node++) {
+            if (!isContracted(node))
+                remainingNodes.add(node);
+        }
+        runInParallel(remainingNodes.size(), (worker, i) -> priorities[remainingNodes.get(i)] = worker.calculatePriority(remainingNodes.get(i)));
+        for (int i = 0; i < remainingNodes.size(); i++)
+            sortedNodes.push(remainingNodes.get(i), priorities[remainingNodes.get(i)]);
+        periodicUpdateSW.stop();
+    }
+
+    /**
+     * Runs the given task for all indices in [0, size) using the workers. Every worker is used by one thread only.
+     */
+    private void runInParallel(int size, WorkerTask task) {
+        AtomicInteger nextIndex = new AtomicInteger();
+        List<Callable<Object>> callables = new ArrayList<>(workers.length);
+        for (NodeContractor worker : workers) {
+            callables.add(() -> {
+                for (int i = nextIndex.getAndIncrement(); i < size; i = nextIndex.getAndIncrement())
+                    task.run(worker, i);
+                return null;
+            });
+        }
+        try {
+            for (Future<Object> future : executorService.invokeAll(callables))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    private interface WorkerTask {
+        void run(NodeContractor worker, int index);
+    }
+
     private void contractNodesUsingFixedNodeOrdering() {
         nodeContractor.prepareContraction();
         final int nodesToContract = nodeOrderingProvider.getNumNodes();
@@ -376,7 +617,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation {
     }
 
     public long getDijkstraCount() {
-        return nodeContractor.getDijkstraCount();
+        long count = nodeContractor.getDijkstraCount();
+        for (NodeContractor worker : workers)
+            count += worker.getDijkstraCount();
+        return count;
     }
 
     public long getShortcuts() {
@@ -412,6 +656,9 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation {
         float otherTime = totalTime - (periodicUpdateTime + lazyUpdateTime + neighborUpdateTime + contractionTime);
         // dijkstra time is included in the others
         float dijkstraTime = nodeContractor.getDijkstraSeconds();
+        for (NodeContractor worker : workers)
+            // the workers run concurrently, so this is the sum of their times, not the elapsed time
+            dijkstraTime += worker.getDijkstraSeconds();
         return String.format(Locale.ROOT,
                 "t(total): %6.2f,  t(period): %6.2f, t(lazy): %6.2f, t(neighbor): %6.2f, t(contr): %6.2f, t(other) : %6.2f, dijkstra-ratio: %6.2f%%",
                 totalTime, periodicUpdateTime, lazyUpdateTime, neighborUpdateTime, contractionTime, otherTime, dijkstraTime / totalTime * 100);
@@ -434,6 +681,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation {
 
     private void _close() {
         nodeContractor.close();
+        for (NodeContractor worker : workers)
+            worker.close();
         sortedNodes = null;
     }
 
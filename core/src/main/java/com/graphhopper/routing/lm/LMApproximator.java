@@ -38,6 +38,8 @@ public class LMApproximator implements WeightApproximator {
     private int[] activeLandmarkIndices;
     private int[] weightsFromActiveLandmarksToT;
     private int[] weightsFromTToActiveLandmarks;
+    // the 'from' and 'to' weights of all landmarks for the node that is currently approximated
+    private final short[] landmarkWeights;
     private double epsilon = 1;
     private int towerNodeNextToT = -1;
     private double weightFromTToTowerNode;
@@ -66,6 +68,7 @@ public class LMApproximator implements WeightApproximator {
         Arrays.fill(activeLandmarkIndices, -1);
         weightsFromActiveLandmarksToT = new int[activeCount];
         weightsFromTToActiveLandmarks = new int[activeCount];
+        landmarkWeights = new short[lms.getLandmarkCount() * 2];
 
         this.graph = graph;
         this.weighting = weighting;
@@ -114,15 +117,16 @@ public class LMApproximator implements WeightApproximator {
 
     private double getRemainingWeightUnderestimationUpToTowerNode(int v) {
         int maxWeightInt = 0;
+        lms.getWeights(v, landmarkWeights);
         for (int i = 0; i < activeLandmarkIndices.length; i++) {
-            int resultInt = approximateForLandmark(i, v);
+            int resultInt = approximateForLandmark(i);
             maxWeightInt = Math.max(maxWeightInt, resultInt);
         }
         // Round down, we need to be an underestimator.
         return (maxWeightInt - 1) * factor;
     }
 
-    private int approximateForLandmark(int i, int v) {
+    private int approximateForLandmark(int i) {
         // ---> means shortest path, d means length of shortest path
         // but remember that d(v,t) != d(t,v)
         //
@@ -153,8 +157,8 @@ public class LMApproximator implements WeightApproximator {
         //
         // ...and we can get the right-hand sides of III) and IV) by multiplying those of II) and I) by -1.
 
-        int rhs1Int = weightsFromActiveLandmarksToT[i] - lms.getFromWeight(activeLandmarkIndices[i], v);
-        int rhs2Int = lms.getToWeight(activeLandmarkIndices[i], v) - weightsFromTToActiveLandmarks[i];
+        int rhs1Int = weightsFromActiveLandmarksToT[i] - lms.getFromWeight(landmarkWeights, activeLandmarkIndices[i]);
+        int rhs2Int = lms.getToWeight(landmarkWeights, activeLandmarkIndices[i]) - weightsFromTToActiveLandmarks[i];
 
         int resultInt;
         if (reverse) {
@@ -175,9 +179,9 @@ public class LMApproximator implements WeightApproximator {
         Dijkstra dijkstra = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED) {
             @Override
             protected boolean finished() {
-                towerNodeNextToT = currEdge.adjNode;
-                weightFromTToTowerNode = currEdge.weight;
-                return currEdge.adjNode < maxBaseNodes;
+                towerNodeNextToT = spt.getAdjNode(currEntry);
+                weightFromTToTowerNode = spt.getWeight(currEntry);
+                return towerNodeNextToT < maxBaseNodes;
             }
 
             // We only expect a very short search
@@ -53,12 +53,15 @@ public class LMRoutingAlgorithmFactory implements RoutingAlgorithmFactory {
             double epsilon = opts.getHints().getDouble(Parameters.Algorithms.AStar.EPSILON, 1);
             AStar algo = new AStar(g, weighting, opts.getTraversalMode());
             algo.setApproximation(getApproximator(g, activeLM, epsilon));
+            if (opts.getSPTStore() != null)
+                algo.setSPTStore(opts.getSPTStore());
             algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
             return algo;
         } else if (ASTAR_BI.equalsIgnoreCase(algoStr) || Helper.isEmpty(algoStr)) {
             double epsilon = opts.getHints().getDouble(Parameters.Algorithms.AStarBi.EPSILON, 1);
             AStarBidirection algo = new AStarBidirection(g, weighting, opts.getTraversalMode());
             algo.setApproximation(getApproximator(g, activeLM, epsilon));
+            RoutingAlgorithmFactorySimple.setSPTStores(algo, opts);
             algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
             return algo;
         } else if (ALT_ROUTE.equalsIgnoreCase(algoStr)) {
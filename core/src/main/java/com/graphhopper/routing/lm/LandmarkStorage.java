@@ -19,13 +19,10 @@ package com.graphhopper.routing.lm;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
-import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.IntSet;
-import com.carrotsearch.hppc.predicates.IntObjectPredicate;
-import com.carrotsearch.hppc.procedures.IntObjectProcedure;
 import com.graphhopper.coll.MapEntry;
 import com.graphhopper.routing.DijkstraBidirectionRef;
-import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.SPTStore;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.subnetwork.SubnetworkStorage;
 import com.graphhopper.routing.subnetwork.TarjanSCC;
@@ -47,8 +44,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class stores the landmark nodes and the weights from and to all other nodes in every
@@ -367,7 +362,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
                         explorer.setStartNode(lmNodeId);
                         explorer.setFilter(blockedEdges, true, true);
                         explorer.runAlgo();
-                        maxWeight = Math.max(maxWeight, explorer.getLastEntry().weight);
+                        maxWeight = Math.max(maxWeight, explorer.getLastWeight());
                     }
                     break;
                 }
@@ -536,6 +531,35 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         return res;
     }
 
+    /**
+     * Reads the 'from' and 'to' weights of all landmarks for the specified node with a single bulk read. The raw
+     * values need to be converted via {@link #getFromWeight(short[], int)} and {@link #getToWeight(short[], int)}.
+     *
+     * @param weights acts as output and needs to have a length of at least twice the landmark count
+     */
+    void getWeights(int node, short[] weights) {
+        landmarkWeightDA.getShorts((long) node * LM_ROW_LENGTH, weights, 0, landmarks * 2);
+    }
+
+    /**
+     * @return the weight from the landmark to the node, where weights was filled via {@link #getWeights}
+     */
+    int getFromWeight(short[] weights, int landmarkIndex) {
+        return toWeight(weights[landmarkIndex * 2 + FROM_OFFSET / 2]);
+    }
+
+    /**
+     * @return the weight from the node to the landmark, where weights was filled via {@link #getWeights}
+     */
+    int getToWeight(short[] weights, int landmarkIndex) {
+        return toWeight(weights[landmarkIndex * 2 + TO_OFFSET / 2]);
+    }
+
+    private static int toWeight(short value) {
+        int res = (int) value & 0x0000FFFF;
+        return res == SHORT_INFINITY ? SHORT_MAX : res;
+    }
+
     /**
      * @return false if the value capacity was reached and instead of the real value the SHORT_MAX was stored.
      */
@@ -745,7 +769,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
 
         if (explorer.getFromCount() >= minimumNodes) {
             // 1b) we have one landmark, now determine the other landmarks
-            landmarkNodeIdsToReturn[0] = explorer.getLastEntry().adjNode;
+            landmarkNodeIdsToReturn[0] = explorer.getLastNode();
             for (int lmIdx = 0; lmIdx < landmarkNodeIdsToReturn.length - 1; lmIdx++) {
                 explorer = new LandmarkExplorer(graph, this, initWeighting, traversalMode, true);
                 explorer.setFilter(blockedEdges, true, true);
@@ -754,7 +778,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
                     explorer.setStartNode(landmarkNodeIdsToReturn[j]);
                 }
                 explorer.runAlgo();
-                landmarkNodeIdsToReturn[lmIdx + 1] = explorer.getLastEntry().adjNode;
+                landmarkNodeIdsToReturn[lmIdx + 1] = explorer.getLastNode();
                 if (logDetails && lmIdx % logOffset == 0)
                     LOGGER.info("Finding landmarks [" + lmConfig + "] in network [" + explorer.getVisitedNodes() + "]. "
                             + "Progress " + (int) (100.0 * lmIdx / landmarkNodeIdsToReturn.length) + "%, " + Helper.getMemInfo());
@@ -771,7 +795,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         // todo: rename 'from' to 'reverse' (and flip it) ? 'from' is used in many places for node ids and 'reverse' is mostly used for the direction
         private boolean from;
         private final LandmarkStorage lms;
-        private SPTEntry lastEntry;
+        private int lastEntry = SPTStore.NO_ENTRY;
 
         public LandmarkExplorer(Graph g, LandmarkStorage lms, Weighting weighting, TraversalMode tMode, boolean from) {
             super(g, weighting, tMode);
@@ -800,17 +824,28 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         }
 
         int getFromCount() {
-            return bestWeightMapFrom.size();
+            // for node-based traversal every entry is registered for its node
+            return sptFrom.size();
         }
 
         public void runAlgo() {
             super.runAlgo();
         }
 
-        SPTEntry getLastEntry() {
+        private SPTStore getSPT() {
+            return from ? sptFrom : sptTo;
+        }
+
+        int getLastNode() {
+            if (!finished())
+                throw new IllegalStateException("Cannot get last node if not yet finished");
+            return getSPT().getAdjNode(lastEntry);
+        }
+
+        double getLastWeight() {
             if (!finished())
                 throw new IllegalStateException("Cannot get max weight if not yet finished");
-            return lastEntry;
+            return getSPT().getWeight(lastEntry);
         }
 
         @Override
@@ -828,49 +863,41 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
             if (subnetworkId > 127)
                 throw new IllegalStateException("Too many subnetworks " + subnetworkId);
 
-            final AtomicBoolean failed = new AtomicBoolean(false);
-            IntObjectMap<SPTEntry> map = from ? bestWeightMapFrom : bestWeightMapTo;
-            map.forEach(new IntObjectPredicate<SPTEntry>() {
-                @Override
-                public boolean apply(int nodeId, SPTEntry value) {
-                    int sn = subnetworks[nodeId];
-                    if (sn != subnetworkId) {
-                        if (sn != UNSET_SUBNETWORK && sn != UNCLEAR_SUBNETWORK) {
-                            // this is ugly but can happen in real world, see testWithOnewaySubnetworks
-                            LOGGER.error("subnetworkId for node " + nodeId
-                                    + " (" + createPoint(graph, nodeId) + ") already set (" + sn + "). " + "Cannot change to " + subnetworkId);
-
-                            failed.set(true);
-                            return false;
-                        }
-
-                        subnetworks[nodeId] = (byte) subnetworkId;
+            SPTStore spt = getSPT();
+            for (int entry = 0; entry < spt.size(); entry++) {
+                int nodeId = spt.getTraversalId(entry);
+                int sn = subnetworks[nodeId];
+                if (sn != subnetworkId) {
+                    if (sn != UNSET_SUBNETWORK && sn != UNCLEAR_SUBNETWORK) {
+                        // this is ugly but can happen in real world, see testWithOnewaySubnetworks
+                        LOGGER.error("subnetworkId for node " + nodeId
+                                + " (" + createPoint(graph, nodeId) + ") already set (" + sn + "). " + "Cannot change to " + subnetworkId);
+                        return true;
                     }
-                    return true;
+
+                    subnetworks[nodeId] = (byte) subnetworkId;
                 }
-            });
-            return failed.get();
+            }
+            return false;
         }
 
         public void initLandmarkWeights(final int lmIdx, int lmNodeId, final long rowSize, final int offset) {
-            IntObjectMap<SPTEntry> map = from ? bestWeightMapFrom : bestWeightMapTo;
-            final AtomicInteger maxedout = new AtomicInteger(0);
-            final Map.Entry<Double, Double> finalMaxWeight = new MapEntry<>(0d, 0d);
-
-            map.forEach(new IntObjectProcedure<SPTEntry>() {
-                @Override
-                public void apply(int nodeId, SPTEntry b) {
-                    if (!lms.setWeight(nodeId * rowSize + lmIdx * 4 + offset, b.weight)) {
-                        maxedout.incrementAndGet();
-                        finalMaxWeight.setValue(Math.max(b.weight, finalMaxWeight.getValue()));
-                    }
+            SPTStore spt = getSPT();
+            int maxedout = 0;
+            double maxWeight = 0;
+            for (int entry = 0; entry < spt.size(); entry++) {
+                int nodeId = spt.getTraversalId(entry);
+                double weight = spt.getWeight(entry);
+                if (!lms.setWeight(nodeId * rowSize + lmIdx * 4 + offset, weight)) {
+                    maxedout++;
+                    maxWeight = Math.max(weight, maxWeight);
                 }
-            });
+            }
 
-            if ((double) maxedout.get() / map.size() > 0.1) {
+            if ((double) maxedout / spt.size() > 0.1) {
                 LOGGER.warn("landmark " + lmIdx + " (" + nodeAccess.getLatitude(lmNodeId) + "," + nodeAccess.getLongitude(lmNodeId) + "): " +
-                        "too many weights were maxed out (" + maxedout.get() + "/" + map.size() + "). Use a bigger factor than " + lms.factor
-                        + ". For example use maximum_lm_weight: " + finalMaxWeight.getValue() * 1.2 + " in your LM profile definition");
+                        "too many weights were maxed out (" + maxedout + "/" + spt.size() + "). Use a bigger factor than " + lms.factor
+                        + ". For example use maximum_lm_weight: " + maxWeight * 1.2 + " in your LM profile definition");
             }
         }
     }
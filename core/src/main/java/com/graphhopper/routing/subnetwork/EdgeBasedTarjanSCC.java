@@ -117,7 +117,7 @@ public class EdgeBasedTarjanSCC {
                 findComponentForEdgeKey(edgeKeyFwd, iter.getAdjNode());
             int edgeKeyBwd = createEdgeKey(iter, true);
             if (edgeKeyIndex[edgeKeyBwd] == -1)
-                findComponentForEdgeKey(edgeKeyBwd, iter.getAdjNode());
+                findComponentForEdgeKey(edgeKeyBwd, iter.getBaseNode());
         }
         return components;
     }
@@ -175,17 +175,21 @@ public class EdgeBasedTarjanSCC {
                     if (q == p)
                         break;
                 }
-                component.trimToSize();
-                assert component.size() > 1;
-                components.numComponents++;
-                components.numEdgeKeys += component.size();
-                components.components.add(component);
-                if (component.size() > components.biggestComponent.size())
-                    components.biggestComponent = component;
+                addComponent(component);
             }
         }
     }
 
+    private void addComponent(IntArrayList component) {
+        component.trimToSize();
+        assert component.size() > 1;
+        components.numComponents++;
+        components.numEdgeKeys += component.size();
+        components.components.add(component);
+        if (component.size() > components.biggestComponent.size())
+            components.biggestComponent = component;
+    }
+
     /**
      * Runs Tarjan's algorithm using an explicit stack.
      */
@@ -200,7 +204,7 @@ public class EdgeBasedTarjanSCC {
             // has already been found by the first search. So we cannot simply push them both and start the search once.
             int edgeKeyBwd = createEdgeKey(iter, true);
             if (edgeKeyIndex[edgeKeyBwd] == -1)
-                pushFindComponentForEdgeKey(edgeKeyBwd, iter.getAdjNode());
+                pushFindComponentForEdgeKey(edgeKeyBwd, iter.getBaseNode());
             startSearch();
         }
         return components;
@@ -246,6 +250,98 @@ public class EdgeBasedTarjanSCC {
         }
     }
 
+    /**
+     * Finds the same components as {@link #findComponents()}, but first determines the component of a well connected
+     * pivot edge key using forward and backward searches that run in parallel, see {@link ForwardBackwardSearch}. Only
+     * the remaining edge keys are then handled by the sequential algorithm. The turn cost provider is called
+     * concurrently.
+     */
+    public ConnectedComponents findComponentsParallel(int threads) {
+        ForwardBackwardSearch search = new ForwardBackwardSearch(2 * graph.getEdges(), threads,
+                this::createForwardExplorer, this::createBackwardExplorer);
+        int pivot = search.choosePivot();
+        if (pivot < 0)
+            return findComponents();
+
+        IntArrayList pivotComponent = search.findComponent(pivot);
+        // the edge keys of the pivot component are marked as visited, but they are not on the stack
+        for (int i = 0; i < pivotComponent.size(); i++) {
+            int edgeKey = pivotComponent.get(i);
+            edgeKeyIndex[edgeKey] = currIndex;
+            edgeKeyLowLink[edgeKey] = currIndex;
+            currIndex++;
+        }
+        findComponents();
+        if (pivotComponent.size() > 1) {
+            addComponent(pivotComponent);
+        } else {
+            components.numComponents++;
+            components.numEdgeKeys++;
+            if (!excludeSingleEdgeComponents)
+                components.singleEdgeComponents.set(pivot);
+        }
+        return components;
+    }
+
+    /**
+     * The neighbors of an edge key p are the edge keys q that leave the node p arrives at, like in
+     * {@link #findComponents()}
+     */
+    private ForwardBackwardSearch.VertexExplorer createForwardExplorer() {
+        EdgeExplorer outExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(accessEnc));
+        return (p, consumer) -> {
+            int edge = getEdgeFromKey(p);
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            int node = p % 2 == 0 ? edgeState.getAdjNode() : edgeState.getBaseNode();
+            EdgeIterator iter = outExplorer.setBaseNode(node);
+            while (iter.next()) {
+                if (isTurnRestricted(edge, node, iter.getEdge()))
+                    continue;
+                int q = createEdgeKey(iter, false);
+                consumer.accept(q);
+                if (iter.getBaseNode() == iter.getAdjNode())
+                    consumer.accept(q + 1);
+            }
+        };
+    }
+
+    /**
+     * The inverse of {@link #createForwardExplorer()}: the neighbors of an edge key q are the edge keys p that arrive
+     * at the node q leaves from, if q can be reached from there at all.
+     */
+    private ForwardBackwardSearch.VertexExplorer createBackwardExplorer() {
+        EdgeExplorer outExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(accessEnc));
+        EdgeExplorer allExplorer = graph.createEdgeExplorer();
+        return (q, consumer) -> {
+            int edge = getEdgeFromKey(q);
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            int node = q % 2 == 0 ? edgeState.getBaseNode() : edgeState.getAdjNode();
+            boolean accessible = false;
+            EdgeIterator iter = outExplorer.setBaseNode(node);
+            while (iter.next()) {
+                if (iter.getEdge() != edge)
+                    continue;
+                int edgeKey = createEdgeKey(iter, false);
+                if (edgeKey == q || iter.getBaseNode() == iter.getAdjNode() && edgeKey + 1 == q) {
+                    accessible = true;
+                    break;
+                }
+            }
+            if (!accessible)
+                return;
+
+            iter = allExplorer.setBaseNode(node);
+            while (iter.next()) {
+                if (isTurnRestricted(iter.getEdge(), node, edge))
+                    continue;
+                consumer.accept(createEdgeKey(iter, true));
+                // both directions of a loop arrive at this node
+                if (iter.getBaseNode() == iter.getAdjNode())
+                    consumer.accept(createEdgeKey(iter, false));
+            }
+        };
+    }
+
     private boolean hasNext() {
         return !dfsStackPQ.isEmpty();
     }
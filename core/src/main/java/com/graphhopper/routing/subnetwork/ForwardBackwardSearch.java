@@ -0,0 +1,185 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.subnetwork;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Finds the strongly connected component of a pivot vertex as the intersection of the vertices that are reachable
+ * from the pivot and the vertices the pivot is reachable from. This is the first step of the forward-backward
+ * algorithm. Both sets are found using breadth-first searches that split every level of the search among several
+ * threads. For road networks the component of a well connected pivot usually contains most of the vertices, so only
+ * the remaining vertices need to be handled by Tarjan's sequential algorithm.
+ *
+ * @see TarjanSCC#findComponentsParallel(int)
+ * @see EdgeBasedTarjanSCC#findComponentsParallel(int)
+ */
+class ForwardBackwardSearch {
+    // smaller levels are not split, because the overhead of the tasks would be bigger than the work
+    private static final int MIN_TASK_SIZE = 1_000;
+    private final int vertices;
+    private final int threads;
+    private final Supplier<VertexExplorer> forwardExplorers;
+    private final Supplier<VertexExplorer> backwardExplorers;
+
+    /**
+     * Enumerates the neighbors of a vertex. Every thread uses its own instance.
+     */
+    interface VertexExplorer {
+        void forEachNeighbor(int vertex, IntConsumer consumer);
+    }
+
+    /**
+     * @param forwardExplorers  creates explorers that pass the vertices that can be reached directly from a vertex
+     * @param backwardExplorers creates explorers that pass the vertices from which a vertex can be reached directly
+     */
+    ForwardBackwardSearch(int vertices, int threads, Supplier<VertexExplorer> forwardExplorers, Supplier<VertexExplorer> backwardExplorers) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.vertices = vertices;
+        this.threads = threads;
+        this.forwardExplorers = forwardExplorers;
+        this.backwardExplorers = backwardExplorers;
+    }
+
+    /**
+     * @return the vertex with the most forward and backward neighbors among a sample of all vertices or -1 if none of
+     * them has any
+     */
+    int choosePivot() {
+        VertexExplorer forward = forwardExplorers.get();
+        VertexExplorer backward = backwardExplorers.get();
+        int[] counter = new int[1];
+        IntConsumer count = vertex -> counter[0]++;
+        int pivot = -1;
+        long bestScore = 0;
+        for (int vertex = 0; vertex < vertices; vertex += Math.max(1, vertices / 100)) {
+            counter[0] = 0;
+            forward.forEachNeighbor(vertex, count);
+            long score = counter[0];
+            counter[0] = 0;
+            backward.forEachNeighbor(vertex, count);
+            score *= counter[0];
+            if (score > bestScore) {
+                bestScore = score;
+                pivot = vertex;
+            }
+        }
+        return pivot;
+    }
+
+    /**
+     * @return the vertices of the strongly connected component that contains the specified pivot in ascending order
+     */
+    IntArrayList findComponent(int pivot) {
+        if (pivot < 0 || pivot >= vertices)
+            throw new IllegalArgumentException("Invalid pivot " + pivot + ", vertices: " + vertices);
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            AtomicLongArray forward = search(pivot, forwardExplorers, executor);
+            AtomicLongArray backward = search(pivot, backwardExplorers, executor);
+            IntArrayList component = new IntArrayList();
+            for (int word = 0; word < forward.length(); word++) {
+                long bits = forward.get(word) & backward.get(word);
+                while (bits != 0) {
+                    component.add(word * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return component;
+        } finally {
+            if (executor != null)
+                executor.shutdown();
+        }
+    }
+
+    private AtomicLongArray search(int pivot, Supplier<VertexExplorer> explorerSupplier, ExecutorService executor) {
+        AtomicLongArray visited = new AtomicLongArray((vertices + 63) >>> 6);
+        List<VertexExplorer> explorers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            explorers.add(explorerSupplier.get());
+        }
+        visit(visited, pivot);
+        IntArrayList level = IntArrayList.from(pivot);
+        while (!level.isEmpty()) {
+            int tasks = executor == null ? 1 : Math.min(threads, (level.size() + MIN_TASK_SIZE - 1) / MIN_TASK_SIZE);
+            if (tasks == 1) {
+                level = expand(level, 0, level.size(), explorers.get(0), visited);
+                continue;
+            }
+
+            final IntArrayList currentLevel = level;
+            int taskSize = (currentLevel.size() + tasks - 1) / tasks;
+            List<Callable<IntArrayList>> callables = new ArrayList<>(tasks);
+            for (int task = 0; task < tasks; task++) {
+                int from = task * taskSize;
+                int to = Math.min(currentLevel.size(), from + taskSize);
+                VertexExplorer explorer = explorers.get(task);
+                callables.add(() -> expand(currentLevel, from, to, explorer, visited));
+            }
+            level = new IntArrayList();
+            try {
+                for (Future<IntArrayList> future : executor.invokeAll(callables)) {
+                    level.addAll(future.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        return visited;
+    }
+
+    private static IntArrayList expand(IntArrayList level, int from, int to, VertexExplorer explorer, AtomicLongArray visited) {
+        IntArrayList nextLevel = new IntArrayList();
+        IntConsumer consumer = vertex -> {
+            if (visit(visited, vertex))
+                nextLevel.add(vertex);
+        };
+        for (int i = from; i < to; i++) {
+            explorer.forEachNeighbor(level.get(i), consumer);
+        }
+        return nextLevel;
+    }
+
+    /**
+     * @return true if the vertex was not visited before
+     */
+    private static boolean visit(AtomicLongArray visited, int vertex) {
+        int word = vertex >>> 6;
+        long bit = 1L << vertex;
+        while (true) {
+            long bits = visited.get(word);
+            if ((bits & bit) != 0)
+                return false;
+            if (visited.compareAndSet(word, bits, bits | bit))
+                return true;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import com.carrotsearch.hppc.BitSetIterator;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntIndexedContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.weighting.TurnCostProvider;
@@ -31,7 +32,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Removes nodes/edges which are not part of the 'main' network(s). I.e. mostly nodes with no edges at all but
@@ -50,6 +57,9 @@ public class PrepareRoutingSubnetworks {
     private final GraphHopperStorage ghStorage;
     private final List<PrepareJob> prepareJobs;
     private int minNetworkSize = 200;
+    private int threads = 1;
+    // jobs can run concurrently, but the access values of different jobs can be stored in the same edge flags
+    private final Object edgeFlagsLock = new Object();
 
     public PrepareRoutingSubnetworks(GraphHopperStorage ghStorage, List<PrepareJob> prepareJobs) {
         this.ghStorage = ghStorage;
@@ -66,6 +76,17 @@ public class PrepareRoutingSubnetworks {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to find and remove the subnetworks. The jobs run concurrently and the threads
+     * that are not required for the jobs are used to find the components of a single job in parallel. Default is 1.
+     */
+    public PrepareRoutingSubnetworks setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public void doWork() {
         if (minNetworkSize <= 0) {
             logger.info("Skipping subnetwork removal: prepare.min_network_size: " + minNetworkSize);
@@ -73,32 +94,179 @@ public class PrepareRoutingSubnetworks {
         }
         StopWatch sw = new StopWatch().start();
         logger.info("Start removing subnetworks, prepare.min_network_size: " + minNetworkSize + ", nodes: " +
-                Helper.nf(ghStorage.getNodes()) + ", edges: " + Helper.nf(ghStorage.getEdges()) + ", jobs: " + prepareJobs + ", " + Helper.getMemInfo());
-        for (PrepareJob job : prepareJobs) {
-            removeSmallSubNetworks(job);
+                Helper.nf(ghStorage.getNodes()) + ", edges: " + Helper.nf(ghStorage.getEdges()) + ", jobs: " + prepareJobs + ", threads: " + threads + ", " + Helper.getMemInfo());
+        if (threads == 1) {
+            for (PrepareJob job : prepareJobs) {
+                removeSmallSubNetworks(job, 1);
+            }
+        } else {
+            runJobsConcurrently();
         }
         logger.info("Finished finding and removing subnetworks for " + prepareJobs.size() + " vehicles, took: " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
     }
 
+    /**
+     * Runs the subnetwork removal only around the given nodes, e.g. the nodes of edges whose access changed after the
+     * import. For node-based jobs only the strongly connected components of the given nodes are searched and every
+     * search stops as soon as it finds {@link #minNetworkSize} nodes. A small component is removed if it can reach or
+     * can be reached from such a bigger part of the network. A small component that is isolated in both directions is
+     * only removed if one of the given nodes belongs to a network with at least minNetworkSize nodes, because the
+     * biggest component is always kept and we do not know the biggest component without searching the whole graph.
+     * Edge-based jobs are run for the whole graph.
+     *
+     * @return the number of removed edges per job name
+     */
+    public Map<String, Integer> removeSmallSubNetworks(IntIndexedContainer nodes) {
+        Map<String, Integer> removedEdges = new LinkedHashMap<>();
+        if (minNetworkSize <= 0)
+            return removedEdges;
+        for (PrepareJob job : prepareJobs) {
+            removedEdges.put(job.name, job.turnCostProvider == null
+                    ? removeSmallSubNetworksAround(job.name, job.accessEnc, nodes)
+                    : removeSmallSubNetworks(job, threads));
+        }
+        return removedEdges;
+    }
+
+    private int removeSmallSubNetworksAround(String jobName, BooleanEncodedValue accessEnc, IntIndexedContainer nodes) {
+        StopWatch sw = new StopWatch().start();
+        EdgeExplorer explorer = ghStorage.createEdgeExplorer(DefaultEdgeFilter.allEdges(accessEnc));
+        GHIntHashSet visited = new GHIntHashSet();
+        List<IntArrayList> attachedComponents = new ArrayList<>();
+        List<IntArrayList> isolatedComponents = new ArrayList<>();
+        boolean bigNetwork = false;
+        for (IntCursor cursor : nodes) {
+            int node = cursor.value;
+            if (!visited.add(node))
+                continue;
+            GHIntHashSet reachable = explore(explorer, accessEnc, node, false, null);
+            GHIntHashSet reaching = explore(explorer, accessEnc, node, true, null);
+            boolean reachableComplete = reachable.size() < minNetworkSize;
+            boolean reachingComplete = reaching.size() < minNetworkSize;
+            if (!reachableComplete && !reachingComplete) {
+                bigNetwork = true;
+                continue;
+            }
+            // every node on a path between two nodes of the same component belongs to this component, so the
+            // component can be found within the nodes of the complete search
+            GHIntHashSet component = reachableComplete
+                    ? explore(explorer, accessEnc, node, true, reachable)
+                    : explore(explorer, accessEnc, node, false, reaching);
+            IntArrayList componentNodes = new IntArrayList(component.size());
+            for (IntCursor c : component) {
+                visited.add(c.value);
+                componentNodes.add(c.value);
+            }
+            if (reachableComplete && reachingComplete)
+                isolatedComponents.add(componentNodes);
+            else
+                attachedComponents.add(componentNodes);
+        }
+
+        int removedComponents = 0;
+        int removedEdges = 0;
+        synchronized (edgeFlagsLock) {
+            for (IntArrayList component : attachedComponents) {
+                removedEdges += blockEdgesForComponent(explorer, accessEnc, component);
+                removedComponents++;
+            }
+            if (bigNetwork) {
+                for (IntArrayList component : isolatedComponents) {
+                    removedEdges += blockEdgesForComponent(explorer, accessEnc, component);
+                    removedComponents++;
+                }
+            }
+        }
+        logger.info(jobName + " - Removed " + removedComponents + " subnetworks around " + nodes.size() + " nodes, removed edges: "
+                + removedEdges + ", took: " + sw.stop().getSeconds() + "s");
+        return removedEdges;
+    }
+
+    /**
+     * Finds the nodes that can be reached from the given node (or that can reach it if reverse is true) with a
+     * breadth-first search. Without the given allowed nodes the search stops at minNetworkSize nodes.
+     */
+    private GHIntHashSet explore(EdgeExplorer explorer, BooleanEncodedValue accessEnc, int start, boolean reverse, GHIntHashSet allowedNodes) {
+        GHIntHashSet found = new GHIntHashSet();
+        IntArrayList queue = new IntArrayList();
+        found.add(start);
+        queue.add(start);
+        for (int i = 0; i < queue.size(); i++) {
+            EdgeIterator iter = explorer.setBaseNode(queue.get(i));
+            while (iter.next()) {
+                if (!(reverse ? iter.getReverse(accessEnc) : iter.get(accessEnc)))
+                    continue;
+                int adj = iter.getAdjNode();
+                if (allowedNodes != null && !allowedNodes.contains(adj))
+                    continue;
+                if (found.add(adj)) {
+                    if (allowedNodes == null && found.size() >= minNetworkSize)
+                        return found;
+                    queue.add(adj);
+                }
+            }
+        }
+        return found;
+    }
+
+    private void runJobsConcurrently() {
+        // jobs that use the same access value have to run one after the other, because each of them has to see the
+        // edges removed by the previous ones
+        Map<BooleanEncodedValue, List<PrepareJob>> jobsByAccessEnc = new LinkedHashMap<>();
+        for (PrepareJob job : prepareJobs) {
+            jobsByAccessEnc.computeIfAbsent(job.accessEnc, accessEnc -> new ArrayList<>()).add(job);
+        }
+        int jobThreads = Math.min(threads, jobsByAccessEnc.size());
+        int componentThreads = Math.max(1, threads / jobThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(jobThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<PrepareJob> jobs : jobsByAccessEnc.values()) {
+                futures.add(executor.submit(() -> {
+                    for (PrepareJob job : jobs) {
+                        removeSmallSubNetworks(job, componentThreads);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    int removeSmallSubNetworks(PrepareJob job) {
+        return removeSmallSubNetworks(job, 1);
+    }
+
     /**
      * The biggest component is always kept regardless of its size. For edge-based routing with turn restrictions the
      * subnetwork search has to consider the turn restrictions as well to make sure components that are not reachable
      * due to turn restrictions are also removed.
      *
+     * @param componentThreads the number of threads used to find the components, see {@link TarjanSCC#findComponentsParallel}
      * @return number of removed edges
      */
-    int removeSmallSubNetworks(PrepareJob job) {
+    int removeSmallSubNetworks(PrepareJob job, int componentThreads) {
         if (job.turnCostProvider == null)
-            return removeSmallSubNetworksNodeBased(job.name, job.accessEnc);
+            return removeSmallSubNetworksNodeBased(job.name, job.accessEnc, componentThreads);
         else
-            return removeSmallSubNetworksEdgeBased(job.name, job.accessEnc, job.turnCostProvider);
+            return removeSmallSubNetworksEdgeBased(job.name, job.accessEnc, job.turnCostProvider, componentThreads);
     }
 
-    private int removeSmallSubNetworksNodeBased(String jobName, BooleanEncodedValue accessEnc) {
+    private int removeSmallSubNetworksNodeBased(String jobName, BooleanEncodedValue accessEnc, int componentThreads) {
         // partition graph into strongly connected components using Tarjan's algorithm
         StopWatch sw = new StopWatch().start();
         TarjanSCC tarjan = new TarjanSCC(ghStorage, accessEnc, false);
-        TarjanSCC.ConnectedComponents ccs = tarjan.findComponents();
+        TarjanSCC.ConnectedComponents ccs = componentThreads > 1 ? tarjan.findComponentsParallel(componentThreads) : tarjan.findComponents();
         List<IntArrayList> components = ccs.getComponents();
         BitSet singleNodeComponents = ccs.getSingleNodeComponents();
         long numSingleNodeComponents = singleNodeComponents.cardinality();
@@ -112,28 +280,30 @@ public class PrepareRoutingSubnetworks {
         int smallestRemaining = ccs.getBiggestComponent().size();
         int biggestRemoved = 0;
         EdgeExplorer explorer = ghStorage.createEdgeExplorer(DefaultEdgeFilter.allEdges(accessEnc));
-        for (IntArrayList component : components) {
-            if (component == ccs.getBiggestComponent())
-                continue;
+        synchronized (edgeFlagsLock) {
+            for (IntArrayList component : components) {
+                if (component == ccs.getBiggestComponent())
+                    continue;
 
-            if (component.size() < minNetworkSize) {
-                removedEdges += blockEdgesForComponent(explorer, accessEnc, component);
-                removedComponents++;
-                biggestRemoved = Math.max(biggestRemoved, component.size());
-            } else {
-                smallestRemaining = Math.min(smallestRemaining, component.size());
+                if (component.size() < minNetworkSize) {
+                    removedEdges += blockEdgesForComponent(explorer, accessEnc, component);
+                    removedComponents++;
+                    biggestRemoved = Math.max(biggestRemoved, component.size());
+                } else {
+                    smallestRemaining = Math.min(smallestRemaining, component.size());
+                }
             }
-        }
 
-        if (minNetworkSize > 0) {
-            BitSetIterator iter = singleNodeComponents.iterator();
-            for (int node = iter.nextSetBit(); node >= 0; node = iter.nextSetBit()) {
-                removedEdges += blockEdgesForNode(explorer, accessEnc, node);
-                removedComponents++;
-                biggestRemoved = Math.max(biggestRemoved, 1);
+            if (minNetworkSize > 0) {
+                BitSetIterator iter = singleNodeComponents.iterator();
+                for (int node = iter.nextSetBit(); node >= 0; node = iter.nextSetBit()) {
+                    removedEdges += blockEdgesForNode(explorer, accessEnc, node);
+                    removedComponents++;
+                    biggestRemoved = Math.max(biggestRemoved, 1);
+                }
+            } else if (numSingleNodeComponents > 0) {
+                smallestRemaining = Math.min(smallestRemaining, 1);
             }
-        } else if (numSingleNodeComponents > 0) {
-            smallestRemaining = Math.min(smallestRemaining, 1);
         }
 
         int allowedRemoved = ghStorage.getEdges() / 2;
@@ -170,11 +340,11 @@ public class PrepareRoutingSubnetworks {
         return removedEdges;
     }
 
-    private int removeSmallSubNetworksEdgeBased(String jobName, BooleanEncodedValue accessEnc, TurnCostProvider turnCostProvider) {
+    private int removeSmallSubNetworksEdgeBased(String jobName, BooleanEncodedValue accessEnc, TurnCostProvider turnCostProvider, int componentThreads) {
         // partition graph into strongly connected components using Tarjan's algorithm
         StopWatch sw = new StopWatch().start();
         EdgeBasedTarjanSCC tarjan = new EdgeBasedTarjanSCC(ghStorage, accessEnc, turnCostProvider, false);
-        EdgeBasedTarjanSCC.ConnectedComponents ccs = tarjan.findComponents();
+        EdgeBasedTarjanSCC.ConnectedComponents ccs = componentThreads > 1 ? tarjan.findComponentsParallel(componentThreads) : tarjan.findComponents();
         List<IntArrayList> components = ccs.getComponents();
         BitSet singleEdgeComponents = ccs.getSingleEdgeComponents();
         long numSingleEdgeComponents = singleEdgeComponents.cardinality();
@@ -192,30 +362,32 @@ public class PrepareRoutingSubnetworks {
         int smallestRemaining = ccs.getBiggestComponent().size();
         int biggestRemoved = 0;
 
-        for (IntArrayList component : components) {
-            if (component == ccs.getBiggestComponent())
-                continue;
+        synchronized (edgeFlagsLock) {
+            for (IntArrayList component : components) {
+                if (component == ccs.getBiggestComponent())
+                    continue;
 
-            if (component.size() < minNetworkSizeEdges) {
-                for (IntCursor cursor : component) {
-                    removedEdgeKeys += removeEdgeWithKey(cursor.value, accessEnc);
+                if (component.size() < minNetworkSizeEdges) {
+                    for (IntCursor cursor : component) {
+                        removedEdgeKeys += removeEdgeWithKey(cursor.value, accessEnc);
+                    }
+                    removedComponents++;
+                    biggestRemoved = Math.max(biggestRemoved, component.size());
+                } else {
+                    smallestRemaining = Math.min(smallestRemaining, component.size());
                 }
-                removedComponents++;
-                biggestRemoved = Math.max(biggestRemoved, component.size());
-            } else {
-                smallestRemaining = Math.min(smallestRemaining, component.size());
             }
-        }
 
-        if (minNetworkSizeEdges > 0) {
-            BitSetIterator iter = singleEdgeComponents.iterator();
-            for (int edgeKey = iter.nextSetBit(); edgeKey >= 0; edgeKey = iter.nextSetBit()) {
-                removedEdgeKeys += removeEdgeWithKey(edgeKey, accessEnc);
-                removedComponents++;
-                biggestRemoved = Math.max(biggestRemoved, 1);
+            if (minNetworkSizeEdges > 0) {
+                BitSetIterator iter = singleEdgeComponents.iterator();
+                for (int edgeKey = iter.nextSetBit(); edgeKey >= 0; edgeKey = iter.nextSetBit()) {
+                    removedEdgeKeys += removeEdgeWithKey(edgeKey, accessEnc);
+                    removedComponents++;
+                    biggestRemoved = Math.max(biggestRemoved, 1);
+                }
+            } else if (numSingleEdgeComponents > 0) {
+                smallestRemaining = Math.min(smallestRemaining, 1);
             }
-        } else if (numSingleEdgeComponents > 0) {
-            smallestRemaining = Math.min(smallestRemaining, 1);
         }
 
         int allowedRemoved = ghStorage.getEdges() / 2;
@@ -55,6 +55,7 @@ import java.util.List;
  */
 public class TarjanSCC {
     private final Graph graph;
+    private final BooleanEncodedValue accessEnc;
     private final EdgeFilter outFilter;
     private final BitUtil bitUtil = BitUtil.LITTLE;
     private final int[] nodeIndex;
@@ -66,6 +67,7 @@ public class TarjanSCC {
     private final boolean excludeSingleNodeComponents;
     private EdgeExplorer explorer;
     private EdgeFilter edgeFilter;
+    private EdgeFilter additionalEdgeFilter;
 
     private int currIndex = 0;
     private int v;
@@ -79,6 +81,7 @@ public class TarjanSCC {
      */
     public TarjanSCC(Graph graph, BooleanEncodedValue accessEnc, boolean excludeSingleNodeComponents) {
         this.graph = graph;
+        this.accessEnc = accessEnc;
         outFilter = DefaultEdgeFilter.outEdges(accessEnc);
         edgeFilter = outFilter;
         explorer = graph.createEdgeExplorer(edgeFilter);
@@ -107,6 +110,7 @@ public class TarjanSCC {
      * Allows adding an additional edge filter to exclude edges while searching for connected components.
      */
     public void setAdditionalEdgeFilter(final EdgeFilter additionalFilter) {
+        additionalEdgeFilter = additionalFilter;
         edgeFilter = new EdgeFilter() {
             @Override
             public boolean accept(EdgeIteratorState edgeState) {
@@ -172,17 +176,21 @@ public class TarjanSCC {
                     if (w == v)
                         break;
                 }
-                component.trimToSize();
-                assert component.size() > 1;
-                components.numComponents++;
-                components.numNodes += component.size();
-                components.components.add(component);
-                if (component.size() > components.biggestComponent.size())
-                    components.biggestComponent = component;
+                addComponent(component);
             }
         }
     }
 
+    private void addComponent(IntArrayList component) {
+        component.trimToSize();
+        assert component.size() > 1;
+        components.numComponents++;
+        components.numNodes += component.size();
+        components.components.add(component);
+        if (component.size() > components.biggestComponent.size())
+            components.biggestComponent = component;
+    }
+
     /**
      * Runs Tarjan's algorithm using an explicit stack.
      */
@@ -229,6 +237,52 @@ public class TarjanSCC {
         return components;
     }
 
+    /**
+     * Finds the same components as {@link #findComponents()}, but first determines the component of a well connected
+     * pivot node using forward and backward searches that run in parallel, see {@link ForwardBackwardSearch}. Only the
+     * remaining nodes are then handled by the sequential algorithm, which does not need to revisit the nodes of the
+     * pivot component as no other component can contain them. The additional edge filter is called concurrently.
+     */
+    public ConnectedComponents findComponentsParallel(int threads) {
+        ForwardBackwardSearch search = new ForwardBackwardSearch(graph.getNodes(), threads,
+                () -> createNodeExplorer(edgeFilter, false), () -> createNodeExplorer(DefaultEdgeFilter.inEdges(accessEnc), true));
+        int pivot = search.choosePivot();
+        if (pivot < 0)
+            return findComponents();
+
+        IntArrayList pivotComponent = search.findComponent(pivot);
+        // the nodes of the pivot component are marked as visited, but they are not on the stack
+        for (int i = 0; i < pivotComponent.size(); i++) {
+            int node = pivotComponent.get(i);
+            nodeIndex[node] = currIndex;
+            nodeLowLink[node] = currIndex;
+            currIndex++;
+        }
+        findComponents();
+        if (pivotComponent.size() > 1) {
+            addComponent(pivotComponent);
+        } else {
+            components.numComponents++;
+            components.numNodes++;
+            if (!excludeSingleNodeComponents)
+                components.singleNodeComponents.set(pivot);
+        }
+        return components;
+    }
+
+    private ForwardBackwardSearch.VertexExplorer createNodeExplorer(EdgeFilter filter, boolean reverse) {
+        EdgeExplorer explorer = graph.createEdgeExplorer(filter);
+        return (node, consumer) -> {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                // the additional filter was applied to the edges in the direction of the search
+                if (reverse && additionalEdgeFilter != null && !additionalEdgeFilter.accept(iter.detach(true)))
+                    continue;
+                consumer.accept(iter.getAdjNode());
+            }
+        };
+    }
+
     private boolean hasNext() {
         return !dfsStack.isEmpty();
     }
@@ -0,0 +1,130 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.traffic;
+
+import com.graphhopper.storage.Graph;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link SpeedOverlay} of a graph. Updates are applied copy-on-write and the new overlay is swapped
+ * in atomically, so requests that are already running are never blocked and keep using the overlay they started with.
+ * Concurrent updates are applied one after another.
+ * <p>
+ * The live speeds can only slow down edges, see {@link com.graphhopper.routing.weighting.LiveTrafficWeighting}, which
+ * keeps the lower bounds of the landmarks valid.
+ */
+public class LiveTraffic {
+    private final Graph graph;
+    private final AtomicReference<SpeedOverlay> overlay = new AtomicReference<>(SpeedOverlay.EMPTY);
+    // statistics, only written while holding the lock
+    private volatile long updateCount;
+    private volatile long lastUpdateTime;
+    private volatile int lastUpdateSize;
+    private volatile long lastApplyNanos;
+    private volatile long maxApplyNanos;
+    private volatile long totalApplyNanos;
+
+    public LiveTraffic(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * @return the current overlay, it does not change when updates are applied later
+     */
+    public SpeedOverlay getOverlay() {
+        return overlay.get();
+    }
+
+    /**
+     * Sets the live speeds of the given edges.
+     *
+     * @param edges   the edge ids
+     * @param speeds  the speeds in km/h for the edges at the same index, 0 closes an edge
+     * @param replace if true all speeds that were set before are removed
+     * @return the new overlay
+     */
+    public synchronized SpeedOverlay update(int[] edges, double[] speeds, boolean replace) {
+        if (edges.length != speeds.length)
+            throw new IllegalArgumentException("edges and speeds must have the same length: " + edges.length + " vs. " + speeds.length);
+        int edgeCount = graph.getEdges();
+        for (int i = 0; i < edges.length; i++) {
+            if (edges[i] < 0 || edges[i] >= edgeCount)
+                throw new IllegalArgumentException("Invalid edge id " + edges[i] + ", the graph has " + edgeCount + " edges");
+            if (!(speeds[i] >= 0) || Double.isInfinite(speeds[i]))
+                throw new IllegalArgumentException("Invalid speed " + speeds[i] + " for edge " + edges[i]);
+        }
+        long start = System.nanoTime();
+        SpeedOverlay newOverlay = overlay.get().withSpeeds(edges, speeds, replace);
+        overlay.set(newOverlay);
+        long nanos = System.nanoTime() - start;
+
+        lastApplyNanos = nanos;
+        maxApplyNanos = Math.max(maxApplyNanos, nanos);
+        totalApplyNanos += nanos;
+        lastUpdateSize = edges.length;
+        lastUpdateTime = System.currentTimeMillis();
+        updateCount++;
+        return newOverlay;
+    }
+
+    /**
+     * Removes all live speeds
+     */
+    public SpeedOverlay clear() {
+        return update(new int[0], new double[0], true);
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * @return the time of the last update in milliseconds since 1970 or 0 if there was none
+     */
+    public long getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    /**
+     * @return the number of edges of the last update
+     */
+    public int getLastUpdateSize() {
+        return lastUpdateSize;
+    }
+
+    /**
+     * @return the time it took to create and swap in the overlay of the last update
+     */
+    public long getLastApplyNanos() {
+        return lastApplyNanos;
+    }
+
+    public long getMaxApplyNanos() {
+        return maxApplyNanos;
+    }
+
+    public long getTotalApplyNanos() {
+        return totalApplyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return getOverlay() + ", updates: " + updateCount + ", last apply: " + lastApplyNanos / 1_000_000f + "ms";
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.traffic;
+
+import com.carrotsearch.hppc.IntFloatHashMap;
+
+/**
+ * An immutable snapshot of live speeds in km/h keyed by edge id. Updates create a new snapshot with a higher version,
+ * so a request can keep using the snapshot it started with, see {@link LiveTraffic}.
+ */
+public final class SpeedOverlay {
+    public static final SpeedOverlay EMPTY = new SpeedOverlay(new IntFloatHashMap(0), 0);
+
+    private final IntFloatHashMap speeds;
+    private final long version;
+
+    private SpeedOverlay(IntFloatHashMap speeds, long version) {
+        this.speeds = speeds;
+        this.version = version;
+    }
+
+    /**
+     * @return the live speed of the given edge in km/h or NaN if there is none
+     */
+    public double getSpeed(int edge) {
+        return speeds.getOrDefault(edge, Float.NaN);
+    }
+
+    public boolean isEmpty() {
+        return speeds.isEmpty();
+    }
+
+    public int size() {
+        return speeds.size();
+    }
+
+    /**
+     * @return the number of updates that led to this snapshot, two snapshots with the same version are equal
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Creates a new snapshot that contains the given speeds. This snapshot is not modified.
+     *
+     * @param replace if true the speeds of this snapshot are discarded, otherwise the given speeds are added to them
+     */
+    SpeedOverlay withSpeeds(int[] edges, double[] speeds, boolean replace) {
+        IntFloatHashMap newSpeeds;
+        if (replace) {
+            newSpeeds = new IntFloatHashMap(edges.length);
+        } else {
+            newSpeeds = new IntFloatHashMap(this.speeds.size() + edges.length);
+            newSpeeds.putAll(this.speeds);
+        }
+        for (int i = 0; i < edges.length; i++) {
+            newSpeeds.put(edges[i], (float) speeds[i]);
+        }
+        return new SpeedOverlay(newSpeeds, version + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "version: " + version + ", edges: " + speeds.size();
+    }
+}
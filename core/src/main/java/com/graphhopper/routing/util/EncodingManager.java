@@ -51,6 +51,7 @@ public class EncodingManager implements EncodedValueLookup {
     private final List<TagParser> edgeTagParsers = new ArrayList<>();
     private final Map<String, TurnCostParser> turnCostParsers = new LinkedHashMap<>();
     private boolean enableInstructions = true;
+    private boolean parsersReleased = false;
     private String preferredLanguage = "";
     private EncodedValue.InitializerConfig turnCostConfig;
     private EncodedValue.InitializerConfig relationConfig;
@@ -139,6 +140,14 @@ public class EncodingManager implements EncodedValueLookup {
         turnCostParsers.clear();
         edgeTagParsers.clear();
         relationTagParsers.clear();
+        parsersReleased = true;
+    }
+
+    /**
+     * @return true if {@link #releaseParsers()} was called, i.e. {@link #handleWayTags} no longer sets all encoded values
+     */
+    public boolean isParsersReleased() {
+        return parsersReleased;
     }
 
     public static class Builder {
@@ -44,6 +44,11 @@ public abstract class AbstractAdjustedWeighting implements Weighting {
         return superWeighting.calcEdgeWeight(edgeState, reverse);
     }
 
+    @Override
+    public double calcEdgeDistanceWeight(EdgeIteratorState edgeState, boolean reverse) {
+        return superWeighting.calcEdgeDistanceWeight(edgeState, reverse);
+    }
+
     @Override
     public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
         return superWeighting.calcEdgeMillis(edgeState, reverse);
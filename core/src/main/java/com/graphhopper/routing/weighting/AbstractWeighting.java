@@ -56,6 +56,11 @@ public abstract class AbstractWeighting implements Weighting {
      */
     public abstract double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse);
 
+    @Override
+    public double calcEdgeDistanceWeight(EdgeIteratorState edgeState, boolean reverse) {
+        return 0;
+    }
+
     @Override
     public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
         // special case for loop edges: since they do not have a meaningful direction we always need to read them in
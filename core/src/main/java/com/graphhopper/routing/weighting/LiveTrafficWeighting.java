@@ -0,0 +1,91 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
+import com.graphhopper.routing.traffic.SpeedOverlay;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * Scales the weight and time of every edge that has a live speed in the given {@link SpeedOverlay} by the ratio of
+ * the average speed of the edge and the live speed. Live speeds that are higher than the average speed are ignored:
+ * edges can only become slower, so the lower bounds used by A* and landmarks stay valid.
+ */
+public class LiveTrafficWeighting extends AbstractAdjustedWeighting {
+    private final SpeedOverlay overlay;
+    private final DecimalEncodedValue avgSpeedEnc;
+    private final int baseEdges;
+
+    /**
+     * @param baseEdges the number of edges of the base graph, all other edges are virtual and use the live speed of
+     *                  the edge they were created from
+     */
+    public LiveTrafficWeighting(Weighting superWeighting, SpeedOverlay overlay, int baseEdges) {
+        super(superWeighting);
+        this.overlay = overlay;
+        this.avgSpeedEnc = superWeighting.getFlagEncoder().getAverageSpeedEnc();
+        this.baseEdges = baseEdges;
+    }
+
+    public SpeedOverlay getOverlay() {
+        return overlay;
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        double weight = superWeighting.calcEdgeWeight(edgeState, reverse);
+        if (Double.isInfinite(weight))
+            return weight;
+        double factor = getSlowDownFactor(edgeState, reverse);
+        return factor == 0 ? Double.POSITIVE_INFINITY : weight / factor;
+    }
+
+    @Override
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+        long millis = superWeighting.calcEdgeMillis(edgeState, reverse);
+        double factor = getSlowDownFactor(edgeState, reverse);
+        return factor == 0 ? Long.MAX_VALUE : Math.round(millis / factor);
+    }
+
+    /**
+     * @return the ratio of the live speed and the average speed of the given edge, which is in [0, 1]
+     */
+    private double getSlowDownFactor(EdgeIteratorState edgeState, boolean reverse) {
+        double liveSpeed = overlay.getSpeed(getOriginalEdge(edgeState));
+        if (Double.isNaN(liveSpeed))
+            return 1;
+        double speed = reverse ? edgeState.getReverse(avgSpeedEnc) : edgeState.get(avgSpeedEnc);
+        return liveSpeed >= speed ? 1 : liveSpeed / speed;
+    }
+
+    private int getOriginalEdge(EdgeIteratorState edgeState) {
+        int edge = edgeState.getEdge();
+        if (edge < baseEdges)
+            return edge;
+        // the iterators of the query graph return the virtual edge state without creating a new object
+        EdgeIteratorState virtualEdge = edgeState instanceof VirtualEdgeIteratorState ? edgeState : edgeState.detach(false);
+        return GHUtility.getEdgeFromEdgeKey(((VirtualEdgeIteratorState) virtualEdge).getOriginalEdgeKey());
+    }
+
+    @Override
+    public String getName() {
+        return "live_traffic";
+    }
+}
@@ -52,6 +52,11 @@ public class QueryGraphWeighting implements Weighting {
         return weighting.calcEdgeWeight(edgeState, reverse);
     }
 
+    @Override
+    public double calcEdgeDistanceWeight(EdgeIteratorState edgeState, boolean reverse) {
+        return weighting.calcEdgeDistanceWeight(edgeState, reverse);
+    }
+
     @Override
     public double calcTurnWeight(int inEdge, int viaNode, int outEdge) {
         if (!EdgeIterator.Edge.isValid(inEdge) || !EdgeIterator.Edge.isValid(outEdge)) {
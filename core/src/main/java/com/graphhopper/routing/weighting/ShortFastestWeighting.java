@@ -68,6 +68,11 @@ public class ShortFastestWeighting extends FastestWeighting {
         return time * timeFactor + edgeState.getDistance() * distanceFactor;
     }
 
+    @Override
+    public double calcEdgeDistanceWeight(EdgeIteratorState edgeState, boolean reverse) {
+        return edgeState.getDistance() * distanceFactor;
+    }
+
     @Override
     public String getName() {
         return NAME;
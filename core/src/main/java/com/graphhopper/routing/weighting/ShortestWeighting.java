@@ -48,6 +48,11 @@ public class ShortestWeighting extends AbstractWeighting {
         return edgeState.getDistance();
     }
 
+    @Override
+    public double calcEdgeDistanceWeight(EdgeIteratorState edgeState, boolean reverse) {
+        return edgeState.getDistance();
+    }
+
     @Override
     public String getName() {
         return "shortest";
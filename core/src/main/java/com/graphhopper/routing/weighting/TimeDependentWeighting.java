@@ -0,0 +1,88 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
+import com.graphhopper.storage.SpeedProfileStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * Adjusts the time and the weight of the wrapped weighting by the speed factor of the {@link SpeedProfileStorage} at
+ * the time the edge is entered. Only the part of the weight that depends on the speed is adjusted, the distance costs
+ * (see {@link Weighting#calcEdgeDistanceWeight}) stay the same. Without a time, i.e. when used via
+ * {@link #calcEdgeWeight(EdgeIteratorState, boolean)}, this weighting behaves like the wrapped one. Use it together with a time-dependent algorithm like
+ * {@link com.graphhopper.routing.TimeDependentDijkstra}.
+ */
+public class TimeDependentWeighting extends AbstractAdjustedWeighting {
+    private final SpeedProfileStorage speedProfiles;
+    private final double maxSpeedFactor;
+
+    public TimeDependentWeighting(Weighting superWeighting, SpeedProfileStorage speedProfiles) {
+        super(superWeighting);
+        if (speedProfiles == null)
+            throw new IllegalArgumentException("No speed profiles set");
+        this.speedProfiles = speedProfiles;
+        this.maxSpeedFactor = speedProfiles.getMaxSpeedFactor();
+    }
+
+    @Override
+    public double getMinWeight(double distance) {
+        // edges can be faster than usual at certain times
+        return superWeighting.getMinWeight(distance) / maxSpeedFactor;
+    }
+
+    /**
+     * @param localTimeMillis the time the edge is entered, see {@link SpeedProfileStorage#getBucket(long)}
+     */
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse, long localTimeMillis) {
+        double weight = superWeighting.calcEdgeWeight(edgeState, reverse);
+        if (Double.isInfinite(weight))
+            return weight;
+        double factor = getSpeedFactor(edgeState, reverse, localTimeMillis);
+        if (factor == 0)
+            return Double.POSITIVE_INFINITY;
+        // only the travel time changes with the speed, the distance costs stay the same
+        double distanceWeight = superWeighting.calcEdgeDistanceWeight(edgeState, reverse);
+        return distanceWeight + (weight - distanceWeight) / factor;
+    }
+
+    /**
+     * @param localTimeMillis the time the edge is entered, see {@link SpeedProfileStorage#getBucket(long)}
+     */
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse, long localTimeMillis) {
+        long millis = superWeighting.calcEdgeMillis(edgeState, reverse);
+        double factor = getSpeedFactor(edgeState, reverse, localTimeMillis);
+        return factor == 0 ? Long.MAX_VALUE : Math.round(millis / factor);
+    }
+
+    public double getSpeedFactor(EdgeIteratorState edgeState, boolean reverse, long localTimeMillis) {
+        // virtual edges use the profile of the original edge they were created from
+        int edgeKey = edgeState instanceof VirtualEdgeIteratorState
+                ? ((VirtualEdgeIteratorState) edgeState).getOriginalEdgeKey()
+                : edgeState.getEdgeKey();
+        if (reverse)
+            edgeKey = GHUtility.reverseEdgeKey(edgeKey);
+        return speedProfiles.getSpeedFactor(edgeKey, localTimeMillis);
+    }
+
+    @Override
+    public String getName() {
+        return "time_dependent";
+    }
+}
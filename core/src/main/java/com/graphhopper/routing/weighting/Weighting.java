@@ -50,6 +50,13 @@ public interface Weighting {
      */
     double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse);
 
+    /**
+     * @return the part of {@link #calcEdgeWeight} that only depends on the distance of the given edge and not on its
+     * speed, e.g. the distance costs of a custom model. Weightings that change the travel time of an edge, like the
+     * time-dependent weighting, must not scale this part.
+     */
+    double calcEdgeDistanceWeight(EdgeIteratorState edgeState, boolean reverse);
+
     /**
      * This method calculates the time taken (in milli seconds) to travel along the specified edgeState.
      * It is typically used for post-processing and on only a few thousand edges.
@@ -125,6 +125,11 @@ public final class CustomWeighting extends AbstractWeighting {
         return seconds / priorityCalculator.calcPriority(edgeState, reverse) + distanceCosts;
     }
 
+    @Override
+    public double calcEdgeDistanceWeight(EdgeIteratorState edgeState, boolean reverse) {
+        return edgeState.getDistance() * distanceInfluence;
+    }
+
     double calcSeconds(double distance, EdgeIteratorState edgeState, boolean reverse) {
         // special case for loop edges: since they do not have a meaningful direction we always need to read them in forward direction
         if (edgeState.getBaseNode() == edgeState.getAdjNode())
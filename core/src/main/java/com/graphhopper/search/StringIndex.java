@@ -17,6 +17,8 @@
  */
 package com.graphhopper.search;
 
+import com.carrotsearch.hppc.BitMixer;
+import com.carrotsearch.hppc.LongLongHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Storable;
@@ -24,8 +26,16 @@ import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Helper;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Stores the key-value pairs of the edges, like the street name. Equal entries and equal values are stored only once
+ * for the whole import: a global dictionary maps the hash of every entry and value to the position where it was
+ * written first. The dictionaries are only kept until the next flush, entries added afterwards are deduplicated
+ * among themselves.
+ * <p>
+ * Recently read entries are kept decoded in a cache that can be shared among threads, see {@link #setCacheSize(int)}.
+ *
  * @author Peter Karich
  */
 public class StringIndex implements Storable<StringIndex> {
@@ -34,40 +44,75 @@ public class StringIndex implements Storable<StringIndex> {
     static final int MAX_UNIQUE_KEYS = (1 << 15);
     // Store string value as byte array and store the length into 1 byte
     private static final int MAX_LENGTH = (1 << 8) - 1;
+    private static final long NO_POINTER = -1;
     boolean throwExceptionIfTooLong = false;
     private final DataAccess keys;
     // storage layout per entry:
     // 1 byte    | 2 bytes  | 1 byte      | x    | 2 bytes  | 1 byte      | x    | 2 bytes  (dup example) | 4 bytes | ...
     // vals count| key_idx_0| val_length_0| val_0| key_idx_1| val_length_1| val_1| -key_idx_2             | delta_2 | key_idx_3 | val_length_3 | val_3
     // Drawback: we need to loop through the entries to get the start of val_x.
-    // Note, that we detect duplicate values via smallCache and then use the negative key index as 'duplicate' marker.
+    // Note, that we detect duplicate values via valueDictionary and then use the negative key index as 'duplicate' marker.
     // We then store only the delta (signed int) instead the absolute unsigned long value to reduce memory usage when duplicate entries.
     private final DataAccess vals;
     // array.indexOf could be faster than hashmap.get if not too many keys or even sort keys and use binarySearch
     private final Map<String, Integer> keysInMem = new LinkedHashMap<>();
     private final List<String> keyList = new ArrayList<>();
-    private final Map<String, Long> smallCache;
+    // hash of the entry or value -> pointer to where it was stored first, only used while adding
+    private LongLongHashMap entryDictionary = new LongLongHashMap();
+    private LongLongHashMap valueDictionary = new LongLongHashMap();
     private long bytePointer = START_POINTER;
     private long lastEntryPointer = -1;
     private Map<String, String> lastEntryMap;
+    // direct-mapped: an entry replaces the entry with the same slot, so reads need no lock and no bookkeeping
+    private CachedEntry[] cache;
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
 
     public StringIndex(Directory dir) {
-        this(dir, 1000);
+        this(dir, 10_000);
     }
 
     /**
-     * Specify a larger cacheSize to reduce disk usage. Note that this increases the memory usage of this object.
+     * @param cacheSize the number of decoded entries that are kept in memory, see {@link #setCacheSize(int)}
      */
-    public StringIndex(Directory dir, final int cacheSize) {
+    public StringIndex(Directory dir, int cacheSize) {
         keys = dir.find("string_index_keys");
         keys.setSegmentSize(10 * 1024);
         vals = dir.find("string_index_vals");
-        smallCache = new LinkedHashMap<String, Long>(cacheSize, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, Long> entry) {
-                return size() > cacheSize;
-            }
-        };
+        setCacheSize(cacheSize);
+    }
+
+    /**
+     * Specifies how many decoded entries are kept in memory, rounded up to the next power of two. A larger cache speeds
+     * up the instructions and path details for the street names, but increases the memory usage of this object. Use
+     * 0 to disable the cache.
+     */
+    public StringIndex setCacheSize(int cacheSize) {
+        if (cacheSize < 0)
+            throw new IllegalArgumentException("cache size must not be negative: " + cacheSize);
+        if (cacheSize > 1 << 30)
+            throw new IllegalArgumentException("cache size is too large: " + cacheSize);
+        if (cacheSize == 0) {
+            cache = null;
+        } else {
+            int length = Integer.highestOneBit(cacheSize);
+            cache = new CachedEntry[length < cacheSize ? length << 1 : length];
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of reads that were answered from the cache of decoded entries
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return the number of reads that had to decode the entry from the storage
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
     }
 
     @Override
@@ -122,10 +167,19 @@ public class StringIndex implements Storable<StringIndex> {
         else if (entryMap.size() > 200)
             throw new IllegalArgumentException("Cannot store more than 200 entries per entry");
 
-        // This is a very important compressing mechanism due to the nature of OSM. Make this faster via precalculated hastcodes?
+        // This is a very important compressing mechanism due to the nature of OSM: consecutive edges often belong
+        // to the same way and many ways share the same name
         if (entryMap.equals(lastEntryMap))
             return lastEntryPointer;
 
+        long entryHash = hash(entryMap);
+        long existingEntry = entryDictionary.getOrDefault(entryHash, NO_POINTER);
+        if (existingEntry != NO_POINTER && entryMap.equals(readEntry(existingEntry))) {
+            lastEntryMap = entryMap;
+            lastEntryPointer = existingEntry;
+            return existingEntry;
+        }
+
         lastEntryMap = entryMap;
         lastEntryPointer = bytePointer;
         // while adding there could be exceptions and we need to avoid that the bytePointer is modified
@@ -152,28 +206,27 @@ public class StringIndex implements Storable<StringIndex> {
                 vals.setByte(currentPointer + 2, (byte) 0);
                 currentPointer += 3;
             } else {
-                Long existingRef = smallCache.get(value);
-                if (existingRef != null) {
+                byte[] valueBytes = getBytesForString("Value for key" + key, value);
+                long valueHash = hash(value);
+                long existingRef = valueDictionary.getOrDefault(valueHash, NO_POINTER);
+                if (existingRef != NO_POINTER && isValueAt(existingRef, valueBytes)) {
                     long delta = lastEntryPointer - existingRef;
                     if (delta < Integer.MAX_VALUE && delta > Integer.MIN_VALUE) {
                         vals.ensureCapacity(currentPointer + 2 + 4);
                         vals.setShort(currentPointer, (short) -keyIndex);
                         currentPointer += 2;
-                        // do not store valueBytes.length as we know it already: it is 4!
-                        byte[] valueBytes = new byte[4];
-                        BitUtil.LITTLE.fromInt(valueBytes, (int) delta);
-                        vals.setBytes(currentPointer, valueBytes, valueBytes.length);
-                        currentPointer += valueBytes.length;
+                        // do not store deltaBytes.length as we know it already: it is 4!
+                        byte[] deltaBytes = new byte[4];
+                        BitUtil.LITTLE.fromInt(deltaBytes, (int) delta);
+                        vals.setBytes(currentPointer, deltaBytes, deltaBytes.length);
+                        currentPointer += deltaBytes.length;
                         continue;
-                    } else {
-                        smallCache.remove(value);
                     }
                 }
 
-                byte[] valueBytes = getBytesForString("Value for key" + key, value);
-                // only cache value if storing via duplicate marker is valuable (the delta costs 4 bytes minus 1 due to omitted valueBytes.length storage)
+                // only remember value if storing via duplicate marker is valuable (the delta costs 4 bytes minus 1 due to omitted valueBytes.length storage)
                 if (valueBytes.length > 3)
-                    smallCache.put(value, currentPointer);
+                    valueDictionary.put(valueHash, currentPointer);
 
                 vals.ensureCapacity(currentPointer + 2 + 1 + valueBytes.length);
                 vals.setShort(currentPointer, keyIndex.shortValue());
@@ -185,9 +238,22 @@ public class StringIndex implements Storable<StringIndex> {
             }
         }
         bytePointer = currentPointer;
+        entryDictionary.put(entryHash, lastEntryPointer);
         return lastEntryPointer;
     }
 
+    private boolean isValueAt(long valuePointer, byte[] valueBytes) {
+        int valueLength = vals.getByte(valuePointer + 2) & 0xFF;
+        if (valueLength != valueBytes.length)
+            return false;
+        byte[] existingBytes = new byte[valueLength];
+        vals.getBytes(valuePointer + 3, existingBytes, valueLength);
+        return Arrays.equals(existingBytes, valueBytes);
+    }
+
+    /**
+     * @return an unmodifiable map of all key-value pairs of the specified entry
+     */
     public Map<String, String> getAll(final long entryPointer) {
         if (entryPointer < 0)
             throw new IllegalStateException("Pointer to access StringIndex cannot be negative:" + entryPointer);
@@ -195,6 +261,23 @@ public class StringIndex implements Storable<StringIndex> {
         if (entryPointer == EMPTY_POINTER)
             return Collections.emptyMap();
 
+        CachedEntry[] entries = cache;
+        if (entries == null)
+            return readEntry(entryPointer);
+
+        int slot = (int) BitMixer.mix64(entryPointer) & (entries.length - 1);
+        CachedEntry cached = entries[slot];
+        if (cached != null && cached.pointer == entryPointer) {
+            cacheHits.increment();
+            return cached.map;
+        }
+        cacheMisses.increment();
+        Map<String, String> map = readEntry(entryPointer);
+        entries[slot] = new CachedEntry(entryPointer, map);
+        return map;
+    }
+
+    private Map<String, String> readEntry(long entryPointer) {
         int keyCount = vals.getByte(entryPointer) & 0xFF;
         if (keyCount == 0)
             return Collections.emptyMap();
@@ -222,8 +305,7 @@ public class StringIndex implements Storable<StringIndex> {
             }
         }
 
-        // value for specified key does not existing for the specified pointer
-        return map;
+        return Collections.unmodifiableMap(map);
     }
 
     private int putIntoMap(Map<String, String> map, long tmpPointer, int currentKeyIndex) {
@@ -249,44 +331,8 @@ public class StringIndex implements Storable<StringIndex> {
         if (entryPointer == EMPTY_POINTER)
             return "";
 
-        int keyCount = vals.getByte(entryPointer) & 0xFF;
-        if (keyCount == 0)
-            return null;
-
-        Integer keyIndex = keysInMem.get(key);
-        // specified key is not known to the StringIndex
-        if (keyIndex == null)
-            return null;
-
-        long tmpPointer = entryPointer + 1;
-        for (int i = 0; i < keyCount; i++) {
-            int currentKeyIndex = vals.getShort(tmpPointer);
-            tmpPointer += 2;
-            if (Math.abs(currentKeyIndex) == keyIndex) {
-                if (currentKeyIndex < 0) {
-                    byte[] valueBytes = new byte[4];
-                    vals.getBytes(tmpPointer, valueBytes, valueBytes.length);
-                    tmpPointer = entryPointer - BitUtil.LITTLE.toInt(valueBytes);
-                    tmpPointer += 2;
-                    if (tmpPointer > bytePointer)
-                        throw new IllegalStateException("dup marker " + bytePointer + " should exist but points into not yet allocated area " + tmpPointer);
-                }
-
-                int valueLength = vals.getByte(tmpPointer) & 0xFF;
-                if (valueLength == 0)
-                    return "";
-
-                tmpPointer++;
-                byte[] valueBytes = new byte[valueLength];
-                vals.getBytes(tmpPointer, valueBytes, valueBytes.length);
-                return new String(valueBytes, Helper.UTF_CS);
-            }
-            int valueLength = vals.getByte(tmpPointer) & 0xFF;
-            tmpPointer += 1 + valueLength;
-        }
-
-        // value for specified key does not existing for the specified pointer
-        return null;
+        // null if the specified key does not exist for the specified pointer
+        return getAll(entryPointer).get(key);
     }
 
     private byte[] getBytesForString(String info, String name) {
@@ -320,6 +366,10 @@ public class StringIndex implements Storable<StringIndex> {
         vals.setHeader(0, BitUtil.LITTLE.getIntLow(bytePointer));
         vals.setHeader(4, BitUtil.LITTLE.getIntHigh(bytePointer));
         vals.flush();
+
+        // the dictionaries can be large and are usually not needed after the import
+        entryDictionary = new LongLongHashMap();
+        valueDictionary = new LongLongHashMap();
     }
 
     @Override
@@ -343,8 +393,49 @@ public class StringIndex implements Storable<StringIndex> {
         return vals.getCapacity() + keys.getCapacity();
     }
 
+    /**
+     * Puts the number of bytes that are filled with values into the specified map, keyed by the DataAccess name.
+     */
+    public void putUsedBytes(Map<String, Long> usedBytes) {
+        usedBytes.put(vals.getName(), bytePointer);
+    }
+
+    private static long hash(Map<String, String> entryMap) {
+        // the order of the pairs must not change the hash, see AbstractMap.hashCode
+        long hash = entryMap.size();
+        for (Map.Entry<String, String> entry : entryMap.entrySet()) {
+            hash += BitMixer.mix64(hash(entry.getKey()) * 31 + hash(entry.getValue()));
+        }
+        return hash;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the characters. Collisions only prevent the deduplication.
+     */
+    private static long hash(String str) {
+        if (str == null)
+            return 0;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < str.length(); i++) {
+            hash ^= str.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     public void copyTo(StringIndex stringIndex) {
         keys.copyTo(stringIndex.keys);
         vals.copyTo(stringIndex.vals);
     }
+
+    private static final class CachedEntry {
+        // final fields make it safe to publish the entry to other threads via the plain array
+        final long pointer;
+        final Map<String, String> map;
+
+        CachedEntry(long pointer, Map<String, String> map) {
+            this.pointer = pointer;
+            this.map = map;
+        }
+    }
 }
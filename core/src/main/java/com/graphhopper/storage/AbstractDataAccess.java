@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
+import java.util.zip.CRC32;
 
 /**
  * @author Peter Karich
@@ -33,6 +34,9 @@ public abstract class AbstractDataAccess implements DataAccess {
     // reserve some space for downstream usage (in classes using/extending this)
     protected static final int HEADER_OFFSET = 20 * 4 + 20;
     protected static final byte[] EMPTY = new byte[1024];
+    static final String MARKER = "GH";
+    // the highest bit of the stored checksum marks that the file has a checksum at all
+    private static final int CHECKSUM_FLAG = 1 << 31;
     private static final int SEGMENT_SIZE_DEFAULT = 1 << 20;
     protected final ByteOrder byteOrder;
     protected final BitUtil bitUtil;
@@ -43,6 +47,9 @@ public abstract class AbstractDataAccess implements DataAccess {
     protected int segmentSizePower;
     protected int indexDivisor;
     protected boolean closed = false;
+    private boolean checksum = false;
+    // the checksum of the header: 0 if there is none, otherwise CHECKSUM_FLAG and the lower 31 bits of the CRC32
+    private int headerChecksum;
 
     public AbstractDataAccess(String name, String location, ByteOrder order) {
         byteOrder = order;
@@ -89,13 +96,24 @@ public abstract class AbstractDataAccess implements DataAccess {
      * Writes some internal data into the beginning of the specified file.
      */
     protected void writeHeader(RandomAccessFile file, long length, int segmentSize) throws IOException {
+        writeHeader(file, MARKER, length, segmentSize);
+    }
+
+    /**
+     * Writes the header like {@link #writeHeader(RandomAccessFile, long, int)} but uses the specified file marker,
+     * which allows subclasses to write a different file format.
+     */
+    protected void writeHeader(RandomAccessFile file, String marker, long length, int segmentSize) throws IOException {
         file.seek(0);
-        file.writeUTF("GH");
+        file.writeUTF(marker);
         file.writeLong(length);
         file.writeInt(segmentSize);
         for (int i = 0; i < header.length; i++) {
             file.writeInt(header[i]);
         }
+        // only the default marker leaves enough space for the checksum
+        if (MARKER.equals(marker))
+            file.writeInt(headerChecksum);
     }
 
     protected long readHeader(RandomAccessFile raFile) throws IOException {
@@ -104,9 +122,67 @@ public abstract class AbstractDataAccess implements DataAccess {
             return -1;
 
         String versionHint = raFile.readUTF();
-        if (!"GH".equals(versionHint))
+        if (CompressedDataAccess.COMPRESSED_MARKER.equals(versionHint))
+            throw new IllegalArgumentException("The file " + getFullName() + " is compressed, use "
+                    + DAType.COMPRESSED_STORE + " to load it");
+        if (!MARKER.equals(versionHint))
             throw new IllegalArgumentException("Not a GraphHopper file! Expected 'GH' as file marker but was " + versionHint);
 
+        long bytes = readHeaderFields(raFile);
+        headerChecksum = raFile.readInt();
+        return bytes;
+    }
+
+    /**
+     * Enables or disables the CRC32 checksum of the stored data that is written into the header on every flush. A
+     * checksum that is found in the header of a loaded file is always verified, regardless of this setting. This is
+     * not supported by COMPRESSED_STORE.
+     */
+    public AbstractDataAccess setChecksum(boolean checksum) {
+        this.checksum = checksum;
+        return this;
+    }
+
+    public boolean isChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return the checksum to be filled with the stored data while flushing or null if checksums are disabled
+     */
+    protected CRC32 createFlushChecksum() {
+        return checksum ? new CRC32() : null;
+    }
+
+    /**
+     * Sets the checksum that is written by the next {@link #writeHeader}.
+     */
+    protected void setHeaderChecksum(CRC32 crc) {
+        headerChecksum = crc == null ? 0 : CHECKSUM_FLAG | (int) crc.getValue();
+    }
+
+    /**
+     * @return the checksum to be filled with the loaded data or null if the header of the loaded file has no checksum
+     */
+    protected CRC32 createLoadChecksum() {
+        return headerChecksum == 0 ? null : new CRC32();
+    }
+
+    /**
+     * @throws IllegalStateException if the checksum of the loaded data does not match the one of the header
+     */
+    protected void verifyChecksum(CRC32 crc) {
+        if (crc != null && (CHECKSUM_FLAG | (int) crc.getValue()) != headerChecksum)
+            throw new IllegalStateException("Checksum of " + getFullName() + " does not match the one stored in its "
+                    + "header, the file is corrupt");
+    }
+
+    /**
+     * Reads the part of the header that follows the file marker.
+     *
+     * @return the number of bytes that were stored
+     */
+    protected long readHeaderFields(RandomAccessFile raFile) throws IOException {
         long bytes = raFile.readLong();
         setSegmentSize(raFile.readInt());
         for (int i = 0; i < header.length; i++) {
@@ -164,11 +240,80 @@ public abstract class AbstractDataAccess implements DataAccess {
         return this;
     }
 
+    @Override
+    public void getInts(long bytePos, int[] values, int offset, int length) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int index = (int) (bytePos & indexDivisor);
+        if (index + (length << 2) <= segmentSizeInBytes) {
+            // fast path: all ints are in the same segment, e.g. for an edge entry
+            getInts((int) (bytePos >>> segmentSizePower), index, values, offset, length);
+            return;
+        }
+        while (length > 0) {
+            int segment = (int) (bytePos >>> segmentSizePower);
+            index = (int) (bytePos & indexDivisor);
+            int count = Math.min(length, (segmentSizeInBytes - index) >> 2);
+            if (count == 0)
+                throw new IllegalStateException("Padding required. Currently an int cannot be distributed over two segments. " + bytePos);
+            getInts(segment, index, values, offset, count);
+            bytePos += (long) count << 2;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Reads 'count' ints that are all located in the specified segment. Implementations should override this and
+     * access the segment directly.
+     */
+    protected void getInts(int segment, int index, int[] values, int offset, int count) {
+        long bytePos = ((long) segment << segmentSizePower) + index;
+        for (int i = 0; i < count; i++) {
+            values[offset + i] = getInt(bytePos + ((long) i << 2));
+        }
+    }
+
+    @Override
+    public void getShorts(long bytePos, short[] values, int offset, int length) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        while (length > 0) {
+            int segment = (int) (bytePos >>> segmentSizePower);
+            int index = (int) (bytePos & indexDivisor);
+            int count = Math.min(length, (segmentSizeInBytes - index) >> 1);
+            if (count == 0) {
+                // a short that is distributed over two segments
+                values[offset] = getShort(bytePos);
+                count = 1;
+            } else {
+                getShorts(segment, index, values, offset, count);
+            }
+            bytePos += (long) count << 1;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Reads 'count' shorts that are all located in the specified segment, see
+     * {@link #getInts(int, int, int[], int, int)}.
+     */
+    protected void getShorts(int segment, int index, short[] values, int offset, int count) {
+        long bytePos = ((long) segment << segmentSizePower) + index;
+        for (int i = 0; i < count; i++) {
+            values[offset + i] = getShort(bytePos + ((long) i << 1));
+        }
+    }
+
     @Override
     public int getSegmentSize() {
         return segmentSizeInBytes;
     }
 
+    @Override
+    public long getResidentBytes() {
+        return getCapacity();
+    }
+
     @Override
     public String toString() {
         return getFullName();
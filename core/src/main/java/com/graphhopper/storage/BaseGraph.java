@@ -29,8 +29,10 @@ import com.graphhopper.search.StringIndex;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Locale;
+import java.util.Map;
 
 import static com.graphhopper.util.Helper.nf;
 
@@ -76,6 +78,8 @@ class BaseGraph implements Graph {
     protected int N_EDGE_REF, N_LAT, N_LON, N_ELE, N_TC;
     // edge memory layout:
     int E_NODEA, E_NODEB, E_LINKA, E_LINKB, E_FLAGS, E_DIST, E_GEO, E_NAME;
+    // the number of ints in front of the flags of an edge entry, i.e. the nodes and the links
+    private static final int EDGE_RECORD_INTS = 4;
     /**
      * Specifies how many entries (integers) are used per edge.
      */
@@ -91,6 +95,11 @@ class BaseGraph implements Graph {
     private int nodeCount;
     private int edgeEntryIndex, nodeEntryIndex;
     private long maxGeoRef;
+    // if true the pillar nodes are stored as zig-zag encoded variable length deltas, see createCompressedWayGeometryBytes
+    private boolean compressedWayGeometry;
+    // if true the adjacency is additionally stored in compressed sparse row format once the graph is frozen
+    private boolean csrAdjacency;
+    private CSRAdjacency adjacency;
     private boolean frozen = false;
 
     public BaseGraph(Directory dir, final EncodingManager encodingManager, boolean withElevation,
@@ -107,7 +116,7 @@ class BaseGraph implements Graph {
         this.bounds = BBox.createInverse(withElevation);
         this.nodeAccess = new GHNodeAccess(this, withElevation);
         if (withTurnCosts) {
-            turnCostStorage = new TurnCostStorage(this, dir.find("turn_costs"));
+            turnCostStorage = new TurnCostStorage(this, dir.find("turn_costs"), dir.find("turn_cost_index", DAType.OFF_HEAP));
         } else {
             turnCostStorage = null;
         }
@@ -175,6 +184,43 @@ class BaseGraph implements Graph {
                     + "after calling create or loadExisting. Calling one of the methods twice is also not allowed.");
     }
 
+    /**
+     * Stores the pillar nodes of new graphs in a compressed format: the first point is stored with the usual integers
+     * and every following point as the zig-zag encoded variable length difference to its predecessor. Loaded graphs
+     * keep the format they were created with.
+     */
+    void setCompressedWayGeometry(boolean compressedWayGeometry) {
+        checkNotInitialized();
+        this.compressedWayGeometry = compressedWayGeometry;
+    }
+
+    boolean isCompressedWayGeometry() {
+        return compressedWayGeometry;
+    }
+
+    /**
+     * Builds a read-only copy of the adjacency lists when the graph is frozen (or loaded in the frozen state): the
+     * edges of every node are stored contiguously in arrays on the heap, so iterating them does not follow the linked
+     * edge lists anymore. The edges are iterated in the same order as before. Needs 4 bytes per node and 8 bytes per
+     * edge and direction.
+     */
+    void setCSRAdjacency(boolean csrAdjacency) {
+        this.csrAdjacency = csrAdjacency;
+        if (csrAdjacency && isFrozen() && adjacency == null)
+            adjacency = CSRAdjacency.build(this);
+    }
+
+    boolean isCSRAdjacency() {
+        return csrAdjacency;
+    }
+
+    /**
+     * @return true if the edge iterators currently use the compressed sparse row adjacency
+     */
+    boolean hasCSRAdjacency() {
+        return adjacency != null;
+    }
+
     void checkInitialized() {
         if (!initialized)
             throw new IllegalStateException("The graph has not yet been initialized.");
@@ -229,12 +275,14 @@ class BaseGraph implements Graph {
 
     protected int loadWayGeometryHeader() {
         maxGeoRef = bitUtil.combineIntsToLong(wayGeometry.getHeader(0), wayGeometry.getHeader(4));
+        compressedWayGeometry = wayGeometry.getHeader(8) == 1;
         return 1;
     }
 
     protected int setWayGeometryHeader() {
         wayGeometry.setHeader(0, bitUtil.getIntLow(maxGeoRef));
         wayGeometry.setHeader(4, bitUtil.getIntHigh(maxGeoRef));
+        wayGeometry.setHeader(8, compressedWayGeometry ? 1 : 0);
         return 1;
     }
 
@@ -246,6 +294,8 @@ class BaseGraph implements Graph {
         E_LINKA = nextEdgeEntryIndex(4);
         E_LINKB = nextEdgeEntryIndex(4);
         E_FLAGS = nextEdgeEntryIndex(intsForFlags * 4);
+        // the edge iterators read the nodes, links and flags of an edge with a single bulk read
+        assert E_NODEA == 0 && E_FLAGS == EDGE_RECORD_INTS * 4 : "nodes, links and flags must be stored consecutively";
 
         E_DIST = nextEdgeEntryIndex(4);
         E_GEO = nextEdgeEntryIndex(4);
@@ -359,6 +409,8 @@ class BaseGraph implements Graph {
             throw new IllegalStateException("base graph already frozen");
 
         frozen = true;
+        if (csrAdjacency)
+            adjacency = CSRAdjacency.build(this);
         listener.freeze();
     }
 
@@ -386,6 +438,8 @@ class BaseGraph implements Graph {
         maxGeoRef = 4;
 
         initNodeRefs(0, nodes.getCapacity());
+        if (supportsTurnCosts())
+            turnCostStorage.initHashIndex();
     }
 
     String toDetailsString() {
@@ -442,21 +496,29 @@ class BaseGraph implements Graph {
     }
 
     public void flush() {
+        StorableTasks tasks = StorableTasks.flush(1);
+        addFlushTasks(tasks);
+        tasks.run();
+    }
+
+    /**
+     * Sets the headers and adds the storables of this graph to the specified tasks, which can flush them in parallel.
+     */
+    void addFlushTasks(StorableTasks tasks) {
         if (!wayGeometry.isClosed()) {
             setWayGeometryHeader();
-            wayGeometry.flush();
+            tasks.add(wayGeometry.getName(), wayGeometry);
         }
 
         if (!stringIndex.isClosed())
-            stringIndex.flush();
+            tasks.add("string_index", stringIndex);
 
         setNodesHeader();
         setEdgesHeader();
-        edges.flush();
-        nodes.flush();
-        if (supportsTurnCosts()) {
-            turnCostStorage.flush();
-        }
+        tasks.add(edges.getName(), edges);
+        tasks.add(nodes.getName(), nodes);
+        if (supportsTurnCosts())
+            tasks.add("turn_costs", turnCostStorage);
     }
 
     public void close() {
@@ -473,40 +535,63 @@ class BaseGraph implements Graph {
 
     long getCapacity() {
         return edges.getCapacity() + nodes.getCapacity() + stringIndex.getCapacity()
-                + wayGeometry.getCapacity() + (supportsTurnCosts() ? turnCostStorage.getCapacity() : 0);
+                + wayGeometry.getCapacity() + (supportsTurnCosts() ? turnCostStorage.getCapacity() : 0)
+                + (adjacency == null ? 0 : adjacency.getCapacity());
+    }
+
+    /**
+     * Puts the number of bytes that are filled with data into the specified map, keyed by the DataAccess name.
+     */
+    void putUsedBytes(Map<String, Long> usedBytes) {
+        usedBytes.put(nodes.getName(), (long) nodeCount * nodeEntryBytes);
+        usedBytes.put(edges.getName(), (long) edgeCount * edgeEntryBytes);
+        usedBytes.put(wayGeometry.getName(), maxGeoRef * 4);
+        stringIndex.putUsedBytes(usedBytes);
+    }
+
+    /**
+     * @return the bytes of the compressed sparse row adjacency on the heap or 0 if it is not used
+     */
+    long getAdjacencyCapacity() {
+        return adjacency == null ? 0 : adjacency.getCapacity();
     }
 
     long getMaxGeoRef() {
         return maxGeoRef;
     }
 
-    void loadExisting(String dim) {
-        if (!nodes.loadExisting())
-            throw new IllegalStateException("Cannot load nodes. corrupt file or directory? " + dir);
-
+    /**
+     * Adds the storables of this graph to the specified tasks, which can load them in parallel. Afterwards
+     * {@link #initLoadedStorage()} needs to be called.
+     */
+    void addLoadTasks(String dim, StorableTasks tasks) {
         if (!dim.equalsIgnoreCase("" + nodeAccess.getDimension()))
             throw new IllegalStateException("Configured dimension (" + nodeAccess.getDimension() + ") is not equal "
                     + "to dimension of loaded graph (" + dim + ")");
 
-        if (!edges.loadExisting())
-            throw new IllegalStateException("Cannot load edges. corrupt file or directory? " + dir);
-
-        if (!wayGeometry.loadExisting())
-            throw new IllegalStateException("Cannot load geometry. corrupt file or directory? " + dir);
-
-        if (!stringIndex.loadExisting())
-            throw new IllegalStateException("Cannot load name index. corrupt file or directory? " + dir);
-
-        if (supportsTurnCosts() && !turnCostStorage.loadExisting())
-            throw new IllegalStateException("Cannot load turn cost storage. corrupt file or directory? " + dir);
-
-        // first define header indices of this storage
+        // first define header indices of this storage, the CH graphs need to do this before they are loaded
         initStorage();
 
+        tasks.add(nodes.getName(), nodes, "Cannot load nodes. corrupt file or directory? " + dir);
+        tasks.add(edges.getName(), edges, "Cannot load edges. corrupt file or directory? " + dir);
+        tasks.add(wayGeometry.getName(), wayGeometry, "Cannot load geometry. corrupt file or directory? " + dir);
+        tasks.add("string_index", stringIndex, "Cannot load name index. corrupt file or directory? " + dir);
+        if (supportsTurnCosts())
+            tasks.add("turn_costs", turnCostStorage, "Cannot load turn cost storage. corrupt file or directory? " + dir);
+    }
+
+    /**
+     * Reads the headers of the loaded storables and builds the in-memory structures like the CSR adjacency.
+     */
+    void initLoadedStorage() {
         // now load some properties from stored data
         loadNodesHeader();
         loadEdgesHeader();
         loadWayGeometryHeader();
+        if (csrAdjacency && frozen)
+            adjacency = CSRAdjacency.build(this);
+        if (supportsTurnCosts())
+            turnCostStorage.initHashIndex();
     }
 
     /**
@@ -710,10 +795,7 @@ class BaseGraph implements Graph {
     }
 
     private void readFlags(long edgePointer, IntsRef edgeFlags) {
-        int size = edgeFlags.ints.length;
-        for (int i = 0; i < size; i++) {
-            edgeFlags.ints[i] = edges.getInt(edgePointer + E_FLAGS + i * 4);
-        }
+        edges.getInts(edgePointer + E_FLAGS, edgeFlags.ints, 0, edgeFlags.ints.length);
     }
 
     private void writeFlags(long edgePointer, IntsRef edgeFlags) {
@@ -757,6 +839,10 @@ class BaseGraph implements Graph {
                         + "D for graph which is " + nodeAccess.getDimension() + "D");
 
             long existingGeoRef = Helper.toUnsignedLong(edges.getInt(edgePointer + E_GEO));
+            if (compressedWayGeometry) {
+                setCompressedWayGeometry_(pillarNodes, edgePointer, reverse, existingGeoRef);
+                return;
+            }
 
             int len = pillarNodes.getSize();
             int dim = nodeAccess.getDimension();
@@ -786,6 +872,154 @@ class BaseGraph implements Graph {
         edges.setInt(edgePointer + E_GEO, Helper.toSignedInt(geoRef));
     }
 
+    private void setCompressedWayGeometry_(PointList pillarNodes, long edgePointer, boolean reverse, long existingGeoRef) {
+        byte[] wayGeometryBytes = createCompressedWayGeometryBytes(pillarNodes, reverse);
+        long geoRef = existingGeoRef;
+        if (existingGeoRef == 0 || getCompressedWayGeometryLength(existingGeoRef * 4) < wayGeometryBytes.length) {
+            // the geometry is stored in 4 byte units like the uncompressed geometry, so the same 32 bit reference works
+            int units = (wayGeometryBytes.length + 3) / 4;
+            geoRef = nextGeoRef(units - 1);
+            ensureGeometry(geoRef * 4, units * 4);
+        }
+        wayGeometry.setBytes(geoRef * 4, wayGeometryBytes, wayGeometryBytes.length);
+        edges.setInt(edgePointer + E_GEO, Helper.toSignedInt(geoRef));
+    }
+
+    /**
+     * The compressed format is: the number of points and the number of bytes of the remaining data as variable
+     * length integers, then the first point as integers like in the uncompressed format, and for every following
+     * point the zig-zag encoded differences of the latitude, longitude and elevation to the previous point as variable
+     * length integers. Points of a way are close to each other, so most differences only need one or two bytes.
+     */
+    private byte[] createCompressedWayGeometryBytes(PointList pillarNodes, boolean reverse) {
+        int len = pillarNodes.getSize();
+        int dim = nodeAccess.getDimension();
+        boolean is3D = nodeAccess.is3D();
+        if (reverse)
+            pillarNodes.reverse();
+
+        // a difference of two integers needs at most 33 bits after zig-zag encoding, i.e. 5 bytes
+        byte[] data = new byte[dim * 4 + (len - 1) * dim * 5];
+        int prevLat = Helper.degreeToInt(pillarNodes.getLatitude(0));
+        int prevLon = Helper.degreeToInt(pillarNodes.getLongitude(0));
+        int prevEle = is3D ? Helper.eleToInt(pillarNodes.getElevation(0)) : 0;
+        bitUtil.fromInt(data, prevLat, 0);
+        bitUtil.fromInt(data, prevLon, 4);
+        int dataLength = 8;
+        if (is3D) {
+            bitUtil.fromInt(data, prevEle, 8);
+            dataLength += 4;
+        }
+        for (int i = 1; i < len; i++) {
+            int lat = Helper.degreeToInt(pillarNodes.getLatitude(i));
+            int lon = Helper.degreeToInt(pillarNodes.getLongitude(i));
+            dataLength = writeVarLong(data, dataLength, zigZagEncode((long) lat - prevLat));
+            dataLength = writeVarLong(data, dataLength, zigZagEncode((long) lon - prevLon));
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D) {
+                int ele = Helper.eleToInt(pillarNodes.getElevation(i));
+                dataLength = writeVarLong(data, dataLength, zigZagEncode((long) ele - prevEle));
+                prevEle = ele;
+            }
+        }
+
+        byte[] bytes = new byte[10 + dataLength];
+        int pos = writeVarLong(bytes, 0, len);
+        pos = writeVarLong(bytes, pos, dataLength);
+        System.arraycopy(data, 0, bytes, pos, dataLength);
+        return pos + dataLength == bytes.length ? bytes : Arrays.copyOf(bytes, pos + dataLength);
+    }
+
+    /**
+     * @return the number of bytes of the compressed geometry at the given byte position including its header
+     */
+    private int getCompressedWayGeometryLength(long bytePos) {
+        int count = (int) readVarLong(wayGeometry, bytePos);
+        int countLength = getVarLongLength(count);
+        int dataLength = (int) readVarLong(wayGeometry, bytePos + countLength);
+        return countLength + getVarLongLength(dataLength) + dataLength;
+    }
+
+    private void addCompressedPoints(PointList pillarNodes, byte[] data, int count) {
+        boolean is3D = nodeAccess.is3D();
+        int lat = bitUtil.toInt(data, 0);
+        int lon = bitUtil.toInt(data, 4);
+        int ele = is3D ? bitUtil.toInt(data, 8) : 0;
+        int pos = is3D ? 12 : 8;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                long value = readVarLong(data, pos);
+                pos += getVarLongLength(value);
+                lat += (int) zigZagDecode(value);
+                value = readVarLong(data, pos);
+                pos += getVarLongLength(value);
+                lon += (int) zigZagDecode(value);
+                if (is3D) {
+                    value = readVarLong(data, pos);
+                    pos += getVarLongLength(value);
+                    ele += (int) zigZagDecode(value);
+                }
+            }
+            if (is3D)
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon), Helper.intToEle(ele));
+            else
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon));
+        }
+    }
+
+    static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes a non-negative value with 7 bits per byte, the highest bit marks that more bytes follow, see
+     * {@link VLongStorage#writeVLong(long)}.
+     *
+     * @return the position after the written bytes
+     */
+    static int writeVarLong(byte[] bytes, int pos, long value) {
+        while ((value & ~0x7FL) != 0L) {
+            bytes[pos++] = (byte) ((value & 0x7FL) | 0x80L);
+            value >>>= 7;
+        }
+        bytes[pos++] = (byte) value;
+        return pos;
+    }
+
+    static long readVarLong(byte[] bytes, int pos) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    private static long readVarLong(DataAccess da, long bytePos) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = da.getByte(bytePos++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    static int getVarLongLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0L) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
     private byte[] createWayGeometryBytes(PointList pillarNodes, boolean reverse) {
         int len = pillarNodes.getSize();
         int dim = nodeAccess.getDimension();
@@ -823,7 +1057,15 @@ class BaseGraph implements Graph {
         long geoRef = Helper.toUnsignedLong(edges.getInt(edgePointer + E_GEO));
         int count = 0;
         byte[] bytes = null;
-        if (geoRef > 0) {
+        if (geoRef > 0 && compressedWayGeometry) {
+            geoRef *= 4L;
+            count = (int) readVarLong(wayGeometry, geoRef);
+            geoRef += getVarLongLength(count);
+            int dataLength = (int) readVarLong(wayGeometry, geoRef);
+            geoRef += getVarLongLength(dataLength);
+            bytes = new byte[dataLength];
+            wayGeometry.getBytes(geoRef, bytes, bytes.length);
+        } else if (geoRef > 0) {
             geoRef *= 4L;
             count = wayGeometry.getInt(geoRef);
 
@@ -840,17 +1082,22 @@ class BaseGraph implements Graph {
         } else if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
             pillarNodes.add(nodeAccess, baseNode);
 
-        int index = 0;
-        for (int i = 0; i < count; i++) {
-            double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            if (nodeAccess.is3D()) {
-                pillarNodes.add(lat, lon, Helper.intToEle(bitUtil.toInt(bytes, index)));
+        if (compressedWayGeometry) {
+            if (count > 0)
+                addCompressedPoints(pillarNodes, bytes, count);
+        } else {
+            int index = 0;
+            for (int i = 0; i < count; i++) {
+                double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
                 index += 4;
-            } else {
-                pillarNodes.add(lat, lon);
+                double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
+                index += 4;
+                if (nodeAccess.is3D()) {
+                    pillarNodes.add(lat, lon, Helper.intToEle(bitUtil.toInt(bytes, index)));
+                    index += 4;
+                } else {
+                    pillarNodes.add(lat, lon);
+                }
             }
         }
 
@@ -904,6 +1151,9 @@ class BaseGraph implements Graph {
     protected static class EdgeIteratorImpl extends EdgeIteratorStateImpl implements EdgeExplorer, EdgeIterator {
         final EdgeFilter filter;
         int nextEdgeId;
+        // the range of the current base node in the compressed sparse row adjacency, if it is available
+        private CSRAdjacency adjacency;
+        private int adjIndex, adjEnd;
 
         public EdgeIteratorImpl(BaseGraph baseGraph, EdgeFilter filter) {
             super(baseGraph);
@@ -915,7 +1165,14 @@ class BaseGraph implements Graph {
 
         @Override
         public EdgeIterator setBaseNode(int baseNode) {
-            nextEdgeId = edgeId = baseGraph.getEdgeRef(baseNode);
+            adjacency = baseGraph.adjacency;
+            if (adjacency != null) {
+                adjIndex = adjacency.offsets[baseNode];
+                adjEnd = adjacency.offsets[baseNode + 1];
+                nextEdgeId = edgeId = EdgeIterator.NO_EDGE;
+            } else {
+                nextEdgeId = edgeId = baseGraph.getEdgeRef(baseNode);
+            }
             this.baseNode = baseNode;
             return this;
         }
@@ -923,7 +1180,7 @@ class BaseGraph implements Graph {
         @Override
         public final boolean next() {
             while (true) {
-                if (!EdgeIterator.Edge.isValid(nextEdgeId))
+                if (!hasNext())
                     return false;
                 goToNext();
                 if (filter.accept(this)) {
@@ -932,17 +1189,31 @@ class BaseGraph implements Graph {
             }
         }
 
+        final boolean hasNext() {
+            return adjacency != null ? adjIndex < adjEnd : EdgeIterator.Edge.isValid(nextEdgeId);
+        }
+
         void goToNext() {
+            if (adjacency != null) {
+                int edgeKey = adjacency.edgeKeys[adjIndex];
+                adjNode = adjacency.adjNodes[adjIndex];
+                adjIndex++;
+                edgeId = edgeKey >>> 1;
+                edgePointer = baseGraph.toPointer(edgeId);
+                reverse = (edgeKey & 1) != 0;
+                freshFlags = false;
+                return;
+            }
             edgePointer = baseGraph.toPointer(nextEdgeId);
             edgeId = nextEdgeId;
-            int nodeA = baseGraph.getNodeA(edgePointer);
+            int[] record = readEdgeRecord();
+            int nodeA = record[0];
             boolean baseNodeIsNodeA = baseNode == nodeA;
-            adjNode = baseNodeIsNodeA ? baseGraph.getNodeB(edgePointer) : nodeA;
+            adjNode = baseNodeIsNodeA ? record[1] : nodeA;
             reverse = !baseNodeIsNodeA;
-            freshFlags = false;
 
             // position to next edge
-            nextEdgeId = baseNodeIsNodeA ? baseGraph.getLinkA(edgePointer) : baseGraph.getLinkB(edgePointer);
+            nextEdgeId = baseNodeIsNodeA ? record[2] : record[3];
             assert nextEdgeId != edgeId : ("endless loop detected for base node: " + baseNode + ", adj node: " + adjNode
                     + ", edge pointer: " + edgePointer + ", edge: " + edgeId);
         }
@@ -974,9 +1245,9 @@ class BaseGraph implements Graph {
             if (edgeId >= baseGraph.edgeCount)
                 return false;
             edgePointer = baseGraph.toPointer(edgeId);
-            baseNode = baseGraph.getNodeA(edgePointer);
-            adjNode = baseGraph.getNodeB(edgePointer);
-            freshFlags = false;
+            int[] record = readEdgeRecord();
+            baseNode = record[0];
+            adjNode = record[1];
             reverse = false;
             return true;
         }
@@ -1012,10 +1283,27 @@ class BaseGraph implements Graph {
         boolean freshFlags;
         int edgeId = -1;
         private final IntsRef edgeFlags;
+        // nodeA, nodeB, linkA, linkB and the flags of the current edge
+        private final int[] edgeRecord;
 
         public EdgeIteratorStateImpl(BaseGraph baseGraph) {
             this.baseGraph = baseGraph;
             this.edgeFlags = new IntsRef(baseGraph.intsForFlags);
+            this.edgeRecord = new int[EDGE_RECORD_INTS + baseGraph.intsForFlags];
+        }
+
+        /**
+         * Reads the nodes, links and flags of the edge at the current edge pointer in one call instead of one
+         * call per int. The flags are kept, so a subsequent {@link #getFlags()} does not need to read them again.
+         */
+        final int[] readEdgeRecord() {
+            baseGraph.edges.getInts(edgePointer, edgeRecord, 0, edgeRecord.length);
+            int[] ints = edgeFlags.ints;
+            for (int i = 0; i < ints.length; i++) {
+                ints[i] = edgeRecord[EDGE_RECORD_INTS + i];
+            }
+            freshFlags = true;
+            return edgeRecord;
         }
 
         /**
@@ -1026,9 +1314,9 @@ class BaseGraph implements Graph {
                 throw new IllegalArgumentException("fetching the edge requires a valid edgeId but was " + edgeId);
             this.edgeId = edgeId;
             edgePointer = baseGraph.toPointer(edgeId);
-            baseNode = baseGraph.getNodeA(edgePointer);
-            adjNode = baseGraph.getNodeB(edgePointer);
-            freshFlags = false;
+            int[] record = readEdgeRecord();
+            baseNode = record[0];
+            adjNode = record[1];
 
             if (expectedAdjNode == adjNode || expectedAdjNode == Integer.MIN_VALUE) {
                 reverse = false;
@@ -1051,9 +1339,9 @@ class BaseGraph implements Graph {
                 throw new IllegalArgumentException("edge keys must not be negative, given: " + edgeKey);
             this.edgeId = GHUtility.getEdgeFromEdgeKey(edgeKey);
             edgePointer = baseGraph.toPointer(edgeId);
-            baseNode = baseGraph.getNodeA(edgePointer);
-            adjNode = baseGraph.getNodeB(edgePointer);
-            freshFlags = false;
+            int[] record = readEdgeRecord();
+            baseNode = record[0];
+            adjNode = record[1];
 
             if (edgeKey % 2 == 0 || baseNode == adjNode) {
                 reverse = false;
@@ -1311,4 +1599,60 @@ class BaseGraph implements Graph {
             return getEdge() + " " + getBaseNode() + "-" + getAdjNode();
         }
     }
+
+    /**
+     * The adjacency of a frozen graph in compressed sparse row format: the edges of node n are stored at the indices
+     * offsets[n] (inclusive) to offsets[n + 1] (exclusive) of edgeKeys and adjNodes. The edge keys contain the edge id
+     * and whether the base node is node B of the edge, like the edge keys of GHUtility.createEdgeKey.
+     */
+    static final class CSRAdjacency {
+        final int[] offsets;
+        final int[] edgeKeys;
+        final int[] adjNodes;
+
+        private CSRAdjacency(int[] offsets, int[] edgeKeys, int[] adjNodes) {
+            this.offsets = offsets;
+            this.edgeKeys = edgeKeys;
+            this.adjNodes = adjNodes;
+        }
+
+        static CSRAdjacency build(BaseGraph graph) {
+            int nodes = graph.getNodes();
+            int[] offsets = new int[nodes + 1];
+            // walk the linked edge lists twice: count the edges per node first and then fill the arrays in the order
+            // the linked lists are iterated, so both layouts yield the same order
+            long total = 0;
+            for (int node = 0; node < nodes; node++) {
+                offsets[node] = (int) total;
+                for (int edge = graph.getEdgeRef(node); EdgeIterator.Edge.isValid(edge); ) {
+                    long edgePointer = graph.toPointer(edge);
+                    edge = graph.getNodeA(edgePointer) == node ? graph.getLinkA(edgePointer) : graph.getLinkB(edgePointer);
+                    total++;
+                }
+                if (total > Integer.MAX_VALUE - 8)
+                    throw new IllegalStateException("Too many edges for the compressed sparse row adjacency: " + total);
+            }
+            offsets[nodes] = (int) total;
+
+            int[] edgeKeys = new int[(int) total];
+            int[] adjNodes = new int[(int) total];
+            int index = 0;
+            for (int node = 0; node < nodes; node++) {
+                for (int edge = graph.getEdgeRef(node); EdgeIterator.Edge.isValid(edge); ) {
+                    long edgePointer = graph.toPointer(edge);
+                    int nodeA = graph.getNodeA(edgePointer);
+                    boolean baseNodeIsNodeA = node == nodeA;
+                    edgeKeys[index] = (edge << 1) | (baseNodeIsNodeA ? 0 : 1);
+                    adjNodes[index] = baseNodeIsNodeA ? graph.getNodeB(edgePointer) : nodeA;
+                    index++;
+                    edge = baseNodeIsNodeA ? graph.getLinkA(edgePointer) : graph.getLinkB(edgePointer);
+                }
+            }
+            return new CSRAdjacency(offsets, edgeKeys, adjNodes);
+        }
+
+        long getCapacity() {
+            return 4L * (offsets.length + edgeKeys.length + adjNodes.length);
+        }
+    }
 }
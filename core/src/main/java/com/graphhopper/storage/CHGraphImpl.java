@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Locale;
+import java.util.Map;
 
 import static com.graphhopper.util.Helper.nf;
 
@@ -436,6 +437,14 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
         return nodesCH.getCapacity() + shortcuts.getCapacity();
     }
 
+    /**
+     * Puts the number of bytes that are filled with data into the specified map, keyed by the DataAccess name.
+     */
+    void putUsedBytes(Map<String, Long> usedBytes) {
+        usedBytes.put(nodesCH.getName(), (long) getNodes() * nodeCHEntryBytes);
+        usedBytes.put(shortcuts.getName(), (long) shortcutCount * shortcutEntryBytes);
+    }
+
     @Override
     public String toString() {
         return "CHGraph|" + chConfig.getName() + "|" + chConfig.getTraversalMode();
@@ -514,8 +523,7 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
         public final CHEdgeIterator setBaseNode(int baseNode) {
             assert baseIterator.baseGraph.isFrozen() : "Traversing CHGraph is only possible if BaseGraph is frozen";
 
-            baseIterator.nextEdgeId = baseIterator.edgeId = baseGraph.getEdgeRef(baseNode);
-            baseIterator.baseNode = baseNode;
+            baseIterator.setBaseNode(baseNode);
 
             nextEdgeId = edgeId = CHGraphImpl.this.getEdgeRef(baseNode);
             return this;
@@ -542,7 +550,7 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
             }
 
             while (true) {
-                if (!EdgeIterator.Edge.isValid(baseIterator.nextEdgeId))
+                if (!baseIterator.hasNext())
                     return false;
                 baseIterator.goToNext();
                 // we update edgeId even when iterating base edges
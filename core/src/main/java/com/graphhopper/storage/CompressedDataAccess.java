@@ -0,0 +1,428 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An in-memory DataAccess like {@link RAMDataAccess} that compresses every segment when it is flushed. This makes the
+ * graph folder a lot smaller, which is useful if it has to be copied to many servers. On loadExisting only the
+ * offsets of the compressed segments are read and a segment is decompressed into the heap when it is accessed for the
+ * first time. So a server can start to answer requests before the whole graph was read and segments that are never
+ * accessed are never decompressed.
+ * <p>
+ * The segments are compressed with Deflate at its fastest level. A file in the uncompressed format of RAMDataAccess
+ * and MMapDataAccess can be loaded as well (lazily too) and is written in the compressed format on the next flush.
+ * Thread safe for concurrent reads.
+ */
+public class CompressedDataAccess extends AbstractDataAccess {
+    static final String COMPRESSED_MARKER = "GHZ";
+    // a segment is null as long as it was not read from the file
+    private AtomicReferenceArray<byte[]> segments = new AtomicReferenceArray<>(0);
+    // the file of the missing segments, null if all segments are in memory
+    private RandomAccessFile file;
+    private boolean compressedFile;
+    // the file positions of the compressed segments, the last entry is the end of the last segment
+    private long[] segmentOffsets;
+    private int missingSegments;
+
+    CompressedDataAccess(String name, String location, ByteOrder order) {
+        super(name, location, order);
+    }
+
+    @Override
+    public CompressedDataAccess create(long bytes) {
+        if (segments.length() > 0)
+            throw new IllegalThreadStateException("already created");
+
+        setSegmentSize(segmentSizeInBytes);
+        ensureCapacity(Math.max(10 * 4, bytes));
+        return this;
+    }
+
+    @Override
+    public boolean ensureCapacity(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("new capacity has to be strictly positive");
+
+        long cap = getCapacity();
+        long newBytes = bytes - cap;
+        if (newBytes <= 0)
+            return false;
+
+        int segmentsToCreate = (int) (newBytes / segmentSizeInBytes);
+        if (newBytes % segmentSizeInBytes != 0)
+            segmentsToCreate++;
+
+        try {
+            AtomicReferenceArray<byte[]> newSegs = new AtomicReferenceArray<>(segments.length() + segmentsToCreate);
+            for (int i = 0; i < segments.length(); i++) {
+                newSegs.set(i, segments.get(i));
+            }
+            for (int i = segments.length(); i < newSegs.length(); i++) {
+                newSegs.set(i, new byte[segmentSizeInBytes]);
+            }
+            segments = newSegs;
+        } catch (OutOfMemoryError err) {
+            throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new memory. Old capacity: "
+                    + cap + ", new bytes:" + newBytes + ", segmentSizeIntsPower:" + segmentSizePower
+                    + ", new segments:" + segmentsToCreate + ", existing:" + segments.length());
+        }
+        return true;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (segments.length() > 0)
+            throw new IllegalStateException("already initialized");
+
+        if (isClosed())
+            throw new IllegalStateException("already closed");
+
+        File f = new File(getFullName());
+        if (!f.exists() || f.length() == 0)
+            return false;
+
+        RandomAccessFile raFile = null;
+        try {
+            raFile = new RandomAccessFile(getFullName(), "r");
+            String marker = raFile.readUTF();
+            if (!MARKER.equals(marker) && !COMPRESSED_MARKER.equals(marker))
+                throw new IllegalArgumentException("Not a GraphHopper file! Expected 'GH' or 'GHZ' as file marker but was " + marker);
+
+            long byteCount = readHeaderFields(raFile) - HEADER_OFFSET;
+            if (byteCount < 0) {
+                raFile.close();
+                return false;
+            }
+
+            int segmentCount = (int) (byteCount / segmentSizeInBytes);
+            if (byteCount % segmentSizeInBytes != 0)
+                segmentCount++;
+
+            compressedFile = COMPRESSED_MARKER.equals(marker);
+            if (compressedFile) {
+                segmentOffsets = new long[segmentCount + 1];
+                raFile.seek(HEADER_OFFSET);
+                for (int s = 0; s <= segmentCount; s++) {
+                    segmentOffsets[s] = raFile.readLong();
+                }
+            }
+            segments = new AtomicReferenceArray<>(segmentCount);
+            missingSegments = segmentCount;
+            if (missingSegments == 0)
+                raFile.close();
+            else
+                file = raFile;
+            return true;
+        } catch (IOException ex) {
+            closeQuietly(raFile);
+            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+        }
+    }
+
+    /**
+     * Returns the specified segment and reads it from the file if this did not happen yet.
+     */
+    private byte[] getSegment(int index) {
+        byte[] segment = segments.get(index);
+        if (segment == null)
+            return readSegment(index);
+        return segment;
+    }
+
+    private synchronized byte[] readSegment(int index) {
+        byte[] segment = segments.get(index);
+        if (segment != null)
+            return segment;
+        if (closed)
+            throw new IllegalStateException("already closed");
+
+        segment = new byte[segmentSizeInBytes];
+        try {
+            if (compressedFile) {
+                byte[] compressed = new byte[(int) (segmentOffsets[index + 1] - segmentOffsets[index])];
+                file.seek(segmentOffsets[index]);
+                file.readFully(compressed);
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(compressed);
+                    int length = 0;
+                    while (length < segment.length && !inflater.finished()) {
+                        int read = inflater.inflate(segment, length, segment.length - length);
+                        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                            break;
+                        length += read;
+                    }
+                    if (length != segment.length)
+                        throw new IllegalStateException("segment " + index + " of " + toString() + " is corrupt, only "
+                                + length + " of " + segment.length + " bytes could be decompressed");
+                } finally {
+                    inflater.end();
+                }
+            } else {
+                long position = HEADER_OFFSET + (long) index * segmentSizeInBytes;
+                // the last segment might not have been written completely, the rest of it stays zero
+                int length = (int) Math.max(0, Math.min(segmentSizeInBytes, file.length() - position));
+                file.seek(position);
+                file.readFully(segment, 0, length);
+            }
+        } catch (IOException | DataFormatException ex) {
+            throw new RuntimeException("Problem while reading segment " + index + " of " + getFullName(), ex);
+        }
+
+        segments.set(index, segment);
+        missingSegments--;
+        if (missingSegments == 0)
+            closeFile();
+        return segment;
+    }
+
+    /**
+     * Reads all segments that were not accessed so far, afterwards the file is no longer needed.
+     */
+    public void readAllSegments() {
+        for (int s = 0; s < segments.length() && missingSegments > 0; s++) {
+            getSegment(s);
+        }
+    }
+
+    /**
+     * @return the number of segments that are currently decompressed in memory
+     */
+    public int getLoadedSegments() {
+        return segments.length() - missingSegments;
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (closed)
+            throw new IllegalStateException("already closed");
+
+        // all segments are needed in memory as we overwrite the file they are read from
+        readAllSegments();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try (RandomAccessFile raFile = new RandomAccessFile(getFullName(), "rw")) {
+            int segmentCount = segments.length();
+            long[] offsets = new long[segmentCount + 1];
+            long position = HEADER_OFFSET + (long) (segmentCount + 1) * 8;
+            raFile.seek(position);
+            byte[] buffer = new byte[64 * 1024];
+            for (int s = 0; s < segmentCount; s++) {
+                offsets[s] = position;
+                deflater.reset();
+                deflater.setInput(segments.get(s));
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(buffer);
+                    raFile.write(buffer, 0, length);
+                    position += length;
+                }
+            }
+            offsets[segmentCount] = position;
+            raFile.setLength(position);
+
+            writeHeader(raFile, COMPRESSED_MARKER, getCapacity(), segmentSizeInBytes);
+            raFile.seek(HEADER_OFFSET);
+            ByteBuffer offsetBytes = ByteBuffer.allocate(offsets.length * 8);
+            for (long offset : offsets) {
+                offsetBytes.putLong(offset);
+            }
+            raFile.write(offsetBytes.array());
+        } catch (Exception ex) {
+            throw new RuntimeException("Couldn't store bytes to " + toString(), ex);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public final void setInt(long bytePos, int value) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 4 > segmentSizeInBytes)
+            throw new IllegalStateException("Padding required. Currently an int cannot be distributed over two segments. " + bytePos);
+        bitUtil.fromInt(getSegment(bufferIndex), value, index);
+    }
+
+    @Override
+    public final int getInt(long bytePos) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 4 > segmentSizeInBytes)
+            throw new IllegalStateException("Padding required. Currently an int cannot be distributed over two segments. " + bytePos);
+        return bitUtil.toInt(getSegment(bufferIndex), index);
+    }
+
+    @Override
+    public final void setShort(long bytePos, short value) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 2 > segmentSizeInBytes) {
+            // special case if short has to be written into two separate segments
+            getSegment(bufferIndex)[index] = (byte) (value);
+            getSegment(bufferIndex + 1)[0] = (byte) (value >>> 8);
+        } else {
+            bitUtil.fromShort(getSegment(bufferIndex), value, index);
+        }
+    }
+
+    @Override
+    public final short getShort(long bytePos) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 2 > segmentSizeInBytes)
+            return (short) ((getSegment(bufferIndex + 1)[0] & 0xFF) << 8 | (getSegment(bufferIndex)[index] & 0xFF));
+        else
+            return bitUtil.toShort(getSegment(bufferIndex), index);
+    }
+
+    @Override
+    protected void getInts(int segment, int index, int[] values, int offset, int count) {
+        byte[] bytes = getSegment(segment);
+        for (int i = 0; i < count; i++, index += 4) {
+            values[offset + i] = bitUtil.toInt(bytes, index);
+        }
+    }
+
+    @Override
+    protected void getShorts(int segment, int index, short[] values, int offset, int count) {
+        byte[] bytes = getSegment(segment);
+        for (int i = 0; i < count; i++, index += 2) {
+            values[offset + i] = bitUtil.toShort(bytes, index);
+        }
+    }
+
+    @Override
+    public void setBytes(long bytePos, byte[] values, int length) {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        byte[] seg = getSegment(bufferIndex);
+        int delta = index + length - segmentSizeInBytes;
+        if (delta > 0) {
+            length -= delta;
+            System.arraycopy(values, 0, seg, index, length);
+            seg = getSegment(bufferIndex + 1);
+            System.arraycopy(values, length, seg, 0, delta);
+        } else {
+            System.arraycopy(values, 0, seg, index, length);
+        }
+    }
+
+    @Override
+    public void getBytes(long bytePos, byte[] values, int length) {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        byte[] seg = getSegment(bufferIndex);
+        int delta = index + length - segmentSizeInBytes;
+        if (delta > 0) {
+            length -= delta;
+            System.arraycopy(seg, index, values, 0, length);
+            seg = getSegment(bufferIndex + 1);
+            System.arraycopy(seg, 0, values, length, delta);
+        } else {
+            System.arraycopy(seg, index, values, 0, length);
+        }
+    }
+
+    @Override
+    public final void setByte(long bytePos, byte value) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        getSegment(bufferIndex)[index] = value;
+    }
+
+    @Override
+    public final byte getByte(long bytePos) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        return getSegment(bufferIndex)[index];
+    }
+
+    @Override
+    public synchronized void close() {
+        super.close();
+        closeFile();
+        segments = new AtomicReferenceArray<>(0);
+        segmentOffsets = null;
+        missingSegments = 0;
+    }
+
+    private void closeFile() {
+        closeQuietly(file);
+        file = null;
+    }
+
+    private static void closeQuietly(RandomAccessFile raFile) {
+        if (raFile == null)
+            return;
+        try {
+            raFile.close();
+        } catch (IOException ex) {
+            // ignore, we only read from this file
+        }
+    }
+
+    @Override
+    public long getCapacity() {
+        return (long) getSegments() * segmentSizeInBytes;
+    }
+
+    @Override
+    public int getSegments() {
+        return segments.length();
+    }
+
+    @Override
+    public long getResidentBytes() {
+        return (long) getLoadedSegments() * segmentSizeInBytes;
+    }
+
+    @Override
+    public void rename(String newName) {
+        if (!checkBeforeRename(newName)) {
+            return;
+        }
+        // the file is renamed, so read the missing segments from the old one
+        readAllSegments();
+        super.rename(newName);
+    }
+
+    @Override
+    public DAType getType() {
+        return DAType.COMPRESSED_STORE;
+    }
+}
@@ -47,6 +47,21 @@ public class DAType {
      * Memory mapped DA object. See MMapDataAccess.
      */
     public static final DAType MMAP = new DAType(MemRef.MMAP, true, false, true);
+    /**
+     * The DA object is hold entirely in direct memory outside of the JVM heap. Loading and flushing is a no-op. See
+     * OffHeapDataAccess.
+     */
+    public static final DAType OFF_HEAP = new DAType(MemRef.OFF_HEAP, false, false, true);
+    /**
+     * The DA object is hold entirely in direct memory outside of the JVM heap and is read from and written to disc
+     * like RAM_STORE. See OffHeapDataAccess.
+     */
+    public static final DAType OFF_HEAP_STORE = new DAType(MemRef.OFF_HEAP, true, false, true);
+    /**
+     * The DA object is hold in-memory and every segment is compressed when it is flushed to disc. A segment is
+     * decompressed when it is accessed for the first time after loading. See CompressedDataAccess.
+     */
+    public static final DAType COMPRESSED_STORE = new DAType(MemRef.COMPRESSED, true, false, true);
 
     /**
      * Read-only memory mapped DA object. To avoid write access useful for reading on mobile or
@@ -78,6 +93,12 @@ public class DAType {
             type = DAType.MMAP_RO;
         else if (dataAccess.contains("MMAP"))
             type = DAType.MMAP;
+        else if (dataAccess.contains("COMPRESSED"))
+            type = DAType.COMPRESSED_STORE;
+        else if (dataAccess.contains("OFF_HEAP_STORE"))
+            type = DAType.OFF_HEAP_STORE;
+        else if (dataAccess.contains("OFF_HEAP"))
+            type = DAType.OFF_HEAP;
         else if (dataAccess.contains("UNSAFE"))
             throw new IllegalArgumentException("UNSAFE option is no longer supported, see #1620");
         else if (dataAccess.contains("RAM_STORE"))
@@ -97,7 +118,7 @@ public class DAType {
     }
 
     /**
-     * Memory mapped or purely in memory? default is HEAP
+     * Memory mapped, purely in memory or off-heap? default is HEAP
      */
     MemRef getMemRef() {
         return memRef;
@@ -118,6 +139,20 @@ public class DAType {
         return memRef == MemRef.MMAP;
     }
 
+    /**
+     * @return true if data resides in direct memory outside of the JVM heap.
+     */
+    public boolean isOffHeap() {
+        return memRef == MemRef.OFF_HEAP;
+    }
+
+    /**
+     * @return true if the data is compressed on disc and decompressed into the JVM heap on first access.
+     */
+    public boolean isCompressed() {
+        return memRef == MemRef.COMPRESSED;
+    }
+
     /**
      * Temporary data or store (with loading and storing)? default is false
      */
@@ -137,6 +172,10 @@ public class DAType {
         String str;
         if (getMemRef() == MemRef.MMAP)
             str = "MMAP";
+        else if (getMemRef() == MemRef.OFF_HEAP)
+            str = "OFF_HEAP";
+        else if (getMemRef() == MemRef.COMPRESSED)
+            str = "COMPRESSED";
         else
             str = "RAM";
 
@@ -173,6 +212,6 @@ public class DAType {
     }
 
     public enum MemRef {
-        HEAP, MMAP
+        HEAP, MMAP, OFF_HEAP, COMPRESSED
     }
 }
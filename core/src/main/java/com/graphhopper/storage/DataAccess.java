@@ -53,6 +53,14 @@ public interface DataAccess extends Storable<DataAccess> {
      */
     int getInt(long bytePos);
 
+    /**
+     * Get 'length' consecutive ints starting at position 'bytePos' in one call. This is equivalent to calling
+     * {@link #getInt(long)} for every int but avoids the repeated segment lookup (and locking, if any).
+     *
+     * @param values acts as output, the ints are written starting at 'offset'
+     */
+    void getInts(long bytePos, int[] values, int offset, int length);
+
     /**
      * Set 2 bytes at position 'index' to the specified value
      */
@@ -63,6 +71,14 @@ public interface DataAccess extends Storable<DataAccess> {
      */
     short getShort(long bytePos);
 
+    /**
+     * Get 'length' consecutive shorts starting at position 'bytePos' in one call, see
+     * {@link #getInts(long, int[], int, int)}.
+     *
+     * @param values acts as output, the shorts are written starting at 'offset'
+     */
+    void getShorts(long bytePos, short[] values, int offset, int length);
+
     /**
      * Set bytes from position 'index' to the specified values
      */
@@ -127,6 +143,12 @@ public interface DataAccess extends Storable<DataAccess> {
      */
     int getSegments();
 
+    /**
+     * @return an estimate of the bytes that are currently held in memory. This can be less than the capacity if the
+     * segments are loaded lazily or, for memory mapped files, if parts of the file are not in the page cache.
+     */
+    long getResidentBytes();
+
     /**
      * @return the data access type of this object.
      */
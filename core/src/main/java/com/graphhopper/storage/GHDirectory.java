@@ -36,6 +36,7 @@ public class GHDirectory implements Directory {
     private final ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
     protected Map<String, DataAccess> map = new HashMap<>();
     protected Map<String, DAType> types = new HashMap<>();
+    private boolean checksums = false;
 
     public GHDirectory(String _location, DAType defaultType) {
         this.defaultType = defaultType;
@@ -56,6 +57,19 @@ public class GHDirectory implements Directory {
         return byteOrder;
     }
 
+    /**
+     * Enables a checksum of the stored data in the header of all DataAccess objects that are created afterwards, see
+     * {@link AbstractDataAccess#setChecksum(boolean)}.
+     */
+    public GHDirectory setChecksums(boolean checksums) {
+        this.checksums = checksums;
+        return this;
+    }
+
+    public boolean isChecksums() {
+        return checksums;
+    }
+
     public Directory put(String name, DAType type) {
         if (!name.equals(toLowerCase(name)))
             throw new IllegalArgumentException("Since 0.7 DataAccess objects does no longer accept upper case names");
@@ -98,10 +112,16 @@ public class GHDirectory implements Directory {
                 da = new RAMDataAccess(name, location, false, byteOrder);
         } else if (type.isMMap()) {
             da = new MMapDataAccess(name, location, byteOrder, type.isAllowWrites());
+        } else if (type.isOffHeap()) {
+            da = new OffHeapDataAccess(name, location, type.isStoring(), byteOrder);
+        } else if (type.isCompressed()) {
+            da = new CompressedDataAccess(name, location, byteOrder);
         } else {
             throw new IllegalArgumentException("DAType not supported " + type);
         }
 
+        if (checksums)
+            ((AbstractDataAccess) da).setChecksum(true);
         map.put(name, da);
         return da;
     }
@@ -133,6 +153,15 @@ public class GHDirectory implements Directory {
         removeBackingFile(da, da.getName());
     }
 
+    @Override
+    public void close(DataAccess da) {
+        DataAccess old = map.remove(da.getName());
+        if (old == null)
+            throw new IllegalStateException("Couldn't close DataAccess: " + da.getName());
+
+        da.close();
+    }
+
     private void removeBackingFile(DataAccess da, String name) {
         if (da.getType().isStoring())
             removeDir(new File(location + name));
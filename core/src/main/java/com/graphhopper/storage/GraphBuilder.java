@@ -39,6 +39,10 @@ public class GraphBuilder {
     private Directory dir = new RAMDirectory();
     private boolean elevation;
     private boolean turnCosts;
+    private boolean speedProfiles;
+    private boolean csrAdjacency;
+    private boolean turnCostHashIndex;
+    private boolean compressedGeometry;
     private long bytes = 100;
     private int segmentSize = -1;
     private List<String> chConfigStrings = new ArrayList<>();
@@ -97,6 +101,21 @@ public class GraphBuilder {
         return setDir(new RAMDirectory(location, store));
     }
 
+    /**
+     * @param store true if the off-heap DataAccess objects should be loaded from and saved to the location
+     */
+    public GraphBuilder setOffHeap(String location, boolean store) {
+        return setDir(new GHDirectory(location, store ? DAType.OFF_HEAP_STORE : DAType.OFF_HEAP));
+    }
+
+    /**
+     * Uses DataAccess objects that are compressed when they are saved to the location and decompressed lazily after
+     * loading.
+     */
+    public GraphBuilder setCompressedStore(String location) {
+        return setDir(new GHDirectory(location, DAType.COMPRESSED_STORE));
+    }
+
     public GraphBuilder setBytes(long bytes) {
         this.bytes = bytes;
         return this;
@@ -112,6 +131,29 @@ public class GraphBuilder {
         return this;
     }
 
+    public GraphBuilder withSpeedProfiles(boolean speedProfiles) {
+        this.speedProfiles = speedProfiles;
+        return this;
+    }
+
+    public GraphBuilder withCompressedGeometry(boolean compressedGeometry) {
+        this.compressedGeometry = compressedGeometry;
+        return this;
+    }
+
+    public GraphBuilder withCSRAdjacency(boolean csrAdjacency) {
+        this.csrAdjacency = csrAdjacency;
+        return this;
+    }
+
+    /**
+     * @see TurnCostStorage#setHashIndex(boolean)
+     */
+    public GraphBuilder withTurnCostHashIndex(boolean turnCostHashIndex) {
+        this.turnCostHashIndex = turnCostHashIndex;
+        return this;
+    }
+
     public GraphBuilder setSegmentSize(int segmentSize) {
         this.segmentSize = segmentSize;
         return this;
@@ -126,6 +168,12 @@ public class GraphBuilder {
         GraphHopperStorage ghStorage = new GraphHopperStorage(dir, encodingManager, elevation, turnCosts, segmentSize);
         addCHProfilesFromStrings(ghStorage.getTurnCostStorage());
         ghStorage.addCHGraphs(chConfigs);
+        if (speedProfiles)
+            ghStorage.enableSpeedProfiles();
+        ghStorage.setCompressedGeometry(compressedGeometry);
+        ghStorage.setCSRAdjacency(csrAdjacency);
+        if (turnCosts)
+            ghStorage.getTurnCostStorage().setHashIndex(turnCostHashIndex);
         return ghStorage;
     }
 
@@ -21,14 +21,13 @@ import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.search.StringIndex;
 import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.BBox;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 /**
  * This class manages all storage related methods and delegates the calls to the associated graphs.
@@ -48,6 +47,8 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
     // same flush order etc
     private final Collection<CHGraphImpl> chGraphs;
     private final int segmentSize;
+    private SpeedProfileStorage speedProfileStorage;
+    private int ioThreads = 1;
 
     public GraphHopperStorage(Directory dir, EncodingManager encodingManager, boolean withElevation) {
         this(dir, encodingManager, withElevation, false);
@@ -97,6 +98,70 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         return this;
     }
 
+    /**
+     * Adds a {@link SpeedProfileStorage} to store time-dependent speeds. You need to call this method before calling
+     * {@link #create(long)} or {@link #loadExisting()}.
+     */
+    public GraphHopperStorage enableSpeedProfiles() {
+        baseGraph.checkNotInitialized();
+        if (speedProfileStorage == null)
+            speedProfileStorage = new SpeedProfileStorage(dir, segmentSize);
+        return this;
+    }
+
+    /**
+     * Stores the way geometry of a new graph in a compressed format that needs roughly half of the memory. You need to
+     * call this method before calling {@link #create(long)}, a loaded graph uses the format it was created with.
+     */
+    public GraphHopperStorage setCompressedGeometry(boolean compressedGeometry) {
+        baseGraph.setCompressedWayGeometry(compressedGeometry);
+        return this;
+    }
+
+    public boolean isCompressedGeometry() {
+        return baseGraph.isCompressedWayGeometry();
+    }
+
+    /**
+     * Iterates the edges of the frozen graph via a read-only copy of the adjacency lists in compressed sparse row
+     * format instead of the linked edge lists. It is built in memory when the graph is frozen or a frozen graph is
+     * loaded, see {@link #freeze()}.
+     */
+    public GraphHopperStorage setCSRAdjacency(boolean csrAdjacency) {
+        baseGraph.setCSRAdjacency(csrAdjacency);
+        return this;
+    }
+
+    public boolean isCSRAdjacency() {
+        return baseGraph.isCSRAdjacency();
+    }
+
+    boolean hasCSRAdjacency() {
+        return baseGraph.hasCSRAdjacency();
+    }
+
+    /**
+     * Sets the number of threads that are used to load and flush the independent files of the base graph, the CH
+     * graphs and the speed profiles in parallel.
+     */
+    public GraphHopperStorage setIOThreads(int ioThreads) {
+        if (ioThreads < 1)
+            throw new IllegalArgumentException("ioThreads must be positive but was " + ioThreads);
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    public int getIOThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * @return the speed profiles or null if they are not enabled, see {@link #enableSpeedProfiles()}
+     */
+    public SpeedProfileStorage getSpeedProfileStorage() {
+        return speedProfileStorage;
+    }
+
     /**
      * @see #addCHGraph(CHConfig)
      */
@@ -203,6 +268,8 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         for (CHGraphImpl cg : chGraphs) {
             cg.create(byteCount);
         }
+        if (speedProfileStorage != null)
+            speedProfileStorage.create(initSize);
 
         List<CHConfig> chConfigs = getCHConfigs();
         List<String> chProfileNames = new ArrayList<>(chConfigs.size());
@@ -251,15 +318,20 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
                 throw new IllegalStateException("Configured graph.byte_order (" + dir.getByteOrder() + ") is not equal to loaded " + byteOrder + "");
 
             String dim = properties.get("graph.dimension");
-            baseGraph.loadExisting(dim);
-
             checkIfConfiguredAndLoadedWeightingsCompatible();
 
+            StorableTasks tasks = StorableTasks.load(ioThreads);
+            baseGraph.addLoadTasks(dim, tasks);
             for (CHGraphImpl cg : chGraphs) {
-                if (!cg.loadExisting())
-                    throw new IllegalStateException("Cannot load " + cg);
+                tasks.add("ch_" + cg.getCHConfig().getName(), cg, "Cannot load " + cg);
             }
 
+            if (speedProfileStorage != null)
+                tasks.add("speed_profiles", speedProfileStorage, "Speed profiles are enabled, but the graph at "
+                        + dir.getLocation() + " was created without them");
+
+            tasks.run();
+            baseGraph.initLoadedStorage();
             return true;
         }
         return false;
@@ -283,12 +355,16 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
 
     @Override
     public void flush() {
+        StorableTasks tasks = StorableTasks.flush(ioThreads);
         for (CHGraphImpl cg : chGraphs) {
             if (!cg.isClosed())
-                cg.flush();
+                tasks.add("ch_" + cg.getCHConfig().getName(), cg);
         }
 
-        baseGraph.flush();
+        if (speedProfileStorage != null && !speedProfileStorage.isClosed())
+            tasks.add("speed_profiles", speedProfileStorage);
+        baseGraph.addFlushTasks(tasks);
+        tasks.run();
         properties.flush();
     }
 
@@ -301,6 +377,8 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
             if (!cg.isClosed())
                 cg.close();
         }
+        if (speedProfileStorage != null && !speedProfileStorage.isClosed())
+            speedProfileStorage.close();
     }
 
     @Override
@@ -308,6 +386,28 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         return baseGraph.nodes.isClosed();
     }
 
+    /**
+     * @return the memory that is used by the DataAccess objects of the directory of this storage, which includes the
+     * location index and the landmarks if they use the same directory, and by the adjacency arrays on the heap
+     */
+    public MemoryInventory getMemoryInventory() {
+        Map<String, Long> usedBytes = new HashMap<>();
+        baseGraph.putUsedBytes(usedBytes);
+        for (CHGraphImpl cg : chGraphs) {
+            cg.putUsedBytes(usedBytes);
+        }
+        List<MemoryInventory.Entry> entries = new ArrayList<>();
+        for (DataAccess da : new ArrayList<>(dir.getAll())) {
+            entries.add(MemoryInventory.Entry.of(da, usedBytes.getOrDefault(da.getName(), -1L)));
+        }
+        long adjacencyBytes = baseGraph.getAdjacencyCapacity();
+        if (adjacencyBytes > 0)
+            entries.add(new MemoryInventory.Entry("csr_adjacency", "int[]", MemoryInventory.Kind.HEAP, adjacencyBytes,
+                    adjacencyBytes, 0, adjacencyBytes));
+        entries.sort(Comparator.comparing(MemoryInventory.Entry::getName));
+        return new MemoryInventory(entries);
+    }
+
     @Override
     public long getCapacity() {
         long cnt = baseGraph.getCapacity() + properties.getCapacity();
@@ -315,6 +415,8 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         for (CHGraphImpl cg : chGraphs) {
             cnt += cg.getCapacity();
         }
+        if (speedProfileStorage != null)
+            cnt += speedProfileStorage.getCapacity();
         return cnt;
     }
 
@@ -415,6 +517,10 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         return baseGraph.getTurnCostStorage();
     }
 
+    public StringIndex getStringIndex() {
+        return baseGraph.stringIndex;
+    }
+
     @Override
     public Weighting wrapWeighting(Weighting weighting) {
         return weighting;
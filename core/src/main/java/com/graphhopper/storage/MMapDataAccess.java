@@ -38,6 +38,7 @@ import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.zip.CRC32;
 
 /**
  * A DataAccess implementation using a memory-mapped file, i.e. a facility of the
@@ -293,12 +294,24 @@ public final class MMapDataAccess extends AbstractDataAccess {
                 return false;
 
             mapIt(HEADER_OFFSET, byteCount - HEADER_OFFSET);
+            // verifying the checksum reads the whole file, which also fills the page cache
+            verifyChecksum(updateChecksum(createLoadChecksum()));
             return true;
         } catch (IOException ex) {
             throw new RuntimeException("Problem while loading " + getFullName(), ex);
         }
     }
 
+    private CRC32 updateChecksum(CRC32 crc) {
+        if (crc != null) {
+            for (ByteBuffer bb : segments) {
+                // the relative bulk methods change the position, so work on a duplicate
+                crc.update(bb.duplicate());
+            }
+        }
+        return crc;
+    }
+
     @Override
     public void flush() {
         if (isClosed())
@@ -308,6 +321,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
             for (MappedByteBuffer bb : segments) {
                 bb.force();
             }
+            setHeaderChecksum(updateChecksum(createFlushChecksum()));
             writeHeader(raFile, raFile.length(), segmentSizeInBytes);
 
             // this could be necessary too
@@ -389,6 +403,27 @@ public final class MMapDataAccess extends AbstractDataAccess {
         }
     }
 
+    @Override
+    protected void getInts(int segment, int index, int[] values, int offset, int count) {
+        ByteBuffer byteBuffer = segments.get(segment);
+        // lock only once for all ints of this segment
+        synchronized (byteBuffer) {
+            for (int i = 0; i < count; i++, index += 4) {
+                values[offset + i] = byteBuffer.getInt(index);
+            }
+        }
+    }
+
+    @Override
+    protected void getShorts(int segment, int index, short[] values, int offset, int count) {
+        ByteBuffer byteBuffer = segments.get(segment);
+        synchronized (byteBuffer) {
+            for (int i = 0; i < count; i++, index += 2) {
+                values[offset + i] = byteBuffer.getShort(index);
+            }
+        }
+    }
+
     @Override
     public void setBytes(long bytePos, byte[] values, int length) {
         assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
@@ -461,6 +496,19 @@ public final class MMapDataAccess extends AbstractDataAccess {
         }
     }
 
+    /**
+     * Loads the specified percentage of the segments into the page cache, which avoids the page faults when the data
+     * is accessed for the first time.
+     */
+    public void load(int percentage) {
+        if (percentage < 0 || percentage > 100)
+            throw new IllegalArgumentException("Percentage for loading " + getName() + " must be in [0, 100] but was " + percentage);
+        int max = Math.round(segments.size() * percentage / 100f);
+        for (int i = 0; i < max; i++) {
+            segments.get(i).load();
+        }
+    }
+
     @Override
     public long getCapacity() {
         long cap = 0;
@@ -477,6 +525,19 @@ public final class MMapDataAccess extends AbstractDataAccess {
         return segments.size();
     }
 
+    /**
+     * Counts the segments that are completely in the page cache, so the estimate is as coarse as the segment size.
+     */
+    @Override
+    public long getResidentBytes() {
+        long bytes = 0;
+        for (MappedByteBuffer bb : segments) {
+            if (bb != null && bb.isLoaded())
+                bytes += bb.capacity();
+        }
+        return bytes;
+    }
+
     /**
      * Cleans up MappedByteBuffers. Be sure you bring the segments list in a consistent state
      * afterwards.
@@ -0,0 +1,172 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of the memory that is used by the storage of a graph, with one entry per {@link DataAccess} and per
+ * larger structure that is kept on the heap. This helps to monitor a running server and to plan the capacity for a
+ * larger graph.
+ */
+public class MemoryInventory {
+    public enum Kind {
+        HEAP, OFF_HEAP, MAPPED
+    }
+
+    private final List<Entry> entries;
+
+    public MemoryInventory(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the allocated bytes of all entries of the specified kind
+     */
+    public long getCapacity(Kind kind) {
+        long sum = 0;
+        for (Entry entry : entries) {
+            if (entry.getKind() == kind)
+                sum += entry.getCapacity();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the bytes of all entries of the specified kind that are currently held in memory
+     */
+    public long getResidentBytes(Kind kind) {
+        long sum = 0;
+        for (Entry entry : entries) {
+            if (entry.getKind() == kind)
+                sum += entry.getResidentBytes();
+        }
+        return sum;
+    }
+
+    public long getCapacity() {
+        long sum = 0;
+        for (Entry entry : entries) {
+            sum += entry.getCapacity();
+        }
+        return sum;
+    }
+
+    public static Kind getKind(DAType type) {
+        if (type.isMMap())
+            return Kind.MAPPED;
+        if (type.isOffHeap())
+            return Kind.OFF_HEAP;
+        // the decompressed segments of COMPRESSED_STORE are on the heap
+        return Kind.HEAP;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries) {
+            sb.append(entry).append('\n');
+        }
+        for (Kind kind : Kind.values()) {
+            sb.append(kind.name().toLowerCase()).append(": ").append(getCapacity(kind) / Helper.MB).append("MB, resident: ")
+                    .append(getResidentBytes(kind) / Helper.MB).append("MB\n");
+        }
+        return sb.toString();
+    }
+
+    public static class Entry {
+        private final String name;
+        private final String type;
+        private final Kind kind;
+        private final long capacity;
+        private final long usedBytes;
+        private final int segments;
+        private final long residentBytes;
+
+        public Entry(String name, String type, Kind kind, long capacity, long usedBytes, int segments, long residentBytes) {
+            this.name = name;
+            this.type = type;
+            this.kind = kind;
+            this.capacity = capacity;
+            this.usedBytes = usedBytes;
+            this.segments = segments;
+            this.residentBytes = residentBytes;
+        }
+
+        /**
+         * @param usedBytes the bytes that are actually filled with data or a negative value if this is not known, in
+         *                  which case the capacity is used
+         */
+        public static Entry of(DataAccess da, long usedBytes) {
+            long capacity = da.getCapacity();
+            return new Entry(da.getName(), da.getType().toString(), MemoryInventory.getKind(da.getType()), capacity,
+                    usedBytes < 0 ? capacity : Math.min(usedBytes, capacity), da.getSegments(), da.getResidentBytes());
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the allocated bytes
+         */
+        public long getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * @return the bytes that are filled with data, at most the capacity
+         */
+        public long getUsedBytes() {
+            return usedBytes;
+        }
+
+        public int getSegments() {
+            return segments;
+        }
+
+        /**
+         * @return an estimate of the bytes that are currently held in memory, see {@link DataAccess#getResidentBytes()}
+         */
+        public long getResidentBytes() {
+            return residentBytes;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + type + "): capacity: " + capacity + ", used: " + usedBytes + ", segments: " + segments
+                    + ", resident: " + residentBytes;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * An in-memory DataAccess like {@link RAMDataAccess} but the segments are direct ByteBuffers, i.e. they are allocated
+ * outside of the Java heap. Big graphs then do not need a huge heap and are not scanned by the garbage collector. The
+ * memory is freed explicitly on close and the amount of direct memory can be limited via -XX:MaxDirectMemorySize.
+ * <p>
+ * The file format is the same as the one of RAMDataAccess and MMapDataAccess. Thread safe for concurrent reads.
+ */
+public class OffHeapDataAccess extends AbstractDataAccess {
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private final boolean store;
+
+    OffHeapDataAccess(String name, String location, boolean store, ByteOrder order) {
+        super(name, location, order);
+        this.store = store;
+    }
+
+    @Override
+    public boolean isStoring() {
+        return store;
+    }
+
+    @Override
+    public DataAccess copyTo(DataAccess da) {
+        if (da instanceof OffHeapDataAccess) {
+            copyHeader(da);
+            OffHeapDataAccess oda = (OffHeapDataAccess) da;
+            oda.free();
+            oda.setSegmentSize(segmentSizeInBytes);
+            oda.segments = new ByteBuffer[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                ByteBuffer copy = oda.newSegment();
+                copy.put(segments[i].duplicate()).clear();
+                oda.segments[i] = copy;
+            }
+            return da;
+        } else {
+            return super.copyTo(da);
+        }
+    }
+
+    @Override
+    public OffHeapDataAccess create(long bytes) {
+        if (segments.length > 0)
+            throw new IllegalThreadStateException("already created");
+
+        setSegmentSize(segmentSizeInBytes);
+        ensureCapacity(Math.max(10 * 4, bytes));
+        return this;
+    }
+
+    @Override
+    public boolean ensureCapacity(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("new capacity has to be strictly positive");
+
+        long cap = getCapacity();
+        long newBytes = bytes - cap;
+        if (newBytes <= 0)
+            return false;
+
+        int segmentsToCreate = (int) (newBytes / segmentSizeInBytes);
+        if (newBytes % segmentSizeInBytes != 0)
+            segmentsToCreate++;
+
+        ByteBuffer[] newSegs = Arrays.copyOf(segments, segments.length + segmentsToCreate);
+        try {
+            for (int i = segments.length; i < newSegs.length; i++) {
+                newSegs[i] = newSegment();
+            }
+        } catch (OutOfMemoryError err) {
+            throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new direct memory, see "
+                    + "-XX:MaxDirectMemorySize. Old capacity: " + cap + ", new bytes:" + newBytes
+                    + ", segmentSizeIntsPower:" + segmentSizePower + ", new segments:" + segmentsToCreate
+                    + ", existing:" + segments.length);
+        }
+        segments = newSegs;
+        return true;
+    }
+
+    private ByteBuffer newSegment() {
+        // allocateDirect zeroes the memory like new byte[] does
+        return ByteBuffer.allocateDirect(segmentSizeInBytes).order(byteOrder);
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (segments.length > 0)
+            throw new IllegalStateException("already initialized");
+
+        if (isClosed())
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return false;
+
+        File file = new File(getFullName());
+        if (!file.exists() || file.length() == 0)
+            return false;
+
+        try (RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r")) {
+            long byteCount = readHeader(raFile) - HEADER_OFFSET;
+            if (byteCount < 0)
+                return false;
+
+            int segmentCount = (int) (byteCount / segmentSizeInBytes);
+            if (byteCount % segmentSizeInBytes != 0)
+                segmentCount++;
+
+            FileChannel channel = raFile.getChannel();
+            ensureCapacity((long) segmentCount * segmentSizeInBytes);
+            CRC32 crc = createLoadChecksum();
+            long position = HEADER_OFFSET;
+            for (int s = 0; s < segmentCount; s++) {
+                ByteBuffer buffer = segments[s].duplicate();
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position + buffer.position());
+                    if (read < 0)
+                        break;
+                }
+                if (buffer.position() == 0)
+                    throw new IllegalStateException("segment " + s + " is empty? " + toString());
+                if (crc != null)
+                    crc.update(segments[s].duplicate());
+                position += segmentSizeInBytes;
+            }
+            verifyChecksum(crc);
+            return true;
+        } catch (IOException ex) {
+            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (closed)
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return;
+
+        try (RandomAccessFile raFile = new RandomAccessFile(getFullName(), "rw")) {
+            CRC32 crc = createFlushChecksum();
+            FileChannel channel = raFile.getChannel();
+            long position = HEADER_OFFSET;
+            for (ByteBuffer segment : segments) {
+                ByteBuffer buffer = segment.duplicate();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, position + buffer.position());
+                }
+                if (crc != null)
+                    crc.update(segment.duplicate());
+                position += segmentSizeInBytes;
+            }
+            // the header is written last as it contains the checksum of the data
+            setHeaderChecksum(crc);
+            writeHeader(raFile, getCapacity(), segmentSizeInBytes);
+        } catch (Exception ex) {
+            throw new RuntimeException("Couldn't store bytes to " + toString(), ex);
+        }
+    }
+
+    @Override
+    public final void setInt(long bytePos, int value) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 4 > segmentSizeInBytes)
+            throw new IllegalStateException("Padding required. Currently an int cannot be distributed over two segments. " + bytePos);
+        segments[bufferIndex].putInt(index, value);
+    }
+
+    @Override
+    public final int getInt(long bytePos) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 4 > segmentSizeInBytes)
+            throw new IllegalStateException("Padding required. Currently an int cannot be distributed over two segments. " + bytePos);
+        return segments[bufferIndex].getInt(index);
+    }
+
+    @Override
+    public final void setShort(long bytePos, short value) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 2 > segmentSizeInBytes) {
+            // special case if short has to be written into two separate segments
+            segments[bufferIndex].put(index, (byte) value);
+            segments[bufferIndex + 1].put(0, (byte) (value >>> 8));
+        } else {
+            segments[bufferIndex].putShort(index, value);
+        }
+    }
+
+    @Override
+    public final short getShort(long bytePos) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 2 > segmentSizeInBytes)
+            return (short) ((segments[bufferIndex + 1].get(0) & 0xFF) << 8 | (segments[bufferIndex].get(index) & 0xFF));
+        else
+            return segments[bufferIndex].getShort(index);
+    }
+
+    @Override
+    protected void getInts(int segment, int index, int[] values, int offset, int count) {
+        ByteBuffer bb = segments[segment];
+        for (int i = 0; i < count; i++, index += 4) {
+            values[offset + i] = bb.getInt(index);
+        }
+    }
+
+    @Override
+    protected void getShorts(int segment, int index, short[] values, int offset, int count) {
+        ByteBuffer bb = segments[segment];
+        for (int i = 0; i < count; i++, index += 2) {
+            values[offset + i] = bb.getShort(index);
+        }
+    }
+
+    @Override
+    public void setBytes(long bytePos, byte[] values, int length) {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        int delta = index + length - segmentSizeInBytes;
+        // the relative bulk methods change the position, so work on a duplicate to stay thread safe
+        ByteBuffer buffer = segments[bufferIndex].duplicate();
+        buffer.position(index);
+        if (delta > 0) {
+            length -= delta;
+            buffer.put(values, 0, length);
+            buffer = segments[bufferIndex + 1].duplicate();
+            buffer.put(values, length, delta);
+        } else {
+            buffer.put(values, 0, length);
+        }
+    }
+
+    @Override
+    public void getBytes(long bytePos, byte[] values, int length) {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        int delta = index + length - segmentSizeInBytes;
+        ByteBuffer buffer = segments[bufferIndex].duplicate();
+        buffer.position(index);
+        if (delta > 0) {
+            length -= delta;
+            buffer.get(values, 0, length);
+            buffer = segments[bufferIndex + 1].duplicate();
+            buffer.get(values, length, delta);
+        } else {
+            buffer.get(values, 0, length);
+        }
+    }
+
+    @Override
+    public final void setByte(long bytePos, byte value) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        segments[bufferIndex].put(index, value);
+    }
+
+    @Override
+    public final byte getByte(long bytePos) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        return segments[bufferIndex].get(index);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        free();
+    }
+
+    /**
+     * Releases the direct memory of all segments without waiting for the garbage collector.
+     */
+    private void free() {
+        for (ByteBuffer segment : segments) {
+            MMapDataAccess.cleanMappedByteBuffer(segment);
+        }
+        segments = new ByteBuffer[0];
+    }
+
+    @Override
+    public long getCapacity() {
+        return (long) getSegments() * segmentSizeInBytes;
+    }
+
+    @Override
+    public int getSegments() {
+        return segments.length;
+    }
+
+    @Override
+    public void rename(String newName) {
+        if (!checkBeforeRename(newName)) {
+            return;
+        }
+        if (store) {
+            super.rename(newName);
+        }
+
+        // in every case set the name
+        name = newName;
+    }
+
+    @Override
+    public DAType getType() {
+        if (isStoring())
+            return DAType.OFF_HEAP_STORE;
+        return DAType.OFF_HEAP;
+    }
+}
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.zip.CRC32;
 
 /**
  * This is an in-memory byte-based data structure with the possibility to be stored on flush().
@@ -137,6 +138,7 @@ public class RAMDataAccess extends AbstractDataAccess {
                 if (byteCount % segmentSizeInBytes != 0)
                     segmentCount++;
 
+                CRC32 crc = createLoadChecksum();
                 segments = new byte[segmentCount][];
                 for (int s = 0; s < segmentCount; s++) {
                     byte[] bytes = new byte[segmentSizeInBytes];
@@ -145,7 +147,10 @@ public class RAMDataAccess extends AbstractDataAccess {
                         throw new IllegalStateException("segment " + s + " is empty? " + toString());
 
                     segments[s] = bytes;
+                    if (crc != null)
+                        crc.update(bytes);
                 }
+                verifyChecksum(crc);
                 return true;
             } finally {
                 raFile.close();
@@ -167,13 +172,18 @@ public class RAMDataAccess extends AbstractDataAccess {
             RandomAccessFile raFile = new RandomAccessFile(getFullName(), "rw");
             try {
                 long len = getCapacity();
-                writeHeader(raFile, len, segmentSizeInBytes);
+                CRC32 crc = createFlushChecksum();
                 raFile.seek(HEADER_OFFSET);
                 // raFile.writeInt() <- too slow, so copy into byte array
                 for (int s = 0; s < segments.length; s++) {
                     byte area[] = segments[s];
                     raFile.write(area);
+                    if (crc != null)
+                        crc.update(area);
                 }
+                // the header is written last as it contains the checksum of the data
+                setHeaderChecksum(crc);
+                writeHeader(raFile, len, segmentSizeInBytes);
             } finally {
                 raFile.close();
             }
@@ -227,6 +237,22 @@ public class RAMDataAccess extends AbstractDataAccess {
             return bitUtil.toShort(segments[bufferIndex], index);
     }
 
+    @Override
+    protected void getInts(int segment, int index, int[] values, int offset, int count) {
+        byte[] bytes = segments[segment];
+        for (int i = 0; i < count; i++, index += 4) {
+            values[offset + i] = bitUtil.toInt(bytes, index);
+        }
+    }
+
+    @Override
+    protected void getShorts(int segment, int index, short[] values, int offset, int count) {
+        byte[] bytes = segments[segment];
+        for (int i = 0; i < count; i++, index += 2) {
+            values[offset + i] = bitUtil.toShort(bytes, index);
+        }
+    }
+
     @Override
     public void setBytes(long bytePos, byte[] values, int length) {
         assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.zip.CRC32;
 
 /**
  * This is an in-memory data structure based on an integer array. With the possibility to be stored
@@ -140,15 +141,20 @@ class RAMIntDataAccess extends AbstractDataAccess {
                 if (byteCount % segmentSizeInBytes != 0)
                     segmentCount++;
 
+                CRC32 crc = createLoadChecksum();
                 segments = new int[segmentCount][];
                 for (int s = 0; s < segmentCount; s++) {
-                    int read = raFile.read(bytes) / 4;
+                    int readBytes = raFile.read(bytes);
+                    if (crc != null)
+                        crc.update(bytes, 0, Math.max(0, readBytes));
+                    int read = readBytes / 4;
                     int area[] = new int[read];
                     for (int j = 0; j < read; j++) {
                         area[j] = bitUtil.toInt(bytes, j * 4);
                     }
                     segments[s] = area;
                 }
+                verifyChecksum(crc);
                 return true;
             } finally {
                 raFile.close();
@@ -170,7 +176,7 @@ class RAMIntDataAccess extends AbstractDataAccess {
             RandomAccessFile raFile = new RandomAccessFile(getFullName(), "rw");
             try {
                 long len = getCapacity();
-                writeHeader(raFile, len, segmentSizeInBytes);
+                CRC32 crc = createFlushChecksum();
                 raFile.seek(HEADER_OFFSET);
                 // raFile.writeInt() <- too slow, so copy into byte array
                 for (int s = 0; s < segments.length; s++) {
@@ -181,7 +187,12 @@ class RAMIntDataAccess extends AbstractDataAccess {
                         bitUtil.fromInt(byteArea, area[i], i * 4);
                     }
                     raFile.write(byteArea);
+                    if (crc != null)
+                        crc.update(byteArea);
                 }
+                // the header is written last as it contains the checksum of the data
+                setHeaderChecksum(crc);
+                writeHeader(raFile, len, segmentSizeInBytes);
             } finally {
                 raFile.close();
             }
@@ -239,6 +250,40 @@ class RAMIntDataAccess extends AbstractDataAccess {
             return (short) (segments[bufferIndex][index] >> 16);
     }
 
+    @Override
+    public void getInts(long bytePos, int[] values, int offset, int length) {
+        assert segmentSizeIntsPower > 0 : "call create or loadExisting before usage!";
+        if (bytePos % 4 != 0)
+            throw new IllegalMonitorStateException("bytePos of wrong multiple for RAMInt " + bytePos);
+        long intPos = bytePos >>> 2;
+        int index = (int) (intPos & indexDivisor);
+        if (index + length <= indexDivisor + 1) {
+            // fast path: all ints are in the same segment. A plain loop is faster than arraycopy for a few ints
+            int[] segment = segments[(int) (intPos >>> segmentSizeIntsPower)];
+            for (int i = 0; i < length; i++) {
+                values[offset + i] = segment[index + i];
+            }
+            return;
+        }
+        while (length > 0) {
+            int bufferIndex = (int) (intPos >>> segmentSizeIntsPower);
+            index = (int) (intPos & indexDivisor);
+            int count = Math.min(length, indexDivisor + 1 - index);
+            System.arraycopy(segments[bufferIndex], index, values, offset, count);
+            intPos += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void getShorts(long bytePos, short[] values, int offset, int length) {
+        // indexDivisor is int based, so we cannot use the segment chunking of the super class
+        for (int i = 0; i < length; i++) {
+            values[offset + i] = getShort(bytePos + ((long) i << 1));
+        }
+    }
+
     @Override
     public void getBytes(long bytePos, byte[] values, int length) {
         throw new UnsupportedOperationException(toString() + " does not support byte based acccess. Use RAMDataAccess instead");
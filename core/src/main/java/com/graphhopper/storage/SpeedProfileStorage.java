@@ -0,0 +1,207 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores time-dependent speed profiles for edges. A profile contains a speed factor for every quarter hour of a week
+ * ({@link #BUCKETS} buckets starting on monday 00:00 local time). The factors are relative to the speed the weighting
+ * calculates for an edge without a time and are quantized to one byte each, i.e. in steps of 1% up to 255%. Identical
+ * profiles are only stored once and edges refer to them via their profile id, so typically only a few thousand
+ * profiles are necessary even for a large road network.
+ * <p>
+ * The profiles are assigned per edge key, i.e. every direction of an edge can have its own profile.
+ */
+public class SpeedProfileStorage implements Storable<SpeedProfileStorage> {
+    public static final int NO_PROFILE = -1;
+    public static final int BUCKET_MINUTES = 15;
+    public static final int BUCKETS_PER_DAY = 24 * 60 / BUCKET_MINUTES;
+    public static final int BUCKETS = 7 * BUCKETS_PER_DAY;
+    private static final double QUANTIZATION = 100;
+    private static final int MAX_QUANTIZED = 255;
+    private static final long MINUTES_PER_WEEK = 7 * 24 * 60;
+    // 1970-01-01 was a thursday
+    private static final long EPOCH_MINUTE_OF_WEEK = 3 * 24 * 60;
+
+    private final DataAccess profiles;
+    // the profile id + 1 for every edge key, so that zero (the initial value) means no profile
+    private final DataAccess edgeProfiles;
+    private int profileCount;
+    private int maxQuantized;
+    private Map<ByteBuffer, Integer> profileIds;
+
+    public SpeedProfileStorage(Directory dir, int segmentSize) {
+        profiles = dir.find("speed_profiles");
+        edgeProfiles = dir.find("speed_profile_edges");
+        if (segmentSize >= 0) {
+            profiles.setSegmentSize(segmentSize);
+            edgeProfiles.setSegmentSize(segmentSize);
+        }
+    }
+
+    @Override
+    public SpeedProfileStorage create(long initBytes) {
+        profiles.create(initBytes);
+        edgeProfiles.create(initBytes);
+        profileIds = new HashMap<>();
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!profiles.loadExisting() || !edgeProfiles.loadExisting())
+            return false;
+        if (profiles.getHeader(0) != BUCKETS)
+            throw new IllegalStateException("Number of buckets per speed profile does not match the current configuration: " + profiles.getHeader(0) + " vs. " + BUCKETS);
+        profileCount = profiles.getHeader(4);
+        maxQuantized = profiles.getHeader(8);
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        profiles.setHeader(0, BUCKETS);
+        profiles.setHeader(4, profileCount);
+        profiles.setHeader(8, maxQuantized);
+        profiles.flush();
+        edgeProfiles.flush();
+    }
+
+    @Override
+    public void close() {
+        profiles.close();
+        edgeProfiles.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return profiles.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return profiles.getCapacity() + edgeProfiles.getCapacity();
+    }
+
+    /**
+     * Adds the given speed profile or finds an identical existing one.
+     *
+     * @param speedFactors the speed factors for every bucket of the week ({@link #BUCKETS} values) or for every
+     *                     bucket of a day ({@link #BUCKETS_PER_DAY} values) which are then used for every weekday
+     * @return the id of the profile
+     */
+    public int addProfile(double[] speedFactors) {
+        if (speedFactors.length != BUCKETS && speedFactors.length != BUCKETS_PER_DAY)
+            throw new IllegalArgumentException("A speed profile needs " + BUCKETS + " or " + BUCKETS_PER_DAY + " values, but was: " + speedFactors.length);
+        byte[] quantized = new byte[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            double factor = speedFactors[i % speedFactors.length];
+            if (factor < 0 || Double.isNaN(factor))
+                throw new IllegalArgumentException("Speed factors must not be negative: " + factor + " at " + i);
+            int value = (int) Math.min(MAX_QUANTIZED, Math.round(factor * QUANTIZATION));
+            quantized[i] = (byte) value;
+            maxQuantized = Math.max(maxQuantized, value);
+        }
+        ByteBuffer key = ByteBuffer.wrap(quantized);
+        Integer existing = getProfileIds().get(key);
+        if (existing != null)
+            return existing;
+
+        int profileId = profileCount++;
+        profiles.ensureCapacity((long) profileCount * BUCKETS);
+        profiles.setBytes((long) profileId * BUCKETS, quantized, BUCKETS);
+        profileIds.put(key, profileId);
+        return profileId;
+    }
+
+    private Map<ByteBuffer, Integer> getProfileIds() {
+        if (profileIds == null) {
+            // rebuild the lookup after loading
+            profileIds = new HashMap<>(profileCount);
+            for (int id = 0; id < profileCount; id++) {
+                byte[] bytes = new byte[BUCKETS];
+                profiles.getBytes((long) id * BUCKETS, bytes, BUCKETS);
+                profileIds.put(ByteBuffer.wrap(bytes), id);
+            }
+        }
+        return profileIds;
+    }
+
+    /**
+     * Assigns a profile to the given edge key, i.e. to one direction of an edge.
+     */
+    public void setEdgeProfile(int edgeKey, int profileId) {
+        if (profileId != NO_PROFILE && (profileId < 0 || profileId >= profileCount))
+            throw new IllegalArgumentException("Unknown speed profile: " + profileId + ", profiles: " + profileCount);
+        long pointer = (long) edgeKey * 4;
+        edgeProfiles.ensureCapacity(pointer + 4);
+        edgeProfiles.setInt(pointer, profileId + 1);
+    }
+
+    /**
+     * @return the profile id of the given edge key or {@link #NO_PROFILE}
+     */
+    public int getEdgeProfile(int edgeKey) {
+        long pointer = (long) edgeKey * 4;
+        if (pointer + 4 > edgeProfiles.getCapacity())
+            return NO_PROFILE;
+        return edgeProfiles.getInt(pointer) - 1;
+    }
+
+    public double getSpeedFactor(int profileId, int bucket) {
+        return (profiles.getByte((long) profileId * BUCKETS + bucket) & 0xFF) / QUANTIZATION;
+    }
+
+    /**
+     * @return the speed factor of the given edge key at the given time or 1 if there is no profile for this edge key
+     */
+    public double getSpeedFactor(int edgeKey, long localTimeMillis) {
+        int profileId = getEdgeProfile(edgeKey);
+        return profileId == NO_PROFILE ? 1 : getSpeedFactor(profileId, getBucket(localTimeMillis));
+    }
+
+    /**
+     * @return the maximum speed factor of all profiles, but at least 1. This is needed to keep the beeline
+     * approximation of A* admissible.
+     */
+    public double getMaxSpeedFactor() {
+        return Math.max(1, maxQuantized / QUANTIZATION);
+    }
+
+    public int getProfileCount() {
+        return profileCount;
+    }
+
+    /**
+     * @param localTimeMillis the milliseconds since 1970-01-01T00:00 in the local time of the road network, i.e.
+     *                        {@code localDateTime.toInstant(ZoneOffset.UTC).toEpochMilli()}
+     * @return the bucket of the week for the given local time
+     */
+    public static int getBucket(long localTimeMillis) {
+        long minuteOfWeek = Math.floorMod(Math.floorDiv(localTimeMillis, 60_000L) + EPOCH_MINUTE_OF_WEEK, MINUTES_PER_WEEK);
+        return (int) (minuteOfWeek / BUCKET_MINUTES);
+    }
+
+    @Override
+    public String toString() {
+        return "speed_profiles";
+    }
+}
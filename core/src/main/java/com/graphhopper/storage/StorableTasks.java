@@ -0,0 +1,145 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Loads or flushes independent storables, e.g. the DataAccess files of a graph, with the specified number of threads.
+ * The duration of every storable is logged, which makes it easy to spot the files that dominate the load time.
+ */
+class StorableTasks {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorableTasks.class);
+    private final boolean load;
+    private final int threads;
+    private final List<Task> tasks = new ArrayList<>();
+
+    private StorableTasks(boolean load, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        this.load = load;
+        this.threads = threads;
+    }
+
+    /**
+     * Creates tasks that call {@link Storable#loadExisting()}
+     */
+    static StorableTasks load(int threads) {
+        return new StorableTasks(true, threads);
+    }
+
+    /**
+     * Creates tasks that call {@link Storable#flush()}
+     */
+    static StorableTasks flush(int threads) {
+        return new StorableTasks(false, threads);
+    }
+
+    StorableTasks add(String name, Storable<?> storable) {
+        return add(name, storable, "Cannot load " + name);
+    }
+
+    /**
+     * @param name           the name that is used to log the duration
+     * @param failureMessage the message of the exception that is thrown if the storable cannot be loaded
+     */
+    StorableTasks add(String name, Storable<?> storable, String failureMessage) {
+        tasks.add(new Task(name, storable, failureMessage));
+        return this;
+    }
+
+    /**
+     * Runs all tasks and waits until all of them are finished.
+     *
+     * @throws IllegalStateException if a storable could not be loaded
+     */
+    void run() {
+        StopWatch sw = new StopWatch().start();
+        if (threads == 1 || tasks.size() < 2) {
+            for (Task task : tasks) {
+                task.call();
+            }
+        } else {
+            ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+            try {
+                for (Future<Void> future : executorService.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            } finally {
+                executorService.shutdown();
+            }
+        }
+        // check in the order of the tasks to get the same exception as if they were run sequentially
+        for (Task task : tasks) {
+            if (!task.success)
+                throw new IllegalStateException(task.failureMessage);
+        }
+
+        if (LOGGER.isInfoEnabled() && !tasks.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (Task task : tasks) {
+                if (sb.length() > 0)
+                    sb.append(", ");
+                sb.append(task.name).append(": ").append(Helper.round2(task.seconds)).append("s");
+            }
+            LOGGER.info("{} {} storables in {}s with {} thread(s), {}", load ? "loaded" : "flushed", tasks.size(),
+                    Helper.round2(sw.stop().getSeconds()), threads, sb);
+        }
+    }
+
+    private class Task implements Callable<Void> {
+        final String name;
+        final Storable<?> storable;
+        final String failureMessage;
+        volatile boolean success;
+        volatile float seconds;
+
+        Task(String name, Storable<?> storable, String failureMessage) {
+            this.name = name;
+            this.storable = storable;
+            this.failureMessage = failureMessage;
+        }
+
+        @Override
+        public Void call() {
+            StopWatch sw = new StopWatch().start();
+            if (load) {
+                success = storable.loadExisting();
+            } else {
+                storable.flush();
+                success = true;
+            }
+            seconds = sw.stop().getSeconds();
+            return null;
+        }
+    }
+}
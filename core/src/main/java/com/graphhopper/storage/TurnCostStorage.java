@@ -17,10 +17,13 @@
  */
 package com.graphhopper.storage;
 
+import com.carrotsearch.hppc.IntIndexedContainer;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.TurnCost;
 import com.graphhopper.util.EdgeIterator;
 
+import java.util.Arrays;
+
 /**
  * A key/value store, where the unique keys are turn relations, and the values are IntRefs.
  * A turn relation is a triple (fromEdge, viaNode, toEdge),
@@ -44,14 +47,64 @@ public class TurnCostStorage implements Storable<TurnCostStorage> {
     private static final int TC_FLAGS = 8;
     private static final int TC_NEXT = 12;
     private static final int BYTES_PER_ENTRY = 16;
+    // the optional hash index uses open addressing with linear probing, each slot is |via_node|entry + 1| and 0 marks
+    // an empty slot
+    private static final int IDX_VIA = 0;
+    private static final int IDX_ENTRY = 4;
+    private static final int BYTES_PER_SLOT = 8;
+    private static final int MIN_SLOTS = 16;
 
     private BaseGraph baseGraph;
     private DataAccess turnCosts;
     private int turnCostsCount;
+    private final DataAccess index;
+    private boolean hashIndex;
+    private boolean indexInitialized;
+    private boolean indexCreated;
+    // the number of slots of the hash index, a power of two, or 0 if there is no index
+    private int indexSlots;
 
     public TurnCostStorage(BaseGraph baseGraph, DataAccess turnCosts) {
+        this(baseGraph, turnCosts, null);
+    }
+
+    /**
+     * @param index the memory used for the hash index, see {@link #setHashIndex(boolean)}
+     */
+    public TurnCostStorage(BaseGraph baseGraph, DataAccess turnCosts, DataAccess index) {
         this.baseGraph = baseGraph;
         this.turnCosts = turnCosts;
+        this.index = index;
+    }
+
+    /**
+     * Looks up the turn relations via an open addressing hash table keyed by (fromEdge, viaNode, toEdge) instead of
+     * scanning the list of turn relations of the via node. The table is not stored, it is built when the graph is
+     * created or loaded (or immediately if this storage is already in use) and needs 16 to 32 bytes per turn relation
+     * outside of the Java heap.
+     */
+    public TurnCostStorage setHashIndex(boolean hashIndex) {
+        if (hashIndex && index == null)
+            throw new IllegalStateException("No memory was configured for the hash index of " + this);
+        this.hashIndex = hashIndex;
+        if (!hashIndex)
+            indexSlots = 0;
+        else if (indexInitialized)
+            buildIndex(MIN_SLOTS);
+        return this;
+    }
+
+    public boolean isHashIndex() {
+        return hashIndex;
+    }
+
+    /**
+     * Builds the hash index (if enabled) once the node access of the graph is ready
+     */
+    void initHashIndex() {
+        indexInitialized = true;
+        if (hashIndex)
+            buildIndex(MIN_SLOTS);
     }
 
     public void setSegmentSize(int bytes) {
@@ -74,11 +127,14 @@ public class TurnCostStorage implements Storable<TurnCostStorage> {
     @Override
     public void close() {
         turnCosts.close();
+        if (indexCreated)
+            index.close();
+        indexSlots = 0;
     }
 
     @Override
     public long getCapacity() {
-        return turnCosts.getCapacity();
+        return turnCosts.getCapacity() + (indexCreated ? index.getCapacity() : 0);
     }
 
     @Override
@@ -106,6 +162,14 @@ public class TurnCostStorage implements Storable<TurnCostStorage> {
     }
 
     private void merge(IntsRef tcFlags, int fromEdge, int viaNode, int toEdge) {
+        if (indexSlots > 0) {
+            int entry = findEntry(fromEdge, viaNode, toEdge);
+            if (entry != NO_TURN_ENTRY) {
+                long costsIdx = (long) entry * BYTES_PER_ENTRY;
+                turnCosts.setInt(costsIdx + TC_FLAGS, turnCosts.getInt(costsIdx + TC_FLAGS) | tcFlags.ints[0]);
+                return;
+            }
+        }
         int newEntryIndex = turnCostsCount;
         ensureTurnCostIndex(newEntryIndex);
         boolean oldEntryFound = false;
@@ -158,6 +222,81 @@ public class TurnCostStorage implements Storable<TurnCostStorage> {
         turnCosts.setInt(costsBase + TC_TO, toEdge);
         turnCosts.setInt(costsBase + TC_FLAGS, newFlags);
         turnCosts.setInt(costsBase + TC_NEXT, next);
+        if (!oldEntryFound && indexSlots > 0) {
+            if ((long) turnCostsCount * 2 > indexSlots)
+                buildIndex(indexSlots * 2);
+            else
+                addToIndex(newEntryIndex, fromEdge, viaNode, toEdge);
+        }
+    }
+
+    /**
+     * (Re)builds the hash index with at least the given number of slots, such that at most half of them are used
+     */
+    private void buildIndex(int minSlots) {
+        int slots = Integer.highestOneBit(Math.max(MIN_SLOTS, Math.max(minSlots, turnCostsCount * 2)) - 1) << 1;
+        if (slots <= 0)
+            throw new IllegalStateException("Too many turn relations for the hash index: " + turnCostsCount);
+        long bytes = (long) slots * BYTES_PER_SLOT;
+        if (!indexCreated) {
+            index.create(bytes);
+            indexCreated = true;
+        } else {
+            index.ensureCapacity(bytes);
+        }
+        for (long pointer = 0; pointer < bytes; pointer += 4) {
+            index.setInt(pointer, 0);
+        }
+        indexSlots = slots;
+        NodeAccess nodeAccess = baseGraph.getNodeAccess();
+        for (int node = 0; node < baseGraph.getNodes(); node++) {
+            int turnCostIndex = nodeAccess.getTurnCostIndex(node);
+            for (int i = 0; turnCostIndex != NO_TURN_ENTRY; i++) {
+                if (i >= 1000)
+                    throw new IllegalStateException("something went wrong: there seems to be no end of the turn cost-list!?");
+                long turnCostPtr = (long) turnCostIndex * BYTES_PER_ENTRY;
+                addToIndex(turnCostIndex, turnCosts.getInt(turnCostPtr + TC_FROM), node, turnCosts.getInt(turnCostPtr + TC_TO));
+                turnCostIndex = turnCosts.getInt(turnCostPtr + TC_NEXT);
+            }
+        }
+    }
+
+    private void addToIndex(int entry, int fromEdge, int viaNode, int toEdge) {
+        int mask = indexSlots - 1;
+        int slot = hash(fromEdge, viaNode, toEdge) & mask;
+        while (index.getInt((long) slot * BYTES_PER_SLOT + IDX_ENTRY) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        long slotPtr = (long) slot * BYTES_PER_SLOT;
+        index.setInt(slotPtr + IDX_VIA, viaNode);
+        index.setInt(slotPtr + IDX_ENTRY, entry + 1);
+    }
+
+    /**
+     * @return the index of the entry for the specified turn relation or NO_TURN_ENTRY. requires the hash index.
+     */
+    private int findEntry(int fromEdge, int viaNode, int toEdge) {
+        int mask = indexSlots - 1;
+        int slot = hash(fromEdge, viaNode, toEdge) & mask;
+        while (true) {
+            long slotPtr = (long) slot * BYTES_PER_SLOT;
+            int entry = index.getInt(slotPtr + IDX_ENTRY) - 1;
+            if (entry < 0)
+                return NO_TURN_ENTRY;
+            if (index.getInt(slotPtr + IDX_VIA) == viaNode) {
+                long turnCostPtr = (long) entry * BYTES_PER_ENTRY;
+                if (turnCosts.getInt(turnCostPtr + TC_FROM) == fromEdge && turnCosts.getInt(turnCostPtr + TC_TO) == toEdge)
+                    return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(int fromEdge, int viaNode, int toEdge) {
+        long h = ((long) fromEdge << 32 | (toEdge & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L + viaNode;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ h >>> 32);
     }
 
     /**
@@ -183,6 +322,11 @@ public class TurnCostStorage implements Storable<TurnCostStorage> {
     }
 
     private void readFlags(IntsRef tcFlags, int fromEdge, int viaNode, int toEdge) {
+        if (indexSlots > 0) {
+            int entry = findEntry(fromEdge, viaNode, toEdge);
+            tcFlags.ints[0] = entry == NO_TURN_ENTRY ? EMPTY_FLAGS : turnCosts.getInt((long) entry * BYTES_PER_ENTRY + TC_FLAGS);
+            return;
+        }
         int turnCostIndex = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
         int i = 0;
         for (; i < 1000; i++) {
@@ -215,9 +359,47 @@ public class TurnCostStorage implements Storable<TurnCostStorage> {
     public TurnCostStorage copyTo(TurnCostStorage turnCostStorage) {
         turnCosts.copyTo(turnCostStorage.turnCosts);
         turnCostStorage.turnCostsCount = turnCostsCount;
+        if (turnCostStorage.indexSlots > 0)
+            turnCostStorage.buildIndex(MIN_SLOTS);
         return turnCostStorage;
     }
 
+    /**
+     * Copies all turn relations into the specified storage and renumbers their edges and via nodes, e.g. after the
+     * graph was sorted. The entries are written in the order of the new via nodes and relations with an edge or node
+     * that has no new id (i.e. -1) are skipped.
+     */
+    public void copyTo(TurnCostStorage turnCostStorage, IntIndexedContainer oldToNewNodes, IntIndexedContainer oldToNewEdges) {
+        int nodes = baseGraph.getNodes();
+        int[] newToOldNodes = new int[nodes];
+        Arrays.fill(newToOldNodes, -1);
+        for (int node = 0; node < nodes; node++) {
+            int newNode = oldToNewNodes.get(node);
+            if (newNode >= 0)
+                newToOldNodes[newNode] = node;
+        }
+
+        IntsRef tcFlags = TurnCost.createFlags();
+        for (int newNode = 0; newNode < nodes; newNode++) {
+            int node = newToOldNodes[newNode];
+            if (node < 0)
+                continue;
+            int turnCostIndex = baseGraph.getNodeAccess().getTurnCostIndex(node);
+            for (int i = 0; turnCostIndex != NO_TURN_ENTRY; i++) {
+                if (i >= 1000)
+                    throw new IllegalStateException("something went wrong: there seems to be no end of the turn cost-list!?");
+                long turnCostPtr = (long) turnCostIndex * BYTES_PER_ENTRY;
+                int newFromEdge = oldToNewEdges.get(turnCosts.getInt(turnCostPtr + TC_FROM));
+                int newToEdge = oldToNewEdges.get(turnCosts.getInt(turnCostPtr + TC_TO));
+                if (newFromEdge >= 0 && newToEdge >= 0) {
+                    tcFlags.ints[0] = turnCosts.getInt(turnCostPtr + TC_FLAGS);
+                    turnCostStorage.merge(tcFlags, newFromEdge, newNode, newToEdge);
+                }
+                turnCostIndex = turnCosts.getInt(turnCostPtr + TC_NEXT);
+            }
+        }
+    }
+
     @Override
     public boolean isClosed() {
         return turnCosts.isClosed();
@@ -45,6 +45,8 @@ import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
  */
 public class GHUtility {
     private static final Logger LOGGER = LoggerFactory.getLogger(GHUtility.class);
+    // the grid used by sortHilbert has 2^16 x 2^16 cells, i.e. a cell is smaller than a meter for a city sized graph
+    private static final int HILBERT_ORDER = 16;
 
     /**
      * This method could throw an exception if problems like index out of bounds etc
@@ -331,8 +333,6 @@ public class GHUtility {
     }
 
     public static Graph shuffle(Graph g, Graph sortedGraph) {
-        if (g.getTurnCostStorage() != null)
-            throw new IllegalArgumentException("Shuffling the graph is currently not supported in the presence of turn costs");
         IntArrayList nodes = ArrayUtil.permutation(g.getNodes(), new Random());
         IntArrayList edges = ArrayUtil.permutation(g.getEdges(), new Random());
         return createSortedGraph(g, sortedGraph, nodes, edges);
@@ -343,9 +343,6 @@ public class GHUtility {
      * significant difference (bfs) for querying or are worse (z-curve).
      */
     public static Graph sortDFS(Graph g, Graph sortedGraph) {
-        if (g.getTurnCostStorage() != null) {
-            throw new IllegalArgumentException("Sorting the graph is currently not supported in the presence of turn costs");
-        }
         int nodes = g.getNodes();
         final IntArrayList nodeList = ArrayUtil.constant(nodes, -1);
         final GHBitSetImpl nodeBitset = new GHBitSetImpl(nodes);
@@ -385,11 +382,77 @@ public class GHUtility {
         return createSortedGraph(g, sortedGraph, nodeList, edgeList);
     }
 
-    static Graph createSortedGraph(Graph fromGraph, Graph toSortedGraph, final IntIndexedContainer oldToNewNodeList, final IntIndexedContainer newToOldEdgeList) {
-        if (fromGraph.getTurnCostStorage() != null) {
-            throw new IllegalArgumentException("Sorting the graph is currently not supported in the presence of turn costs");
+    /**
+     * Sorts the nodes of the graph along a Hilbert curve through their coordinates and the edges by their (new) base
+     * node. Nodes that are close to each other and the edges adjacent to them then end up close to each other in
+     * memory, which improves the cache locality of routing queries.
+     */
+    public static Graph sortHilbert(Graph g, Graph sortedGraph) {
+        int nodes = g.getNodes();
+        int edges = g.getEdges();
+        if (nodes == 0)
+            return createSortedGraph(g, sortedGraph, new IntArrayList(), new IntArrayList());
+
+        BBox bounds = g.getBounds();
+        double latRange = Math.max(bounds.maxLat - bounds.minLat, 1e-9);
+        double lonRange = Math.max(bounds.maxLon - bounds.minLon, 1e-9);
+        int maxCell = (1 << HILBERT_ORDER) - 1;
+        NodeAccess na = g.getNodeAccess();
+        // the node id is stored in the lower bits, so sorting the keys sorts by Hilbert index and then by node id
+        long[] nodeKeys = new long[nodes];
+        for (int node = 0; node < nodes; node++) {
+            int x = (int) Math.round((na.getLongitude(node) - bounds.minLon) / lonRange * maxCell);
+            int y = (int) Math.round((na.getLatitude(node) - bounds.minLat) / latRange * maxCell);
+            x = Math.max(0, Math.min(maxCell, x));
+            y = Math.max(0, Math.min(maxCell, y));
+            nodeKeys[node] = (getHilbertIndex(x, y, HILBERT_ORDER) << 31) | node;
+        }
+        Arrays.sort(nodeKeys);
+        IntArrayList nodeList = ArrayUtil.constant(nodes, -1);
+        for (int i = 0; i < nodes; i++) {
+            nodeList.set((int) (nodeKeys[i] & Integer.MAX_VALUE), i);
+        }
+
+        long[] edgeKeys = new long[edges];
+        for (int edge = 0; edge < edges; edge++) {
+            int newBase = nodeList.get(g.getEdgeIteratorState(edge, Integer.MIN_VALUE).getBaseNode());
+            edgeKeys[edge] = ((long) newBase << 32) | edge;
+        }
+        Arrays.sort(edgeKeys);
+        IntArrayList edgeList = ArrayUtil.constant(edges, -1);
+        for (int i = 0; i < edges; i++) {
+            edgeList.set(i, (int) edgeKeys[i]);
         }
+        return createSortedGraph(g, sortedGraph, nodeList, edgeList);
+    }
+
+    /**
+     * @return the position of the specified cell on a Hilbert curve that fills a grid of 2^order x 2^order cells
+     */
+    static long getHilbertIndex(int x, int y, int order) {
+        int n = 1 << order;
+        long index = 0;
+        for (int s = n >>> 1; s > 0; s >>>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so that the curve stays continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return index;
+    }
+
+    static Graph createSortedGraph(Graph fromGraph, Graph toSortedGraph, final IntIndexedContainer oldToNewNodeList, final IntIndexedContainer newToOldEdgeList) {
         int edges = fromGraph.getEdges();
+        IntArrayList oldToNewEdgeList = ArrayUtil.constant(edges, -1);
         for (int i = 0; i < edges; i++) {
             int edgeId = newToOldEdgeList.get(i);
             if (edgeId < 0)
@@ -406,7 +469,8 @@ public class GHUtility {
             if (newBaseIndex < 0 || newAdjIndex < 0)
                 continue;
 
-            toSortedGraph.edge(newBaseIndex, newAdjIndex).copyPropertiesFrom(eIter);
+            EdgeIteratorState newEdge = toSortedGraph.edge(newBaseIndex, newAdjIndex).copyPropertiesFrom(eIter);
+            oldToNewEdgeList.set(edgeId, newEdge.getEdge());
         }
 
         int nodes = fromGraph.getNodes();
@@ -419,6 +483,12 @@ public class GHUtility {
             else
                 sna.setNode(newIndex, na.getLatitude(old), na.getLongitude(old));
         }
+
+        if (fromGraph.getTurnCostStorage() != null) {
+            if (toSortedGraph.getTurnCostStorage() == null)
+                throw new IllegalArgumentException("The sorted graph needs to support turn costs");
+            fromGraph.getTurnCostStorage().copyTo(toSortedGraph.getTurnCostStorage(), oldToNewNodeList, oldToNewEdgeList);
+        }
         return toSortedGraph;
     }
 
@@ -454,8 +524,13 @@ public class GHUtility {
             throw new IllegalStateException("not supported yet: mmap will overwrite existing storage at the same location");
         }
         String location = store.getDirectory().getLocation();
-        boolean isStoring = ((GHDirectory) store.getDirectory()).isStoring();
-        return new RAMDirectory(location, isStoring);
+        GHDirectory dir = (GHDirectory) store.getDirectory();
+        boolean isStoring = dir.isStoring();
+        if (store.getDirectory().getDefaultType().isOffHeap())
+            return new GHDirectory(location, isStoring ? DAType.OFF_HEAP_STORE : DAType.OFF_HEAP).setChecksums(dir.isChecksums());
+        if (store.getDirectory().getDefaultType().isCompressed())
+            return new GHDirectory(location, DAType.COMPRESSED_STORE);
+        return new RAMDirectory(location, isStoring).setChecksums(dir.isChecksums());
     }
 
     /**
@@ -467,10 +542,15 @@ public class GHUtility {
         return new GraphBuilder(store.getEncodingManager())
                 .withTurnCosts(store.getTurnCostStorage() != null)
                 .set3D(is3D)
+                .withCompressedGeometry(store.isCompressedGeometry())
+                .withCSRAdjacency(store.isCSRAdjacency())
+                .withTurnCostHashIndex(store.getTurnCostStorage() != null && store.getTurnCostStorage().isHashIndex())
+                .withSpeedProfiles(store.getSpeedProfileStorage() != null)
                 .setDir(outdir)
                 .setCHConfigs(store.getCHConfigs())
                 .setBytes(store.getNodes())
-                .create();
+                .create()
+                .setIOThreads(store.getIOThreads());
     }
 
     public static int getAdjNode(Graph g, int edge, int adjNode) {
@@ -0,0 +1,86 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExternalLongSorterTest {
+    @Test
+    public void testSortInMemory() {
+        RAMDirectory dir = new RAMDirectory();
+        ExternalLongSorter sorter = new ExternalLongSorter(dir, "sorter", DAType.OFF_HEAP, 10);
+        sorter.add(5);
+        sorter.add(-3);
+        sorter.add(5);
+        sorter.add(1);
+        LongArrayList result = new LongArrayList();
+        sorter.sort(result::add);
+        assertArrayEquals(new long[]{-3, 1, 5, 5}, result.toArray());
+        assertFalse(dir.getAll().iterator().hasNext());
+    }
+
+    @Test
+    public void testSortRuns() {
+        RAMDirectory dir = new RAMDirectory();
+        ExternalLongSorter sorter = new ExternalLongSorter(dir, "sorter", DAType.OFF_HEAP, 1000);
+        Random rand = new Random(0);
+        // not a multiple of the run size to have a smaller last run and more values than the merge buffer per run
+        long[] values = new long[10_500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 7 == 0 ? rand.nextLong() : rand.nextInt(5000);
+            sorter.add(values[i]);
+        }
+        assertEquals(values.length, sorter.getSize());
+
+        LongArrayList result = new LongArrayList();
+        sorter.sort(result::add);
+        Arrays.sort(values);
+        assertArrayEquals(values, result.toArray());
+        // the runs are removed after sorting
+        assertFalse(dir.getAll().iterator().hasNext());
+
+        try {
+            sorter.add(1);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testReleaseRemovesRuns() {
+        RAMDirectory dir = new RAMDirectory();
+        ExternalLongSorter sorter = new ExternalLongSorter(dir, "sorter", DAType.OFF_HEAP, 10);
+        for (int i = 0; i < 25; i++)
+            sorter.add(i);
+        DataAccess runs = dir.getAll().iterator().next();
+        assertEquals(DAType.OFF_HEAP, runs.getType());
+        sorter.release();
+        assertFalse(dir.getAll().iterator().hasNext());
+        // releasing again does nothing
+        sorter.release();
+    }
+}
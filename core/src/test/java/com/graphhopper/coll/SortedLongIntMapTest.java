@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SortedLongIntMapTest {
+    @Test
+    public void testGetAndUpdate() {
+        SortedLongIntMap map = new SortedLongIntMap(new RAMDirectory(), "map", DAType.OFF_HEAP);
+        assertEquals(-1, map.get(5));
+        map.put(5, 1);
+        map.put(7, 2);
+        map.put(1000, 3);
+        assertEquals(3, map.getSize());
+        assertEquals(-1, map.get(4));
+        assertEquals(1, map.get(5));
+        assertEquals(-1, map.get(6));
+        assertEquals(2, map.get(7));
+        assertEquals(3, map.get(1000));
+        assertEquals(-1, map.get(1001));
+
+        assertEquals(2, map.put(7, 20));
+        assertEquals(20, map.get(7));
+        assertEquals(3, map.put(1000, -30));
+        assertEquals(-30, map.get(1000));
+        assertEquals(3, map.getSize());
+    }
+
+    @Test
+    public void testManyBlocks() {
+        SortedLongIntMap map = new SortedLongIntMap(new RAMDirectory(), "map", DAType.OFF_HEAP);
+        Random rand = new Random(0);
+        int count = 20 * SortedLongIntMap.BLOCK_SIZE + 7;
+        long[] keys = new long[count];
+        long key = -1_000_000;
+        for (int i = 0; i < count; i++) {
+            // include deltas that need several bytes
+            key += 1 + (i % 10 == 0 ? rand.nextInt(Integer.MAX_VALUE) : rand.nextInt(100));
+            keys[i] = key;
+            map.put(key, i);
+        }
+        assertEquals(count, map.getSize());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, map.get(keys[i]));
+            if (i + 1 == count || keys[i + 1] > keys[i] + 1)
+                assertEquals(-1, map.get(keys[i] + 1));
+        }
+        for (int i = count - 1; i >= 0; i -= 3) {
+            map.put(keys[i], -i);
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals((count - 1 - i) % 3 == 0 ? -i : i, map.get(keys[i]));
+        }
+    }
+
+    @Test
+    public void testExtremeKeys() {
+        SortedLongIntMap map = new SortedLongIntMap(new RAMDirectory(), "map", DAType.OFF_HEAP);
+        map.put(-Long.MAX_VALUE, 1);
+        map.put(0, 2);
+        map.put(Long.MAX_VALUE, 3);
+        assertEquals(1, map.get(-Long.MAX_VALUE));
+        assertEquals(2, map.get(0));
+        assertEquals(3, map.get(Long.MAX_VALUE));
+        assertEquals(-1, map.get(1));
+    }
+
+    @Test
+    public void testUnsortedKeys() {
+        SortedLongIntMap map = new SortedLongIntMap(new RAMDirectory(), "map", DAType.OFF_HEAP);
+        map.put(10, 1);
+        map.put(20, 2);
+        // smaller keys that were not appended before are stored separately
+        assertEquals(-1, map.put(15, 3));
+        assertEquals(-1, map.put(-5, 4));
+        assertEquals(4, map.getSize());
+        assertEquals(3, map.get(15));
+        assertEquals(4, map.get(-5));
+        assertEquals(3, map.put(15, 5));
+        assertEquals(5, map.get(15));
+        assertEquals(2, map.get(20));
+
+        // appending still works
+        map.put(30, 6);
+        assertEquals(6, map.get(30));
+        assertEquals(5, map.getSize());
+        map.clear();
+    }
+}
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.reader.dem;
 
+import com.graphhopper.util.PointList;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -99,6 +100,34 @@ public class SRTMProviderTest {
         assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
     }
 
+    @Test
+    public void testMaxCachedTiles() {
+        instance = new SRTMProvider("./files/");
+        instance.setMaxCachedTiles(1);
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
+        assertEquals(1, instance.getCachedTiles());
+        // the evicted tile is loaded again
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        assertEquals(330, instance.getEle(49.958233, 11.558647), 1e-1);
+        assertEquals(1, instance.getCachedTiles());
+    }
+
+    @Test
+    public void testPrefetch() {
+        instance = new SRTMProvider("./files/");
+        instance.setPrefetchThreads(2);
+        PointList points = new PointList();
+        points.add(49.968651, 11.574869);
+        points.add(49.958233, 11.558647);
+        points.add(55.8943144, -3);
+        instance.prefetch(points);
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        assertEquals(330, instance.getEle(49.958233, 11.558647), 1e-1);
+        assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
+        assertEquals(2, instance.getCachedTiles());
+    }
+
     @Ignore
     public void testGetEle() {
         instance = new SRTMProvider();
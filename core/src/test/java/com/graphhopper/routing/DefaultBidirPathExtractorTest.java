@@ -28,7 +28,6 @@ import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.storage.TurnCostStorage;
-import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.Test;
 
@@ -50,10 +49,11 @@ public class DefaultBidirPathExtractorTest {
     public void testExtract() {
         Graph graph = createGraph();
         GHUtility.setSpeed(60, true, true, carEncoder, graph.edge(1, 2).setDistance(10));
-        SPTEntry fwdEntry = new SPTEntry(0, 2, 0);
-        fwdEntry.parent = new SPTEntry(EdgeIterator.NO_EDGE, 1, 10);
-        SPTEntry bwdEntry = new SPTEntry(EdgeIterator.NO_EDGE, 2, 0);
-        Path p = DefaultBidirPathExtractor.extractPath(graph, new FastestWeighting(carEncoder), fwdEntry, bwdEntry, 0);
+        SPTStore fwdSpt = new SPTStore(10);
+        int fwdEntry = fwdSpt.add(0, 2, 0, 0, fwdSpt.addRoot(1, 10, 10));
+        SPTStore bwdSpt = new SPTStore(10);
+        int bwdEntry = bwdSpt.addRoot(2, 0, 0);
+        Path p = DefaultBidirPathExtractor.extractPath(graph, new FastestWeighting(carEncoder), fwdSpt, fwdEntry, bwdSpt, bwdEntry, 0);
         assertEquals(IntArrayList.from(1, 2), p.calcNodes());
         assertEquals(10, p.getDistance(), 1e-4);
     }
@@ -70,13 +70,14 @@ public class DefaultBidirPathExtractorTest {
         DecimalEncodedValue turnCostEnc = encodingManager.getDecimalEncodedValue(TurnCost.key(carEncoder.toString()));
         turnCostStorage.set(turnCostEnc, 0, 2, 1, 5);
 
-        SPTEntry fwdEntry = new SPTEntry(0, 2, 0.6);
-        fwdEntry.parent = new SPTEntry(EdgeIterator.NO_EDGE, 1, 0);
+        SPTStore fwdSpt = new SPTStore(10);
+        int fwdEntry = fwdSpt.add(0, 2, 0.6, 0.6, fwdSpt.addRoot(1, 0, 0));
 
-        SPTEntry bwdEntry = new SPTEntry(1, 2, 1.2);
-        bwdEntry.parent = new SPTEntry(EdgeIterator.NO_EDGE, 3, 0);
+        SPTStore bwdSpt = new SPTStore(10);
+        int bwdEntry = bwdSpt.add(1, 2, 1.2, 1.2, bwdSpt.addRoot(3, 0, 0));
 
-        Path p = DefaultBidirPathExtractor.extractPath(graph, new FastestWeighting(carEncoder, new DefaultTurnCostProvider(carEncoder, turnCostStorage)), fwdEntry, bwdEntry, 0);
+        Path p = DefaultBidirPathExtractor.extractPath(graph, new FastestWeighting(carEncoder, new DefaultTurnCostProvider(carEncoder, turnCostStorage)),
+                fwdSpt, fwdEntry, bwdSpt, bwdEntry, 0);
         p.setWeight(5 + 1.8);
 
         assertEquals(IntArrayList.from(1, 2, 3), p.calcNodes());
@@ -1,5 +1,6 @@
 package com.graphhopper.routing;
 
+import com.graphhopper.routing.ch.CHParameters;
 import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
@@ -42,6 +43,7 @@ public class RandomCHRoutingTest {
     private GraphHopperStorage graph;
     private CHConfig chConfig;
     private LocationIndexTree locationIndex;
+    private PMap pMap = new PMap();
 
     @Parameterized.Parameters(name = "{0}, u-turn-costs={1}")
     public static Collection<Object[]> params() {
@@ -93,6 +95,21 @@ public class RandomCHRoutingTest {
         runRandomTest(rnd, 20);
     }
 
+    @Test
+    public void randomParallelContraction() {
+        int numNodes = 200;
+        long seed = System.nanoTime();
+        System.out.println("seed: " + seed);
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, numNodes, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60d, 0.7, 0.9, 0);
+        if (traversalMode.isEdgeBased()) {
+            GHUtility.addRandomTurnCosts(graph, seed, encodingManager, encoder, maxTurnCosts, graph.getTurnCostStorage());
+        }
+        pMap = new PMap().putObject(CHParameters.CONTRACTION_THREADS, 4);
+        runRandomTest(rnd, 20);
+    }
+
     @Test
     public void issue1574_1() {
         Assume.assumeFalse(traversalMode.isEdgeBased());
@@ -143,6 +160,7 @@ public class RandomCHRoutingTest {
         graph.freeze();
         RoutingCHGraph chGraph = graph.getRoutingCHGraph(chConfig.getName());
         PrepareContractionHierarchies pch = PrepareContractionHierarchies.fromGraphHopperStorage(graph, chConfig);
+        pch.setParams(pMap);
         pch.doWork();
 
         int numQueryGraph = 25;
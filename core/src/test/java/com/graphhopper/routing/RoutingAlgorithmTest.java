@@ -847,6 +847,11 @@ public class RoutingAlgorithmTest {
                 return edgeState.getDistance() * 0.8;
             }
 
+            @Override
+            public double calcEdgeDistanceWeight(EdgeIteratorState edgeState, boolean reverse) {
+                return 0;
+            }
+
             @Override
             public final long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
                 return tmpW.calcEdgeMillis(edgeState, reverse);
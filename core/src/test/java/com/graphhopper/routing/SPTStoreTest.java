@@ -0,0 +1,231 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.graphhopper.routing.SPTStore.NO_ENTRY;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SPTStoreTest {
+
+    @Test
+    public void addAndGet() {
+        SPTStore spt = new SPTStore(2);
+        int root = spt.addRoot(5, 0, 1.5);
+        int entry = spt.add(3, 7, 2.5, 4.0, root);
+        spt.put(7, entry);
+        assertEquals(2, spt.size());
+        assertEquals(entry, spt.get(7));
+        assertEquals(NO_ENTRY, spt.get(5));
+        assertEquals(3, spt.getEdge(entry));
+        assertEquals(7, spt.getAdjNode(entry));
+        assertEquals(2.5, spt.getWeight(entry));
+        assertEquals(4.0, spt.getKey(entry));
+        assertEquals(root, spt.getParent(entry));
+        assertEquals(NO_ENTRY, spt.getParent(root));
+        assertEquals(1.5, spt.getKey(root));
+    }
+
+    @Test
+    public void heapOrderAndDecreaseKey() {
+        SPTStore spt = new SPTStore(2);
+        int a = spt.add(0, 0, 5, 5, NO_ENTRY);
+        int b = spt.add(1, 1, 3, 3, NO_ENTRY);
+        int c = spt.add(2, 2, 4, 4, NO_ENTRY);
+        spt.push(a);
+        spt.push(b);
+        spt.push(c);
+        // pushing twice does not create duplicates
+        spt.push(c);
+        assertEquals(3, spt.getHeapSize());
+        spt.update(a, 7, 1, 1, c);
+        assertEquals(a, spt.peek());
+        assertEquals(7, spt.getEdge(a));
+        assertEquals(c, spt.getParent(a));
+        assertEquals(a, spt.poll());
+        assertEquals(b, spt.poll());
+        // updating an entry that is no longer in the heap inserts it again
+        spt.update(b, 1, 2, 2, NO_ENTRY);
+        assertEquals(b, spt.poll());
+        assertEquals(c, spt.poll());
+        assertTrue(spt.isHeapEmpty());
+    }
+
+    @Test
+    public void clearKeepsWorking() {
+        SPTStore spt = new SPTStore(2);
+        for (int run = 0; run < 3; run++) {
+            for (int i = 0; i < 100; i++) {
+                int entry = spt.add(i, i, i, 100 - i, NO_ENTRY);
+                spt.put(i, entry);
+                spt.push(entry);
+            }
+            assertEquals(99, spt.getAdjNode(spt.poll()));
+            spt.clear();
+            assertEquals(0, spt.size());
+            assertTrue(spt.isHeapEmpty());
+            assertEquals(NO_ENTRY, spt.get(3));
+        }
+    }
+
+    @Test
+    public void random() {
+        Random rnd = new Random(42);
+        SPTStore spt = new SPTStore(10);
+        int size = 1000;
+        double[] keys = new double[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = rnd.nextDouble() * 100;
+            spt.push(spt.add(i, i, keys[i], keys[i], NO_ENTRY));
+        }
+        for (int i = 0; i < size / 2; i++) {
+            int entry = rnd.nextInt(size);
+            keys[entry] = rnd.nextDouble() * 100;
+            spt.update(entry, entry, keys[entry], keys[entry], NO_ENTRY);
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < size; i++) {
+            assertEquals(keys[i], spt.getKey(spt.poll()));
+        }
+        assertTrue(spt.isHeapEmpty());
+    }
+
+    @Test
+    public void reusableClear() {
+        SPTStore spt = new SPTStore(2, true);
+        assertTrue(spt.isReusable());
+        int entry = spt.addRoot(5, 0, 0);
+        spt.put(1000, entry);
+        assertEquals(entry, spt.get(1000));
+        assertEquals(NO_ENTRY, spt.get(999));
+        assertEquals(NO_ENTRY, spt.get(100_000));
+        spt.clear();
+        assertEquals(NO_ENTRY, spt.get(1000));
+        entry = spt.addRoot(6, 0, 0);
+        spt.put(3, entry);
+        assertEquals(entry, spt.get(3));
+        assertEquals(NO_ENTRY, spt.get(1000));
+    }
+
+    @Test
+    public void reuseStoreForManyQueries() {
+        CarFlagEncoder encoder = new CarFlagEncoder();
+        GraphHopperStorage graph = new GraphBuilder(EncodingManager.create(encoder)).create();
+        Random rnd = new Random(123);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60d, 0.7, 0.8, 0.8);
+        Weighting weighting = new FastestWeighting(encoder);
+        SPTStorePool pool = new SPTStorePool();
+        for (int i = 0; i < 100; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            Path expected = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            Path dijkstraPath = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED)
+                    .setSPTStore(pool.get("car")).calcPath(from, to);
+            Path aStarPath = new AStar(graph, weighting, TraversalMode.NODE_BASED)
+                    .setSPTStore(pool.get("car")).calcPath(from, to);
+            assertEquals(expected.isFound(), dijkstraPath.isFound());
+            assertEquals(expected.isFound(), aStarPath.isFound());
+            assertEquals(expected.getWeight(), dijkstraPath.getWeight(), 1.e-6);
+            assertEquals(expected.getWeight(), aStarPath.getWeight(), 1.e-6);
+            assertEquals(expected.calcNodes(), dijkstraPath.calcNodes());
+        }
+        assertSame(pool.get("car"), pool.get("car"));
+        assertNotSame(pool.get("car"), pool.get("bike"));
+    }
+
+    @Test
+    public void poolDropsLargeStoresAndReleasesAllThreads() throws InterruptedException {
+        SPTStorePool pool = new SPTStorePool().setMaxEntriesPerStore(2000);
+        SPTStore store = pool.get("car");
+        assertSame(store, pool.get("car"));
+        // a request that needs more entries than allowed makes the pool drop the store
+        for (int i = 0; i < 3000; i++)
+            store.add(i, i, i, i, SPTStore.NO_ENTRY);
+        assertNotSame(store, pool.get("car"));
+
+        Thread thread = new Thread(() -> pool.get("car", true));
+        thread.start();
+        thread.join();
+        assertEquals(2, pool.getStoreCount());
+        pool.clear();
+        assertEquals(0, pool.getStoreCount());
+        assertNotSame(store, pool.get("car"));
+        assertEquals(1, pool.getStoreCount());
+    }
+
+    @Test
+    public void reuseStoresForBidirectionalAndCHQueries() {
+        CarFlagEncoder encoder = new CarFlagEncoder(5, 5, 1);
+        EncodingManager em = EncodingManager.create(encoder);
+        GraphHopperStorage graph = new GraphBuilder(em).setCHConfigStrings("node|car|fastest|node", "edge|car|fastest|edge").create();
+        Random rnd = new Random(456);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60d, 0.7, 0.8, 0.8);
+        GHUtility.addRandomTurnCosts(graph, 456, em, encoder, 1, graph.getTurnCostStorage());
+        graph.freeze();
+        for (CHConfig chConfig : graph.getCHConfigs())
+            PrepareContractionHierarchies.fromGraphHopperStorage(graph, chConfig).doWork();
+        SPTStorePool pool = new SPTStorePool();
+        for (CHConfig chConfig : graph.getCHConfigs()) {
+            TraversalMode traversalMode = chConfig.isEdgeBased() ? TraversalMode.EDGE_BASED : TraversalMode.NODE_BASED;
+            Weighting weighting = chConfig.getWeighting();
+            CHRoutingAlgorithmFactory chFactory = new CHRoutingAlgorithmFactory(graph.getRoutingCHGraph(chConfig.getName()));
+            CHRoutingAlgorithmFactory reusingCHFactory = new CHRoutingAlgorithmFactory(graph.getRoutingCHGraph(chConfig.getName()))
+                    .setSPTStores(pool.get(chConfig.getName()), pool.get(chConfig.getName(), true));
+            for (int i = 0; i < 100; i++) {
+                int from = rnd.nextInt(graph.getNodes());
+                int to = rnd.nextInt(graph.getNodes());
+                Path expected = new Dijkstra(graph, weighting, traversalMode).calcPath(from, to);
+                Path dijkstraBiPath = new DijkstraBidirectionRef(graph, weighting, traversalMode)
+                        .setSPTStores(pool.get(chConfig.getName()), pool.get(chConfig.getName(), true)).calcPath(from, to);
+                Path aStarBiPath = new AStarBidirection(graph, weighting, traversalMode)
+                        .setSPTStores(pool.get(chConfig.getName()), pool.get(chConfig.getName(), true)).calcPath(from, to);
+                for (Path path : Arrays.asList(dijkstraBiPath, aStarBiPath)) {
+                    assertEquals(expected.isFound(), path.isFound());
+                    assertEquals(expected.getWeight(), path.getWeight(), 1.e-6);
+                }
+                // the shortcut weights are rounded, so we compare with a CH query that does not reuse the stores
+                Path expectedCH = chFactory.createAlgo(new PMap()).calcPath(from, to);
+                Path chPath = reusingCHFactory.createAlgo(new PMap()).calcPath(from, to);
+                assertEquals(expected.isFound(), chPath.isFound());
+                assertEquals(expectedCH.getWeight(), chPath.getWeight(), 1.e-6);
+                assertEquals(expectedCH.calcNodes(), chPath.calcNodes());
+            }
+        }
+        assertSame(pool.get("car"), pool.get("car", false));
+        assertNotSame(pool.get("car"), pool.get("car", true));
+        assertSame(pool.get("car", true), pool.get("car", true));
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.BeelineWeightApproximator;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.ShortFastestWeighting;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.SpeedProfileStorage;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static com.graphhopper.util.Parameters.Routing.DEPARTURE_TIME;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeDependentDijkstraTest {
+    private FlagEncoder encoder;
+    private GraphHopperStorage graph;
+    private SpeedProfileStorage speedProfiles;
+    private Weighting baseWeighting;
+    private TimeDependentWeighting weighting;
+
+    @BeforeEach
+    void setup() {
+        encoder = new CarFlagEncoder();
+        graph = new GraphBuilder(EncodingManager.create(encoder)).withSpeedProfiles(true).create();
+        speedProfiles = graph.getSpeedProfileStorage();
+        baseWeighting = new FastestWeighting(encoder);
+        weighting = new TimeDependentWeighting(baseWeighting, speedProfiles);
+    }
+
+    @Test
+    void rushHourDetour() {
+        // 0 --- 1
+        //  \   /
+        //    2
+        EdgeIteratorState direct = GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(1000));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 2).setDistance(800));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(2, 1).setDistance(800));
+
+        double[] factors = new double[SpeedProfileStorage.BUCKETS_PER_DAY];
+        Arrays.fill(factors, 1);
+        for (int i = 7 * 4; i < 9 * 4; i++)
+            factors[i] = 0.4;
+        int rushHour = speedProfiles.addProfile(factors);
+        // only the direction from 0 to 1 is congested
+        speedProfiles.setEdgeProfile(direct.getEdgeKey(), rushHour);
+
+        Path night = calcPath(0, 1, "2020-11-04T03:00", false);
+        assertEquals(nodes(0, 1), night.calcNodes());
+        assertEquals(60_000, night.getTime());
+
+        Path morning = calcPath(0, 1, "2020-11-04T08:00", false);
+        assertEquals(nodes(0, 2, 1), morning.calcNodes());
+        assertEquals(96_000, morning.getTime());
+
+        Path back = calcPath(1, 0, "2020-11-04T08:00", false);
+        assertEquals(nodes(1, 0), back.calcNodes());
+
+        // the speed factor is taken at the time the edge is entered
+        Path late = calcPath(0, 1, "2020-11-04T08:59", false);
+        assertEquals(nodes(0, 2, 1), late.calcNodes());
+        Path afterRushHour = calcPath(0, 1, "2020-11-04T09:00", false);
+        assertEquals(nodes(0, 1), afterRushHour.calcNodes());
+    }
+
+    @Test
+    void viaLegsStartAtArrivalOfPreviousLeg() {
+        //          2
+        //         / \
+        // 0 --- 1 --- 3
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(50_000));
+        EdgeIteratorState direct = GHUtility.setSpeed(60, true, true, encoder, graph.edge(1, 3).setDistance(1000));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(1, 2).setDistance(800));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(2, 3).setDistance(800));
+
+        double[] factors = new double[SpeedProfileStorage.BUCKETS_PER_DAY];
+        Arrays.fill(factors, 1);
+        for (int i = 8 * 4; i < 9 * 4; i++)
+            factors[i] = 0.4;
+        speedProfiles.setEdgeProfile(direct.getEdgeKey(), speedProfiles.addProfile(factors));
+
+        // the first leg takes 50min, so the second leg starts in the rush hour and takes the detour
+        PMap hints = new PMap().putObject(DEPARTURE_TIME, "2020-11-04T07:30");
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm("td_dijkstra").weighting(weighting).hints(hints).build();
+        QueryGraph queryGraph = QueryGraph.create(graph, Collections.<Snap>emptyList());
+        FlexiblePathCalculator pathCalculator = new FlexiblePathCalculator(queryGraph, new RoutingAlgorithmFactorySimple(), opts);
+        Path firstLeg = pathCalculator.calcPaths(0, 1, new EdgeRestrictions()).get(0);
+        assertEquals(3_000_000, firstLeg.getTime());
+        Path secondLeg = pathCalculator.calcPaths(1, 3, new EdgeRestrictions()).get(0);
+        assertEquals(nodes(1, 2, 3), secondLeg.calcNodes());
+        assertEquals(96_000, secondLeg.getTime());
+
+        // without the first leg there is no congestion yet
+        Path withoutFirstLeg = calcPath(1, 3, "2020-11-04T07:30", false);
+        assertEquals(nodes(1, 3), withoutFirstLeg.calcNodes());
+        assertEquals(60_000, withoutFirstLeg.getTime());
+    }
+
+    @Test
+    void speedFactorDoesNotChangeDistanceCosts() {
+        EdgeIteratorState edge = GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(1000));
+        double[] factors = new double[SpeedProfileStorage.BUCKETS_PER_DAY];
+        Arrays.fill(factors, 1);
+        for (int i = 8 * 4; i < 9 * 4; i++)
+            factors[i] = 0.5;
+        speedProfiles.setEdgeProfile(edge.getEdgeKey(), speedProfiles.addProfile(factors));
+        // 60s travel time and 0.1 per meter distance costs
+        TimeDependentWeighting shortFastest = new TimeDependentWeighting(new ShortFastestWeighting(encoder, 0.1), speedProfiles);
+        long night = LocalDateTime.parse("2020-11-04T03:00").toInstant(ZoneOffset.UTC).toEpochMilli();
+        long morning = LocalDateTime.parse("2020-11-04T08:00").toInstant(ZoneOffset.UTC).toEpochMilli();
+        assertEquals(60 + 100, shortFastest.calcEdgeWeight(edge, false, night), 1.e-6);
+        // only the travel time doubles
+        assertEquals(120 + 100, shortFastest.calcEdgeWeight(edge, false, morning), 1.e-6);
+        assertEquals(120_000, shortFastest.calcEdgeMillis(edge, false, morning));
+        assertEquals(60 + 100, shortFastest.calcEdgeWeight(edge, true, morning), 1.e-6);
+
+        TimeDependentDijkstra algo = new TimeDependentDijkstra(graph, shortFastest, TraversalMode.NODE_BASED);
+        algo.setDepartureTime(morning);
+        Path path = algo.calcPath(0, 1);
+        assertEquals(220, path.getWeight(), 1.e-6);
+        assertEquals(120_000, path.getTime());
+    }
+
+    @Test
+    void withoutProfilesSameAsDijkstra() {
+        Random rnd = new Random(42);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0);
+        for (int i = 0; i < 50; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            Path expected = new Dijkstra(graph, baseWeighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            Path path = calcPath(from, to, "2020-11-04T08:00", false);
+            assertEquals(expected.isFound(), path.isFound());
+            assertEquals(expected.getWeight(), path.getWeight(), 1.e-3);
+            assertEquals(expected.getTime(), path.getTime(), 10);
+        }
+    }
+
+    @Test
+    void aStarAndDijkstraAgree() {
+        Random rnd = new Random(123);
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.8, 0);
+        int[] profiles = new int[5];
+        for (int p = 0; p < profiles.length; p++) {
+            double[] factors = new double[SpeedProfileStorage.BUCKETS];
+            for (int i = 0; i < factors.length; i++)
+                factors[i] = 0.2 + rnd.nextDouble();
+            profiles[p] = speedProfiles.addProfile(factors);
+        }
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            if (rnd.nextBoolean())
+                speedProfiles.setEdgeProfile(GHUtility.createEdgeKey(edge, false), profiles[rnd.nextInt(profiles.length)]);
+            if (rnd.nextBoolean())
+                speedProfiles.setEdgeProfile(GHUtility.createEdgeKey(edge, true), profiles[rnd.nextInt(profiles.length)]);
+        }
+        for (int i = 0; i < 50; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            String time = "2020-11-0" + (2 + rnd.nextInt(7)) + "T0" + rnd.nextInt(10) + ":" + (10 + rnd.nextInt(50));
+            Path dijkstra = calcPath(from, to, time, false);
+            Path aStar = calcPath(from, to, time, true);
+            assertEquals(dijkstra.isFound(), aStar.isFound());
+            assertEquals(dijkstra.getWeight(), aStar.getWeight(), 1.e-3, "from: " + from + ", to: " + to + ", time: " + time);
+            assertEquals(dijkstra.getTime(), aStar.getTime());
+        }
+    }
+
+    @Test
+    void algorithmFactory() {
+        PMap hints = new PMap().putObject(DEPARTURE_TIME, "2020-11-04T08:00");
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm("td_astar").weighting(weighting).hints(hints).build();
+        RoutingAlgorithm algo = new RoutingAlgorithmFactorySimple().createAlgo(graph, opts);
+        assertEquals("td_astar", algo.getName());
+
+        AlgorithmOptions plainOpts = AlgorithmOptions.start().algorithm("td_dijkstra").weighting(baseWeighting).hints(hints).build();
+        assertThrows(IllegalArgumentException.class, () -> new RoutingAlgorithmFactorySimple().createAlgo(graph, plainOpts));
+
+        AlgorithmOptions invalidTime = AlgorithmOptions.start().algorithm("td_dijkstra").weighting(weighting)
+                .hints(new PMap().putObject(DEPARTURE_TIME, "tomorrow")).build();
+        assertThrows(IllegalArgumentException.class, () -> new RoutingAlgorithmFactorySimple().createAlgo(graph, invalidTime));
+    }
+
+    private Path calcPath(int from, int to, String departureTime, boolean aStar) {
+        TimeDependentDijkstra algo = new TimeDependentDijkstra(graph, weighting, TraversalMode.NODE_BASED);
+        algo.setDepartureTime(LocalDateTime.parse(departureTime).toInstant(ZoneOffset.UTC).toEpochMilli());
+        if (aStar)
+            algo.setApproximation(new BeelineWeightApproximator(graph.getNodeAccess(), weighting));
+        return algo.calcPath(from, to);
+    }
+
+    private static IntArrayList nodes(int... nodes) {
+        return IntArrayList.from(nodes);
+    }
+}
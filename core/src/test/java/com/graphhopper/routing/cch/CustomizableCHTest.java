@@ -0,0 +1,156 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.cch;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.DefaultTurnCostProvider;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomizableCHTest {
+    private final CarFlagEncoder encoder = new CarFlagEncoder();
+    private final EncodingManager em = EncodingManager.create(encoder);
+    private final GraphHopperStorage graph = new GraphBuilder(em).create();
+
+    @Test
+    void ranksArePermutation() {
+        GHUtility.buildRandomGraph(graph, new Random(123), 500, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.9, 0.8);
+        int[] ranks = new NestedDissection(graph).setMaxCellSize(8).calcRanks();
+        int[] sorted = ranks.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++)
+            assertEquals(i, sorted[i]);
+    }
+
+    @Test
+    void simpleGraph() {
+        // 0-1-2-3
+        //   |   |
+        //   4---5
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(100));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(1, 2).setDistance(100));
+        GHUtility.setSpeed(60, true, false, encoder, graph.edge(2, 3).setDistance(100));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(1, 4).setDistance(100));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(4, 5).setDistance(100));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(5, 3).setDistance(100));
+        graph.freeze();
+        CustomizableCH cch = CustomizableCH.fromRanks(graph, new int[]{0, 5, 1, 4, 2, 3});
+        CustomizedCHGraph chGraph = cch.customize(new ShortestWeighting(encoder));
+        assertEquals(6, chGraph.getNodes());
+
+        Path path = new CHRoutingAlgorithmFactory(chGraph).createAlgo(new PMap()).calcPath(0, 3);
+        assertEquals(300, path.getDistance(), 1.e-3);
+        assertEquals(Arrays.asList(0, 1, 2, 3).toString(), path.calcNodes().toString());
+        // 2-3 is a one-way so we need to take the detour
+        path = new CHRoutingAlgorithmFactory(chGraph).createAlgo(new PMap()).calcPath(3, 0);
+        assertEquals(400, path.getDistance(), 1.e-3);
+        assertEquals(Arrays.asList(3, 5, 4, 1, 0).toString(), path.calcNodes().toString());
+    }
+
+    @Test
+    void storeAndLoadRanks() {
+        GHUtility.buildRandomGraph(graph, new Random(123), 100, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.9, 0.8);
+        graph.freeze();
+        String location = "./target/cch-ranks-store";
+        Helper.removeDir(new File(location));
+        assertNull(CustomizableCH.loadRanks(new RAMDirectory(location, true).create(), graph));
+        int[] ranks = CustomizableCH.calcRanks(graph);
+        CustomizableCH.storeRanks(new RAMDirectory(location, true).create(), graph, ranks);
+        RAMDirectory dir = new RAMDirectory(location, true);
+        assertArrayEquals(ranks, CustomizableCH.loadRanks(dir, graph));
+
+        // the ordering of a different graph must not be used
+        GraphHopperStorage otherGraph = new GraphBuilder(em).create();
+        GHUtility.setSpeed(60, true, true, encoder, otherGraph.edge(0, 1).setDistance(100));
+        assertNull(CustomizableCH.loadRanks(dir, otherGraph));
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    void turnCostsAreNotSupported() {
+        CarFlagEncoder turnCostEncoder = new CarFlagEncoder(5, 5, 1);
+        GraphHopperStorage turnCostGraph = new GraphBuilder(EncodingManager.create(turnCostEncoder)).withTurnCosts(true).create();
+        GHUtility.setSpeed(60, true, true, turnCostEncoder, turnCostGraph.edge(0, 1).setDistance(100));
+        turnCostGraph.freeze();
+        CustomizableCH cch = CustomizableCH.prepare(turnCostGraph);
+        Weighting weighting = new FastestWeighting(turnCostEncoder, new DefaultTurnCostProvider(turnCostEncoder, turnCostGraph.getTurnCostStorage()));
+        assertThrows(IllegalArgumentException.class, () -> cch.customize(weighting));
+    }
+
+    @RepeatedTest(10)
+    void randomGraph() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        // no random distance offset, because the virtual edges of the query graph would not add up to the original edge
+        GHUtility.buildRandomGraph(graph, rnd, 200, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.7, 0.9, 0);
+        graph.freeze();
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, new RAMDirectory());
+        locationIndex.prepareIndex();
+        CustomizableCH cch = CustomizableCH.prepare(graph);
+        // the same metric-independent preparation can be used for different weightings
+        for (Weighting weighting : Arrays.asList(new FastestWeighting(encoder), new ShortestWeighting(encoder))) {
+            CustomizedCHGraph chGraph = cch.customize(weighting);
+            List<Snap> snaps = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 10, false, EdgeFilter.ALL_EDGES);
+            QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+            Weighting queryWeighting = queryGraph.wrapWeighting(weighting);
+            for (int i = 0; i < 100; i++) {
+                int from = rnd.nextInt(queryGraph.getNodes());
+                int to = rnd.nextInt(queryGraph.getNodes());
+                RoutingAlgorithm refAlgo = new Dijkstra(queryGraph, queryWeighting, TraversalMode.NODE_BASED);
+                Path refPath = refAlgo.calcPath(from, to);
+                Path path = new CHRoutingAlgorithmFactory(new QueryRoutingCHGraph(chGraph, queryGraph)).createAlgo(new PMap()).calcPath(from, to);
+                assertEquals(refPath.isFound(), path.isFound(), "seed: " + seed + ", " + from + "->" + to);
+                if (!refPath.isFound())
+                    continue;
+                assertEquals(refPath.getWeight(), path.getWeight(), 1.e-2, "seed: " + seed + ", " + from + "->" + to);
+                assertEquals(refPath.getDistance(), path.getDistance(), 1.e-1, "seed: " + seed + ", " + from + "->" + to);
+            }
+        }
+    }
+}
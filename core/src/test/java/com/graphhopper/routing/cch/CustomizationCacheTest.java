@@ -0,0 +1,127 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.cch;
+
+import com.graphhopper.json.geo.JsonFeature;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.CustomModel;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.ShortestWeighting;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomizationCacheTest {
+
+    @Test
+    void keyIgnoresPresentationHints() {
+        PMap hints = new PMap().putObject(Parameters.Routing.BLOCK_AREA, "42.5,1.5,42.6,1.6");
+        PMap moreHints = new PMap(hints).
+                putObject("locale", "de").
+                putObject(Parameters.Routing.INSTRUCTIONS, false).
+                putObject("points_encoded", false);
+        assertEquals(CustomizationCache.createKey("car", hints), CustomizationCache.createKey("car", moreHints));
+        assertNotEquals(CustomizationCache.createKey("car", hints), CustomizationCache.createKey("car", new PMap()));
+        assertNotEquals(CustomizationCache.createKey("car", hints), CustomizationCache.createKey("bike", hints));
+    }
+
+    @Test
+    void keyContainsAreaGeometry() {
+        CustomModel model1 = createModel(13.722, 51.053, 13.731, 51.055);
+        CustomModel model2 = createModel(13.722, 51.053, 13.741, 51.065);
+        String key1 = CustomizationCache.createKey("car", new PMap().putObject(CustomModel.KEY, model1));
+        String key2 = CustomizationCache.createKey("car", new PMap().putObject(CustomModel.KEY, model2));
+        assertNotEquals(key1, key2);
+        assertEquals(key1, CustomizationCache.createKey("car", new PMap().putObject(CustomModel.KEY,
+                createModel(13.722, 51.053, 13.731, 51.055))));
+
+        model2 = createModel(13.722, 51.053, 13.731, 51.055);
+        model2.getPriority().put("area_my_area", 0.3);
+        assertNotEquals(key1, CustomizationCache.createKey("car", new PMap().putObject(CustomModel.KEY, model2)));
+    }
+
+    @Test
+    void leastRecentlyUsedCustomizationsAreRemoved() {
+        CarFlagEncoder encoder = new CarFlagEncoder();
+        CustomizableCH cch = createCCH(encoder);
+        CustomizationCache cache = new CustomizationCache(cch, 2, 1);
+        CustomizedCHGraph fastest = cache.getOrCustomize("fastest", new FastestWeighting(encoder));
+        CustomizedCHGraph shortest = cache.getOrCustomize("shortest", new ShortestWeighting(encoder));
+        assertEquals(2, cache.size());
+        assertSame(fastest, cache.getOrCustomize("fastest", new FastestWeighting(encoder)));
+        // shortest is the least recently used one now
+        cache.getOrCustomize("other", new FastestWeighting(encoder));
+        assertEquals(2, cache.size());
+        assertSame(fastest, cache.getOrCustomize("fastest", new FastestWeighting(encoder)));
+        assertNotSame(shortest, cache.getOrCustomize("shortest", new ShortestWeighting(encoder)));
+
+        // only the most recently used customization fits into the memory limit
+        cache.setMaxBytes(fastest.getCapacityInBytes());
+        assertEquals(1, cache.size());
+        assertEquals(fastest.getCapacityInBytes(), cache.getCapacityInBytes());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getCapacityInBytes());
+        cache.close();
+    }
+
+    @Test
+    void newerVersionReplacesCustomization() {
+        CarFlagEncoder encoder = new CarFlagEncoder();
+        CustomizationCache cache = new CustomizationCache(createCCH(encoder), 10, 1);
+        CustomizedCHGraph version1 = cache.getOrCustomize("car", new FastestWeighting(encoder), 1);
+        assertSame(version1, cache.getOrCustomize("car", new FastestWeighting(encoder), 1));
+        // an older version is not customized again
+        assertSame(version1, cache.getOrCustomize("car", new FastestWeighting(encoder), 0));
+        CustomizedCHGraph version2 = cache.getOrCustomize("car", new FastestWeighting(encoder), 2);
+        assertNotSame(version1, version2);
+        assertSame(version2, cache.getOrCustomize("car", new FastestWeighting(encoder), 2));
+        assertEquals(1, cache.size());
+        cache.close();
+    }
+
+    private static CustomizableCH createCCH(CarFlagEncoder encoder) {
+        GraphHopperStorage graph = new GraphBuilder(EncodingManager.create(encoder)).create();
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(100));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(1, 2).setDistance(200));
+        GHUtility.setSpeed(30, true, true, encoder, graph.edge(0, 2).setDistance(250));
+        graph.freeze();
+        return CustomizableCH.prepare(graph);
+    }
+
+    private static CustomModel createModel(double minLon, double minLat, double maxLon, double maxLat) {
+        CustomModel model = new CustomModel();
+        model.getPriority().put("area_my_area", 0.5);
+        Coordinate[] coordinates = {new Coordinate(minLon, minLat), new Coordinate(minLon, maxLat),
+                new Coordinate(maxLon, maxLat), new Coordinate(maxLon, minLat), new Coordinate(minLon, minLat)};
+        model.getAreas().put("my_area", new JsonFeature("my_area", "Feature", null,
+                new GeometryFactory().createPolygon(coordinates), Collections.<String, Object>emptyMap()));
+        return model;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.DijkstraBidirectionCH;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.routing.util.TraversalMode.NODE_BASED;
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManyToManyCHTest {
+
+    @Test
+    void simpleGraph() {
+        CarFlagEncoder encoder = new CarFlagEncoder();
+        EncodingManager em = EncodingManager.create(encoder);
+        GraphHopperStorage graph = new GraphBuilder(em).setCHConfigStrings("p|car|shortest|node").create();
+        // 0-1-2-3
+        //   |
+        //   4   5
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(100));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(1, 2).setDistance(200));
+        GHUtility.setSpeed(60, true, false, encoder, graph.edge(2, 3).setDistance(300));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(1, 4).setDistance(400));
+        graph.freeze();
+        CHConfig chConfig = graph.getCHConfigs().get(0);
+        PrepareContractionHierarchies.fromGraphHopperStorage(graph, chConfig).doWork();
+        RoutingCHGraph routingCHGraph = graph.getRoutingCHGraph(chConfig.getName());
+
+        ManyToManyCH.Result result = new ManyToManyCH(routingCHGraph).calcMatrix(new int[]{0, 3, 4}, new int[]{3, 4, 5, 0});
+        assertEquals(600, result.getDistance(0, 0), 1.e-3);
+        assertEquals(500, result.getDistance(0, 1), 1.e-3);
+        assertFalse(result.isConnected(0, 2));
+        assertEquals(0, result.getDistance(0, 3), 1.e-3);
+        // 3->... is a one-way in the wrong direction
+        assertEquals(0, result.getWeight(1, 0), 1.e-3);
+        assertFalse(result.isConnected(1, 1));
+        assertFalse(result.isConnected(1, 3));
+        assertEquals(900, result.getDistance(2, 0), 1.e-3);
+        assertEquals(500, result.getDistance(2, 3), 1.e-3);
+        assertEquals(Long.MAX_VALUE, result.getTime(2, 2));
+
+        ManyToManyCH.Result weightsOnly = new ManyToManyCH(routingCHGraph).setCalcDistancesAndTimes(false).calcMatrix(new int[]{0}, new int[]{3});
+        assertEquals(result.getWeight(0, 0), weightsOnly.getWeight(0, 0), 1.e-6);
+        assertThrows(IllegalStateException.class, () -> weightsOnly.getDistance(0, 0));
+    }
+
+    @RepeatedTest(10)
+    void randomGraph_compareWithDijkstra() {
+        final long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        CarFlagEncoder encoder = new CarFlagEncoder(5, 5, 0);
+        EncodingManager em = EncodingManager.create(encoder);
+        Directory dir = new RAMDirectory();
+        GraphHopperStorage graph = new GraphBuilder(em).setCHConfigStrings("p|car|fastest|node").setDir(dir).create();
+        // we may not use an offset when query graph is involved, otherwise traveling via virtual edges will not be
+        // the same as taking the direct edge!
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60d, 0.7, 0.8, 0);
+        graph.freeze();
+        CHConfig chConfig = graph.getCHConfigs().get(0);
+        Weighting weighting = chConfig.getWeighting();
+        PrepareContractionHierarchies.fromGraphHopperStorage(graph, chConfig).doWork();
+        LocationIndexTree index = new LocationIndexTree(graph, dir);
+        index.prepareIndex();
+
+        List<Snap> snaps = createRandomSnaps(graph.getBounds(), index, rnd, 15, true, EdgeFilter.ALL_EDGES);
+        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        int[] sources = new int[8];
+        int[] targets = new int[7];
+        for (int i = 0; i < sources.length; i++)
+            sources[i] = snaps.get(i).getClosestNode();
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = snaps.get(sources.length + i).getClosestNode();
+
+        QueryRoutingCHGraph queryCHGraph = new QueryRoutingCHGraph(graph.getRoutingCHGraph(chConfig.getName()), queryGraph);
+        ManyToManyCH.Result result = new ManyToManyCH(queryCHGraph).calcMatrix(sources, targets);
+        for (int s = 0; s < sources.length; s++) {
+            for (int t = 0; t < targets.length; t++) {
+                Path refPath = new DijkstraBidirectionRef(queryGraph, queryGraph.wrapWeighting(weighting), NODE_BASED).calcPath(sources[s], targets[t]);
+                String msg = sources[s] + "->" + targets[t] + ", seed: " + seed;
+                if (!refPath.isFound()) {
+                    assertFalse(result.isConnected(s, t), msg);
+                    continue;
+                }
+                assertEquals(refPath.getWeight(), result.getWeight(s, t), 1.e-2, msg);
+                assertEquals(refPath.getDistance(), result.getDistance(s, t), 1.e-3, msg);
+                // the times are rounded per edge. shortcuts can skip over an edge that is split by the query graph, so
+                // we compare the times with the unpacked CH path instead of Dijkstra's path along the virtual edges. if
+                // there are multiple shortest paths the two searches might pick different ones, whose times only
+                // differ by these rounding errors
+                Path chPath = new DijkstraBidirectionCH(queryCHGraph).calcPath(sources[s], targets[t]);
+                assertEquals(chPath.getTime(), result.getTime(s, t), Math.max(10, 1.e-3 * chPath.getTime()), msg);
+            }
+        }
+    }
+}
@@ -279,4 +279,33 @@ class EdgeBasedTarjanSCCTest {
         assertEquals(implicit.getEdgeKeys(), explicit.getEdgeKeys(), "seed: " + seed);
         assertEquals(implicit.getTotalComponents(), explicit.getTotalComponents(), "seed: " + seed);
     }
+
+    @RepeatedTest(20)
+    public void parallelVsExplicit() {
+        doParallelVsExplicit(true);
+        doParallelVsExplicit(false);
+    }
+
+    private void doParallelVsExplicit(boolean excludeSingle) {
+        GraphHopperStorage g = new GraphBuilder(em).create();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(g, rnd, 500, 2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.8, 0.7, 0);
+        ConnectedComponents parallel = new EdgeBasedTarjanSCC(g, accessEnc, NO_TURN_COST_PROVIDER, excludeSingle).findComponentsParallel(1 + rnd.nextInt(4));
+        ConnectedComponents explicit = new EdgeBasedTarjanSCC(g, accessEnc, NO_TURN_COST_PROVIDER, excludeSingle).findComponents();
+
+        assertEquals(2 * g.getEdges(), parallel.getEdgeKeys(), "total number of edge keys in connected components should equal twice the number of edges in graph");
+        Set<IntWithArray> componentsParallel = buildComponentSet(parallel.getComponents());
+        Set<IntWithArray> componentsExplicit = buildComponentSet(explicit.getComponents());
+        if (!componentsExplicit.equals(componentsParallel)) {
+            System.out.println("seed: " + seed);
+            GHUtility.printGraphForUnitTest(g, encoder);
+            assertEquals(componentsExplicit, componentsParallel, "The components found for this graph are different between the parallel and explicit implementation");
+        }
+
+        assertEquals(explicit.getSingleEdgeComponents(), parallel.getSingleEdgeComponents(), "seed: " + seed);
+        assertEquals(explicit.getBiggestComponent().size(), parallel.getBiggestComponent().size(), "seed: " + seed);
+        assertEquals(explicit.getTotalComponents(), parallel.getTotalComponents(), "seed: " + seed);
+    }
 }
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.routing.subnetwork;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.DefaultTurnCostProvider;
@@ -90,6 +91,39 @@ public class PrepareRoutingSubnetworksTest {
         assertEquals(GHUtility.asSet(5, 6), GHUtility.getNeighbors(explorer.setBaseNode(4)));
     }
 
+    @Test
+    public void testRemoveSubnetworksAroundNodes() {
+        // the upper network can be reached via the one-way 3->4, but it cannot be left
+        GraphHopperStorage g = createSubnetworkTestStorage(em, encoder);
+        GHUtility.setSpeed(60, true, false, encoder, GHUtility.getEdge(g, 3, 4));
+        PrepareRoutingSubnetworks instance = new PrepareRoutingSubnetworks(g, Collections.singletonList(
+                new PrepareRoutingSubnetworks.PrepareJob("car", accessEnc, null)));
+        instance.setMinNetworkSize(4);
+        assertEquals(4, (int) instance.removeSmallSubNetworks(IntArrayList.from(3, 4)).get("car"));
+        EdgeExplorer explorer = g.createEdgeExplorer(DefaultEdgeFilter.allEdges(encoder));
+        assertEquals(GHUtility.asSet(), GHUtility.getNeighbors(explorer.setBaseNode(4)));
+        assertEquals(GHUtility.asSet(1, 2, 7), GHUtility.getNeighbors(explorer.setBaseNode(3)));
+
+        // the upper network is isolated, but only the search from node 3 shows that there is a bigger network
+        g = createSubnetworkTestStorage(em, encoder);
+        instance = new PrepareRoutingSubnetworks(g, Collections.singletonList(
+                new PrepareRoutingSubnetworks.PrepareJob("car", accessEnc, null)));
+        instance.setMinNetworkSize(4);
+        assertEquals(0, (int) instance.removeSmallSubNetworks(IntArrayList.from(4)).get("car"));
+        assertEquals(3, (int) instance.removeSmallSubNetworks(IntArrayList.from(3, 4)).get("car"));
+        explorer = g.createEdgeExplorer(DefaultEdgeFilter.allEdges(encoder));
+        assertEquals(GHUtility.asSet(), GHUtility.getNeighbors(explorer.setBaseNode(4)));
+
+        // all networks are small, so we cannot tell which one is the biggest and keep all of them
+        g = createSubnetworkTestStorage(em, encoder);
+        instance = new PrepareRoutingSubnetworks(g, Collections.singletonList(
+                new PrepareRoutingSubnetworks.PrepareJob("car", accessEnc, null)));
+        instance.setMinNetworkSize(10);
+        assertEquals(0, (int) instance.removeSmallSubNetworks(IntArrayList.from(3, 4)).get("car"));
+        explorer = g.createEdgeExplorer(DefaultEdgeFilter.allEdges(encoder));
+        assertEquals(GHUtility.asSet(5, 6), GHUtility.getNeighbors(explorer.setBaseNode(4)));
+    }
+
     @Test
     public void testRemoveSubnetworkIfOnlyOneVehicleEdgeBased() {
         EncodingManager encodingManager = EncodingManager.create("car|turn_costs=true");
@@ -182,6 +216,38 @@ public class PrepareRoutingSubnetworksTest {
         instance.doWork();
     }
 
+    @Test
+    public void testRemoveSubnetworkWhenMultipleVehiclesInParallel() {
+        FlagEncoder carEncoder = new CarFlagEncoder();
+        BikeFlagEncoder bikeEncoder = new BikeFlagEncoder();
+        EncodingManager em = EncodingManager.create(carEncoder, bikeEncoder);
+        GraphHopperStorage g = createSubnetworkTestStorage(em, carEncoder);
+        AllEdgesIterator allIter = g.getAllEdges();
+        while (allIter.next()) {
+            GHUtility.setSpeed(bikeEncoder.getMaxSpeed() / 2, true, true, bikeEncoder, allIter);
+        }
+
+        EdgeIteratorState edge = GHUtility.getEdge(g, 3, 4);
+        GHUtility.setSpeed(10, false, false, carEncoder, edge);
+        GHUtility.setSpeed(5, true, true, bikeEncoder, edge);
+        List<PrepareRoutingSubnetworks.PrepareJob> prepareJobs = Arrays.asList(
+                new PrepareRoutingSubnetworks.PrepareJob(carEncoder.toString(), carEncoder.getAccessEnc(), null),
+                new PrepareRoutingSubnetworks.PrepareJob(bikeEncoder.toString(), bikeEncoder.getAccessEnc(), null)
+        );
+        PrepareRoutingSubnetworks instance = new PrepareRoutingSubnetworks(g, prepareJobs);
+        instance.setMinNetworkSize(5);
+        instance.setThreads(4);
+        instance.doWork();
+
+        // the same edges are removed as in the sequential case
+        EdgeExplorer carExplorer = g.createEdgeExplorer(DefaultEdgeFilter.allEdges(carEncoder));
+        assertEquals(GHUtility.asSet(7, 2, 1), GHUtility.getNeighbors(carExplorer.setBaseNode(3)));
+        EdgeExplorer bikeExplorer = g.createEdgeExplorer(DefaultEdgeFilter.allEdges(bikeEncoder));
+        assertEquals(GHUtility.asSet(7, 2, 1, 4), GHUtility.getNeighbors(bikeExplorer.setBaseNode(3)));
+
+        assertThrows(IllegalArgumentException.class, () -> instance.setThreads(0));
+    }
+
     GraphHopperStorage createSubnetworkTestStorageWithOneWays(EncodingManager em) {
         GraphHopperStorage g = new GraphBuilder(em).create();
         // 0 - 1 - 2 - 3 - 4 <- 5 - 6
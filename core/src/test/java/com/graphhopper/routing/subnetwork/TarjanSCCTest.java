@@ -225,6 +225,36 @@ class TarjanSCCTest {
         assertEquals(implicit.getTotalComponents(), explicit.getTotalComponents(), "seed: " + seed);
     }
 
+    @RepeatedTest(30)
+    public void parallelVsExplicit() {
+        doParallelVsExplicit(true);
+        doParallelVsExplicit(false);
+    }
+
+    private void doParallelVsExplicit(boolean excludeSingle) {
+        GraphHopperStorage g = new GraphBuilder(em).create();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(g, rnd, 1_000, 2, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), null, 0.8, 0.7, 0);
+        TarjanSCC.ConnectedComponents parallel = new TarjanSCC(g, accessEnc, excludeSingle).findComponentsParallel(1 + rnd.nextInt(4));
+        TarjanSCC.ConnectedComponents explicit = new TarjanSCC(g, accessEnc, excludeSingle).findComponents();
+
+        assertEquals(g.getNodes(), parallel.getNodes(), "total number of nodes in connected components should equal number of nodes in graph");
+        // the component found by the forward-backward search is added last, so again we can only compare the sets
+        Set<IntWithArray> componentsParallel = buildComponentSet(parallel.getComponents());
+        Set<IntWithArray> componentsExplicit = buildComponentSet(explicit.getComponents());
+        if (!componentsExplicit.equals(componentsParallel)) {
+            System.out.println("seed: " + seed);
+            GHUtility.printGraphForUnitTest(g, encoder);
+            assertEquals(componentsExplicit, componentsParallel, "The components found for this graph are different between the parallel and explicit implementation");
+        }
+
+        assertEquals(explicit.getSingleNodeComponents(), parallel.getSingleNodeComponents(), "seed: " + seed);
+        assertEquals(explicit.getBiggestComponent().size(), parallel.getBiggestComponent().size(), "seed: " + seed);
+        assertEquals(explicit.getTotalComponents(), parallel.getTotalComponents(), "seed: " + seed);
+    }
+
     /**
      * Takes a list of arrays like [[0,1,3],[2,4],[6]] and turns it into a Set like
      * {[0:[0,1,3], 1:[0,1,3], 2:[2,4], 3:[0,1,3], 4:[2,4], 6:[6]}
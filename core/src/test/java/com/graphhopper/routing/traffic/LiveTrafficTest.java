@@ -0,0 +1,155 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.traffic;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.LiveTrafficWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveTrafficTest {
+    private FlagEncoder encoder;
+    private GraphHopperStorage graph;
+    private Weighting weighting;
+
+    @BeforeEach
+    void setup() {
+        encoder = new CarFlagEncoder();
+        graph = new GraphBuilder(EncodingManager.create(encoder)).create();
+        weighting = new FastestWeighting(encoder);
+        // 0 --- 1
+        //  \   /
+        //    2
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 49.00, 11.00);
+        na.setNode(1, 49.00, 11.02);
+        na.setNode(2, 48.99, 11.01);
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(1000));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 2).setDistance(800));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(2, 1).setDistance(800));
+    }
+
+    @Test
+    void copyOnWrite() {
+        LiveTraffic traffic = new LiveTraffic(graph);
+        SpeedOverlay initial = traffic.getOverlay();
+        assertTrue(initial.isEmpty());
+        assertEquals(0, traffic.getUpdateCount());
+
+        SpeedOverlay first = traffic.update(new int[]{0, 1}, new double[]{20, 30}, false);
+        assertSame(first, traffic.getOverlay());
+        assertTrue(initial.isEmpty());
+        assertEquals(20, first.getSpeed(0), 1.e-6);
+        assertEquals(30, first.getSpeed(1), 1.e-6);
+        assertTrue(Double.isNaN(first.getSpeed(2)));
+
+        SpeedOverlay second = traffic.update(new int[]{1, 2}, new double[]{10, 0}, false);
+        assertEquals(3, second.size());
+        assertEquals(10, second.getSpeed(1), 1.e-6);
+        // the old overlay is not changed
+        assertEquals(2, first.size());
+        assertEquals(30, first.getSpeed(1), 1.e-6);
+        assertTrue(second.getVersion() > first.getVersion());
+
+        SpeedOverlay replaced = traffic.update(new int[]{2}, new double[]{50}, true);
+        assertEquals(1, replaced.size());
+        assertEquals(50, replaced.getSpeed(2), 1.e-6);
+        assertTrue(traffic.clear().isEmpty());
+        assertEquals(4, traffic.getUpdateCount());
+        assertEquals(0, traffic.getLastUpdateSize());
+        assertTrue(traffic.getMaxApplyNanos() >= traffic.getLastApplyNanos());
+        assertTrue(traffic.getLastUpdateTime() > 0);
+    }
+
+    @Test
+    void invalidUpdates() {
+        LiveTraffic traffic = new LiveTraffic(graph);
+        assertThrows(IllegalArgumentException.class, () -> traffic.update(new int[]{0, 1}, new double[]{20}, false));
+        assertThrows(IllegalArgumentException.class, () -> traffic.update(new int[]{3}, new double[]{20}, false));
+        assertThrows(IllegalArgumentException.class, () -> traffic.update(new int[]{-1}, new double[]{20}, false));
+        assertThrows(IllegalArgumentException.class, () -> traffic.update(new int[]{0}, new double[]{-5}, false));
+        assertThrows(IllegalArgumentException.class, () -> traffic.update(new int[]{0}, new double[]{Double.NaN}, false));
+        assertThrows(IllegalArgumentException.class, () -> traffic.update(new int[]{0}, new double[]{Double.POSITIVE_INFINITY}, false));
+        assertTrue(traffic.getOverlay().isEmpty());
+        assertEquals(0, traffic.getUpdateCount());
+    }
+
+    @Test
+    void onlySlowDowns() {
+        LiveTraffic traffic = new LiveTraffic(graph);
+        EdgeIteratorState direct = graph.getEdgeIteratorState(0, 1);
+        traffic.update(new int[]{0}, new double[]{30}, false);
+        Weighting trafficWeighting = new LiveTrafficWeighting(weighting, traffic.getOverlay(), graph.getEdges());
+        assertEquals(2 * weighting.calcEdgeWeight(direct, false), trafficWeighting.calcEdgeWeight(direct, false), 1.e-6);
+        assertEquals(2 * weighting.calcEdgeMillis(direct, true), trafficWeighting.calcEdgeMillis(direct, true), 1);
+
+        traffic.update(new int[]{0}, new double[]{120}, false);
+        trafficWeighting = new LiveTrafficWeighting(weighting, traffic.getOverlay(), graph.getEdges());
+        assertEquals(weighting.calcEdgeWeight(direct, false), trafficWeighting.calcEdgeWeight(direct, false), 1.e-6);
+
+        traffic.update(new int[]{0}, new double[]{0}, false);
+        trafficWeighting = new LiveTrafficWeighting(weighting, traffic.getOverlay(), graph.getEdges());
+        assertTrue(Double.isInfinite(trafficWeighting.calcEdgeWeight(direct, false)));
+        assertEquals(weighting.getMinWeight(1000), trafficWeighting.getMinWeight(1000), 1.e-6);
+    }
+
+    @Test
+    void routeAroundSlowEdge() {
+        LiveTraffic traffic = new LiveTraffic(graph);
+        Path path = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(0, 1);
+        assertEquals(IntArrayList.from(0, 1), path.calcNodes());
+
+        SpeedOverlay overlay = traffic.update(new int[]{0}, new double[]{20}, false);
+        Weighting trafficWeighting = new LiveTrafficWeighting(weighting, overlay, graph.getEdges());
+        path = new Dijkstra(graph, trafficWeighting, TraversalMode.NODE_BASED).calcPath(0, 1);
+        assertEquals(IntArrayList.from(0, 2, 1), path.calcNodes());
+
+        // virtual edges use the live speed of their original edge
+        Snap snap = new Snap(49.00, 11.01);
+        snap.setClosestNode(0);
+        snap.setClosestEdge(graph.getEdgeIteratorState(0, 1));
+        snap.setWayIndex(0);
+        snap.setSnappedPosition(Snap.Position.EDGE);
+        snap.calcSnappedPoint(new DistanceCalcEarth());
+        QueryGraph queryGraph = QueryGraph.create(graph, Collections.singletonList(snap));
+        int virtualNode = snap.getClosestNode();
+        Path withTraffic = new Dijkstra(queryGraph, trafficWeighting, TraversalMode.NODE_BASED).calcPath(0, virtualNode);
+        Path withoutTraffic = new Dijkstra(queryGraph, weighting, TraversalMode.NODE_BASED).calcPath(0, virtualNode);
+        assertEquals(3 * withoutTraffic.getTime(), withTraffic.getTime(), 10);
+    }
+}
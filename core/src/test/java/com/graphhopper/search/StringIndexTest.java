@@ -123,6 +123,58 @@ public class StringIndexTest {
         assertEquals("{a=longer name, b=longer name}", index.getAll(cPointer).toString());
     }
 
+    @Test
+    public void putDuplicateNotConsecutive() {
+        StringIndex index = create();
+        long aPointer = index.add(createMap("name", "main street"));
+        long bPointer = index.add(createMap("name", "other street"));
+        long cPointer = index.add(createMap("name", "main street"));
+        assertEquals(aPointer, cPointer);
+        assertNotEquals(aPointer, bPointer);
+
+        // same pairs in a different order
+        aPointer = index.add(createMap("a", "longer name", "b", "other name"));
+        index.add(createMap("c", "something"));
+        assertEquals(aPointer, index.add(createMap("b", "other name", "a", "longer name")));
+
+        // the value was stored before, so only the dup marker is needed
+        long dPointer = index.add(createMap("ref", "main street"));
+        long ePointer = index.add(createMap("x", "y"));
+        assertEquals(dPointer + 1 + 2 + 4, ePointer);
+        assertEquals("main street", index.get(dPointer, "ref"));
+        assertEquals("main street", index.get(cPointer, "name"));
+    }
+
+    @Test
+    public void testCache() {
+        StringIndex index = create();
+        long aPointer = index.add(createMap("name", "main street"));
+        long bPointer = index.add(createMap("name", "other street"));
+        assertEquals("main street", index.get(aPointer, "name"));
+        assertEquals("other street", index.get(bPointer, "name"));
+        assertEquals(0, index.getCacheHits());
+        assertEquals(2, index.getCacheMisses());
+
+        assertEquals("main street", index.get(aPointer, "name"));
+        assertEquals("{name=other street}", index.getAll(bPointer).toString());
+        assertNull(index.get(bPointer, "ref"));
+        assertEquals(3, index.getCacheHits());
+        assertEquals(2, index.getCacheMisses());
+
+        index.setCacheSize(0);
+        assertEquals("main street", index.get(aPointer, "name"));
+        assertEquals(3, index.getCacheHits());
+        assertEquals(2, index.getCacheMisses());
+
+        // a single slot holds only the last entry
+        index.setCacheSize(1);
+        assertEquals("main street", index.get(aPointer, "name"));
+        assertEquals("other street", index.get(bPointer, "name"));
+        assertEquals("main street", index.get(aPointer, "name"));
+        assertEquals(3, index.getCacheHits());
+        assertEquals(5, index.getCacheMisses());
+    }
+
     @Test
     public void testNoErrorOnLargeName() {
         StringIndex index = create();
@@ -24,8 +24,10 @@ import org.junit.Test;
 
 import java.io.File;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -59,6 +61,22 @@ public abstract class AbstractDirectoryTester {
         da2.close();
     }
 
+    @Test
+    public void testCloseKeepsFile() {
+        Directory dir = createDir();
+        DataAccess da1 = dir.find("testing");
+        da1.create(100);
+        da1.setInt(4, 123);
+        da1.flush();
+        dir.close(da1);
+        assertTrue(da1.isClosed());
+
+        da = dir.find("testing");
+        assertNotSame(da1, da);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(4));
+    }
+
     @Test
     public void testNoErrorForDACreate() {
         Directory dir = createDir();
@@ -0,0 +1,147 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.ch.PrepareEncoder;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSRAdjacencyTest {
+    private static final String LOCATION = "./target/csr-adjacency-test";
+    private final FlagEncoder encoder = new CarFlagEncoder();
+    private final EncodingManager encodingManager = EncodingManager.create(encoder);
+
+    @AfterEach
+    void tearDown() {
+        Helper.removeDir(new File(LOCATION));
+    }
+
+    @Test
+    void sameIterationOrderAsLinkedLists() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).withCSRAdjacency(true).create();
+        buildRandomGraph(graph, 42);
+        assertFalse(graph.hasCSRAdjacency());
+        List<String> linkedLists = iterateAll(graph);
+
+        graph.freeze();
+        assertTrue(graph.hasCSRAdjacency());
+        assertEquals(linkedLists, iterateAll(graph));
+    }
+
+    @Test
+    void builtWhenFrozenGraphIsLoaded() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).setRAM(LOCATION, true).create();
+        buildRandomGraph(graph, 21);
+        graph.freeze();
+        List<String> expected = iterateAll(graph);
+        graph.flush();
+        graph.close();
+
+        graph = new GraphBuilder(encodingManager).setRAM(LOCATION, true).withCSRAdjacency(true).build();
+        assertTrue(graph.loadExisting());
+        assertTrue(graph.hasCSRAdjacency());
+        assertEquals(expected, iterateAll(graph));
+        graph.close();
+    }
+
+    @Test
+    void loopsAndDetach() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).withCSRAdjacency(true).create();
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(0, 1).setDistance(10));
+        GHUtility.setSpeed(60, true, false, encoder, graph.edge(1, 1).setDistance(5));
+        GHUtility.setSpeed(60, true, true, encoder, graph.edge(2, 1).setDistance(10));
+        graph.freeze();
+
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(1);
+        assertThrows(IllegalStateException.class, () -> iter.detach(false));
+        assertTrue(iter.next());
+        assertEquals(2, iter.getEdge());
+        assertEquals(2, iter.getAdjNode());
+        // edge 2 goes from 2 to 1, so from node 1 we see it in reverse direction
+        assertEquals(1, iter.detach(false).getBaseNode());
+        assertEquals(2, iter.detach(true).getBaseNode());
+        assertTrue(iter.next());
+        assertEquals(1, iter.getEdge());
+        assertEquals(1, iter.getAdjNode());
+        assertTrue(iter.get(encoder.getAccessEnc()));
+        assertFalse(iter.getReverse(encoder.getAccessEnc()));
+        assertTrue(iter.next());
+        assertEquals(0, iter.getEdge());
+        assertEquals(0, iter.getAdjNode());
+        assertFalse(iter.next());
+        assertThrows(IllegalStateException.class, () -> graph.edge(0, 2));
+    }
+
+    @Test
+    void chGraph() {
+        GraphHopperStorage[] graphs = new GraphHopperStorage[2];
+        List<List<String>> result = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            graphs[i] = new GraphBuilder(encodingManager).setCHConfigStrings("p|car|fastest|node").withCSRAdjacency(i == 1).create();
+            buildRandomGraph(graphs[i], 7);
+            graphs[i].freeze();
+            CHGraph chGraph = graphs[i].getCHGraph();
+            for (int node = 0; node < chGraph.getNodes(); node++)
+                chGraph.setLevel(node, node);
+            chGraph.shortcut(0, 3, PrepareEncoder.getScFwdDir(), 10, 1, 2);
+            List<String> list = new ArrayList<>();
+            EdgeExplorer explorer = chGraph.createEdgeExplorer();
+            for (int node = 0; node < chGraph.getNodes(); node++) {
+                EdgeIterator iter = explorer.setBaseNode(node);
+                while (iter.next())
+                    list.add(node + ":" + iter.getEdge() + "-" + iter.getAdjNode());
+            }
+            result.add(list);
+        }
+        assertTrue(graphs[1].hasCSRAdjacency());
+        assertEquals(result.get(0), result.get(1));
+        assertTrue(result.get(1).contains("0:" + graphs[1].getEdges() + "-3"));
+    }
+
+    private void buildRandomGraph(Graph graph, long seed) {
+        GHUtility.buildRandomGraph(graph, new Random(seed), 100, 2.5, true, true,
+                encoder.getAccessEnc(), encoder.getAverageSpeedEnc(), 60d, 0.7, 0.8, 0.8);
+    }
+
+    private List<String> iterateAll(Graph graph) {
+        List<String> list = new ArrayList<>();
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                list.add(node + ":" + iter.getEdge() + "," + iter.getBaseNode() + "-" + iter.getAdjNode() + ","
+                        + iter.getDistance() + "," + iter.getEdgeKey() + "," + iter.getReverse(encoder.getAccessEnc()));
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class CompressedDataAccessTest extends DataAccessTest {
+    @Override
+    public DataAccess createDataAccess(String name) {
+        return new CompressedDataAccess(name, directory, defaultOrder).setSegmentSize(128);
+    }
+
+    @Override
+    public void testChecksum() {
+        // the GHZ header has no room for a checksum, it is not supported for this DataAccess
+    }
+
+    @Test
+    public void testLazyLoading() {
+        DataAccess da = createDataAccess(name);
+        da.create(128 * 4);
+        for (int s = 0; s < 4; s++) {
+            da.setInt(s * 128 + 8, s + 1);
+        }
+        da.setHeader(0, 789);
+        da.flush();
+        da.close();
+
+        CompressedDataAccess cda = (CompressedDataAccess) createDataAccess(name);
+        assertTrue(cda.loadExisting());
+        assertEquals(4, cda.getSegments());
+        assertEquals(0, cda.getLoadedSegments());
+        assertEquals(789, cda.getHeader(0));
+
+        assertEquals(0, cda.getResidentBytes());
+
+        assertEquals(3, cda.getInt(2 * 128 + 8));
+        assertEquals(1, cda.getLoadedSegments());
+        assertEquals(128, cda.getResidentBytes());
+        cda.setInt(1 * 128 + 4, 42);
+        assertEquals(2, cda.getLoadedSegments());
+
+        // flushing reads all missing segments before the file is overwritten
+        cda.flush();
+        assertEquals(4, cda.getLoadedSegments());
+        cda.close();
+
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        for (int s = 0; s < 4; s++) {
+            assertEquals(s + 1, da.getInt(s * 128 + 8));
+        }
+        assertEquals(42, da.getInt(128 + 4));
+        da.close();
+    }
+
+    @Test
+    public void testCompression() {
+        DataAccess da = createDataAccess(name);
+        da.setSegmentSize(1 << 16);
+        da.create(10 * (1 << 16));
+        for (int i = 0; i < 1000; i++) {
+            da.setInt(i * 4L, i % 10);
+        }
+        da.flush();
+        da.close();
+        assertTrue(new File(directory + name).length() < 10 * (1 << 16) / 10);
+    }
+
+    @Test
+    public void testMixRAM2Compressed() {
+        DataAccess da = new RAMDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        da.setInt(250, 456);
+        da.setHeader(0, 789);
+        da.flush();
+        da.close();
+
+        // uncompressed files are read lazily too and are compressed on the next flush
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(7 * 4));
+        assertEquals(456, da.getInt(250));
+        assertEquals(789, da.getHeader(0));
+        da.flush();
+        da.close();
+
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(7 * 4));
+        assertEquals(456, da.getInt(250));
+        da.close();
+
+        da = new RAMDataAccess(name, directory, true, defaultOrder);
+        try {
+            da.loadExisting();
+            fail("compressed files cannot be loaded uncompressed");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("COMPRESSED_STORE"));
+        }
+        da.close();
+    }
+
+    @Test
+    public void testFromString() {
+        assertEquals(DAType.COMPRESSED_STORE, DAType.fromString("compressed_store"));
+        assertEquals("COMPRESSED_STORE", DAType.COMPRESSED_STORE.toString());
+        assertEquals(DAType.COMPRESSED_STORE, new GHDirectory(directory, DAType.COMPRESSED_STORE).find("test").getType());
+    }
+}
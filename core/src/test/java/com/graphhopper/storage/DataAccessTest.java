@@ -24,6 +24,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
 
 import static org.junit.Assert.*;
@@ -306,4 +308,68 @@ public abstract class DataAccessTest {
         }
         da.close();
     }
+
+    @Test
+    public void testGetIntsAndShorts() {
+        DataAccess da = createDataAccess(name);
+        da.setSegmentSize(128);
+        da.create(512);
+        for (int i = 0; i < 128; i++) {
+            da.setInt(i * 4, i * 31 - 1000);
+        }
+
+        // spans three segments
+        int[] ints = new int[102];
+        da.getInts(4, ints, 1, 100);
+        assertEquals(0, ints[0]);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(da.getInt(4 + i * 4), ints[i + 1]);
+        }
+        assertEquals(0, ints[101]);
+
+        short[] shorts = new short[150];
+        da.getShorts(122, shorts, 0, 150);
+        for (int i = 0; i < 150; i++) {
+            assertEquals(da.getShort(122 + i * 2), shorts[i]);
+        }
+
+        // currently RAMIntDA does not support arbitrary byte positions
+        if (!(da instanceof RAMIntDataAccess)) {
+            // the middle short is distributed over two segments
+            da.getShorts(123, shorts, 0, 5);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(da.getShort(123 + i * 2), shorts[i]);
+            }
+        }
+        da.close();
+    }
+
+    @Test
+    public void testChecksum() throws IOException {
+        DataAccess da = createDataAccess(name);
+        ((AbstractDataAccess) da).setChecksum(true);
+        da.create(300);
+        for (int i = 0; i < 75; i++) {
+            da.setInt(i * 4, i * 7);
+        }
+        da.flush();
+        da.close();
+
+        da = createDataAccess(name);
+        ((AbstractDataAccess) da).setChecksum(true);
+        assertTrue(da.loadExisting());
+        assertEquals(7 * 70, da.getInt(70 * 4));
+        da.close();
+
+        try (RandomAccessFile raFile = new RandomAccessFile(directory + name, "rw")) {
+            raFile.seek(AbstractDataAccess.HEADER_OFFSET + 20);
+            raFile.write(0xFF);
+        }
+
+        DataAccess corrupted = createDataAccess(name);
+        ((AbstractDataAccess) corrupted).setChecksum(true);
+        IllegalStateException ex = assertThrows(IllegalStateException.class, corrupted::loadExisting);
+        assertTrue(ex.getMessage(), ex.getMessage().contains("does not match"));
+        corrupted.close();
+    }
 }
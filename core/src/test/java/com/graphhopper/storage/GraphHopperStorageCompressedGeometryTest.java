@@ -0,0 +1,156 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs all storage tests with the compressed way geometry
+ */
+public class GraphHopperStorageCompressedGeometryTest extends GraphHopperStorageTest {
+    @Override
+    protected GraphHopperStorage newGHStorage(Directory dir, boolean enabled3D, int segmentSize) {
+        return GraphBuilder.start(encodingManager).setDir(dir).set3D(enabled3D).withCompressedGeometry(true).setSegmentSize(segmentSize).build();
+    }
+
+    @Override
+    @Test
+    public void testDontGrowOnUpdate() {
+        graph = createGHStorage(defaultGraphLoc, true);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        EdgeIteratorState edge = graph.edge(0, 1);
+        final BaseGraph baseGraph = (BaseGraph) graph.getBaseGraph();
+        assertEquals(4, baseGraph.getMaxGeoRef());
+        edge.setWayGeometry(Helper.createPointList3D(1, 2, 3, 3, 4, 5, 5, 6, 7, 7, 8, 9));
+        long maxGeoRef = baseGraph.getMaxGeoRef();
+        // the compressed geometry is stored in 4 byte units and needs less than the 1 + 12 units of the raw format
+        assertTrue(maxGeoRef < 4 + (1 + 12));
+        edge.setWayGeometry(Helper.createPointList3D(1, 2, 3, 3, 4, 5, 5, 6, 7));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        edge.setWayGeometry(Helper.createPointList3D(1, 2, 3));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        assertEquals(Helper.createPointList3D(1, 2, 3), edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+    }
+
+    @Test
+    public void testVarLong() {
+        byte[] bytes = new byte[10];
+        for (long value : new long[]{0, 1, 127, 128, 300, Integer.MAX_VALUE, 1L << 33, Long.MAX_VALUE}) {
+            int length = BaseGraph.writeVarLong(bytes, 0, value);
+            assertEquals(length, BaseGraph.getVarLongLength(value));
+            assertEquals(value, BaseGraph.readVarLong(bytes, 0));
+        }
+        for (long value : new long[]{0, 1, -1, 63, -64, Integer.MIN_VALUE, Integer.MAX_VALUE, 2L * Integer.MIN_VALUE}) {
+            assertEquals(value, BaseGraph.zigZagDecode(BaseGraph.zigZagEncode(value)));
+        }
+        assertEquals(1, BaseGraph.zigZagEncode(-1));
+        assertEquals(2, BaseGraph.zigZagEncode(1));
+    }
+
+    @Test
+    public void testExtremeDeltas() {
+        graph = createGHStorage(defaultGraphLoc, true);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0, 0, 0);
+        na.setNode(1, 0, 1, 0);
+        EdgeIteratorState edge = graph.edge(0, 1);
+        PointList pillars = Helper.createPointList3D(-89.9, -179.9, -1000, 89.9, 179.9, 8000, -89.9, 179.9, 0, 0.0000001, 0, 0);
+        edge.setWayGeometry(pillars.clone(false));
+        assertEquals(pillars, edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        assertEquals(pillars.clone(true), graph.getEdgeIteratorState(edge.getEdge(), 0).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+    }
+
+    @Test
+    public void testOverwriteGeometry() {
+        graph = createGHStorage(defaultGraphLoc, false);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 49, 11);
+        na.setNode(1, 49.1, 11.1);
+        na.setNode(2, 49.2, 11.2);
+        EdgeIteratorState edge = graph.edge(0, 1);
+        EdgeIteratorState other = graph.edge(1, 2);
+        edge.setWayGeometry(Helper.createPointList(49.01, 11.01, 49.02, 11.02, 49.03, 11.03));
+        other.setWayGeometry(Helper.createPointList(49.11, 11.11));
+        BaseGraph baseGraph = (BaseGraph) graph.getBaseGraph();
+        long maxGeoRef = baseGraph.getMaxGeoRef();
+
+        // the new geometry fits into the old place
+        edge.setWayGeometry(Helper.createPointList(49.05, 11.05, 49.06, 11.06));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        assertEquals(Helper.createPointList(49.05, 11.05, 49.06, 11.06), edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+
+        // the new geometry is larger and needs a new place
+        edge.setWayGeometry(Helper.createPointList(49.01, 11.01, 48.02, 12.02, 49.03, 11.03, 48.04, 11.04));
+        assertTrue(baseGraph.getMaxGeoRef() > maxGeoRef);
+        assertEquals(Helper.createPointList(49.01, 11.01, 48.02, 12.02, 49.03, 11.03, 48.04, 11.04), edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        assertEquals(Helper.createPointList(49.11, 11.11), other.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        assertEquals(Helper.createPointList(49.1, 11.1, 49.11, 11.11, 49.2, 11.2), other.fetchWayGeometry(FetchMode.ALL));
+    }
+
+    @Test
+    public void testLessMemory() {
+        Random rnd = new Random(123);
+        long[] maxGeoRefs = new long[2];
+        for (int run = 0; run < 2; run++) {
+            GraphHopperStorage storage = GraphBuilder.start(encodingManager).withCompressedGeometry(run == 1).create();
+            NodeAccess na = storage.getNodeAccess();
+            na.setNode(0, 49, 11);
+            na.setNode(1, 49.1, 11.1);
+            for (int i = 0; i < 100; i++) {
+                PointList pillars = new PointList();
+                double lat = 49, lon = 11;
+                for (int j = 0; j < 10; j++) {
+                    // pillar nodes are usually a few meters apart
+                    lat += (rnd.nextDouble() - 0.5) * 0.001;
+                    lon += (rnd.nextDouble() - 0.5) * 0.001;
+                    pillars.add(lat, lon);
+                }
+                storage.edge(0, 1).setWayGeometry(pillars);
+            }
+            maxGeoRefs[run] = ((BaseGraph) storage.getBaseGraph()).getMaxGeoRef();
+            storage.close();
+        }
+        assertTrue(maxGeoRefs[1] + " vs. " + maxGeoRefs[0], maxGeoRefs[1] < 0.6 * maxGeoRefs[0]);
+    }
+
+    @Test
+    public void testLoadKeepsFormat() {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), false).create(defaultSize);
+        graph.getNodeAccess().setNode(0, 49, 11);
+        graph.getNodeAccess().setNode(1, 49.1, 11.1);
+        graph.edge(0, 1).setWayGeometry(Helper.createPointList(49.05, 11.05, 49.06, 11.06));
+        graph.flush();
+        graph.close();
+
+        // the format is read from the stored graph
+        graph = GraphBuilder.start(encodingManager).setRAM(defaultGraphLoc, true).build();
+        assertTrue(graph.loadExisting());
+        assertTrue(graph.isCompressedGeometry());
+        assertEquals(Helper.createPointList(49.05, 11.05, 49.06, 11.06), graph.getEdgeIteratorState(0, 1).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+    }
+}
@@ -21,7 +21,9 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.util.BikeFlagEncoder;
+import com.graphhopper.routing.ch.PrepareEncoder;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 import org.junit.Test;
@@ -29,6 +31,8 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import static com.graphhopper.util.EdgeIteratorState.REVERSE_STATE;
 import static com.graphhopper.util.FetchMode.*;
@@ -159,6 +163,72 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester {
         assertEquals(GHUtility.asSet(0), GHUtility.getNeighbors(explorer.setBaseNode(2)));
     }
 
+    @Test
+    public void testParallelLoadWithChecksums() {
+        CHConfig chConfig = CHConfig.nodeBased("p1", new FastestWeighting(carEncoder));
+        graph = GraphBuilder.start(encodingManager).setDir(new RAMDirectory(defaultGraphLoc, true).setChecksums(true)).
+                set3D(true).setCHConfigs(chConfig).build().create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        na.setNode(2, 12, 12, 0.4);
+        EdgeIteratorState edge1 = GHUtility.setSpeed(60, true, true, carEncoder, graph.edge(0, 1).setDistance(100));
+        edge1.setWayGeometry(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0)).setName("named street1");
+        EdgeIteratorState edge2 = GHUtility.setSpeed(60, true, true, carEncoder, graph.edge(1, 2).setDistance(200));
+        graph.freeze();
+        CHGraph chGraph = graph.getCHGraph("p1");
+        chGraph.setLevel(0, 0);
+        chGraph.setLevel(1, 1);
+        chGraph.setLevel(2, 2);
+        chGraph.shortcut(0, 2, PrepareEncoder.getScDirMask(), 30, edge1.getEdge(), edge2.getEdge());
+        graph.flush();
+        graph.close();
+
+        graph = GraphBuilder.start(encodingManager).setDir(new RAMDirectory(defaultGraphLoc, true).setChecksums(true)).
+                set3D(true).setCHConfigs(chConfig).build().setIOThreads(4);
+        assertTrue(graph.loadExisting());
+        assertEquals(3, graph.getNodes());
+        assertEquals(2, graph.getEdges());
+        assertEquals(11, graph.getNodeAccess().getLatitude(1), 1e-6);
+        assertEquals("named street1", graph.getEdgeIteratorState(edge1.getEdge(), 1).getName());
+        assertEquals(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0),
+                graph.getEdgeIteratorState(edge1.getEdge(), 1).fetchWayGeometry(PILLAR_ONLY));
+        chGraph = graph.getCHGraph("p1");
+        assertEquals(3, chGraph.getEdges());
+        assertEquals(2, chGraph.getLevel(2));
+        assertTrue(chGraph.isShortcut(2));
+    }
+
+    @Test
+    public void testMemoryInventory() {
+        graph = GraphBuilder.start(encodingManager).setDir(new RAMDirectory()).
+                setCHConfigs(CHConfig.nodeBased("p1", new FastestWeighting(carEncoder))).build().create(defaultSize);
+        graph.edge(0, 1).setDistance(10).setName("main street");
+        graph.edge(1, 2).setDistance(10);
+        graph.freeze();
+        CHGraph chGraph = graph.getCHGraph("p1");
+        chGraph.setLevel(0, 0);
+        chGraph.setLevel(2, 2);
+        chGraph.shortcut(0, 2, PrepareEncoder.getScDirMask(), 20, 0, 1);
+
+        MemoryInventory inventory = graph.getMemoryInventory();
+        Map<String, MemoryInventory.Entry> entries = new HashMap<>();
+        for (MemoryInventory.Entry entry : inventory.getEntries()) {
+            entries.put(entry.getName(), entry);
+            assertTrue(entry.toString(), entry.getUsedBytes() <= entry.getCapacity());
+            assertEquals(entry.getCapacity(), entry.getResidentBytes());
+        }
+        BaseGraph baseGraph = (BaseGraph) graph.getBaseGraph();
+        assertEquals(2L * baseGraph.edgeEntryBytes, entries.get("edges").getUsedBytes());
+        assertEquals(3L * baseGraph.nodeEntryBytes, entries.get("nodes").getUsedBytes());
+        assertTrue(entries.get("edges").getSegments() > 0);
+        assertTrue(entries.get("shortcuts_p1").getUsedBytes() > 0);
+        assertTrue(entries.get("string_index_vals").getUsedBytes() > "main street".length());
+        assertEquals(entries.get("nodes").getCapacity(), entries.get("nodes").getResidentBytes());
+        assertEquals(MemoryInventory.Kind.HEAP, entries.get("edges").getKind());
+        assertEquals(0, inventory.getCapacity(MemoryInventory.Kind.MAPPED));
+    }
+
     @Test
     public void testBigDataEdge() {
         Directory dir = new RAMDirectory();
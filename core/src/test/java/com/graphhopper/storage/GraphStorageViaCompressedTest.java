@@ -15,30 +15,13 @@
  *  See the License for the specific language governing permissions and
  *  limitations under the License.
  */
+package com.graphhopper.storage;
 
-package com.graphhopper.routing.ch;
-
-import com.graphhopper.util.EdgeIterator;
-
-public class AStarCHEntry extends CHEntry {
-    public double weightOfVisitedPath;
-
-    public AStarCHEntry(int edge, int incEdge, int adjNode, double heapWeight, double weightOfVisitedPath) {
-        super(edge, incEdge, adjNode, heapWeight);
-        this.weightOfVisitedPath = weightOfVisitedPath;
-    }
-
-    public AStarCHEntry(int node, double heapWeight, double weightOfVisitedPath) {
-        this(EdgeIterator.NO_EDGE, EdgeIterator.NO_EDGE, node, heapWeight, weightOfVisitedPath);
-    }
-
-    @Override
-    public AStarCHEntry getParent() {
-        return (AStarCHEntry) super.getParent();
-    }
-
+public class GraphStorageViaCompressedTest extends AbstractGraphStorageTester {
     @Override
-    public double getWeightOfVisitedPath() {
-        return weightOfVisitedPath;
+    public GraphHopperStorage createGHStorage(String location, boolean is3D) {
+        GraphHopperStorage gs = GraphBuilder.start(encodingManager).set3D(is3D).setCompressedStore(location).setSegmentSize(defaultSize / 2).build();
+        gs.create(defaultSize);
+        return gs;
     }
 }
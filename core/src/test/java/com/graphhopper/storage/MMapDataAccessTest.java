@@ -44,6 +44,29 @@ public class MMapDataAccessTest extends DataAccessTest {
         da.close();
     }
 
+    @Test
+    public void testLoad() {
+        DataAccess da = createDataAccess(name);
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        da.flush();
+        da.close();
+
+        MMapDataAccess mda = (MMapDataAccess) createDataAccess(name);
+        assertTrue(mda.loadExisting());
+        mda.load(50);
+        mda.load(100);
+        assertEquals(123, mda.getInt(7 * 4));
+        // the page cache can evict the pages at any time, so this is only an estimate
+        assertTrue(mda.getResidentBytes() >= 0 && mda.getResidentBytes() <= mda.getCapacity());
+        try {
+            mda.load(101);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+        mda.close();
+    }
+
     @Test
     public void textMixMMAP2RAM() {
         DataAccess da = createDataAccess(name);
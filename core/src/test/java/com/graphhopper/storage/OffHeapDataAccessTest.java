@@ -0,0 +1,79 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffHeapDataAccessTest extends DataAccessTest {
+    @Override
+    public DataAccess createDataAccess(String name) {
+        return new OffHeapDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+    }
+
+    @Test
+    public void testMixRAM2OffHeap() {
+        DataAccess da = new RAMDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        da.setInt(250, 456);
+        da.setHeader(0, 789);
+        da.flush();
+        da.close();
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(7 * 4));
+        assertEquals(456, da.getInt(250));
+        assertEquals(789, da.getHeader(0));
+        da.close();
+    }
+
+    @Test
+    public void testMixOffHeap2RAM() {
+        DataAccess da = createDataAccess(name);
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        da.setInt(250, 456);
+        da.flush();
+        da.close();
+        da = new RAMDataAccess(name, directory, true, defaultOrder);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(7 * 4));
+        assertEquals(456, da.getInt(250));
+        da.close();
+    }
+
+    @Test
+    public void testCloseFreesSegments() {
+        DataAccess da = createDataAccess(name);
+        da.create(300);
+        assertEquals(3, da.getSegments());
+        da.close();
+        assertEquals(0, da.getSegments());
+        assertEquals(0, da.getCapacity());
+    }
+
+    @Test
+    public void testFromString() {
+        assertEquals(DAType.OFF_HEAP_STORE, DAType.fromString("off_heap_store"));
+        assertEquals(DAType.OFF_HEAP, DAType.fromString("OFF_HEAP"));
+        assertEquals("OFF_HEAP_STORE", DAType.OFF_HEAP_STORE.toString());
+        assertEquals(DAType.OFF_HEAP_STORE, new GHDirectory(directory, DAType.OFF_HEAP_STORE).find("test").getType());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static com.graphhopper.storage.SpeedProfileStorage.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpeedProfileStorageTest {
+    private static final String LOCATION = "./target/speed-profile-storage-test";
+
+    @AfterEach
+    void tearDown() {
+        Helper.removeDir(new File(LOCATION));
+    }
+
+    @Test
+    void buckets() {
+        // 2020-11-02 is a monday
+        assertEquals(0, getBucket(millis("2020-11-02T00:00")));
+        assertEquals(0, getBucket(millis("2020-11-02T00:14:59")));
+        assertEquals(1, getBucket(millis("2020-11-02T00:15")));
+        assertEquals(4 * 8 + 2, getBucket(millis("2020-11-02T08:30")));
+        assertEquals(BUCKETS_PER_DAY + 4 * 8, getBucket(millis("2020-11-03T08:00")));
+        assertEquals(BUCKETS - 1, getBucket(millis("2020-11-08T23:59")));
+        assertEquals(0, getBucket(millis("2020-11-09T00:00")));
+        // before 1970
+        assertEquals(2 * BUCKETS_PER_DAY, getBucket(millis("1969-12-31T00:00")));
+    }
+
+    @Test
+    void profilesAreQuantizedAndDeduplicated() {
+        GraphHopperStorage graph = new GraphBuilder(EncodingManager.create(new CarFlagEncoder())).withSpeedProfiles(true).create();
+        SpeedProfileStorage storage = graph.getSpeedProfileStorage();
+        double[] daily = new double[BUCKETS_PER_DAY];
+        Arrays.fill(daily, 1);
+        // rush hour from 7:00 to 9:00
+        for (int i = 7 * 4; i < 9 * 4; i++)
+            daily[i] = 0.5;
+        int p1 = storage.addProfile(daily);
+        double[] weekly = new double[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            weekly[i] = daily[i % BUCKETS_PER_DAY] + 0.001;
+        // the same after quantization
+        assertEquals(p1, storage.addProfile(weekly));
+        weekly[0] = 1.3;
+        int p2 = storage.addProfile(weekly);
+        assertNotEquals(p1, p2);
+        assertEquals(2, storage.getProfileCount());
+        assertEquals(1.3, storage.getMaxSpeedFactor(), 1.e-6);
+
+        assertThrows(IllegalArgumentException.class, () -> storage.addProfile(new double[10]));
+        assertThrows(IllegalArgumentException.class, () -> storage.setEdgeProfile(0, 5));
+
+        storage.setEdgeProfile(GHUtility.createEdgeKey(3, false), p1);
+        storage.setEdgeProfile(GHUtility.createEdgeKey(3, true), p2);
+        assertEquals(NO_PROFILE, storage.getEdgeProfile(GHUtility.createEdgeKey(2, false)));
+        assertEquals(NO_PROFILE, storage.getEdgeProfile(GHUtility.createEdgeKey(1000, false)));
+        assertEquals(p1, storage.getEdgeProfile(GHUtility.createEdgeKey(3, false)));
+        assertEquals(p2, storage.getEdgeProfile(GHUtility.createEdgeKey(3, true)));
+
+        int edgeKey = GHUtility.createEdgeKey(3, false);
+        assertEquals(0.5, storage.getSpeedFactor(edgeKey, millis("2020-11-04T08:00")), 1.e-6);
+        assertEquals(1, storage.getSpeedFactor(edgeKey, millis("2020-11-04T09:00")), 1.e-6);
+        assertEquals(1.3, storage.getSpeedFactor(GHUtility.createEdgeKey(3, true), millis("2020-11-02T00:10")), 1.e-6);
+        assertEquals(1, storage.getSpeedFactor(GHUtility.createEdgeKey(2, false), millis("2020-11-04T08:00")), 1.e-6);
+    }
+
+    @Test
+    void flushAndLoad() {
+        EncodingManager em = EncodingManager.create(new CarFlagEncoder());
+        GraphHopperStorage graph = new GraphBuilder(em).setRAM(LOCATION, true).withSpeedProfiles(true).create();
+        GHUtility.setSpeed(60, true, true, em.getEncoder("car"), graph.edge(0, 1).setDistance(100));
+        double[] factors = new double[BUCKETS_PER_DAY];
+        Arrays.fill(factors, 0.8);
+        int profile = graph.getSpeedProfileStorage().addProfile(factors);
+        graph.getSpeedProfileStorage().setEdgeProfile(1, profile);
+        graph.flush();
+        graph.close();
+
+        graph = new GraphBuilder(em).setRAM(LOCATION, true).withSpeedProfiles(true).build();
+        assertTrue(graph.loadExisting());
+        SpeedProfileStorage storage = graph.getSpeedProfileStorage();
+        assertEquals(1, storage.getProfileCount());
+        assertEquals(profile, storage.getEdgeProfile(1));
+        assertEquals(NO_PROFILE, storage.getEdgeProfile(0));
+        assertEquals(0.8, storage.getSpeedFactor(1, millis("2020-11-04T08:00")), 1.e-6);
+        // the deduplication also works after loading
+        assertEquals(profile, storage.addProfile(factors));
+        graph.close();
+    }
+
+    private static long millis(String localDateTime) {
+        return LocalDateTime.parse(localDateTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
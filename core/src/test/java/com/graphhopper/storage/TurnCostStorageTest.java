@@ -25,9 +25,11 @@ import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -36,6 +38,7 @@ import java.util.Set;
 import static com.graphhopper.util.GHUtility.getEdge;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TurnCostStorageTest {
 
@@ -151,6 +154,58 @@ public class TurnCostStorageTest {
         assertEquals(expectedTurnRelations, allTurnRelations);
     }
 
+    @Test
+    public void testHashIndex() {
+        String location = "./target/turn-cost-hash-index";
+        Helper.removeDir(new File(location));
+        GraphHopperStorage g = new GraphBuilder(manager).setRAM(location, true).withTurnCostHashIndex(true).create();
+        DecimalEncodedValue carEnc = manager.getDecimalEncodedValue(TurnCost.key("car"));
+        // a junction with many turn relations at node 0 and two parallel edges between nodes 0 and 1
+        int edges = 30;
+        for (int i = 1; i <= edges; i++) {
+            g.edge(0, i).setDistance(1);
+        }
+        int parallelEdge = g.edge(0, 1).setDistance(1).getEdge();
+        TurnCostStorage turnCostStorage = g.getTurnCostStorage();
+        assertTrue(turnCostStorage.isHashIndex());
+        for (int from = 0; from < edges; from++) {
+            for (int to = 0; to < edges; to++) {
+                if ((from + to) % 3 != 0)
+                    turnCostStorage.set(carEnc, from, 0, to, (from + to) % 3);
+            }
+        }
+        turnCostStorage.set(carEnc, 0, 0, parallelEdge, 2);
+        turnCostStorage.set(carEnc, 0, 1, parallelEdge, Double.POSITIVE_INFINITY);
+        assertTurnCosts(turnCostStorage, carEnc, edges, parallelEdge);
+
+        // the results must not depend on the lookup
+        turnCostStorage.setHashIndex(false);
+        assertTurnCosts(turnCostStorage, carEnc, edges, parallelEdge);
+        turnCostStorage.setHashIndex(true);
+        assertTurnCosts(turnCostStorage, carEnc, edges, parallelEdge);
+        g.flush();
+        g.close();
+
+        g = new GraphBuilder(manager).setRAM(location, true).withTurnCostHashIndex(true).build();
+        assertTrue(g.loadExisting());
+        assertTurnCosts(g.getTurnCostStorage(), carEnc, edges, parallelEdge);
+        g.close();
+        Helper.removeDir(new File(location));
+    }
+
+    private static void assertTurnCosts(TurnCostStorage turnCostStorage, DecimalEncodedValue carEnc, int edges, int parallelEdge) {
+        for (int from = 0; from < edges; from++) {
+            for (int to = 0; to < edges; to++) {
+                double expected = (from + to) % 3;
+                assertEquals(expected, turnCostStorage.get(carEnc, from, 0, to), 0);
+                assertEquals(0, turnCostStorage.get(carEnc, from, 1, to), 0);
+            }
+        }
+        assertEquals(2, turnCostStorage.get(carEnc, 0, 0, parallelEdge), 0);
+        assertEquals(Double.POSITIVE_INFINITY, turnCostStorage.get(carEnc, 0, 1, parallelEdge), 0);
+        assertEquals(0, turnCostStorage.get(carEnc, parallelEdge, 1, 0), 0);
+    }
+
     @Test
     public void testIterateEmptyStore() {
         GraphHopperStorage g = new GraphBuilder(manager).create();
@@ -19,6 +19,8 @@ package com.graphhopper.util;
 
 import com.graphhopper.coll.GHIntLongHashMap;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.TurnCost;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.EncodingManager;
@@ -122,6 +124,91 @@ public class GHUtilityTest {
         GHUtility.sortDFS(g, createGraph());
     }
 
+    @Test
+    public void testHilbertIndex() {
+        // the curve of order 1 visits the cells (0,0), (0,1), (1,1), (1,0)
+        assertEquals(0, GHUtility.getHilbertIndex(0, 0, 1));
+        assertEquals(1, GHUtility.getHilbertIndex(0, 1, 1));
+        assertEquals(2, GHUtility.getHilbertIndex(1, 1, 1));
+        assertEquals(3, GHUtility.getHilbertIndex(1, 0, 1));
+
+        // every cell is visited exactly once and consecutive cells are neighbors
+        int order = 4, n = 1 << order;
+        int[] xs = new int[n * n], ys = new int[n * n];
+        java.util.Arrays.fill(xs, -1);
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                int index = (int) GHUtility.getHilbertIndex(x, y, order);
+                assertEquals(-1, xs[index]);
+                xs[index] = x;
+                ys[index] = y;
+            }
+        }
+        for (int i = 1; i < n * n; i++) {
+            assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+        }
+    }
+
+    @Test
+    public void testSortHilbert() {
+        Graph g = initUnsorted(createGraph(), carEncoder);
+        g.getEdgeIteratorState(2, Integer.MIN_VALUE).setName("main street");
+        Graph newG = GHUtility.sortHilbert(g, createGraph());
+        assertEquals(g.getNodes(), newG.getNodes());
+        assertEquals(g.getEdges(), newG.getEdges());
+        assertEquals(getLengthOfAllEdges(g), getLengthOfAllEdges(newG), 1e-4);
+
+        // the curve starts in the lower left quadrant, which contains 0 and 6
+        NodeAccess na = newG.getNodeAccess();
+        for (int node = 0; node < 2; node++) {
+            assertTrue(na.getLatitude(node) < 2.5 && na.getLongitude(node) < 2.5);
+        }
+
+        // the edges are ordered by their base node
+        int prevBase = -1;
+        for (int edge = 0; edge < newG.getEdges(); edge++) {
+            int base = newG.getEdgeIteratorState(edge, Integer.MIN_VALUE).getBaseNode();
+            assertTrue(base >= prevBase);
+            prevBase = base;
+        }
+
+        // the name and the direction of the edge 1-0 are kept
+        EdgeIteratorState edge = GHUtility.getEdge(newG, findNode(newG, 2.5, 4.5), findNode(newG, 0, 1));
+        assertEquals("main street", edge.getName());
+        assertEquals(findNode(newG, 0, 1), newG.getEdgeIteratorState(edge.getEdge(), Integer.MIN_VALUE).getAdjNode());
+        // 7-3 is a one-way
+        EdgeIteratorState oneway = GHUtility.getEdge(newG, findNode(newG, 5, 1.5), findNode(newG, 3, 0.5));
+        assertTrue(oneway.get(accessEnc) != oneway.getReverse(accessEnc));
+    }
+
+    @Test
+    public void testSortHilbertWithTurnCosts() {
+        EncodingManager em = EncodingManager.create(new CarFlagEncoder(5, 5, 3));
+        FlagEncoder encoder = em.getEncoder("car");
+        DecimalEncodedValue turnCostEnc = em.getDecimalEncodedValue(TurnCost.key(encoder.toString()));
+        Graph g = initUnsorted(new GraphBuilder(em).withTurnCosts(true).create(), encoder);
+        // 0-1-2 and 0-1-8 at node 1
+        g.getTurnCostStorage().set(turnCostEnc, 2, 1, 4, 2);
+        g.getTurnCostStorage().set(turnCostEnc, 2, 1, 5, Double.POSITIVE_INFINITY);
+        Graph newG = GHUtility.sortHilbert(g, new GraphBuilder(em).withTurnCosts(true).create());
+
+        int node0 = findNode(newG, 0, 1), node1 = findNode(newG, 2.5, 4.5);
+        int edge10 = GHUtility.getEdge(newG, node1, node0).getEdge();
+        int edge12 = GHUtility.getEdge(newG, node1, findNode(newG, 4.5, 4.5)).getEdge();
+        int edge18 = GHUtility.getEdge(newG, node1, findNode(newG, 4.6, 4)).getEdge();
+        assertEquals(2, newG.getTurnCostStorage().get(turnCostEnc, edge10, node1, edge12), 1e-6);
+        assertEquals(Double.POSITIVE_INFINITY, newG.getTurnCostStorage().get(turnCostEnc, edge10, node1, edge18), 1e-6);
+        assertEquals(0, newG.getTurnCostStorage().get(turnCostEnc, edge12, node1, edge10), 1e-6);
+    }
+
+    private static int findNode(Graph g, double lat, double lon) {
+        for (int node = 0; node < g.getNodes(); node++) {
+            if (Math.abs(g.getNodeAccess().getLatitude(node) - lat) < 1e-4 && Math.abs(g.getNodeAccess().getLongitude(node) - lon) < 1e-4)
+                return node;
+        }
+        throw new IllegalArgumentException("no node at " + lat + "," + lon);
+    }
+
     @Test
     public void testCopyWithSelfRef() {
         Graph g = initUnsorted(createGraph(), carEncoder);
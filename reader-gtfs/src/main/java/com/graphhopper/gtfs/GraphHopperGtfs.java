@@ -89,6 +89,21 @@ public class GraphHopperGtfs extends GraphHopperOSM {
                     return this;
                 }
 
+                @Override
+                public DataReader setWayThreads(int wayThreads) {
+                    return this;
+                }
+
+                @Override
+                public DataReader setSortedNodeMap(boolean sortedNodeMap) {
+                    return this;
+                }
+
+                @Override
+                public DataReader setStoreOSMWayIds(boolean storeOSMWayIds) {
+                    return this;
+                }
+
                 @Override
                 public DataReader setWayPointMaxDistance(double wayPointMaxDistance) {
                     return this;
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.reader.osm;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.json.geo.JsonFeatureCollection;
 import com.graphhopper.reader.DataReader;
@@ -29,8 +30,12 @@ import com.graphhopper.routing.util.spatialrules.SpatialRuleLookupBuilder;
 import com.graphhopper.storage.GraphHopperStorage;
 import org.locationtech.jts.geom.Polygon;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class is the simplified entry to all functionality if you import from OpenStreetMap data.
@@ -68,6 +73,29 @@ public class GraphHopperOSM extends GraphHopper {
         return this;
     }
 
+    /**
+     * Applies an OSM change file (.osc or .osc.gz) to the edges of the loaded graph and flushes it, see
+     * {@link OSMChangeUpdater}. The graph has to be imported with datareader.store_osm_way_ids: true and loaded again
+     * afterwards, not only imported by this instance. The CH and LM preparations that do not match the changed weights
+     * are not used anymore, see {@link #afterEdgesChanged}.
+     *
+     * @throws IllegalArgumentException if the change file contains new ways or moved nodes. Nothing is changed then.
+     */
+    public OSMChangeUpdater.Result applyOSMChange(File oscFile) {
+        OSMChangeUpdater updater = new OSMChangeUpdater(getGraphHopperStorage());
+        OSMChangeUpdater.Result result;
+        try {
+            OSMChangeUpdater.Change change = updater.read(oscFile);
+            IntArrayList edges = change.getEdges();
+            Map<String, double[]> weights = beforeEdgesChanged(edges);
+            result = updater.apply(change);
+            afterEdgesChanged(edges, weights, result.isAccessChanged());
+        } catch (IOException | XMLStreamException ex) {
+            throw new RuntimeException("Couldn't apply OSM change file " + oscFile, ex);
+        }
+        return result;
+    }
+
     @Override
     protected void loadOrPrepareLM(boolean closeEarly) {
         if (!getLMPreparationHandler().isEnabled() || getLMPreparationHandler().getPreparations().isEmpty())
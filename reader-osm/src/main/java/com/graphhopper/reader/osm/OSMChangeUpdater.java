@@ -0,0 +1,378 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.graphhopper.coll.GHLongHashSet;
+import com.graphhopper.coll.GHLongObjectHashMap;
+import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.IntsRef;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Applies an OSM change file (.osc or .osc.gz) to the edges of an existing graph. This requires that the OSM ways of
+ * the edges were stored on import, see {@link OSMReader#setStoreOSMWayIds(boolean)}.
+ * <p>
+ * Only changes that keep the structure of the graph can be applied: the edges of deleted ways are blocked for all
+ * vehicles and the flags and names of modified ways are calculated again if their node ids did not change. New
+ * routable ways, ways with changed node ids and modified nodes would require new, split or moved edges. A change file
+ * that contains one of these is rejected by {@link #read(File)} before any edge is changed, so that a new import can
+ * be scheduled instead. Changed relations are ignored, the stored relation flags of the import are used instead.
+ * <p>
+ * As no edge is added or moved the cells of the location index stay valid, it contains the edges regardless of their
+ * access. The subnetworks depend on the access flags though and the CH and LM preparations on the weights, see
+ * GraphHopperOSM.applyOSMChange.
+ */
+public class OSMChangeUpdater {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OSMChangeUpdater.class);
+    private final GraphHopperStorage graph;
+    private final EncodingManager encodingManager;
+    private final OSMWayIdStorage osmWayIdStorage;
+    private final List<BooleanEncodedValue> accessEncs = new ArrayList<>();
+    private final DistanceCalc distCalc = DistanceCalcEarth.DIST_EARTH;
+
+    public OSMChangeUpdater(GraphHopperStorage graph) {
+        this.graph = graph;
+        this.encodingManager = graph.getEncodingManager();
+        if (encodingManager.isParsersReleased())
+            throw new IllegalStateException("The tag parsers were released after the import, load the graph again to apply changes");
+        this.osmWayIdStorage = OSMWayIdStorage.load(graph.getDirectory());
+        for (FlagEncoder encoder : encodingManager.fetchEdgeEncoders()) {
+            accessEncs.add(encoder.getAccessEnc());
+        }
+    }
+
+    public Result apply(File oscFile) throws IOException, XMLStreamException {
+        return apply(read(oscFile));
+    }
+
+    /**
+     * Reads the given change file and finds the edges of the changed ways without changing the graph.
+     *
+     * @throws IllegalArgumentException if the change file contains changes that cannot be applied to the edges
+     */
+    public Change read(File oscFile) throws IOException, XMLStreamException {
+        Change change = new Change(oscFile);
+        parse(change);
+        change.edgesByWay = findEdges(change.changedWays, change.deletedWays);
+
+        List<String> problems = new ArrayList<>();
+        LongArrayList newWays = new LongArrayList();
+        LongArrayList changedNodeIds = new LongArrayList();
+        for (ReaderWay way : change.changedWays.values()) {
+            IntArrayList edges = change.edgesByWay.get(way.getId());
+            if (edges == null) {
+                // a new way or one that was not routable before
+                if (acceptWay(way) != null)
+                    newWays.add(way.getId());
+            } else if (OSMWayIdStorage.nodesHash(way.getNodes()) != osmWayIdStorage.getNodesHash(edges.get(0))) {
+                changedNodeIds.add(way.getId());
+            }
+        }
+        if (!newWays.isEmpty())
+            problems.add("new ways " + newWays);
+        if (!changedNodeIds.isEmpty())
+            problems.add("ways with changed nodes " + changedNodeIds);
+        if (!change.modifiedNodes.isEmpty())
+            problems.add("modified nodes " + change.modifiedNodes);
+        if (!problems.isEmpty())
+            throw new IllegalArgumentException("Cannot apply " + oscFile + ", because it contains " + String.join(", ", problems)
+                    + ". These would require new or moved edges, import the graph again instead");
+        return change;
+    }
+
+    /**
+     * Applies the given change that was read by {@link #read(File)} of this updater.
+     */
+    public Result apply(Change change) {
+        Result result = new Result();
+        result.skippedRelations = change.relations;
+        for (LongCursor cursor : change.deletedWays) {
+            IntArrayList edges = change.edgesByWay.get(cursor.value);
+            if (edges != null) {
+                blockEdges(edges, result);
+                result.deletedWays++;
+            }
+        }
+        for (ReaderWay way : change.changedWays.values()) {
+            IntArrayList edges = change.edgesByWay.get(way.getId());
+            // ways that are still not routable
+            if (edges == null)
+                continue;
+            updateEdges(way, edges, result);
+            result.modifiedWays++;
+        }
+        LOGGER.info("applied " + change.file + ": " + result);
+        return result;
+    }
+
+    private void parse(Change change) throws IOException, XMLStreamException {
+        try (InputStream in = open(change.file)) {
+            XMLStreamReader parser = XMLInputFactory.newInstance().createXMLStreamReader(in, "UTF-8");
+            try {
+                if (parser.nextTag() != XMLStreamConstants.START_ELEMENT || !"osmChange".equals(parser.getLocalName()))
+                    throw new IllegalArgumentException("File is not a valid OSM change file: " + change.file);
+
+                String action = "";
+                for (int event = parser.next(); event != XMLStreamConstants.END_DOCUMENT; event = parser.next()) {
+                    if (event != XMLStreamConstants.START_ELEMENT)
+                        continue;
+                    switch (parser.getLocalName()) {
+                        case "create":
+                        case "modify":
+                        case "delete":
+                            action = parser.getLocalName();
+                            break;
+                        case "way":
+                            ReaderWay way = OSMXMLHelper.createWay(Long.parseLong(parser.getAttributeValue(null, "id")), parser);
+                            // the last change of a way wins
+                            if ("delete".equals(action)) {
+                                change.changedWays.remove(way.getId());
+                                change.deletedWays.add(way.getId());
+                            } else {
+                                change.deletedWays.remove(way.getId());
+                                change.changedWays.put(way.getId(), way);
+                            }
+                            break;
+                        case "node":
+                            // the position or the tags of a node, e.g. a barrier, might have changed. Created nodes
+                            // are only used by new ways and deleted nodes only by deleted or modified ways.
+                            if ("modify".equals(action))
+                                change.modifiedNodes.add(Long.parseLong(parser.getAttributeValue(null, "id")));
+                            break;
+                        case "relation":
+                            change.relations++;
+                            break;
+                    }
+                }
+            } finally {
+                parser.close();
+            }
+        }
+    }
+
+    private static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 50_000);
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(in, 50_000) : in;
+    }
+
+    /**
+     * Finds the edges of the given ways with a single scan over the stored way ids
+     */
+    private GHLongObjectHashMap<IntArrayList> findEdges(Map<Long, ReaderWay> changedWays, GHLongHashSet deletedWays) {
+        GHLongHashSet wayIds = new GHLongHashSet(changedWays.size() + deletedWays.size());
+        for (Long wayId : changedWays.keySet()) {
+            wayIds.add(wayId);
+        }
+        wayIds.addAll(deletedWays);
+
+        GHLongObjectHashMap<IntArrayList> edgesByWay = new GHLongObjectHashMap<>(wayIds.size());
+        for (int edge = 0; edge < osmWayIdStorage.getEdges(); edge++) {
+            long wayId = osmWayIdStorage.getWayId(edge);
+            if (!wayIds.contains(wayId))
+                continue;
+            IntArrayList edges = edgesByWay.get(wayId);
+            if (edges == null) {
+                edges = new IntArrayList(4);
+                edgesByWay.put(wayId, edges);
+            }
+            edges.add(edge);
+        }
+        return edgesByWay;
+    }
+
+    private EncodingManager.AcceptWay acceptWay(ReaderWay way) {
+        if (way.getNodes().size() < 2 || !way.hasTags())
+            return null;
+        EncodingManager.AcceptWay acceptWay = new EncodingManager.AcceptWay();
+        return encodingManager.acceptWay(way, acceptWay) ? acceptWay : null;
+    }
+
+    private void updateEdges(ReaderWay way, IntArrayList edges, Result result) {
+        EncodingManager.AcceptWay acceptWay = acceptWay(way);
+        if (acceptWay == null) {
+            blockEdges(edges, result);
+            return;
+        }
+
+        // the same artificial tags as on import, the edges were created in the order of the way
+        NodeAccess nodeAccess = graph.getNodeAccess();
+        int first = graph.getEdgeIteratorState(edges.get(0), Integer.MIN_VALUE).getBaseNode();
+        int last = graph.getEdgeIteratorState(edges.get(edges.size() - 1), Integer.MIN_VALUE).getAdjNode();
+        double firstLat = nodeAccess.getLat(first), firstLon = nodeAccess.getLon(first);
+        double lastLat = nodeAccess.getLat(last), lastLon = nodeAccess.getLon(last);
+        way.setTag("estimated_distance", distCalc.calcDist(firstLat, firstLon, lastLat, lastLon));
+        way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
+        OSMReader.setDurationInSeconds(way);
+
+        IntsRef relationFlags = osmWayIdStorage.getRelationFlags(edges.get(0), encodingManager.createRelationFlags());
+        IntsRef edgeFlags = encodingManager.handleWayTags(way, acceptWay, relationFlags);
+        if (edgeFlags.isEmpty()) {
+            blockEdges(edges, result);
+            return;
+        }
+
+        for (int i = 0; i < edges.size(); i++) {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(edges.get(i), Integer.MIN_VALUE);
+            IntsRef oldFlags = edge.getFlags();
+            IntsRef newFlags = IntsRef.deepCopyOf(edgeFlags);
+            boolean barrierEdge = isBarrierEdge(edge);
+            for (BooleanEncodedValue accessEnc : accessEncs) {
+                // keep the access of the zero length edges that were created for barriers
+                if (barrierEdge) {
+                    accessEnc.setBool(false, newFlags, accessEnc.getBool(false, oldFlags));
+                    accessEnc.setBool(true, newFlags, accessEnc.getBool(true, oldFlags));
+                }
+                if (accessEnc.getBool(false, oldFlags) != accessEnc.getBool(false, newFlags)
+                        || accessEnc.getBool(true, oldFlags) != accessEnc.getBool(true, newFlags))
+                    result.accessChanged = true;
+            }
+            edge.setFlags(newFlags);
+            encodingManager.applyWayTags(way, edge);
+            result.addEdge(edge, nodeAccess);
+        }
+    }
+
+    private static boolean isBarrierEdge(EdgeIteratorState edge) {
+        return edge.getDistance() <= 0.001 && edge.fetchWayGeometry(FetchMode.PILLAR_ONLY).isEmpty();
+    }
+
+    private void blockEdges(IntArrayList edges, Result result) {
+        NodeAccess nodeAccess = graph.getNodeAccess();
+        for (int i = 0; i < edges.size(); i++) {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(edges.get(i), Integer.MIN_VALUE);
+            IntsRef flags = edge.getFlags();
+            for (BooleanEncodedValue accessEnc : accessEncs) {
+                if (accessEnc.getBool(false, flags) || accessEnc.getBool(true, flags))
+                    result.accessChanged = true;
+                accessEnc.setBool(false, flags, false);
+                accessEnc.setBool(true, flags, false);
+            }
+            edge.setFlags(flags);
+            result.addEdge(edge, nodeAccess);
+        }
+    }
+
+    /**
+     * The ways of a change file and their edges, see {@link #read(File)}
+     */
+    public static class Change {
+        private final File file;
+        private final Map<Long, ReaderWay> changedWays = new LinkedHashMap<>();
+        private final GHLongHashSet deletedWays = new GHLongHashSet();
+        private final LongArrayList modifiedNodes = new LongArrayList();
+        private int relations;
+        private GHLongObjectHashMap<IntArrayList> edgesByWay;
+
+        private Change(File file) {
+            this.file = file;
+        }
+
+        /**
+         * @return the edges of the modified and deleted ways, i.e. the edges that might be changed by this change
+         */
+        public IntArrayList getEdges() {
+            IntArrayList edges = new IntArrayList();
+            for (ObjectCursor<IntArrayList> cursor : edgesByWay.values()) {
+                edges.addAll(cursor.value);
+            }
+            return edges;
+        }
+    }
+
+    public static class Result {
+        private int modifiedWays;
+        private int deletedWays;
+        private int skippedRelations;
+        private boolean accessChanged;
+        private final IntArrayList changedEdges = new IntArrayList();
+        private final BBox bounds = BBox.createInverse(false);
+
+        private void addEdge(EdgeIteratorState edge, NodeAccess nodeAccess) {
+            changedEdges.add(edge.getEdge());
+            bounds.update(nodeAccess.getLat(edge.getBaseNode()), nodeAccess.getLon(edge.getBaseNode()));
+            bounds.update(nodeAccess.getLat(edge.getAdjNode()), nodeAccess.getLon(edge.getAdjNode()));
+        }
+
+        public int getModifiedWays() {
+            return modifiedWays;
+        }
+
+        public int getDeletedWays() {
+            return deletedWays;
+        }
+
+        /**
+         * @return the number of changed relations, these are not applied
+         */
+        public int getSkippedRelations() {
+            return skippedRelations;
+        }
+
+        /**
+         * @return true if the access of an edge changed, i.e. the subnetworks have to be calculated again
+         */
+        public boolean isAccessChanged() {
+            return accessChanged;
+        }
+
+        public IntArrayList getChangedEdges() {
+            return changedEdges;
+        }
+
+        /**
+         * @return the area of all changed edges, e.g. to invalidate cached routes. It is not valid if no edge changed.
+         */
+        public BBox getBounds() {
+            return bounds;
+        }
+
+        @Override
+        public String toString() {
+            return "modified ways: " + Helper.nf(modifiedWays) + ", deleted ways: " + Helper.nf(deletedWays)
+                    + ", changed edges: " + Helper.nf(changedEdges.size()) + ", skipped relations: " + Helper.nf(skippedRelations);
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.osm;
 
 import com.carrotsearch.hppc.*;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.coll.LongIntMap;
 import com.graphhopper.coll.*;
 import com.graphhopper.reader.*;
@@ -37,6 +38,11 @@ import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
 
 import static com.graphhopper.util.Helper.nf;
 
@@ -61,6 +67,11 @@ import static com.graphhopper.util.Helper.nf;
  * When creating an edge the pillar node information from the intermediate data structure will be
  * stored in the way geometry of that edge.
  * <p>
+ * If more than one way thread is configured (see {@link #setWayThreads(int)}) the ways of 2.b) are collected in
+ * batches and the tags of a batch are parsed by several threads, while the edges of the previous batch are created.
+ * The graph itself is still only modified by the reading thread and in the order of the ways in the file, so the
+ * resulting graph is the same as for the single threaded import.
+ * <p>
  *
  * @author Peter Karich
  */
@@ -85,6 +96,17 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
     private long skippedLocations;
     private final EncodingManager encodingManager;
     private int workerThreads = 2;
+    private static final int WAY_BATCH_SIZE = 10_000;
+    private int wayThreads = 1;
+    private ExecutorService wayExecutor;
+    private boolean sortedNodeMap = false;
+    private boolean storeOSMWayIds = false;
+    private OSMWayIdStorage osmWayIdStorage;
+    // the hash of the node ids of the way whose edges are currently created
+    private int wayNodesHash;
+    private List<ReaderWay> wayBatch = new ArrayList<>();
+    // the batch whose tags are currently parsed by the way threads, its edges are created with the next batch
+    private WayBatch pendingWayBatch;
     // Using the correct Map<Long, Integer> is hard. We need a memory efficient and fast solution for big data sets!
     //
     // very slow: new SparseLongLongArray
@@ -140,12 +162,18 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
             throw new IllegalStateException("Your specified OSM file does not exist:" + osmFile.getAbsolutePath());
 
         StopWatch sw1 = new StopWatch().start();
-        preProcess(osmFile);
-        sw1.stop();
-
-        StopWatch sw2 = new StopWatch().start();
-        writeOsmToGraph(osmFile);
-        sw2.stop();
+        StopWatch sw2 = new StopWatch();
+        try {
+            preProcess(osmFile);
+            sw1.stop();
+
+            sw2.start();
+            writeOsmToGraph(osmFile);
+            sw2.stop();
+        } finally {
+            // usually this already happened when the reading finished, but not if the import failed
+            releaseNodeMap();
+        }
 
         LOGGER.info("time pass1:" + (int) sw1.getSeconds() + "s, "
                 + "pass2:" + (int) sw2.getSeconds() + "s, "
@@ -158,11 +186,26 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
      */
     void preProcess(File osmFile) {
         LOGGER.info("Starting to process OSM file: '" + osmFile + "'");
+        // instead of updating the node map for every way node the ids are sorted and the map is created afterwards
+        ExternalLongSorter wayNodeIds = sortedNodeMap ? new ExternalLongSorter(ghStorage.getDirectory(), "tmp_way_node_ids", getTmpDAType(), 1 << 22) : null;
+        // the 1x1 degree cells that contain nodes, used to prefetch the elevation tiles
+        IntHashSet elevationCells = eleProvider == ElevationProvider.NOOP ? null : new IntHashSet();
         try (OSMInput in = openOsmInputFile(osmFile)) {
             long tmpWayCounter = 1;
             long tmpRelationCounter = 1;
             ReaderElement item;
             while ((item = in.getNext()) != null) {
+                if (elevationCells != null) {
+                    if (item.isType(ReaderElement.NODE)) {
+                        ReaderNode node = (ReaderNode) item;
+                        elevationCells.add(((int) Math.floor(node.getLat()) + 90) * 360 + (int) Math.floor(node.getLon()) + 180);
+                    } else if (item.isType(ReaderElement.WAY) || item.isType(ReaderElement.RELATION)) {
+                        // all nodes were read, so the tiles can be loaded while the ways and relations are processed
+                        prefetchElevation(elevationCells);
+                        elevationCells = null;
+                    }
+                }
+
                 if (item.isType(ReaderElement.WAY)) {
                     final ReaderWay way = (ReaderWay) item;
                     boolean valid = filterWay(way);
@@ -170,7 +213,10 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
                         LongIndexedContainer wayNodes = way.getNodes();
                         int s = wayNodes.size();
                         for (int index = 0; index < s; index++) {
-                            prepareHighwayNode(wayNodes.get(index));
+                            if (wayNodeIds != null)
+                                wayNodeIds.add(wayNodes.get(index));
+                            else
+                                prepareHighwayNode(wayNodes.get(index));
                         }
 
                         if (++tmpWayCounter % 10_000_000 == 0) {
@@ -197,9 +243,42 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
                 }
 
             }
+
+            if (wayNodeIds != null) {
+                osmNodeIdToInternalNodeMap = new SortedLongIntMap(ghStorage.getDirectory(), "tmp_node_map", getTmpDAType());
+                wayNodeIds.sort(this::prepareHighwayNode);
+                LOGGER.info("sorted " + nf(wayNodeIds.getSize()) + " way nodes, osmIdMap:" + nf(getNodeMap().getSize())
+                        + " (" + getNodeMap().getMemoryUsage() + "MB) " + Helper.getMemInfo());
+            }
         } catch (Exception ex) {
             throw new RuntimeException("Problem while parsing file", ex);
+        } finally {
+            if (wayNodeIds != null)
+                wayNodeIds.release();
+        }
+    }
+
+    /**
+     * The temporary storage of the import is removed when the import finishes, so it is never flushed. It is memory
+     * mapped if the graph is memory mapped, and kept off-heap otherwise.
+     */
+    private DAType getTmpDAType() {
+        return ghStorage.getDirectory().getDefaultType().isMMap() ? DAType.MMAP : DAType.OFF_HEAP;
+    }
+
+    private void releaseNodeMap() {
+        if (osmNodeIdToInternalNodeMap instanceof SortedLongIntMap)
+            ((SortedLongIntMap) osmNodeIdToInternalNodeMap).clear();
+        osmNodeIdToInternalNodeMap = null;
+    }
+
+    private void prefetchElevation(IntHashSet elevationCells) {
+        PointList cellCenters = new PointList(elevationCells.size(), false);
+        for (IntCursor cell : elevationCells) {
+            cellCenters.add(cell.value / 360 - 90 + 0.5, cell.value % 360 - 180 + 0.5);
         }
+        LOGGER.info("prefetching elevation data for " + nf(cellCenters.size()) + " cells");
+        eleProvider.prefetch(cellCenters);
     }
 
     private void prepareRestrictionRelation(ReaderRelation relation) {
@@ -248,15 +327,23 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
         int tmp = (int) Math.max(getNodeMap().getSize() / 50, 100);
         LOGGER.info("creating graph. Found nodes (pillar+tower):" + nf(getNodeMap().getSize()) + ", " + Helper.getMemInfo());
         ghStorage.create(tmp);
+        if (storeOSMWayIds)
+            osmWayIdStorage = OSMWayIdStorage.create(ghStorage.getDirectory());
 
         long wayStart = -1;
         long relationStart = -1;
         long counter = 1;
+        if (wayThreads > 1)
+            wayExecutor = Executors.newFixedThreadPool(wayThreads);
         try (OSMInput in = openOsmInputFile(osmFile)) {
             LongIntMap nodeFilter = getNodeMap();
 
             ReaderElement item;
             while ((item = in.getNext()) != null) {
+                // nodes and relations depend on the edges of all previous ways
+                if (item.getType() != ReaderElement.WAY)
+                    finishWayBatches();
+
                 switch (item.getType()) {
                     case ReaderElement.NODE:
                         if (nodeFilter.get(item.getId()) != EMPTY_NODE) {
@@ -269,7 +356,13 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
                             LOGGER.info(nf(counter) + ", now parsing ways");
                             wayStart = counter;
                         }
-                        processWay((ReaderWay) item);
+                        if (wayExecutor == null) {
+                            processWay((ReaderWay) item);
+                        } else {
+                            wayBatch.add((ReaderWay) item);
+                            if (wayBatch.size() >= WAY_BATCH_SIZE)
+                                processWayBatch();
+                        }
                         break;
                     case ReaderElement.RELATION:
                         if (relationStart < 0) {
@@ -287,6 +380,7 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
                     LOGGER.info(nf(counter) + ", locs:" + nf(locations) + " (" + skippedLocations + ") " + Helper.getMemInfo());
                 }
             }
+            finishWayBatches();
 
             if (in.getUnprocessedElements() > 0)
                 throw new IllegalStateException("Still unprocessed elements in reader queue " + in.getUnprocessedElements());
@@ -294,6 +388,11 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
             // logger.info("storage nodes:" + storage.nodes() + " vs. graph nodes:" + storage.getGraph().nodes());
         } catch (Exception ex) {
             throw new RuntimeException("Couldn't process file " + osmFile + ", error: " + ex.getMessage(), ex);
+        } finally {
+            if (wayExecutor != null) {
+                wayExecutor.shutdownNow();
+                wayExecutor = null;
+            }
         }
 
         finishedReading();
@@ -309,21 +408,37 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
      * Process properties, encode flags and create edges for the way.
      */
     protected void processWay(ReaderWay way) {
-        if (way.getNodes().size() < 2)
+        EncodingManager.AcceptWay acceptWay = acceptWay(way);
+        if (acceptWay == null)
             return;
 
-        // ignore multipolygon geometry
-        if (!way.hasTags())
+        setEstimatedDistance(way);
+        IntsRef edgeFlags = handleWayTags(way, acceptWay);
+        if (edgeFlags.isEmpty())
             return;
 
-        long wayOsmId = way.getId();
+        addWay(way, edgeFlags);
+    }
+
+    /**
+     * @return the access of the way for all encoders or null if no encoder accepts the way. Can be called from
+     * several threads at once.
+     */
+    private EncodingManager.AcceptWay acceptWay(ReaderWay way) {
+        if (way.getNodes().size() < 2)
+            return null;
+
+        // ignore multipolygon geometry
+        if (!way.hasTags())
+            return null;
 
         EncodingManager.AcceptWay acceptWay = new EncodingManager.AcceptWay();
         if (!encodingManager.acceptWay(way, acceptWay))
-            return;
-
-        IntsRef relationFlags = getRelFlagsMap(way.getId());
+            return null;
+        return acceptWay;
+    }
 
+    private void setEstimatedDistance(ReaderWay way) {
         // TODO move this after we have created the edge and know the coordinates => encodingManager.applyWayTags
         LongArrayList osmNodeIds = way.getNodes();
         // Estimate length of ways containing a route tag e.g. for ferry speed calculation
@@ -337,7 +452,18 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
             way.setTag("estimated_distance", estimatedDist);
             way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
         }
+    }
 
+    /**
+     * Calculates the edge flags of the way. Can be called from several threads at once.
+     */
+    private IntsRef handleWayTags(ReaderWay way, EncodingManager.AcceptWay acceptWay) {
+        setDurationInSeconds(way);
+        IntsRef relationFlags = getRelFlagsMap(way.getId(), encodingManager.createRelationFlags());
+        return encodingManager.handleWayTags(way, acceptWay, relationFlags);
+    }
+
+    static void setDurationInSeconds(ReaderWay way) {
         if (way.getTag("duration") != null) {
             try {
                 long dur = OSMReaderUtility.parseDuration(way.getTag("duration"));
@@ -347,11 +473,17 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
                 LOGGER.warn("Parsing error in way with OSMID=" + way.getId() + " : " + ex.getMessage());
             }
         }
+    }
 
-        IntsRef edgeFlags = encodingManager.handleWayTags(way, acceptWay, relationFlags);
-        if (edgeFlags.isEmpty())
-            return;
-
+    /**
+     * Creates the edges for the way. Must be called from the reading thread and in the order of the ways.
+     */
+    private void addWay(ReaderWay way, IntsRef edgeFlags) {
+        long wayOsmId = way.getId();
+        LongArrayList osmNodeIds = way.getNodes();
+        // the node ids are changed below if the way contains barriers
+        if (osmWayIdStorage != null)
+            wayNodesHash = OSMWayIdStorage.nodesHash(osmNodeIds);
         List<EdgeIteratorState> createdEdges = new ArrayList<>();
         // look for barriers along the way
         final int size = osmNodeIds.size();
@@ -411,6 +543,98 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
         }
     }
 
+    /**
+     * Accepts the collected ways and submits the parsing of their tags to the way threads. Then the edges of the
+     * previous batch are created while the current batch is parsed.
+     */
+    private void processWayBatch() {
+        WayBatch batch = null;
+        if (!wayBatch.isEmpty()) {
+            batch = new WayBatch(wayBatch);
+            wayBatch = new ArrayList<>(WAY_BATCH_SIZE);
+
+            WayBatch b = batch;
+            waitFor(submitWayTasks(b.ways.size(), i -> b.acceptWays[i] = acceptWay(b.ways.get(i))));
+            // the coordinates are read here as the pillar nodes are converted to tower nodes while adding the edges
+            for (int i = 0; i < b.ways.size(); i++) {
+                if (b.acceptWays[i] != null)
+                    setEstimatedDistance(b.ways.get(i));
+            }
+            b.futures = submitWayTasks(b.ways.size(), i -> {
+                if (b.acceptWays[i] != null)
+                    b.edgeFlags[i] = handleWayTags(b.ways.get(i), b.acceptWays[i]);
+            });
+        }
+
+        if (pendingWayBatch != null)
+            addWayBatch(pendingWayBatch);
+        pendingWayBatch = batch;
+    }
+
+    private void finishWayBatches() {
+        if (wayBatch.isEmpty() && pendingWayBatch == null)
+            return;
+        processWayBatch();
+        if (pendingWayBatch != null)
+            addWayBatch(pendingWayBatch);
+        pendingWayBatch = null;
+    }
+
+    private void addWayBatch(WayBatch batch) {
+        waitFor(batch.futures);
+        for (int i = 0; i < batch.ways.size(); i++) {
+            IntsRef edgeFlags = batch.edgeFlags[i];
+            if (edgeFlags != null && !edgeFlags.isEmpty())
+                addWay(batch.ways.get(i), edgeFlags);
+        }
+    }
+
+    /**
+     * Splits the indices [0, size) into one chunk per way thread and runs the task for every index.
+     */
+    private List<Future<?>> submitWayTasks(int size, IntConsumer task) {
+        int chunks = Math.min(wayThreads, size);
+        List<Future<?>> futures = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = (int) ((long) size * chunk / chunks);
+            int to = (int) ((long) size * (chunk + 1) / chunks);
+            futures.add(wayExecutor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    task.accept(i);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private static void waitFor(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+    }
+
+    private static class WayBatch {
+        final List<ReaderWay> ways;
+        final EncodingManager.AcceptWay[] acceptWays;
+        final IntsRef[] edgeFlags;
+        List<Future<?>> futures;
+
+        WayBatch(List<ReaderWay> ways) {
+            this.ways = ways;
+            this.acceptWays = new EncodingManager.AcceptWay[ways.size()];
+            this.edgeFlags = new IntsRef[ways.size()];
+        }
+    }
+
     protected void processRelation(ReaderRelation relation) {
         if (tcs != null && relation.hasTag("type", "restriction"))
             storeTurnRelation(createTurnRelations(relation));
@@ -704,6 +928,8 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
             iter.setWayGeometry(pointList.shallowCopy(1, pointList.size() - 1, false));
 
         storeOsmWayID(iter.getEdge(), wayOsmId);
+        if (osmWayIdStorage != null)
+            osmWayIdStorage.setEdge(iter.getEdge(), wayOsmId, getRelFlagsMap(wayOsmId), wayNodesHash);
         return iter;
     }
 
@@ -745,8 +971,13 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
         pillarInfo.clear();
         encodingManager.releaseParsers();
         eleProvider.release();
-        osmNodeIdToInternalNodeMap = null;
+        releaseNodeMap();
         osmNodeIdToNodeFlagsMap = null;
+        if (osmWayIdStorage != null) {
+            // the storage stays open to be used by an OSMChangeUpdater of the same graph
+            osmWayIdStorage.flush();
+            osmWayIdStorage = null;
+        }
         osmWayIdToRouteWeightMap = null;
         osmWayIdSet = null;
         edgeIdToOsmWayIdMap = null;
@@ -880,10 +1111,14 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
     }
 
     IntsRef getRelFlagsMap(long osmId) {
+        return getRelFlagsMap(osmId, tempRelFlags);
+    }
+
+    private IntsRef getRelFlagsMap(long osmId, IntsRef relFlags) {
         long relFlagsAsLong = osmWayIdToRouteWeightMap.get(osmId);
-        tempRelFlags.ints[0] = (int) relFlagsAsLong;
-        tempRelFlags.ints[1] = (int) (relFlagsAsLong >> 32);
-        return tempRelFlags;
+        relFlags.ints[0] = (int) relFlagsAsLong;
+        relFlags.ints[1] = (int) (relFlagsAsLong >> 32);
+        return relFlags;
     }
 
     void putRelFlagsMap(long osmId, IntsRef relFlags) {
@@ -922,6 +1157,38 @@ public class OSMReader implements DataReader, TurnCostParser.ExternalInternalMap
         return this;
     }
 
+    /**
+     * Sets the number of threads that parse the tags of the ways. The edges are always created by the reading thread.
+     */
+    @Override
+    public OSMReader setWayThreads(int wayThreads) {
+        if (wayThreads < 1)
+            throw new IllegalArgumentException("way threads must be at least 1 but was " + wayThreads);
+        this.wayThreads = wayThreads;
+        return this;
+    }
+
+    /**
+     * If true the OSM node ids of the ways are sorted before they are stored in a {@link SortedLongIntMap}, which
+     * needs much less heap than the default map. The map is stored in the directory of the graph, so use a memory
+     * mapped directory to keep it off-heap.
+     */
+    @Override
+    public OSMReader setSortedNodeMap(boolean sortedNodeMap) {
+        this.sortedNodeMap = sortedNodeMap;
+        return this;
+    }
+
+    /**
+     * If true the OSM way of every edge is stored in the graph directory, which is required to apply OSM change
+     * files via {@link OSMChangeUpdater}.
+     */
+    @Override
+    public OSMReader setStoreOSMWayIds(boolean storeOSMWayIds) {
+        this.storeOSMWayIds = storeOSMWayIds;
+        return this;
+    }
+
     @Override
     public OSMReader setElevationProvider(ElevationProvider eleProvider) {
         if (eleProvider == null)
@@ -0,0 +1,109 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.carrotsearch.hppc.LongIndexedContainer;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.IntsRef;
+
+/**
+ * Stores the OSM way of every edge that was created by the {@link OSMReader}, so that the edges of a way can be changed
+ * later without a new import, see {@link OSMChangeUpdater}. Besides the way id it stores the relation flags of the
+ * way, because relations are not part of such an update, and a hash of the OSM node ids of the way to detect if its
+ * geometry changed.
+ * <p>
+ * The edge ids are only valid as long as the graph is not sorted after the import.
+ */
+public class OSMWayIdStorage {
+    static final String NAME = "edge_osm_ways";
+    private static final int WAY_ID = 0, REL_FLAGS = 8, NODES_HASH = 16;
+    private static final int BYTES_PER_EDGE = 20;
+    private final DataAccess da;
+    private int edges;
+
+    private OSMWayIdStorage(DataAccess da) {
+        this.da = da;
+    }
+
+    static OSMWayIdStorage create(Directory dir) {
+        return new OSMWayIdStorage(dir.find(NAME).create(1000));
+    }
+
+    /**
+     * @throws IllegalStateException if the OSM ways were not stored on import
+     */
+    public static OSMWayIdStorage load(Directory dir) {
+        DataAccess da = dir.find(NAME);
+        // the storage is still open if the graph was imported by the same instance
+        if (da.getCapacity() == 0 && !da.loadExisting())
+            throw new IllegalStateException("No OSM ways were stored for the edges of " + dir.getLocation()
+                    + ", import the graph again with datareader.store_osm_way_ids: true");
+        OSMWayIdStorage storage = new OSMWayIdStorage(da);
+        storage.edges = da.getHeader(0);
+        return storage;
+    }
+
+    void setEdge(int edge, long wayId, IntsRef relationFlags, int nodesHash) {
+        long pointer = (long) edge * BYTES_PER_EDGE;
+        da.ensureCapacity(pointer + BYTES_PER_EDGE);
+        da.setInt(pointer + WAY_ID, (int) wayId);
+        da.setInt(pointer + WAY_ID + 4, (int) (wayId >>> 32));
+        da.setInt(pointer + REL_FLAGS, relationFlags.ints[0]);
+        da.setInt(pointer + REL_FLAGS + 4, relationFlags.ints[1]);
+        da.setInt(pointer + NODES_HASH, nodesHash);
+        edges = Math.max(edges, edge + 1);
+    }
+
+    /**
+     * @return the number of edges with a stored way, edges that were created later (e.g. by a public transit import)
+     * are not included
+     */
+    public int getEdges() {
+        return edges;
+    }
+
+    public long getWayId(int edge) {
+        long pointer = (long) edge * BYTES_PER_EDGE;
+        return (da.getInt(pointer + WAY_ID) & 0xFFFFFFFFL) | ((long) da.getInt(pointer + WAY_ID + 4) << 32);
+    }
+
+    public IntsRef getRelationFlags(int edge, IntsRef relationFlags) {
+        long pointer = (long) edge * BYTES_PER_EDGE;
+        relationFlags.ints[0] = da.getInt(pointer + REL_FLAGS);
+        relationFlags.ints[1] = da.getInt(pointer + REL_FLAGS + 4);
+        return relationFlags;
+    }
+
+    public int getNodesHash(int edge) {
+        return da.getInt((long) edge * BYTES_PER_EDGE + NODES_HASH);
+    }
+
+    public static int nodesHash(LongIndexedContainer osmNodeIds) {
+        int hash = 1;
+        for (int i = 0; i < osmNodeIds.size(); i++) {
+            hash = 31 * hash + Long.hashCode(osmNodeIds.get(i));
+        }
+        return hash;
+    }
+
+    void flush() {
+        da.setHeader(0, edges);
+        da.flush();
+    }
+}
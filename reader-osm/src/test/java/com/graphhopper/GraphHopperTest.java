@@ -27,12 +27,15 @@ import com.graphhopper.reader.dem.SkadiProvider;
 import com.graphhopper.reader.osm.GraphHopperOSM;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.CustomModel;
 import com.graphhopper.routing.util.DefaultFlagEncoderFactory;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.parsers.OSMMaxSpeedParser;
 import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.storage.IntsRef;
+import com.graphhopper.storage.SpeedProfileStorage;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
@@ -122,6 +125,233 @@ public class GraphHopperTest {
         assertEquals(43.7495432, res.getWaypoints().getLat(1), 1e-7);
     }
 
+    @Test
+    public void testMonacoCustomizableCH() {
+        GraphHopper hopper = createGraphHopper("car").
+                setOSMFile(MONACO).
+                setProfiles(new CustomProfile("profile").setCustomModel(new CustomModel()).setVehicle("car")).
+                setCCHEnabled(true).
+                setMinNetworkSize(0);
+        hopper.importOrLoad();
+        assertNotNull(hopper.getCustomizableCH());
+
+        CustomModel customModel = new CustomModel();
+        Map<String, Object> roadClassPriority = new LinkedHashMap<>();
+        roadClassPriority.put("primary", 0.5);
+        customModel.getPriority().put("road_class", roadClassPriority);
+        for (CustomModel model : asList(null, customModel)) {
+            GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile");
+            if (model != null)
+                req.putHint(CustomModel.KEY, model);
+            GHResponse cchRsp = hopper.route(req);
+            assertFalse(cchRsp.getErrors().toString(), cchRsp.hasErrors());
+            req.putHint(Parameters.CCH.DISABLE, true);
+            GHResponse flexRsp = hopper.route(req);
+            assertFalse(flexRsp.getErrors().toString(), flexRsp.hasErrors());
+
+            assertEquals(flexRsp.getBest().getRouteWeight(), cchRsp.getBest().getRouteWeight(), 1.e-3);
+            assertEquals(flexRsp.getBest().getDistance(), cchRsp.getBest().getDistance(), 1.e-1);
+            assertEquals(flexRsp.getBest().getTime(), cchRsp.getBest().getTime(), 10);
+            assertTrue(cchRsp.getHints().getLong("visited_nodes.sum", 0) < flexRsp.getHints().getLong("visited_nodes.sum", 0));
+        }
+        hopper.close();
+    }
+
+    @Test
+    public void testMonacoTimeDependent() {
+        GraphHopper hopper = createGraphHopper("car").
+                setOSMFile(MONACO).
+                setProfiles(new Profile("profile").setVehicle("car").setWeighting("fastest")).
+                setSpeedProfiles(true).
+                setMinNetworkSize(0);
+        hopper.importOrLoad();
+        SpeedProfileStorage speedProfiles = hopper.getGraphHopperStorage().getSpeedProfileStorage();
+        double[] factors = new double[SpeedProfileStorage.BUCKETS_PER_DAY];
+        Arrays.fill(factors, 1);
+        for (int i = 7 * 4; i < 9 * 4; i++)
+            factors[i] = 0.5;
+        int rushHour = speedProfiles.addProfile(factors);
+        for (int edgeKey = 0; edgeKey < 2 * hopper.getGraphHopperStorage().getEdges(); edgeKey++)
+            speedProfiles.setEdgeProfile(edgeKey, rushHour);
+
+        GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile");
+        GHResponse rsp = hopper.route(req);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+
+        req.putHint(Routing.DEPARTURE_TIME, "2020-11-04T03:00");
+        GHResponse nightRsp = hopper.route(req);
+        assertFalse(nightRsp.getErrors().toString(), nightRsp.hasErrors());
+        assertEquals(rsp.getBest().getRouteWeight(), nightRsp.getBest().getRouteWeight(), 1.e-3);
+        assertEquals(rsp.getBest().getTime(), nightRsp.getBest().getTime(), 10);
+
+        req.putHint(Routing.DEPARTURE_TIME, "2020-11-04T08:00");
+        GHResponse morningRsp = hopper.route(req);
+        assertFalse(morningRsp.getErrors().toString(), morningRsp.hasErrors());
+        assertEquals(2 * rsp.getBest().getTime(), morningRsp.getBest().getTime(), 100);
+
+        req.putHint(Routing.DEPARTURE_TIME, "08:00");
+        assertTrue(hopper.route(req).hasErrors());
+        hopper.close();
+    }
+
+    @Test
+    public void testMonacoLiveTraffic() {
+        GraphHopper hopper = createGraphHopper("car").
+                setOSMFile(MONACO).
+                setProfiles(new Profile("profile").setVehicle("car").setWeighting("fastest")).
+                setLiveTrafficEnabled(true).
+                setMinNetworkSize(0);
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("profile"));
+        hopper.importOrLoad();
+
+        GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile").
+                setPathDetails(Collections.singletonList(Parameters.Details.EDGE_ID));
+        GHResponse rsp = hopper.route(req);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+
+        // slow down the first half of the route
+        List<PathDetail> edgeIds = rsp.getBest().getPathDetails().get(Parameters.Details.EDGE_ID);
+        int[] edges = new int[edgeIds.size() / 2];
+        double[] speeds = new double[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = ((Number) edgeIds.get(i).getValue()).intValue();
+            speeds[i] = 5;
+        }
+        hopper.getLiveTraffic().update(edges, speeds, false);
+
+        GHResponse lmRsp = hopper.route(req);
+        assertFalse(lmRsp.getErrors().toString(), lmRsp.hasErrors());
+        assertTrue(lmRsp.getBest().getRouteWeight() > rsp.getBest().getRouteWeight());
+        assertTrue(lmRsp.getBest().getTime() > rsp.getBest().getTime());
+
+        // slow downs keep the landmark approximation valid
+        req.putHint(Landmark.DISABLE, true);
+        GHResponse flexRsp = hopper.route(req);
+        assertFalse(flexRsp.getErrors().toString(), flexRsp.hasErrors());
+        assertEquals(flexRsp.getBest().getRouteWeight(), lmRsp.getBest().getRouteWeight(), 1.e-3);
+        assertEquals(flexRsp.getBest().getTime(), lmRsp.getBest().getTime(), 10);
+
+        req.putHint(Parameters.Traffic.DISABLE, true);
+        GHResponse noTrafficRsp = hopper.route(req);
+        assertEquals(rsp.getBest().getRouteWeight(), noTrafficRsp.getBest().getRouteWeight(), 1.e-3);
+
+        hopper.getLiveTraffic().clear();
+        req.putHint(Parameters.Traffic.DISABLE, false);
+        assertEquals(rsp.getBest().getRouteWeight(), hopper.route(req).getBest().getRouteWeight(), 1.e-3);
+        hopper.close();
+    }
+
+    @Test
+    public void testMonacoCompressedGeometry() {
+        GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile");
+        GHResponse[] responses = new GHResponse[2];
+        for (int i = 0; i < 2; i++) {
+            GraphHopper hopper = createGraphHopper("car").
+                    setOSMFile(MONACO).
+                    setProfiles(new Profile("profile").setVehicle("car").setWeighting("fastest")).
+                    setCompressedGeometry(i == 1).
+                    setStoreOnFlush(true);
+            hopper.importOrLoad();
+            assertEquals(i == 1, hopper.getGraphHopperStorage().isCompressedGeometry());
+            responses[i] = hopper.route(req);
+            assertFalse(responses[i].getErrors().toString(), responses[i].hasErrors());
+            hopper.close();
+            hopper.clean();
+        }
+        assertEquals(responses[0].getBest().getDistance(), responses[1].getBest().getDistance(), 1.e-3);
+        assertEquals(responses[0].getBest().getPoints(), responses[1].getBest().getPoints());
+    }
+
+    @Test
+    public void testMonacoHilbertSort() {
+        GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile");
+        GHResponse[] responses = new GHResponse[3];
+        for (int i = 0; i < 3; i++) {
+            // 0: unsorted, 1: sorted on import, 2: loaded from the sorted graph
+            GraphHopper hopper = createGraphHopper("car|turn_costs=true").
+                    setOSMFile(MONACO).
+                    setProfiles(new Profile("profile").setVehicle("car").setWeighting("fastest").setTurnCosts(true)).
+                    setSortGraph(i > 0).
+                    setSortOrder("hilbert").
+                    setStoreOnFlush(true);
+            hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("profile"));
+            hopper.importOrLoad();
+            responses[i] = hopper.route(req);
+            assertFalse(responses[i].getErrors().toString(), responses[i].hasErrors());
+            hopper.close();
+            if (i != 1)
+                hopper.clean();
+        }
+        for (int i = 1; i < 3; i++) {
+            assertEquals(responses[0].getBest().getDistance(), responses[i].getBest().getDistance(), 1.e-3);
+            assertEquals(responses[0].getBest().getTime(), responses[i].getBest().getTime());
+            assertEquals(responses[0].getBest().getPoints(), responses[i].getBest().getPoints());
+        }
+    }
+
+    @Test
+    public void testMonacoCSRAdjacency() {
+        GHResponse[][] responses = new GHResponse[2][];
+        for (int i = 0; i < 2; i++) {
+            GraphHopper hopper = createGraphHopper("car").
+                    setOSMFile(MONACO).
+                    setProfiles(new Profile("profile").setVehicle("car").setWeighting("fastest")).
+                    setCSRAdjacency(i == 1).
+                    setStoreOnFlush(true);
+            hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+            hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("profile"));
+            hopper.getRouterConfig().setCHDisablingAllowed(true);
+            hopper.getRouterConfig().setLMDisablingAllowed(true);
+            hopper.importOrLoad();
+            responses[i] = new GHResponse[3];
+            for (int mode = 0; mode < 3; mode++) {
+                GHRequest req = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile");
+                req.putHint(CH.DISABLE, mode > 0).putHint(Landmark.DISABLE, mode > 1);
+                responses[i][mode] = hopper.route(req);
+                assertFalse(responses[i][mode].getErrors().toString(), responses[i][mode].hasErrors());
+            }
+            hopper.close();
+            hopper.clean();
+        }
+        for (int mode = 0; mode < 3; mode++) {
+            assertEquals(responses[0][mode].getBest().getPoints(), responses[1][mode].getBest().getPoints());
+            assertEquals(responses[0][mode].getHints().getLong("visited_nodes.sum", 0),
+                    responses[1][mode].getHints().getLong("visited_nodes.sum", 0));
+        }
+    }
+
+    @Test
+    public void testMonacoCompressedStore() {
+        GHResponse[] responses = new GHResponse[3];
+        long rawEdgesLength = 0;
+        for (int i = 0; i < 3; i++) {
+            // 0: uncompressed, 1: imported compressed, 2: loaded compressed
+            GraphHopper hopper = createGraphHopper("car").
+                    setOSMFile(MONACO).
+                    setProfiles(new Profile("profile").setVehicle("car").setWeighting("fastest")).
+                    setStoreOnFlush(true);
+            if (i > 0)
+                hopper.setCompressedStore();
+            hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+            hopper.importOrLoad();
+            long edgesLength = new File(GH_LOCATION, "edges").length();
+            if (i == 0)
+                rawEdgesLength = edgesLength;
+            else
+                assertTrue("compressed edges should be smaller: " + edgesLength + " vs. " + rawEdgesLength,
+                        edgesLength < rawEdgesLength / 2);
+            responses[i] = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile"));
+            assertFalse(responses[i].getErrors().toString(), responses[i].hasErrors());
+            hopper.close();
+            if (i == 0)
+                hopper.clean();
+        }
+        for (int i = 1; i < 3; i++) {
+            assertEquals(responses[0].getBest().getPoints(), responses[i].getBest().getPoints());
+            assertEquals(responses[0].getBest().getDistance(), responses[i].getBest().getDistance(), 1.e-6);
+        }
+    }
+
     @Test
     public void testMonacoWithInstructions() {
         final String profile = "profile";
@@ -63,6 +63,9 @@ public class GraphHopperOSMTest {
     private static final String ghLoc = "./target/tmp/ghosm";
     private static final String testOsm = "./src/test/resources/com/graphhopper/reader/osm/test-osm.xml";
     private static final String testOsm3 = "./src/test/resources/com/graphhopper/reader/osm/test-osm3.xml";
+    private static final String testOsmChange = "./src/test/resources/com/graphhopper/reader/osm/test-osm-change.osc";
+    private static final String testOsmChangeNewWay = "./src/test/resources/com/graphhopper/reader/osm/test-osm-change-new-way.osc";
+    private static final String testOsmChangeMaxSpeed = "./src/test/resources/com/graphhopper/reader/osm/test-osm-change-maxspeed.osc";
     private static final String testOsm8 = "./src/test/resources/com/graphhopper/reader/osm/test-osm8.xml";
     private GraphHopper instance;
 
@@ -465,6 +468,111 @@ public class GraphHopperOSMTest {
         assertEquals(3, rsp.getPoints().getSize());
     }
 
+    @Test
+    public void testApplyOSMChange() {
+        GraphHopperConfig config = new GraphHopperConfig().
+                putObject("datareader.file", testOsm).
+                putObject("datareader.store_osm_way_ids", true).
+                putObject("graph.location", ghLoc).
+                putObject("graph.flag_encoders", "car,foot").
+                setProfiles(Arrays.asList(
+                        new Profile("car").setVehicle("car").setWeighting("fastest"),
+                        new Profile("foot").setVehicle("foot").setWeighting("fastest")
+                ));
+        GraphHopperOSM hopper = (GraphHopperOSM) new GraphHopperOSM().init(config).importOrLoad();
+        assertFalse(hopper.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setProfile("car")).hasErrors());
+        try {
+            hopper.applyOSMChange(new File(testOsmChange));
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("The tag parsers were released"));
+        }
+        hopper.close();
+
+        instance = new GraphHopperOSM().init(config).importOrLoad();
+        // the new way 12 and the moved node 35 cannot be applied, so nothing is changed
+        try {
+            ((GraphHopperOSM) instance).applyOSMChange(new File(testOsmChangeNewWay));
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("new ways [12], modified nodes [35]"));
+        }
+        assertFalse(instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setProfile("car")).hasErrors());
+
+        OSMChangeUpdater.Result result = ((GraphHopperOSM) instance).applyOSMChange(new File(testOsmChange));
+        assertEquals(1, result.getModifiedWays());
+        assertEquals(1, result.getDeletedWays());
+        assertEquals(1, result.getSkippedRelations());
+        assertTrue(result.isAccessChanged());
+        assertEquals(3, result.getChangedEdges().size());
+        instance.close();
+
+        // the changes were stored
+        instance = new GraphHopperOSM().init(config).importOrLoad();
+        assertTrue(instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setProfile("car")).hasErrors());
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setProfile("foot"));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertEquals("route 667", rsp.getBest().getInstructions().get(0).getName());
+        // way 11 to node 50 was deleted, so the destination is snapped to way 10
+        rsp = instance.route(new GHRequest(52, 9, 49, 10).setProfile("foot"));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertEquals(51.2, rsp.getBest().getWaypoints().getLat(1), 0.1);
+    }
+
+    @Test
+    public void testApplyOSMChangeWithCH() {
+        GraphHopperConfig config = new GraphHopperConfig().
+                putObject("datareader.file", testOsm).
+                putObject("datareader.store_osm_way_ids", true).
+                putObject("graph.location", ghLoc).
+                putObject("graph.flag_encoders", "car,foot").
+                putObject(Parameters.CH.INIT_DISABLING_ALLOWED, true).
+                setProfiles(Arrays.asList(
+                        new Profile("car").setVehicle("car").setWeighting("fastest"),
+                        new Profile("foot").setVehicle("foot").setWeighting("fastest"))).
+                setCHProfiles(Arrays.asList(new CHProfile("car"), new CHProfile("foot")));
+        new GraphHopperOSM().init(config).importOrLoad().close();
+
+        instance = new GraphHopperOSM().init(config).importOrLoad();
+        GHRequest carReq = new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setProfile("car");
+        GHResponse rsp = instance.route(carReq);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        long oldTime = rsp.getBest().getTime();
+        GHRequest footReq = new GHRequest(52, 9, 49, 10).setProfile("foot");
+        rsp = instance.route(footReq);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        PointList footPoints = rsp.getBest().getPoints();
+
+        // the maxspeed of way 10 only changes the weights of the car
+        OSMChangeUpdater.Result result = ((GraphHopperOSM) instance).applyOSMChange(new File(testOsmChangeMaxSpeed));
+        assertEquals(1, result.getModifiedWays());
+        assertFalse(result.isAccessChanged());
+        // the shortcuts of the car would still use the old speed
+        rsp = instance.route(carReq);
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().get(0).getMessage().startsWith("The CH preparation for the requested profile 'car' is outdated"));
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setProfile("car").putHint(Parameters.CH.DISABLE, true));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertTrue(rsp.getBest().getTime() > oldTime);
+        // the CH preparation of foot is still used
+        rsp = instance.route(footReq);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertEquals(footPoints, rsp.getBest().getPoints());
+        instance.close();
+
+        // the outdated CH preparation of car is still not used after the graph was loaded again
+        instance = new GraphHopperOSM().init(config).importOrLoad();
+        assertTrue(instance.route(carReq).hasErrors());
+        assertFalse(instance.route(footReq).hasErrors());
+
+        // way 11 is deleted, so the foot route that used it ends on way 10 now and the foot preparation is outdated too
+        ((GraphHopperOSM) instance).applyOSMChange(new File(testOsmChange));
+        assertTrue(instance.route(footReq).hasErrors());
+        rsp = instance.route(new GHRequest(52, 9, 49, 10).setProfile("foot").putHint(Parameters.CH.DISABLE, true));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertEquals(51.2, rsp.getBest().getWaypoints().getLat(1), 0.1);
+    }
+
     @Test
     public void testFailsForWrongConfig() {
         instance = new GraphHopperOSM().init(
@@ -702,6 +702,23 @@ public class OSMReaderTest {
                 edge.fetchWayGeometry(FetchMode.ALL));
     }
 
+    @Test
+    public void testPrefetchElevation() {
+        GraphHopper hopper = new GraphHopperFacade("test-osm5.xml");
+        ElevationProvider provider = new SRTMProvider(GraphHopperTest.DIR);
+        provider.setPrefetchThreads(2);
+        provider.setMaxCachedTiles(1);
+        hopper.setElevationProvider(provider);
+        hopper.importOrLoad();
+
+        Graph graph = hopper.getGraphHopperStorage();
+        int n30 = AbstractGraphStorageTester.getIdOf(graph, 49.5011);
+        int n50 = AbstractGraphStorageTester.getIdOf(graph, 49.5001);
+        EdgeIteratorState edge = GHUtility.getEdge(graph, n50, n30);
+        assertEquals(Helper.createPointList3D(49.5001, 11.501, 426, 49.5002, 11.5015, 441, 49.5011, 11.502, 410.0),
+                edge.fetchWayGeometry(FetchMode.ALL));
+    }
+
     /**
      * Tests the combination of different turn cost flags by different encoders.
      */
@@ -916,6 +933,47 @@ public class OSMReaderTest {
         assertEquals(112, snap.getClosestEdge().getDistance() / 1000, 1);
     }
 
+    @Test
+    public void testParallelWayProcessingCreatesSameGraph() {
+        assertSameGraph(readAndorra(1, false), readAndorra(4, false));
+    }
+
+    @Test
+    public void testSortedNodeMapCreatesSameGraph() {
+        assertSameGraph(readAndorra(1, false), readAndorra(1, true));
+    }
+
+    private void assertSameGraph(GraphHopperStorage expected, GraphHopperStorage graph) {
+        assertEquals(expected.getNodes(), graph.getNodes());
+        assertEquals(expected.getEdges(), graph.getEdges());
+        for (int node = 0; node < graph.getNodes(); node++) {
+            assertEquals(expected.getNodeAccess().getLat(node), graph.getNodeAccess().getLat(node), 1.e-6);
+            assertEquals(expected.getNodeAccess().getLon(node), graph.getNodeAccess().getLon(node), 1.e-6);
+        }
+        AllEdgesIterator expectedIter = expected.getAllEdges();
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (expectedIter.next()) {
+            assertTrue(iter.next());
+            assertEquals(expectedIter.getBaseNode(), iter.getBaseNode());
+            assertEquals(expectedIter.getAdjNode(), iter.getAdjNode());
+            assertEquals(expectedIter.getFlags(), iter.getFlags());
+            assertEquals(expectedIter.getName(), iter.getName());
+            assertEquals(expectedIter.fetchWayGeometry(FetchMode.ALL), iter.fetchWayGeometry(FetchMode.ALL));
+        }
+        assertFalse(iter.next());
+    }
+
+    private GraphHopperStorage readAndorra(int wayThreads, boolean sortedNodeMap) {
+        EncodingManager em = EncodingManager.create("car,bike,foot");
+        GraphHopperStorage graph = newGraph(dir, em, false, false);
+        try {
+            new OSMReader(graph).setWayThreads(wayThreads).setSortedNodeMap(sortedNodeMap).setFile(new File("../core/files/andorra.osm.pbf")).readGraph();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return graph;
+    }
+
     @Test
     public void testRoutingRequestFails_issue665() {
         GraphHopper hopper = new GraphHopperOSM()
@@ -32,6 +32,8 @@ import com.graphhopper.jackson.Jackson;
 import com.graphhopper.json.geo.JsonFeatureCollection;
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.reader.osm.GraphHopperOSM;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.TurnCost;
 import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.util.spatialrules.AbstractSpatialRule;
@@ -204,6 +206,8 @@ public class Measurement {
             final boolean runSlow = args.getBool("measurement.run_slow_routing", true);
             GHBitSet allowedEdges = printGraphDetails(g, vehicleStr);
             printMiscUnitPerfTests(g, encoder, count * 100, allowedEdges);
+            if (encoder.supportsTurnCosts())
+                printTurnCostLookups(g, encoder, count * 100);
             printLocationIndexQuery(g, hopper.getLocationIndex(), count);
 
             if (runSlow) {
@@ -494,6 +498,45 @@ public class Measurement {
         print("unit_tests.get_edge_state", miniPerf);
     }
 
+    /**
+     * Compares the turn cost lookups via the per node lists of turn relations and via the hash index. Every iteration
+     * looks up all turns at a random junction, so the results depend on how many junctions with many turn relations
+     * the graph has, e.g. a city graph.
+     */
+    private void printTurnCostLookups(final GraphHopperStorage graph, final FlagEncoder encoder, int count) {
+        final TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
+        final DecimalEncodedValue turnCostEnc = graph.getEncodingManager().getDecimalEncodedValue(TurnCost.key(encoder.toString()));
+        final IntArrayList junctions = new IntArrayList();
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++) {
+            if (GHUtility.count(explorer.setBaseNode(node)) > 2)
+                junctions.add(node);
+        }
+        if (junctions.isEmpty())
+            return;
+        final boolean hashIndex = turnCostStorage.isHashIndex();
+        final EdgeExplorer inExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.inEdges(encoder));
+        final EdgeExplorer outExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(encoder));
+        for (boolean useHashIndex : new boolean[]{false, true}) {
+            turnCostStorage.setHashIndex(useHashIndex);
+            final Random rand = new Random(seed);
+            MiniPerfTest miniPerf = new MiniPerfTest().setIterations(count).start((warmup, run) -> {
+                int node = junctions.get(rand.nextInt(junctions.size()));
+                double sum = 0;
+                EdgeIterator inIter = inExplorer.setBaseNode(node);
+                while (inIter.next()) {
+                    EdgeIterator outIter = outExplorer.setBaseNode(node);
+                    while (outIter.next()) {
+                        sum += turnCostStorage.get(turnCostEnc, inIter.getEdge(), node, outIter.getEdge());
+                    }
+                }
+                return Double.isInfinite(sum) ? 1 : (int) sum;
+            });
+            print(useHashIndex ? "unit_tests.turn_cost_lookup_hash_index" : "unit_tests.turn_cost_lookup", miniPerf);
+        }
+        turnCostStorage.setHashIndex(hashIndex);
+    }
+
     private void printMiscUnitPerfTestsCH(final CHGraph lg, final FlagEncoder encoder, int count, final GHBitSet allowedEdges) {
         final Random rand = new Random(seed);
         final CHEdgeExplorer chExplorer = lg.createEdgeExplorer();
@@ -18,11 +18,11 @@
 package com.graphhopper.ui;
 
 import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.SPTStore;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
-import com.graphhopper.routing.SPTEntry;
 
 import java.awt.*;
 
@@ -46,9 +46,12 @@ public class DebugDijkstraBidirection extends DijkstraBidirectionRef implements
     }
 
     @Override
-    public void updateBestPath(double edgeWeight, SPTEntry entry, int origEdgeId, int traversalId, boolean reverse) {
-        if (g2 != null) {
-            mg.plotEdge(g2, na.getLat(entry.parent.adjNode), na.getLon(entry.parent.adjNode), na.getLat(entry.adjNode), na.getLon(entry.adjNode), .8f);
+    public void updateBestPath(double edgeWeight, int entry, int origEdgeId, int traversalId, boolean reverse) {
+        SPTStore spt = reverse ? sptTo : sptFrom;
+        if (g2 != null && spt.getParent(entry) != SPTStore.NO_ENTRY) {
+            int parentNode = spt.getAdjNode(spt.getParent(entry));
+            int adjNode = spt.getAdjNode(entry);
+            mg.plotEdge(g2, na.getLat(parentNode), na.getLon(parentNode), na.getLat(adjNode), na.getLon(adjNode), .8f);
         }
         // System.out.println("new node:" + currLoc);
         super.updateBestPath(edgeWeight, entry, origEdgeId, traversalId, reverse);
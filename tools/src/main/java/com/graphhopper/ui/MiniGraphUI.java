@@ -383,7 +383,7 @@ public class MiniGraphUI {
         }
 
         @Override
-        public void updateBestPath(double edgeWeight, SPTEntry entry, int origEdgeId, int traversalId, boolean reverse) {
+        public void updateBestPath(double edgeWeight, int entry, int origEdgeId, int traversalId, boolean reverse) {
             if (g2 != null)
                 mg.plotNode(g2, traversalId, Color.YELLOW, 6);
 
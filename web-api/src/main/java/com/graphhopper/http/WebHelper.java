@@ -20,6 +20,7 @@ package com.graphhopper.http;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GHMatrixResponse;
 import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.util.Helper;
@@ -193,4 +194,66 @@ public class WebHelper {
         return json;
     }
 
+
+    /**
+     * Creates the matrix response in the format expected by the matrix clients. Times are in seconds, distances in
+     * meters and entries for disconnected (or not found) points are null.
+     */
+    public static ObjectNode jsonObject(GHMatrixResponse ghRsp, float took) {
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        if (ghRsp.getWeights() != null) {
+            ArrayNode weights = json.putArray("weights");
+            for (double[] row : ghRsp.getWeights()) {
+                ArrayNode jsonRow = weights.addArray();
+                for (double weight : row) {
+                    if (Double.isInfinite(weight))
+                        jsonRow.addNull();
+                    else
+                        jsonRow.add(Helper.round6(weight));
+                }
+            }
+        }
+        if (ghRsp.getTimes() != null) {
+            ArrayNode times = json.putArray("times");
+            for (long[] row : ghRsp.getTimes()) {
+                ArrayNode jsonRow = times.addArray();
+                for (long time : row) {
+                    if (time == Long.MAX_VALUE)
+                        jsonRow.addNull();
+                    else
+                        jsonRow.add(Math.round(time / 1000.0));
+                }
+            }
+        }
+        if (ghRsp.getDistances() != null) {
+            ArrayNode distances = json.putArray("distances");
+            for (double[] row : ghRsp.getDistances()) {
+                ArrayNode jsonRow = distances.addArray();
+                for (double distance : row) {
+                    if (Double.isInfinite(distance))
+                        jsonRow.addNull();
+                    else
+                        jsonRow.add(Math.round(distance));
+                }
+            }
+        }
+        if (!ghRsp.getDisconnectedPoints().isEmpty() || !ghRsp.getInvalidFromPoints().isEmpty() || !ghRsp.getInvalidToPoints().isEmpty()) {
+            ArrayNode hints = json.putArray("hints");
+            if (!ghRsp.getDisconnectedPoints().isEmpty()) {
+                ObjectNode hint = hints.addObject();
+                hint.put("message", "Connection between locations not found");
+                ArrayNode pairs = hint.putArray("point_pairs");
+                for (int[] pair : ghRsp.getDisconnectedPoints())
+                    pairs.addArray().add(pair[0]).add(pair[1]);
+            }
+            if (!ghRsp.getInvalidFromPoints().isEmpty() || !ghRsp.getInvalidToPoints().isEmpty()) {
+                ObjectNode hint = hints.addObject();
+                hint.put("message", "Cannot find point");
+                hint.putPOJO("invalid_from_points", ghRsp.getInvalidFromPoints());
+                hint.putPOJO("invalid_to_points", ghRsp.getInvalidToPoints());
+            }
+        }
+        jsonResponsePutInfo(json, took);
+        return json;
+    }
 }
@@ -18,6 +18,9 @@
 
 package com.graphhopper.http;
 
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
@@ -29,15 +32,22 @@ import com.graphhopper.gtfs.GtfsStorage;
 import com.graphhopper.gtfs.PtRouter;
 import com.graphhopper.gtfs.PtRouterImpl;
 import com.graphhopper.http.health.GraphHopperHealthCheck;
+import com.graphhopper.http.health.WarmUpHealthCheck;
+import com.graphhopper.http.tasks.LiveTrafficTask;
+import com.graphhopper.http.tasks.ReloadGraphTask;
+import com.graphhopper.http.tasks.StorageMemoryTask;
 import com.graphhopper.isochrone.algorithm.JTSTriangulator;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.jackson.GraphHopperConfigModule;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.resources.*;
 import com.graphhopper.routing.ProfileResolver;
+import com.graphhopper.routing.traffic.LiveTraffic;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.MemoryInventory;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.Parameters;
 import com.graphhopper.util.TranslationMap;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
 import io.dropwizard.ConfiguredBundle;
@@ -45,11 +55,50 @@ import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.process.internal.RequestScoped;
 
 import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
+    /**
+     * Provides the GraphHopper instance for a request. All injections within a request get the same instance and it
+     * is not closed by a reload of the graph before the request is finished.
+     */
+    static class GraphHopperFactory implements Factory<GraphHopper> {
+
+        @Inject
+        GraphHopperManaged graphHopperManaged;
+
+        @Override
+        public GraphHopper provide() {
+            return graphHopperManaged.acquire();
+        }
+
+        @Override
+        public void dispose(GraphHopper instance) {
+            graphHopperManaged.release(instance);
+        }
+    }
+
+    static class GraphHopperGtfsFactory implements Factory<GraphHopperGtfs> {
+
+        @Inject
+        GraphHopper graphHopper;
+
+        @Override
+        public GraphHopperGtfs provide() {
+            return (GraphHopperGtfs) graphHopper;
+        }
+
+        @Override
+        public void dispose(GraphHopperGtfs instance) {
+
+        }
+    }
+
     static class TranslationMapFactory implements Factory<TranslationMap> {
 
         @Inject
@@ -239,8 +288,8 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
-                bind(graphHopper).to(GraphHopper.class);
-                bind(graphHopper).to(GraphHopperAPI.class);
+                bind(graphHopperManaged).to(GraphHopperManaged.class);
+                bindFactory(GraphHopperFactory.class).to(GraphHopper.class).to(GraphHopperAPI.class).in(RequestScoped.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
                 bindFactory(PathDetailsBuilderFactoryFactory.class).to(PathDetailsBuilderFactory.class);
@@ -257,6 +306,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(MVTResource.class);
         environment.jersey().register(NearestResource.class);
         environment.jersey().register(RouteResource.class);
+        environment.jersey().register(MatrixResource.class);
         environment.jersey().register(CustomWeightingRouteResource.class);
         environment.jersey().register(IsochroneResource.class);
         if (configuration.getGraphHopperConfiguration().has("gtfs.file")) {
@@ -266,6 +316,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             environment.jersey().register(new AbstractBinder() {
                 @Override
                 protected void configure() {
+                    bindFactory(GraphHopperGtfsFactory.class).to(GraphHopperGtfs.class);
                     bind(PtRouterImpl.class).to(PtRouter.class);
                 }
             });
@@ -273,11 +324,78 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             environment.jersey().register(PtIsochroneResource.class);
             environment.jersey().register(PtRedirectFilter.class);
         }
+        if (configuration.getGraphHopperConfiguration().getBool(Parameters.Traffic.ENABLED, false)) {
+            // changing the speeds affects all users, so this must not be exposed on the application port
+            environment.admin().addTask(new LiveTrafficTask(graphHopperManaged));
+            registerLiveTrafficMetrics(environment.metrics(), graphHopperManaged);
+        }
         environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
-        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
+        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopperManaged::getGraphHopper));
+        environment.healthChecks().register("graphhopper_warm_up", new WarmUpHealthCheck(graphHopperManaged));
+        environment.admin().addTask(new ReloadGraphTask(graphHopperManaged));
+        environment.admin().addTask(new StorageMemoryTask(graphHopperManaged));
+        registerStorageMetrics(environment.metrics(), graphHopperManaged);
         environment.jersey().register(environment.healthChecks());
         environment.jersey().register(HealthcheckResource.class);
     }
+
+    private static void registerStorageMetrics(MetricRegistry metrics, GraphHopperManaged graphHopperManaged) {
+        // like for the live traffic the storage is replaced when the graph is reloaded. Creating the inventory walks
+        // all DataAccess objects and checks the residency of every memory mapped segment, so all gauges of one report
+        // share the same inventory
+        CachedGauge<MemoryInventory> inventory = new CachedGauge<MemoryInventory>(1, TimeUnit.SECONDS) {
+            @Override
+            protected MemoryInventory loadValue() {
+                // a reload must not close the graph while we walk its storage
+                GraphHopper hopper = graphHopperManaged.acquire();
+                try {
+                    return hopper.getMemoryInventory();
+                } finally {
+                    graphHopperManaged.release(hopper);
+                }
+            }
+        };
+        for (MemoryInventory.Kind kind : MemoryInventory.Kind.values()) {
+            String prefix = "storage." + kind.name().toLowerCase();
+            metrics.register(prefix + "_bytes", (Gauge<Long>) () -> inventory.getValue().getCapacity(kind));
+            metrics.register(prefix + "_resident_bytes", (Gauge<Long>) () -> inventory.getValue().getResidentBytes(kind));
+        }
+        // the graph is loaded when the managed object is started, i.e. before the metrics are reported
+        metrics.register("storage.string_index.cache_hits", (Gauge<Long>) () ->
+                getFromStorage(graphHopperManaged, storage -> storage.getStringIndex().getCacheHits()));
+        metrics.register("storage.string_index.cache_misses", (Gauge<Long>) () ->
+                getFromStorage(graphHopperManaged, storage -> storage.getStringIndex().getCacheMisses()));
+    }
+
+    private static <T> T getFromStorage(GraphHopperManaged graphHopperManaged, Function<GraphHopperStorage, T> getter) {
+        GraphHopper hopper = graphHopperManaged.acquire();
+        try {
+            return getter.apply(hopper.getGraphHopperStorage());
+        } finally {
+            graphHopperManaged.release(hopper);
+        }
+    }
+
+    private static void registerLiveTrafficMetrics(MetricRegistry metrics, GraphHopperManaged graphHopperManaged) {
+        // the live traffic is only created when the graph is loaded, i.e. after the bundle was started, and it is
+        // replaced when the graph is reloaded
+        metrics.register("live_traffic.edges", (Gauge<Integer>) () -> {
+            LiveTraffic liveTraffic = graphHopperManaged.getGraphHopper().getLiveTraffic();
+            return liveTraffic == null ? 0 : liveTraffic.getOverlay().size();
+        });
+        metrics.register("live_traffic.updates", (Gauge<Long>) () -> {
+            LiveTraffic liveTraffic = graphHopperManaged.getGraphHopper().getLiveTraffic();
+            return liveTraffic == null ? 0 : liveTraffic.getUpdateCount();
+        });
+        metrics.register("live_traffic.last_apply_ms", (Gauge<Double>) () -> {
+            LiveTraffic liveTraffic = graphHopperManaged.getGraphHopper().getLiveTraffic();
+            return liveTraffic == null ? 0 : liveTraffic.getLastApplyNanos() / 1e6;
+        });
+        metrics.register("live_traffic.max_apply_ms", (Gauge<Double>) () -> {
+            LiveTraffic liveTraffic = graphHopperManaged.getGraphHopper().getLiveTraffic();
+            return liveTraffic == null ? 0 : liveTraffic.getMaxApplyNanos() / 1e6;
+        });
+    }
 }
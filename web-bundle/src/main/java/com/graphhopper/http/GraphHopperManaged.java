@@ -33,7 +33,9 @@ import com.graphhopper.routing.util.CustomModel;
 import com.graphhopper.routing.util.spatialrules.SpatialRuleLookupHelper;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
+import com.graphhopper.util.Helper;
 import com.graphhopper.util.Parameters;
+import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.shapes.BBox;
 import io.dropwizard.lifecycle.Managed;
 import org.locationtech.jts.geom.Envelope;
@@ -48,13 +50,23 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.graphhopper.util.Helper.UTF_CS;
 
 public class GraphHopperManaged implements Managed {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final GraphHopper graphHopper;
+    private final GraphHopperConfig configuration;
+    private final JsonFeatureCollection landmarkSplittingFeatureCollection;
+    private final Envelope spatialRuleMaxBounds;
+    private final List<JsonFeatureCollection> spatialRuleFeatureCollections;
+    private volatile LoadedGraph current;
+    // the instance that was replaced by a reload but is still used by some requests
+    private LoadedGraph replaced;
+    private Thread reloadThread;
+    private volatile String reloadStatus = "no reload was started";
+    private volatile GraphHopperWarmUp warmUp;
 
     public GraphHopperManaged(GraphHopperConfig configuration, ObjectMapper objectMapper) {
         ObjectMapper localObjectMapper = objectMapper.copy();
@@ -67,30 +79,28 @@ public class GraphHopperManaged implements Managed {
             logger.error("Problem while reading border map GeoJSON. Skipping this.", e1);
             landmarkSplittingFeatureCollection = null;
         }
-        if (configuration.has("gtfs.file")) {
-            graphHopper = new GraphHopperGtfs(configuration);
-        } else {
-            graphHopper = new GraphHopperOSM(landmarkSplittingFeatureCollection).forServer();
-        }
+        this.landmarkSplittingFeatureCollection = landmarkSplittingFeatureCollection;
         if (!configuration.getString("spatial_rules.location", "").isEmpty()) {
             throw new RuntimeException("spatial_rules.location has been deprecated. Please use spatial_rules.borders_directory instead.");
         }
         String spatialRuleBordersDirLocation = configuration.getString("spatial_rules.borders_directory", "");
         if (!spatialRuleBordersDirLocation.isEmpty()) {
-            final Envelope maxBounds = BBox.toEnvelope(BBox.parseBBoxString(configuration.getString("spatial_rules.max_bbox", "-180, 180, -90, 90")));
+            spatialRuleMaxBounds = BBox.toEnvelope(BBox.parseBBoxString(configuration.getString("spatial_rules.max_bbox", "-180, 180, -90, 90")));
             final Path bordersDirectory = Paths.get(spatialRuleBordersDirLocation);
-            List<JsonFeatureCollection> jsonFeatureCollections = new ArrayList<>();
+            spatialRuleFeatureCollections = new ArrayList<>();
             try (DirectoryStream<Path> stream = Files.newDirectoryStream(bordersDirectory, "*.{geojson,json}")) {
                 for (Path borderFile : stream) {
                     try (BufferedReader reader = Files.newBufferedReader(borderFile, StandardCharsets.UTF_8)) {
                         JsonFeatureCollection jsonFeatureCollection = localObjectMapper.readValue(reader, JsonFeatureCollection.class);
-                        jsonFeatureCollections.add(jsonFeatureCollection);
+                        spatialRuleFeatureCollections.add(jsonFeatureCollection);
                     }
                 }
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-            SpatialRuleLookupHelper.buildAndInjectCountrySpatialRules(graphHopper, maxBounds, jsonFeatureCollections);
+        } else {
+            spatialRuleMaxBounds = null;
+            spatialRuleFeatureCollections = null;
         }
 
         ObjectMapper yamlOM = Jackson.initObjectMapper(new ObjectMapper(new YAMLFactory()));
@@ -116,26 +126,195 @@ public class GraphHopperManaged implements Managed {
         }
         configuration.setProfiles(newProfiles);
 
+        this.configuration = configuration;
+        current = new LoadedGraph(createGraphHopper(configuration));
+    }
+
+    private GraphHopper createGraphHopper(GraphHopperConfig configuration) {
+        GraphHopper graphHopper;
+        if (configuration.has("gtfs.file")) {
+            graphHopper = new GraphHopperGtfs(configuration);
+        } else {
+            graphHopper = new GraphHopperOSM(landmarkSplittingFeatureCollection).forServer();
+        }
+        if (spatialRuleFeatureCollections != null)
+            SpatialRuleLookupHelper.buildAndInjectCountrySpatialRules(graphHopper, spatialRuleMaxBounds, spatialRuleFeatureCollections);
+
         graphHopper.init(configuration);
+        return graphHopper;
     }
 
     @Override
     public void start() {
+        GraphHopper graphHopper = current.graphHopper;
         graphHopper.importOrLoad();
         logger.info("loaded graph at:{}, data_reader_file:{}, encoded values:{}, {}",
                 graphHopper.getGraphHopperLocation(), graphHopper.getDataReaderFile(),
                 graphHopper.getEncodingManager().toEncodedValuesAsString(),
                 graphHopper.getGraphHopperStorage().toDetailsString());
+
+        GraphHopperWarmUp warmUp = GraphHopperWarmUp.create(graphHopper, configuration);
+        if (warmUp.isEnabled()) {
+            // the server is already started during the warm-up, but the health check fails until it is finished
+            this.warmUp = warmUp;
+            Thread warmUpThread = new Thread(() -> {
+                GraphHopper hopper = acquire();
+                try {
+                    warmUp.run();
+                } catch (Exception ex) {
+                    logger.error("warm-up failed", ex);
+                } finally {
+                    release(hopper);
+                }
+            }, "graph-warm-up");
+            warmUpThread.setDaemon(true);
+            warmUpThread.start();
+        }
+    }
+
+    /**
+     * @return the warm-up that is run after the graph was loaded on start or null if no warm-up is configured
+     */
+    public GraphHopperWarmUp getWarmUp() {
+        return warmUp;
     }
 
+    /**
+     * @return the GraphHopper instance that is currently used to answer requests. Use {@link #acquire()} instead if
+     * the instance is used while a {@link #reload} could happen.
+     */
     public GraphHopper getGraphHopper() {
-        return graphHopper;
+        return current.graphHopper;
+    }
+
+    /**
+     * Returns the current GraphHopper instance and counts it as in use until {@link #release} is called. A reload
+     * does not close the replaced instance before all its users released it.
+     */
+    public GraphHopper acquire() {
+        while (true) {
+            LoadedGraph loaded = current;
+            loaded.users.incrementAndGet();
+            // if the instance was replaced in the meantime the reload might already wait for its users to finish
+            if (loaded == current)
+                return loaded.graphHopper;
+            loaded.users.decrementAndGet();
+        }
+    }
+
+    public void release(GraphHopper graphHopper) {
+        LoadedGraph loaded = current;
+        if (loaded.graphHopper == graphHopper) {
+            loaded.users.decrementAndGet();
+            return;
+        }
+        synchronized (this) {
+            if (replaced != null && replaced.graphHopper == graphHopper) {
+                replaced.users.decrementAndGet();
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown GraphHopper instance " + graphHopper);
+    }
+
+    /**
+     * Loads the graph from the specified folder in the background, warms it up and then replaces the current
+     * GraphHopper instance. The replaced instance is closed as soon as all requests that use it are finished. Note
+     * that both graphs are in memory during the reload. The graph has to be imported and prepared already, e.g. via
+     * the import command. The progress can be followed via {@link #getReloadStatus()}.
+     *
+     * @param graphLocation the folder of the new graph, if empty the graph is reloaded from graph.location
+     * @return false if another reload is still running
+     */
+    public synchronized boolean reload(String graphLocation) {
+        if (reloadThread != null && reloadThread.isAlive())
+            return false;
+        GraphHopperConfig reloadConfig = new GraphHopperConfig(configuration);
+        if (!Helper.isEmpty(graphLocation))
+            reloadConfig.putObject("graph.location", graphLocation);
+        String location = reloadConfig.getString("graph.location", "");
+        reloadStatus = "loading graph from " + location;
+        reloadThread = new Thread(() -> {
+            try {
+                doReload(reloadConfig, location);
+            } catch (Exception ex) {
+                logger.error("reload of graph from " + location + " failed", ex);
+                reloadStatus = "reload of graph from " + location + " failed: " + ex.getMessage();
+            }
+        }, "graph-reload");
+        reloadThread.setDaemon(true);
+        reloadThread.start();
+        return true;
+    }
+
+    private void doReload(GraphHopperConfig reloadConfig, String location) throws InterruptedException {
+        StopWatch sw = new StopWatch().start();
+        logger.info("reloading graph from " + location);
+        GraphHopper graphHopper = createGraphHopper(reloadConfig);
+        try {
+            if (!graphHopper.load(location))
+                throw new IllegalStateException("No graph found at " + location + ", the graph has to be imported before it can be reloaded");
+
+            reloadStatus = "warming up graph from " + location;
+            GraphHopperWarmUp.create(graphHopper, reloadConfig).
+                    setRequestsPerProfile(reloadConfig.getInt("reload.warm_up_requests", 100)).
+                    run();
+        } catch (RuntimeException | Error ex) {
+            // the new graph is not used by any request yet, so we can close it right away and keep the current one
+            try {
+                graphHopper.close();
+            } catch (RuntimeException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw ex;
+        }
+
+        LoadedGraph old;
+        synchronized (this) {
+            old = current;
+            replaced = old;
+            current = new LoadedGraph(graphHopper);
+        }
+        logger.info("switched to graph from " + location + ", " + graphHopper.getGraphHopperStorage().toDetailsString());
+        while (old.users.get() > 0) {
+            reloadStatus = "switched to graph from " + location + ", waiting for " + old.users.get() + " requests to finish";
+            Thread.sleep(20);
+        }
+        old.graphHopper.close();
+        synchronized (this) {
+            replaced = null;
+        }
+        sw.stop();
+        reloadStatus = "reloaded graph from " + location + " in " + sw.getSeconds() + "s";
+        logger.info(reloadStatus);
+    }
+
+    /**
+     * @return a description of the progress of the last reload
+     */
+    public String getReloadStatus() {
+        return reloadStatus;
     }
 
     @Override
-    public void stop() {
-        graphHopper.close();
+    public void stop() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = reloadThread;
+        }
+        // a running reload cannot be interrupted, so wait for it to close the graphs properly
+        if (thread != null)
+            thread.join();
+        current.graphHopper.close();
     }
 
+    private static class LoadedGraph {
+        final GraphHopper graphHopper;
+        // the number of requests that currently use this instance
+        final AtomicInteger users = new AtomicInteger();
 
+        LoadedGraph(GraphHopper graphHopper) {
+            this.graphHopper = graphHopper;
+        }
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
+import com.graphhopper.storage.CompressedDataAccess;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.MMapDataAccess;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Warms up a loaded GraphHopper instance before it should receive requests. First the selected DataAccess files are
+ * read sequentially, which fills the page cache for memory mapped files (and decompresses compressed ones), so that
+ * the first requests do not suffer from random page faults. Then a batch of route requests is replayed a few times
+ * so that the JIT compiles the routing code. The latency of these requests is measured to show the effect.
+ */
+public class GraphHopperWarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(GraphHopperWarmUp.class);
+    private final GraphHopper graphHopper;
+    private List<String> preload = Collections.emptyList();
+    private int requestsPerProfile;
+    private String requestsFile = "";
+    private int iterations = 3;
+    private volatile String status = "warm-up not started";
+    private volatile boolean finished;
+    private volatile boolean failed;
+
+    public GraphHopperWarmUp(GraphHopper graphHopper) {
+        this.graphHopper = graphHopper;
+    }
+
+    /**
+     * Creates a warm-up from the warm_up.* settings of the specified configuration.
+     */
+    public static GraphHopperWarmUp create(GraphHopper graphHopper, GraphHopperConfig config) {
+        return new GraphHopperWarmUp(graphHopper).
+                setPreload(config.getString("warm_up.preload", "")).
+                setRequestsPerProfile(config.getInt("warm_up.requests_per_profile", 0)).
+                setRequestsFile(config.getString("warm_up.requests_file", "")).
+                setIterations(config.getInt("warm_up.iterations", 3));
+    }
+
+    /**
+     * @param preload comma separated names or name prefixes of the DataAccess objects that should be read, e.g.
+     *                "location_index,shortcuts_,landmarks_" or "*" for all of them
+     */
+    public GraphHopperWarmUp setPreload(String preload) {
+        this.preload = new ArrayList<>();
+        for (String name : preload.split(",")) {
+            if (!name.trim().isEmpty())
+                this.preload.add(name.trim());
+        }
+        return this;
+    }
+
+    /**
+     * @param requestsPerProfile the number of route requests between random nodes for every profile
+     */
+    public GraphHopperWarmUp setRequestsPerProfile(int requestsPerProfile) {
+        this.requestsPerProfile = requestsPerProfile;
+        return this;
+    }
+
+    /**
+     * @param requestsFile a file with recorded route requests, one per line in the format
+     *                     <code>profile,from_lat,from_lon,to_lat,to_lon</code>. Empty lines and lines starting with
+     *                     # are ignored.
+     */
+    public GraphHopperWarmUp setRequestsFile(String requestsFile) {
+        this.requestsFile = requestsFile;
+        return this;
+    }
+
+    /**
+     * @param iterations how often the route requests are replayed
+     */
+    public GraphHopperWarmUp setIterations(int iterations) {
+        if (iterations < 1)
+            throw new IllegalArgumentException("warm_up.iterations must be at least 1 but was " + iterations);
+        this.iterations = iterations;
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return !preload.isEmpty() || requestsPerProfile > 0 || !Helper.isEmpty(requestsFile);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return true if the warm-up was stopped by an exception. In this case the status contains the error message.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return a description of the progress of this warm-up
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    public void run() {
+        StopWatch sw = new StopWatch().start();
+        try {
+            preload();
+            List<GHRequest> requests = createRequests();
+            double[] p99 = replay(requests);
+            sw.stop();
+            if (p99.length == 0)
+                status = "warm-up finished in " + sw.getSeconds() + "s";
+            else
+                status = "warm-up finished in " + sw.getSeconds() + "s, p99 of " + requests.size()
+                        + " route requests went from " + Helper.round2(p99[0]) + "ms in the first to "
+                        + Helper.round2(p99[p99.length - 1]) + "ms in the last of " + p99.length + " iterations";
+            logger.info(status);
+        } catch (RuntimeException ex) {
+            status = "warm-up failed: " + ex.getMessage();
+            failed = true;
+            throw ex;
+        } finally {
+            finished = true;
+        }
+    }
+
+    private void preload() {
+        if (preload.isEmpty())
+            return;
+        List<DataAccess> selected = new ArrayList<>();
+        long totalBytes = 0;
+        for (DataAccess da : graphHopper.getGraphHopperStorage().getDirectory().getAll()) {
+            if (isSelected(da.getName())) {
+                selected.add(da);
+                totalBytes += da.getCapacity();
+            }
+        }
+        selected.sort((da1, da2) -> da1.getName().compareTo(da2.getName()));
+
+        long bytes = 0;
+        for (int i = 0; i < selected.size(); i++) {
+            DataAccess da = selected.get(i);
+            status = "preloading " + da.getName() + " (" + (i + 1) + "/" + selected.size() + "), "
+                    + bytes / Helper.MB + " of " + totalBytes / Helper.MB + "MB done";
+            logger.info(status);
+            if (da instanceof MMapDataAccess)
+                ((MMapDataAccess) da).load(100);
+            else if (da instanceof CompressedDataAccess)
+                ((CompressedDataAccess) da).readAllSegments();
+            bytes += da.getCapacity();
+        }
+    }
+
+    private boolean isSelected(String name) {
+        for (String prefix : preload) {
+            if (prefix.equals("*") || name.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    private List<GHRequest> createRequests() {
+        List<GHRequest> requests = new ArrayList<>();
+        if (!Helper.isEmpty(requestsFile)) {
+            try {
+                for (String line : Files.readAllLines(Paths.get(requestsFile), Helper.UTF_CS)) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#"))
+                        continue;
+                    List<String> values = Arrays.asList(line.split(","));
+                    if (values.size() != 5)
+                        throw new IllegalArgumentException("Invalid line in " + requestsFile + ", expected "
+                                + "profile,from_lat,from_lon,to_lat,to_lon but was: " + line);
+                    requests.add(new GHRequest(Double.parseDouble(values.get(1).trim()), Double.parseDouble(values.get(2).trim()),
+                            Double.parseDouble(values.get(3).trim()), Double.parseDouble(values.get(4).trim())).
+                            setProfile(values.get(0).trim()));
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException("Cannot read warm-up requests from " + requestsFile, ex);
+            }
+        }
+
+        GraphHopperStorage graph = graphHopper.getGraphHopperStorage();
+        if (requestsPerProfile > 0 && graph.getNodes() > 0) {
+            NodeAccess na = graph.getNodeAccess();
+            Random random = new Random(0);
+            for (Profile profile : graphHopper.getProfiles()) {
+                for (int i = 0; i < requestsPerProfile; i++) {
+                    int from = random.nextInt(graph.getNodes());
+                    int to = random.nextInt(graph.getNodes());
+                    requests.add(new GHRequest(na.getLat(from), na.getLon(from), na.getLat(to), na.getLon(to)).
+                            setProfile(profile.getName()));
+                }
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * @return the 99th percentile of the request latencies in ms for every iteration
+     */
+    private double[] replay(List<GHRequest> requests) {
+        if (requests.isEmpty())
+            return new double[0];
+        double[] p99 = new double[iterations];
+        long[] nanos = new long[requests.size()];
+        for (int it = 0; it < iterations; it++) {
+            status = "replaying " + requests.size() + " route requests, iteration " + (it + 1) + "/" + iterations;
+            logger.info(status);
+            for (int i = 0; i < requests.size(); i++) {
+                long start = System.nanoTime();
+                // we are only interested in the side effects, unroutable requests are fine as well
+                graphHopper.route(requests.get(i));
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            p99[it] = nanos[(int) Math.ceil(0.99 * nanos.length) - 1] / 1e6;
+            logger.info("p99 of iteration " + (it + 1) + ": " + Helper.round2(p99[it]) + "ms");
+        }
+        return p99;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.graphhopper.http.GraphHopperManaged;
+import com.graphhopper.http.GraphHopperWarmUp;
+
+/**
+ * Fails until the warm-up after the start of the server is finished and stays unhealthy if the warm-up failed, see
+ * {@link GraphHopperWarmUp}.
+ */
+public class WarmUpHealthCheck extends HealthCheck {
+
+    private final GraphHopperManaged graphHopperManaged;
+
+    public WarmUpHealthCheck(GraphHopperManaged graphHopperManaged) {
+        this.graphHopperManaged = graphHopperManaged;
+    }
+
+    @Override
+    protected Result check() {
+        GraphHopperWarmUp warmUp = graphHopperManaged.getWarmUp();
+        if (warmUp == null)
+            return Result.healthy("no warm-up configured");
+        if (!warmUp.isFinished())
+            return Result.unhealthy("GraphHopper is warming up: " + warmUp.getStatus());
+        if (warmUp.isFailed())
+            return Result.unhealthy(warmUp.getStatus());
+        return Result.healthy(warmUp.getStatus());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http.tasks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.http.GraphHopperManaged;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.routing.traffic.LiveTraffic;
+import com.graphhopper.routing.traffic.SpeedOverlay;
+import io.dropwizard.servlets.tasks.PostBodyTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin task to set the live speeds of edges at runtime, see {@link LiveTraffic}. Updates are applied without blocking
+ * the running requests. The task is only registered if routing.live_traffic.enabled is true and, like all tasks, it is
+ * only reachable via the admin port:
+ * <ul>
+ * <li><code>POST /tasks/live-traffic</code> with a body like <code>{"edges": [1, 2], "speeds": [20, 0]}</code> sets the
+ * speeds in km/h of the edges, where 0 closes the edge. With <code>"replace": true</code> all previous speeds are removed.</li>
+ * <li><code>POST /tasks/live-traffic?clear</code> removes all speeds</li>
+ * <li><code>POST /tasks/live-traffic</code> without a body prints the current state</li>
+ * </ul>
+ * The output is a JSON object with the version, the number of edges and the timings of the updates.
+ */
+public class LiveTrafficTask extends PostBodyTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveTrafficTask.class);
+
+    private final GraphHopperManaged graphHopperManaged;
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    public LiveTrafficTask(GraphHopperManaged graphHopperManaged) {
+        super("live-traffic");
+        this.graphHopperManaged = graphHopperManaged;
+    }
+
+    public static class SpeedUpdate {
+        /**
+         * the edge ids, e.g. from the edge_id path details
+         */
+        public int[] edges = new int[0];
+        /**
+         * the speeds in km/h for the edges at the same index
+         */
+        public double[] speeds = new double[0];
+        /**
+         * if true the speeds of all previous updates are removed
+         */
+        public boolean replace;
+    }
+
+    public static class Info {
+        public long version;
+        public int edges;
+        public long updates;
+        public long last_update_time;
+        public int last_update_edges;
+        public double last_apply_ms;
+        public double max_apply_ms;
+        public double mean_apply_ms;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, String body, PrintWriter output) throws IOException {
+        LiveTraffic liveTraffic = graphHopperManaged.getGraphHopper().getLiveTraffic();
+        if (liveTraffic == null)
+            throw new IllegalArgumentException("Live traffic is not enabled");
+
+        if (parameters.containsKey("clear")) {
+            liveTraffic.clear();
+            logger.info("removed all speeds");
+        } else if (body != null && !body.trim().isEmpty()) {
+            SpeedUpdate update = objectMapper.readValue(body, SpeedUpdate.class);
+            if (update.edges == null || update.speeds == null)
+                throw new IllegalArgumentException("edges and speeds are required");
+            SpeedOverlay overlay = liveTraffic.update(update.edges, update.speeds, update.replace);
+            logger.info("updated " + update.edges.length + " speeds, replace: " + update.replace + ", " + overlay
+                    + ", took: " + liveTraffic.getLastApplyNanos() / 1_000_000f + "ms");
+        }
+        output.println(objectMapper.writeValueAsString(createInfo(liveTraffic)));
+    }
+
+    private static Info createInfo(LiveTraffic liveTraffic) {
+        SpeedOverlay overlay = liveTraffic.getOverlay();
+        Info info = new Info();
+        info.version = overlay.getVersion();
+        info.edges = overlay.size();
+        info.updates = liveTraffic.getUpdateCount();
+        info.last_update_time = liveTraffic.getLastUpdateTime();
+        info.last_update_edges = liveTraffic.getLastUpdateSize();
+        info.last_apply_ms = liveTraffic.getLastApplyNanos() / 1e6;
+        info.max_apply_ms = liveTraffic.getMaxApplyNanos() / 1e6;
+        info.mean_apply_ms = info.updates == 0 ? 0 : liveTraffic.getTotalApplyNanos() / 1e6 / info.updates;
+        return info;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http.tasks;
+
+import com.graphhopper.http.GraphHopperManaged;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin task to replace the graph without a restart, see {@link GraphHopperManaged#reload}. Start a reload with
+ * <code>POST /tasks/reload-graph?graph.location=/path/to/new-graph-gh</code> (without graph.location the graph is
+ * reloaded from its configured location) and follow its progress with <code>POST /tasks/reload-graph?status</code>.
+ */
+public class ReloadGraphTask extends Task {
+    private final GraphHopperManaged graphHopperManaged;
+
+    public ReloadGraphTask(GraphHopperManaged graphHopperManaged) {
+        super("reload-graph");
+        this.graphHopperManaged = graphHopperManaged;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        if (parameters.containsKey("status")) {
+            output.println(graphHopperManaged.getReloadStatus());
+            return;
+        }
+        List<String> locations = parameters.get("graph.location");
+        String location = locations == null || locations.isEmpty() ? "" : locations.get(0);
+        if (graphHopperManaged.reload(location))
+            output.println("started reload: " + graphHopperManaged.getReloadStatus());
+        else
+            output.println("another reload is still running: " + graphHopperManaged.getReloadStatus());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http.tasks;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.http.GraphHopperManaged;
+import com.graphhopper.storage.MemoryInventory;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin task that lists the memory used by every file of the graph: <code>POST /tasks/storage-memory</code> prints the
+ * capacity, used bytes, segments and resident bytes of each file, followed by the totals for the heap, off-heap and
+ * memory mapped files. For memory mapped files the resident bytes estimate how much is in the page cache.
+ */
+public class StorageMemoryTask extends Task {
+    private final GraphHopperManaged graphHopperManaged;
+
+    public StorageMemoryTask(GraphHopperManaged graphHopperManaged) {
+        super("storage-memory");
+        this.graphHopperManaged = graphHopperManaged;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        GraphHopper hopper = graphHopperManaged.acquire();
+        try {
+            MemoryInventory inventory = hopper.getMemoryInventory();
+            output.print(inventory);
+        } finally {
+            graphHopperManaged.release(hopper);
+        }
+    }
+}
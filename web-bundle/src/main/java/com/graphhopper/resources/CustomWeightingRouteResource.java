@@ -46,7 +46,8 @@ import static com.graphhopper.util.Parameters.Routing.*;
 
 /**
  * Routing resource to use GraphHopper in a remote client application like mobile or browser. This endpoint allows
- * specifying a custom model on a per-request basis (and thus only works for hybrid and flex mode).
+ * specifying a custom model on a per-request basis (and thus only works for hybrid and flex mode or with customizable
+ * contraction hierarchies, see prepare.cch.enabled).
  * <p>
  * Note: This endpoint returns the points in GeoJson array format [longitude,latitude] unlike the format "lat,lon"
  * used for the request. See the full API response format in docs/web/api-doc.md
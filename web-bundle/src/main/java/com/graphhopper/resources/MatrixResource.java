@@ -0,0 +1,136 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.MultiException;
+import com.graphhopper.http.GHPointParam;
+import com.graphhopper.http.WebHelper;
+import com.graphhopper.routing.ProfileResolver;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import io.dropwizard.jersey.params.AbstractParam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.Collections;
+import java.util.List;
+
+import static com.graphhopper.resources.RouteResource.errorIfLegacyParameters;
+import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
+import static com.graphhopper.util.Parameters.Routing.SNAP_PREVENTION;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Resource to calculate many-to-many matrices of weights, distances and times. The request and response format is the
+ * one used by the matrix clients, e.g. GHMatrixSyncRequester. This only works for profiles with a CH preparation.
+ */
+@Path("matrix")
+public class MatrixResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixResource.class);
+
+    private final GraphHopper graphHopper;
+    private final ProfileResolver profileResolver;
+
+    @Inject
+    public MatrixResource(GraphHopper graphHopper, ProfileResolver profileResolver) {
+        this.graphHopper = graphHopper;
+        this.profileResolver = profileResolver;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doGet(
+            @Context HttpServletRequest httpReq,
+            @Context UriInfo uriInfo,
+            @QueryParam("point") List<GHPointParam> pointParams,
+            @QueryParam("from_point") List<GHPointParam> fromPointParams,
+            @QueryParam("to_point") List<GHPointParam> toPointParams,
+            @QueryParam("out_array") List<String> outArrays,
+            @QueryParam("profile") String profileName,
+            @QueryParam(SNAP_PREVENTION) List<String> snapPreventions,
+            @QueryParam("fail_fast") @DefaultValue("true") boolean failFast) {
+        GHMatrixRequest request = new GHMatrixRequest();
+        RouteResource.initHints(request.getHints(), uriInfo.getQueryParameters());
+        if (!pointParams.isEmpty()) {
+            if (!fromPointParams.isEmpty() || !toPointParams.isEmpty())
+                throw new IllegalArgumentException("Either use the point parameter or the from_point and to_point parameters, but not both");
+            request.setPoints(toPoints(pointParams));
+        } else {
+            request.setFromPoints(toPoints(fromPointParams)).setToPoints(toPoints(toPointParams));
+        }
+        request.setProfile(profileName == null ? "" : profileName).
+                setOutArrays(outArrays).
+                setSnapPreventions(snapPreventions).
+                setFailFast(failFast);
+        return doMatrix(request, httpReq);
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doPost(@NotNull GHMatrixRequest request, @Context HttpServletRequest httpReq) {
+        return doMatrix(request, httpReq);
+    }
+
+    private Response doMatrix(GHMatrixRequest request, HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        // the matrix clients always send the vehicle parameter, even when it is empty
+        if (request.getHints().has("vehicle") && Helper.isEmpty(request.getHints().getString("vehicle", "")))
+            request.getHints().remove("vehicle");
+        if (Helper.isEmpty(request.getProfile())) {
+            request.setProfile(profileResolver.resolveProfile(request.getHints()).getName());
+            removeLegacyParameters(request.getHints());
+        }
+        errorIfLegacyParameters(request.getHints());
+        if (request.getOutArrays().isEmpty())
+            request.setOutArrays(Collections.singletonList("weights"));
+
+        GHMatrixResponse ghResponse = graphHopper.matrix(request);
+        long took = sw.stop().getNanos() / 1_000_000;
+        String logStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " " + request.getFromPoints().size() + "x" + request.getToPoints().size()
+                + ", took: " + String.format("%.1f", (double) took) + "ms, profile: " + request.getProfile();
+        if (ghResponse.hasErrors()) {
+            logger.error(logStr + ", errors:" + ghResponse.getErrors());
+            throw new MultiException(ghResponse.getErrors());
+        }
+        logger.info(logStr + ", visited_nodes: " + ghResponse.getHints().getInt("visited_nodes.sum", 0)
+                + ", debugInfo: " + ghResponse.getDebugInfo());
+        return Response.ok(WebHelper.jsonObject(ghResponse, took)).
+                header("X-GH-Took", "" + Math.round(took)).
+                type(MediaType.APPLICATION_JSON).
+                build();
+    }
+
+    private static List<GHPoint> toPoints(List<GHPointParam> params) {
+        return params.stream().map(AbstractParam::get).collect(toList());
+    }
+}
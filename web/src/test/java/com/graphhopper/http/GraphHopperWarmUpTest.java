@@ -0,0 +1,106 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.graphhopper.http.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class GraphHopperWarmUpTest {
+    private static final String DIR = "./target/andorra-warm-up-gh/";
+    private static final String REQUESTS_FILE = "./target/andorra-warm-up-requests.csv";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        try {
+            Files.write(new File(REQUESTS_FILE).toPath(), Arrays.asList(
+                    "# profile,from_lat,from_lon,to_lat,to_lon",
+                    "my_car,42.554851,1.536198,42.510071,1.548128",
+                    "my_car,42.510071,1.548128,42.554851,1.536198"));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("prepare.min_network_size", 0).
+                putObject("graph.dataaccess", "MMAP").
+                putObject("warm_up.preload", "location_index,edges,nodes").
+                putObject("warm_up.requests_per_profile", 20).
+                putObject("warm_up.requests_file", REQUESTS_FILE).
+                putObject("warm_up.iterations", 2).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR)
+                .setProfiles(Collections.singletonList(new Profile("my_car").setVehicle("car").setWeighting("fastest")));
+        return config;
+    }
+
+    // the graph is imported before @BeforeAll, so only clean up at the end
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+        new File(REQUESTS_FILE).delete();
+    }
+
+    @Test
+    public void testHealthCheckWaitsForWarmUp() throws InterruptedException {
+        int status = 0;
+        for (int i = 0; i < 600 && status != 200; i++) {
+            status = clientTarget(app, "/health").request().get().getStatus();
+            if (status != 200) {
+                assertEquals(500, status);
+                Thread.sleep(100);
+            }
+        }
+        assertEquals(200, status);
+
+        JsonNode warmUp = app.client().target("http://localhost:" + app.getAdminPort() + "/healthcheck").request().
+                get().readEntity(JsonNode.class).get("graphhopper_warm_up");
+        assertTrue(warmUp.get("healthy").asBoolean());
+        String message = warmUp.get("message").asText();
+        assertTrue(message.startsWith("warm-up finished"), message);
+        assertTrue(message.contains("p99 of 22 route requests"), message);
+    }
+
+    @Test
+    public void testFailedWarmUp() {
+        GraphHopperWarmUp warmUp = new GraphHopperWarmUp(new GraphHopper()).
+                setRequestsFile("./target/does-not-exist-warm-up-requests.csv");
+        assertThrows(RuntimeException.class, warmUp::run);
+        assertTrue(warmUp.isFinished());
+        assertTrue(warmUp.isFailed());
+        assertTrue(warmUp.getStatus().startsWith("warm-up failed"), warmUp.getStatus());
+    }
+}
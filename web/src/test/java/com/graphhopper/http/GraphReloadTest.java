@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.config.Profile;
+import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static com.graphhopper.http.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class GraphReloadTest {
+    private static final String DIR = "./target/andorra-reload-gh/";
+    private static final String NEW_DIR = "./target/andorra-reload-new-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("prepare.min_network_size", 0).
+                putObject("reload.warm_up_requests", 10).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR)
+                .setProfiles(Collections.singletonList(new Profile("my_car").setVehicle("car").setWeighting("fastest")));
+        return config;
+    }
+
+    // the graph is imported before @BeforeAll, so only clean up at the end
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+        Helper.removeDir(new File(NEW_DIR));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        String routeQuery = "/route?point=42.554851,1.536198&point=42.510071,1.548128&profile=my_car&instructions=false";
+        double distance = clientTarget(app, routeQuery).request().get(JsonNode.class).get("paths").get(0).get("distance").asDouble();
+
+        // a folder without a graph is rejected and the current graph is kept
+        String status = reloadAndWait(new File(NEW_DIR).getAbsolutePath());
+        assertTrue(status.contains("failed"), status);
+        assertEquals(distance, clientTarget(app, routeQuery).request().get(JsonNode.class).get("paths").get(0).get("distance").asDouble(), 1.e-3);
+
+        Helper.removeDir(new File(NEW_DIR));
+        copyGraph(DIR, NEW_DIR);
+        status = reloadAndWait(new File(NEW_DIR).getAbsolutePath());
+        assertTrue(status.startsWith("reloaded graph from"), status);
+        assertEquals(distance, clientTarget(app, routeQuery).request().get(JsonNode.class).get("paths").get(0).get("distance").asDouble(), 1.e-3);
+
+        // reload the configured location again
+        status = reloadAndWait("");
+        assertTrue(status.startsWith("reloaded graph from"), status);
+        assertEquals(distance, clientTarget(app, routeQuery).request().get(JsonNode.class).get("paths").get(0).get("distance").asDouble(), 1.e-3);
+        assertEquals(200, clientTarget(app, "/info").request().get().getStatus());
+    }
+
+    private static String reloadAndWait(String location) throws InterruptedException {
+        String started = adminTask("/tasks/reload-graph?graph.location=" + location);
+        assertTrue(started.startsWith("started reload"), started);
+        for (int i = 0; i < 600; i++) {
+            String status = adminTask("/tasks/reload-graph?status");
+            if (status.startsWith("reloaded") || status.contains("failed"))
+                return status;
+            Thread.sleep(100);
+        }
+        throw new AssertionError("reload did not finish: " + adminTask("/tasks/reload-graph?status"));
+    }
+
+    private static String adminTask(String path) {
+        return app.client().target("http://localhost:" + app.getAdminPort() + path).request().
+                post(Entity.text("")).readEntity(String.class).trim();
+    }
+
+    private static void copyGraph(String from, String to) throws IOException {
+        Path target = new File(to).toPath();
+        Files.createDirectories(target);
+        for (File file : new File(from).listFiles()) {
+            if (!file.getName().equals("gh.lock"))
+                Files.copy(file.toPath(), target.resolve(file.getName()));
+        }
+    }
+}
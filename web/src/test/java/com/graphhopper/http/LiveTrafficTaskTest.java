@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.config.Profile;
+import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.graphhopper.http.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class LiveTrafficTaskTest {
+    private static final String DIR = "./target/andorra-traffic-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("prepare.min_network_size", 0).
+                putObject("routing.live_traffic.enabled", true).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR)
+                .setProfiles(Collections.singletonList(new Profile("my_car").setVehicle("car").setWeighting("fastest")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testUpdate() throws IOException {
+        String routeQuery = "/route?point=42.554851,1.536198&point=42.510071,1.548128&profile=my_car&details=edge_id&instructions=false";
+        JsonNode path = clientTarget(app, routeQuery).request().get(JsonNode.class).get("paths").get(0);
+        long time = path.get("time").asLong();
+        JsonNode edgeIds = path.get("details").get("edge_id");
+        int[] edges = new int[edgeIds.size()];
+        double[] speeds = new double[edgeIds.size()];
+        for (int i = 0; i < edges.length; i++) {
+            // every detail is [from, to, value]
+            edges[i] = edgeIds.get(i).get(2).asInt();
+            speeds[i] = 10;
+        }
+
+        String body = "{\"edges\": " + Arrays.toString(edges) + ", \"speeds\": " + Arrays.toString(speeds) + "}";
+        // the speeds must not be changeable via the application port
+        assertEquals(404, clientTarget(app, "/traffic").request().post(Entity.json(body)).getStatus());
+
+        Response response = adminTask("").post(Entity.json(body));
+        assertEquals(200, response.getStatus());
+        // the tasks respond with text/plain
+        JsonNode info = Jackson.newObjectMapper().readTree(response.readEntity(String.class));
+        assertEquals(1, info.get("updates").asLong());
+        assertEquals(edges.length, info.get("last_update_edges").asInt());
+        assertTrue(info.get("edges").asInt() > 0);
+        assertTrue(info.has("last_apply_ms"));
+
+        JsonNode slowPath = clientTarget(app, routeQuery).request().get(JsonNode.class).get("paths").get(0);
+        assertTrue(slowPath.get("time").asLong() > time, slowPath.get("time") + " vs. " + time);
+        JsonNode ignoredPath = clientTarget(app, routeQuery + "&live_traffic.disable=true").request().get(JsonNode.class).get("paths").get(0);
+        assertEquals(time, ignoredPath.get("time").asLong());
+
+        response = adminTask("").post(Entity.json("{\"edges\": [1], \"speeds\": [-10]}"));
+        assertEquals(500, response.getStatus());
+        String error = response.readEntity(String.class);
+        assertTrue(error.contains("Invalid speed"), error);
+
+        info = Jackson.newObjectMapper().readTree(adminTask("").post(Entity.text("")).readEntity(String.class));
+        assertEquals(1, info.get("updates").asLong());
+        info = Jackson.newObjectMapper().readTree(adminTask("?clear").post(Entity.text("")).readEntity(String.class));
+        assertEquals(0, info.get("edges").asInt());
+        assertEquals(time, clientTarget(app, routeQuery).request().get(JsonNode.class).get("paths").get(0).get("time").asLong());
+    }
+
+    private static Invocation.Builder adminTask(String query) {
+        return app.client().target("http://localhost:" + app.getAdminPort() + "/tasks/live-traffic" + query).request();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.config.Profile;
+import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import java.io.File;
+import java.util.Collections;
+
+import static com.graphhopper.http.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class StorageMemoryTest {
+    private static final String DIR = "./target/andorra-storage-memory-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR)
+                .setProfiles(Collections.singletonList(new Profile("my_car").setVehicle("car").setWeighting("fastest")));
+        return config;
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testInventoryAndMetrics() {
+        String output = app.client().target("http://localhost:" + app.getAdminPort() + "/tasks/storage-memory").request().
+                post(Entity.text("")).readEntity(String.class);
+        assertTrue(output.contains("edges (RAM_INT_STORE): capacity: "), output);
+        assertTrue(output.contains("location_index (RAM_INT_STORE): capacity: "), output);
+        assertTrue(output.contains("heap: "), output);
+
+        clientTarget(app, "/route?point=42.554851,1.536198&point=42.510071,1.548128&profile=my_car").request().get().close();
+        JsonNode gauges = app.client().target("http://localhost:" + app.getAdminPort() + "/metrics").request().
+                get(JsonNode.class).get("gauges");
+        assertTrue(gauges.get("storage.heap_bytes").get("value").asLong() > 0);
+        assertEquals(0, gauges.get("storage.mapped_bytes").get("value").asLong());
+        assertTrue(gauges.get("storage.string_index.cache_misses").get("value").asLong() > 0);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http.resources;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.api.GHMRequest;
+import com.graphhopper.api.GHMatrixSyncRequester;
+import com.graphhopper.api.GraphHopperWeb;
+import com.graphhopper.api.MatrixResponse;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.http.GraphHopperApplication;
+import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.graphhopper.http.util.TestUtils.clientTarget;
+import static com.graphhopper.http.util.TestUtils.clientUrl;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class MatrixResourceTest {
+    private static final String DIR = "./target/andorra-matrix-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR)
+                .setProfiles(Arrays.asList(new Profile("my_car").setVehicle("car").setWeighting("fastest")))
+                .setCHProfiles(Arrays.asList(new CHProfile("my_car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testMatrixIsConsistentWithRoute() {
+        List<GHPoint> points = Arrays.asList(new GHPoint(42.5093, 1.5274), new GHPoint(42.5126, 1.5410), new GHPoint(42.50557, 1.52839));
+        GHMRequest request = new GHMRequest();
+        request.addAllPoints(points);
+        request.addOutArray("weights").addOutArray("distances").addOutArray("times");
+        request.putHint("profile", "my_car");
+        MatrixResponse rsp = new GHMatrixSyncRequester(clientUrl(app, "/matrix")).route(request);
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+
+        GraphHopperWeb gh = new GraphHopperWeb(clientUrl(app, "/route"));
+        for (int from = 0; from < points.size(); from++) {
+            for (int to = 0; to < points.size(); to++) {
+                if (from == to) {
+                    assertEquals(0, rsp.getDistance(from, to));
+                    continue;
+                }
+                GHResponse routeRsp = gh.route(new GHRequest(points.get(from), points.get(to)).setProfile("my_car"));
+                assertFalse(routeRsp.hasErrors(), routeRsp.getErrors().toString());
+                assertEquals(routeRsp.getBest().getRouteWeight(), rsp.getWeight(from, to), 1.e-2);
+                assertEquals(routeRsp.getBest().getDistance(), rsp.getDistance(from, to), 1);
+                assertEquals(routeRsp.getBest().getTime(), rsp.getTime(from, to), 1000);
+            }
+        }
+    }
+
+    @Test
+    public void testGet() {
+        String json = clientTarget(app, "/matrix?from_point=42.5093,1.5274&to_point=42.5126,1.5410&to_point=42.50557,1.52839&profile=my_car&out_array=distances")
+                .request().get(String.class);
+        assertTrue(json.contains("\"distances\":[["), json);
+        assertFalse(json.contains("\"weights\""), json);
+    }
+
+    @Test
+    public void testPointNotFound() {
+        GHMRequest request = new GHMRequest();
+        request.addFromPoint(new GHPoint(42.5093, 1.5274));
+        request.addToPoint(new GHPoint(42.5126, 1.5410));
+        // outside of andorra
+        request.addToPoint(new GHPoint(43.0, 1.5));
+        request.putHint("profile", "my_car");
+        MatrixResponse rsp = new GHMatrixSyncRequester(clientUrl(app, "/matrix")).route(request);
+        assertTrue(rsp.hasErrors());
+    }
+}